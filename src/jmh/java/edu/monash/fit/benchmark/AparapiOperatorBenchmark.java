@@ -0,0 +1,88 @@
+package edu.monash.fit.benchmark;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.ClampToRangeOperator;
+import edu.monash.fit.aparapi_filter.operator.GradientOperator;
+import edu.monash.fit.aparapi_filter.operator.HorizontalTransposingLowPassFilter;
+import edu.monash.fit.aparapi_filter.operator.LowPassOperator;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the APARAPI operators and the mask filter pipelines. The kernels are executed by the Java thread
+ * pool (JTP) or sequentially (SEQ), such that the benchmark runs on machines without an OpenCL device. Result grids
+ * are released to the buffer arena after each invocation, as in the mask filter pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class AparapiOperatorBenchmark {
+
+    @Param({"ClampToRange", "Gradient", "HorizontalTransposingLowPassFilter", "LowPass", "MaskFilter",
+            "ResidentMaskFilter"})
+    public String operator;
+
+    @Param({"1024", "4096", "16384"})
+    public int size;
+
+    @Param({"0", "0.5"})
+    public double voidFraction;
+
+    @Param({"JTP", "SEQ"})
+    public String executionMode;
+
+    private Grid src;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        BenchmarkGrids.setExecutionMode(executionMode);
+        src = BenchmarkGrids.createAparapiGrid(size, voidFraction);
+    }
+
+    @Benchmark
+    public float operate(){
+        switch (operator){
+            case "ClampToRange":
+                return release(new ClampToRangeOperator(200, 800).operate(src));
+            case "Gradient":
+                return release(new GradientOperator().operate(src));
+            case "HorizontalTransposingLowPassFilter":
+                return release(new HorizontalTransposingLowPassFilter(true, 6).operate(src));
+            case "LowPass":
+                return release(new LowPassOperator(6).operate(src));
+            case "MaskFilter":
+                return release(new MaskFilter(src).execute());
+            case "ResidentMaskFilter":
+                return release(new MaskFilter(src).executeResident());
+            default:
+                throw new IllegalArgumentException("unknown operator: " + operator);
+        }
+    }
+
+    /**
+     * Release a result grid to the buffer arena
+     * @param grid the result grid
+     * @return a value of the grid, to be consumed by the benchmark
+     */
+    private static float release(Grid grid){
+        float value = grid.get(grid.getLength() / 2);
+        grid.release();
+        return value;
+    }
+}
@@ -0,0 +1,123 @@
+package edu.monash.fit.benchmark;
+
+import com.aparapi.device.Device;
+import com.aparapi.device.JavaDevice;
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.KernelPool;
+import edu.monash.fit.eduard_object.eduard.grid.ShortBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.SignedNormalizedBuffer;
+
+import java.util.Random;
+
+/**
+ * Input grids and settings shared by the benchmarks. The Eduard and APARAPI grids of a benchmark contain identical
+ * values. The void cells of each row form a contiguous run at a random position, similar to clipped survey areas
+ * and coastlines.
+ */
+final class BenchmarkGrids {
+
+    /**
+     * Static class, no instance
+     */
+    private BenchmarkGrids(){
+    }
+
+    /**
+     * Create an Eduard grid with random values between 0 and 1000
+     * @param size number of columns and rows
+     * @param voidFraction fraction of void cells in each row
+     * @return the grid
+     */
+    static edu.monash.fit.eduard_object.eduard.grid.Grid createEduardGrid(int size, double voidFraction){
+        edu.monash.fit.eduard_object.eduard.grid.Grid grid =
+                new edu.monash.fit.eduard_object.eduard.grid.Grid(size, size, 0.5, 0.8, 0.8, "");
+        float[] row = new float[size];
+        Random random = new Random(0);
+        for (int r = 0; r < size; r++){
+            fillRow(row, random, voidFraction);
+            for (int col = 0; col < size; col++){
+                grid.setValue(row[col], col, r);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Create an Eduard grid with a {@link edu.monash.fit.eduard_object.eduard.grid.GridBuffer} of a storage type.
+     * Values of Float and Short grids are between 0 and 1000, values of SignedNormalized grids between 0 and 1.
+     * @param size number of columns and rows
+     * @param voidFraction fraction of void cells in each row
+     * @param storage Float, Short or SignedNormalized
+     * @return the grid
+     */
+    static edu.monash.fit.eduard_object.eduard.grid.Grid createEduardGrid(int size, double voidFraction,
+                                                                          String storage){
+        edu.monash.fit.eduard_object.eduard.grid.Grid values = createEduardGrid(size, voidFraction);
+        edu.monash.fit.eduard_object.eduard.grid.GridBuffer buffer;
+        float scale = 1;
+        switch (storage){
+            case "Float":
+                return values;
+            case "Short":
+                buffer = ShortBuffer.forRange(size, size, 0, 1000);
+                break;
+            case "SignedNormalized":
+                buffer = new SignedNormalizedBuffer(size, size);
+                scale = 1f / 1000;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown storage: " + storage);
+        }
+        edu.monash.fit.eduard_object.eduard.grid.Grid grid =
+                new edu.monash.fit.eduard_object.eduard.grid.Grid(0.5, 0.8, 0.8, "", buffer);
+        for (int r = 0; r < size; r++){
+            for (int col = 0; col < size; col++){
+                grid.setValue(values.getValue(col, r) * scale, col, r);
+            }
+        }
+        values.release();
+        return grid;
+    }
+
+    /**
+     * Create an APARAPI grid with the same values as {@link #createEduardGrid(int, double)}
+     * @param size number of columns and rows
+     * @param voidFraction fraction of void cells in each row
+     * @return the grid
+     */
+    static Grid createAparapiGrid(int size, double voidFraction){
+        Grid grid = new Grid(size, size, 0.5, 0.6, 0.8, 0.8, 0.8);
+        float[] row = new float[size];
+        Random random = new Random(0);
+        for (int r = 0; r < size; r++){
+            fillRow(row, random, voidFraction);
+            System.arraycopy(row, 0, grid.getBuffer(), r * size, size);
+        }
+        return grid;
+    }
+
+    private static void fillRow(float[] row, Random random, double voidFraction){
+        int voidCols = (int) (voidFraction * row.length);
+        int voidStart = random.nextInt(row.length - voidCols + 1);
+        for (int col = 0; col < row.length; col++){
+            boolean isVoid = col >= voidStart && col < voidStart + voidCols;
+            row[col] = isVoid ? Float.NaN : random.nextFloat() * 1000;
+        }
+    }
+
+    /**
+     * Select the APARAPI device for all kernels, such that the benchmarks run on machines without an OpenCL device.
+     * @param executionMode JTP for the Java thread pool, SEQ for sequential execution in the calling thread
+     */
+    static void setExecutionMode(String executionMode){
+        Device device;
+        if ("JTP".equals(executionMode)){
+            device = JavaDevice.THREAD_POOL;
+        } else if ("SEQ".equals(executionMode)){
+            device = JavaDevice.SEQUENTIAL;
+        } else {
+            throw new IllegalArgumentException("unknown execution mode: " + executionMode);
+        }
+        KernelPool.setPreferredDevice(device);
+    }
+}
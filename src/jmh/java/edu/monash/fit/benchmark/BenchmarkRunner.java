@@ -0,0 +1,36 @@
+package edu.monash.fit.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmark JAR. Accepts the JMH command line options, for example
+ * {@code java -jar target/benchmarks.jar AparapiOperatorBenchmark -p size=1024 -p executionMode=JTP}, and always
+ * adds the GC profiler, which reports the allocation rate and the garbage collections of each benchmark.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Main methods
+     * @param args JMH command line options
+     * @throws RunnerException if a benchmark fails
+     * @throws CommandLineOptionException if an option is invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldList()){
+            new Runner(commandLineOptions).list();
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
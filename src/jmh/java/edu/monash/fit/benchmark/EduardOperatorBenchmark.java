@@ -0,0 +1,142 @@
+package edu.monash.fit.benchmark;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ClampToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.CopyOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.CopyVoidOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.FillOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.FusedPointOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientXZevenbergenThorneOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientYZevenbergenThorneOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GridToImageOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.MinMaxOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.Normalize2DVectorOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.PlanCurvatureZevenbergenThorneOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ScaleToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ShadingOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ThreadedGridOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.WeightedScaleOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.lic.LineIntegralConvolutionOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the operators of the Eduard engine. The number of threads is set with the parallelism of the
+ * WORK_STEALING scheduling of {@link ThreadedGridOperator}. LicOperator is not benchmarked, it is the abstract base
+ * class of {@link LineIntegralConvolutionOperator} and has no operation of its own. Result grids are released to the buffer arena after
+ * each invocation, as in the filter pipelines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class EduardOperatorBenchmark {
+
+    @Param({"ClampToRange", "Copy", "CopyVoid", "Fill", "FusedPoint", "Gradient", "GradientXZevenbergenThorne",
+            "GradientYZevenbergenThorne", "GridToImage", "LineIntegralConvolution", "LowPass", "MinMax",
+            "Normalize2DVector", "PlanCurvatureZevenbergenThorne", "ScaleToRange", "Shading", "WeightedScale"})
+    public String operator;
+
+    @Param({"1024", "4096", "16384"})
+    public int size;
+
+    @Param({"0", "0.5"})
+    public double voidFraction;
+
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    private Grid src, dst;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = BenchmarkGrids.createEduardGrid(size, voidFraction);
+        if ("CopyVoid".equals(operator) || "Normalize2DVector".equals(operator)){
+            dst = BenchmarkGrids.createEduardGrid(size, 0);
+        }
+        if ("GridToImage".equals(operator)){
+            image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        }
+        ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+        ThreadedGridOperator.setParallelism(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+    }
+
+    @Benchmark
+    public Object operate(){
+        switch (operator){
+            case "ClampToRange":
+                return release(new ClampToRangeOperator(200, 800).operate(src));
+            case "Copy":
+                return release(new CopyOperator().operate(src));
+            case "CopyVoid":
+                return new CopyVoidOperator().operate(src, dst);
+            case "Fill":
+                return release(new FillOperator(1).operate(src));
+            case "FusedPoint":
+                return release(new FusedPointOperator(null, new ClampToRangeOperator(200, 800),
+                        new ScaleToRangeOperator(0, 1)).operate(src));
+            case "Gradient":
+                return release(new GradientOperator().operate(src));
+            case "GradientXZevenbergenThorne":
+                return release(new GradientXZevenbergenThorneOperator().operate(src));
+            case "GradientYZevenbergenThorne":
+                return release(new GradientYZevenbergenThorneOperator().operate(src));
+            case "GridToImage":
+                new GridToImageOperator(image, 0, 1000).operate(src);
+                return image;
+            case "LineIntegralConvolution":
+                return release(new LineIntegralConvolutionOperator(6, 0.5f, 0.5f).operate(src));
+            case "LowPass":
+                return release(new LowPassOperator(6, null).operate(src));
+            case "MinMax":
+                return new MinMaxOperator().findMinMax(src);
+            case "Normalize2DVector":
+                return new Normalize2DVectorOperator(null).operate(src, dst);
+            case "PlanCurvatureZevenbergenThorne":
+                return release(new PlanCurvatureZevenbergenThorneOperator().operate(src));
+            case "ScaleToRange":
+                return release(new ScaleToRangeOperator(0, 1).operate(src));
+            case "Shading":
+                return release(new ShadingOperator().operate(src));
+            case "WeightedScale":
+                return release(new WeightedScaleOperator(src, 0.5f, null).operate(src));
+            default:
+                throw new IllegalArgumentException("unknown operator: " + operator);
+        }
+    }
+
+    /**
+     * Release a result grid to the buffer arena
+     * @param grid the result grid
+     * @return a value of the grid, to be consumed by the benchmark
+     */
+    private static float release(Grid grid){
+        float value = grid.getValue(grid.getCols() / 2, grid.getRows() / 2);
+        grid.release();
+        return value;
+    }
+}
@@ -0,0 +1,104 @@
+package edu.monash.fit.benchmark;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.operator.CopyOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the grid buffer types. Float grids store 4 bytes per cell, Short and SignedNormalized grids store 2
+ * bytes per cell. Sum reads all cells, Copy reads and writes all cells of grids with the same storage type, and
+ * Gradient and LowPass read the quantized grid and write a float grid. Grids larger than the processor caches are
+ * limited by memory bandwidth, such that quantized grids are faster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class GridBufferBenchmark {
+
+    @Param({"Sum", "Copy", "Gradient", "LowPass"})
+    public String operator;
+
+    @Param({"Float", "Short", "SignedNormalized"})
+    public String storage;
+
+    @Param({"1024", "4096", "16384"})
+    public int size;
+
+    private Grid src, dst;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = BenchmarkGrids.createEduardGrid(size, 0.1, storage);
+        if ("Copy".equals(operator)){
+            dst = new Grid(src);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        src.release();
+        if (dst != null){
+            dst.release();
+        }
+    }
+
+    @Benchmark
+    public float operate(){
+        switch (operator){
+            case "Sum":
+                return sum(src);
+            case "Copy":
+                new CopyOperator().operate(src, dst);
+                return dst.getValue(size / 2, size / 2);
+            case "Gradient":
+                return release(new GradientOperator().operate(src));
+            case "LowPass":
+                return release(new LowPassOperator(6, null).operate(src));
+            default:
+                throw new IllegalArgumentException("unknown operator: " + operator);
+        }
+    }
+
+    private static float sum(Grid grid){
+        float sum = 0;
+        for (int row = 0; row < grid.getRows(); row++){
+            for (int col = 0; col < grid.getCols(); col++){
+                float v = grid.getValue(col, row);
+                if (Grid.isValid(v)){
+                    sum += v;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Release a result grid to the buffer arena
+     * @param grid the result grid
+     * @return a value of the grid, to be consumed by the benchmark
+     */
+    private static float release(Grid grid){
+        float value = grid.getValue(grid.getCols() / 2, grid.getRows() / 2);
+        grid.release();
+        return value;
+    }
+}
@@ -0,0 +1,127 @@
+package edu.monash.fit.benchmark;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.operator.MinMaxOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ThreadedGridOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the FIXED_CHUNKS and WORK_STEALING scheduling of {@link ThreadedGridOperator} with a skewed workload:
+ * the upper half of the grid is void and cheap to operate on, while the cost of the valid rows increases towards the
+ * bottom of the grid. The WORK_STEALING_NESTED mode uses WORK_STEALING and starts a nested MinMaxOperator for every
+ * block of rows. Nested operators are not benchmarked with FIXED_CHUNKS, as the chunks would wait for nested chunks
+ * queued in the same fixed thread pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class SchedulingBenchmark {
+
+    @Param({"FIXED_CHUNKS", "WORK_STEALING", "WORK_STEALING_NESTED"})
+    public String scheduling;
+
+    @Param({"1000", "4000"})
+    public int size;
+
+    private Grid src;
+    private SkewedOperator operator;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        src = createSkewedGrid(size);
+        boolean nested = "WORK_STEALING_NESTED".equals(scheduling);
+        ThreadedGridOperator.setScheduling(nested ? ThreadedGridOperator.Scheduling.WORK_STEALING
+                : ThreadedGridOperator.Scheduling.valueOf(scheduling));
+        operator = new SkewedOperator(nested);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+        src.release();
+    }
+
+    @Benchmark
+    public float operate(){
+        Grid result = operator.operate(src);
+        float value = result.getValue(size / 2, size - 1);
+        result.release();
+        return value;
+    }
+
+    /**
+     * Create a grid with a void upper half and random values between 0 and 1 in the lower half
+     * @param size number of columns and rows
+     * @return the grid
+     */
+    private static Grid createSkewedGrid(int size){
+        Grid grid = new Grid(size, size, 1, 0, 0, "");
+        Random random = new Random(0);
+        for (int row = 0; row < size; row++){
+            for (int col = 0; col < size; col++){
+                if (row < size / 2){
+                    grid.setVoid(col, row);
+                } else {
+                    grid.setValue(random.nextFloat(), col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * An operator with a cost increasing with the row index for valid values
+     */
+    private static final class SkewedOperator extends ThreadedGridOperator {
+
+        // start a nested MinMaxOperator for each block of rows
+        private final boolean nested;
+
+        private SkewedOperator(boolean nested){
+            this.nested = nested;
+        }
+
+        @Override
+        protected void threadedOperate(Grid src, Grid dst, int startRow, int endRow){
+            if (nested){
+                new MinMaxOperator().findMinMax(src);
+            }
+            super.threadedOperate(src, dst, startRow, endRow);
+        }
+
+        @Override
+        protected void operateValue(Grid src, Grid dst, int col, int row){
+            float v = src.getValue(col, row);
+            if (Grid.isValid(v)){
+                int iterations = 1 + 200 * row / src.getRows();
+                for (int i = 0; i < iterations; i++){
+                    v = (float) Math.sqrt(v * v + 1e-3f);
+                }
+            }
+            dst.setValue(v, col, row);
+        }
+
+        @Override
+        public String getName(){
+            return "Skewed workload";
+        }
+    }
+}
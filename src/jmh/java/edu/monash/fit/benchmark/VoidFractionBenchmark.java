@@ -0,0 +1,88 @@
+package edu.monash.fit.benchmark;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.LowPassOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the low-pass filter of Eduard and APARAPI with a varying fraction of void (NoData) cells. The void
+ * cells of each row form a contiguous run at a random position, similar to clipped survey areas and coastlines,
+ * such that the void replacement of the first pass dominates with large void fractions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class VoidFractionBenchmark {
+
+    private static final float sigma = 6f;
+
+    @Param({"Eduard", "APARAPI"})
+    public String engine;
+
+    @Param({"2000"})
+    public int size;
+
+    @Param({"0", "0.1", "0.25", "0.5", "0.75", "0.9"})
+    public double voidFraction;
+
+    @Param({"JTP"})
+    public String executionMode;
+
+    private edu.monash.fit.eduard_object.eduard.grid.Grid eduardSource;
+    private Grid aparapiSource;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        if ("Eduard".equals(engine)){
+            eduardSource = BenchmarkGrids.createEduardGrid(size, voidFraction);
+        } else if ("APARAPI".equals(engine)){
+            BenchmarkGrids.setExecutionMode(executionMode);
+            aparapiSource = BenchmarkGrids.createAparapiGrid(size, voidFraction);
+        } else {
+            throw new IllegalArgumentException("unknown engine: " + engine);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        if (eduardSource != null){
+            eduardSource.release();
+        }
+        if (aparapiSource != null){
+            aparapiSource.release();
+        }
+    }
+
+    @Benchmark
+    public float operate(){
+        if (eduardSource != null){
+            edu.monash.fit.eduard_object.eduard.grid.Grid result =
+                    new edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator(sigma, null)
+                            .operate(eduardSource);
+            float value = result.getValue(size / 2, size / 2);
+            result.release();
+            return value;
+        }
+        Grid result = new LowPassOperator(sigma).operate(aparapiSource);
+        float value = result.get(result.getLength() / 2);
+        result.release();
+        return value;
+    }
+}
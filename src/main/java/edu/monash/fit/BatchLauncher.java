@@ -0,0 +1,416 @@
+package edu.monash.fit;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.KernelPool;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriFloatGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridImporter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriFloatGridImporter;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GridToImageOperator;
+import edu.monash.fit.eduard_object.eduard.utils.FileUtils;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch mode of the APARAPI raster filter. The mask filter is applied to any number of digital elevation
+ * models in one virtual machine, without dialogs or any other use of AWT or Swing, such that the filter can be run by
+ * a job scheduler. Kernels and buffers are reused between the elevation models.
+ *
+ * Inputs are Esri ASCII grids (*.asc) or Esri binary float grids (*.flt), directories with such files, or glob
+ * patterns such as dems/*.asc or dems/**.flt. For each input, the filtered grid is written to the output directory
+ * in each of the output formats (asc, flt, png), together with an optional benchmark file (txt, json or csv).
+ *
+ * Usage: BatchLauncher [--output directory] [--format asc,flt,png] [--benchmark txt|json|csv] [--threads 1]
+ * input...
+ */
+public class BatchLauncher {
+
+    public static final String ASC = "asc";
+    public static final String FLT = "flt";
+    public static final String PNG = "png";
+
+    private static final List<String> FORMATS = Arrays.asList(ASC, FLT, PNG);
+    private static final List<String> BENCHMARK_FORMATS = Arrays.asList("txt", "json", "csv");
+
+    private final File outputDirectory;     // null to write the outputs next to the inputs
+    private final Set<String> formats;      // formats of the filtered grid
+    private final String benchmarkFormat;   // format of the benchmark files, null for no benchmark files
+    private final int threads;              // number of elevation models filtered concurrently
+
+    /**
+     * The outputs of one elevation model
+     */
+    public static final class Result {
+        private final File input;
+        private final List<File> outputs;
+        private final RunMetrics metrics;
+        private final double millis;
+        private final Throwable failure;
+
+        Result(File input, List<File> outputs, RunMetrics metrics, double millis, Throwable failure){
+            this.input = input;
+            this.outputs = Collections.unmodifiableList(outputs);
+            this.metrics = metrics;
+            this.millis = millis;
+            this.failure = failure;
+        }
+
+        public File getInput(){
+            return input;
+        }
+
+        /**
+         * get the written files
+         * @return the grid, image and benchmark files
+         */
+        public List<File> getOutputs(){
+            return outputs;
+        }
+
+        /**
+         * get the metrics of the mask filter
+         * @return the metrics, or null if the input could not be read
+         */
+        public RunMetrics getMetrics(){
+            return metrics;
+        }
+
+        /**
+         * get the time for reading, filtering and writing
+         * @return time in milliseconds
+         */
+        public double getMillis(){
+            return millis;
+        }
+
+        /**
+         * get the reason for the failure of this elevation model
+         * @return the exception, or null if all outputs were written
+         */
+        public Throwable getFailure(){
+            return failure;
+        }
+
+        public boolean isPassed(){
+            return failure == null;
+        }
+
+        @Override
+        public String toString(){
+            return String.format(Locale.US, "%-32s %10.1f ms  %s", input.getName(), millis,
+                    failure == null ? outputs.size() + " files written" : "FAILED: " + failure);
+        }
+    }
+
+    /**
+     * Constructor
+     * @param outputDirectory directory of the outputs, or null to write the outputs to the directory of each input
+     * @param formats formats of the filtered grid, any of asc, flt and png
+     * @param benchmarkFormat format of the benchmark files, one of txt, json and csv, or null for no benchmark files
+     * @param threads number of elevation models filtered concurrently
+     */
+    public BatchLauncher(File outputDirectory, Collection<String> formats, String benchmarkFormat, int threads){
+        if (formats == null){
+            throw new NullPointerException("");
+        }
+        for (String format : formats){
+            if (!FORMATS.contains(format)){
+                throw new IllegalArgumentException("unknown format " + format);
+            }
+        }
+        if (benchmarkFormat != null && !BENCHMARK_FORMATS.contains(benchmarkFormat)){
+            throw new IllegalArgumentException("unknown benchmark format " + benchmarkFormat);
+        }
+        if (threads < 1){
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.outputDirectory = outputDirectory;
+        this.formats = new LinkedHashSet<>(formats);
+        this.benchmarkFormat = benchmarkFormat;
+        this.threads = threads;
+    }
+
+    /**
+     * Filter elevation models. A failure of one elevation model does not stop the other elevation models.
+     * @param inputs the elevation models
+     * @return the results in the order of the inputs
+     * @throws IOException if the output directory cannot be created
+     * @throws InterruptedException if the current thread is interrupted while waiting for the results
+     */
+    public List<Result> run(List<File> inputs) throws IOException, InterruptedException {
+        if (outputDirectory != null){
+            // inputs with equal names in different directories would overwrite each other's outputs
+            Set<String> names = new HashSet<>();
+            for (File input : inputs){
+                if (!names.add(FileUtils.getFileNameWithoutExtension(input.getName()))){
+                    throw new IllegalArgumentException("more than one input named " + input.getName());
+                }
+            }
+            Files.createDirectories(outputDirectory.toPath());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (File input : inputs){
+                futures.add(executor.submit(() -> process(input)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures){
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ex){
+                    // process catches all exceptions
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+            // the pooled kernels for the grid sizes of this batch are not needed anymore
+            KernelPool.disposeAll();
+        }
+    }
+
+    /**
+     * Filter one elevation model and write the outputs
+     * @param input the elevation model
+     * @return the result
+     */
+    private Result process(File input){
+        long startTime = System.nanoTime();
+        List<File> outputs = new ArrayList<>();
+        RunMetrics metrics = null;
+        try {
+            String fileName = FileUtils.getFileNameWithoutExtension(input.getName());
+            File directory = outputDirectory != null ? outputDirectory : input.getAbsoluteFile().getParentFile();
+            edu.monash.fit.eduard_object.eduard.grid.Grid inputGrid = read(input);
+
+            // view the values of the Eduard grid as an APARAPI grid and execute the mask filter procedure
+            Grid source = Grid.view(inputGrid);
+            metrics = new RunMetrics(input.getName());
+            RunMetrics previous = RunMetrics.bind(metrics);
+            Grid result;
+            try {
+                result = new MaskFilter(source).executeResident();
+            } finally {
+                RunMetrics.bind(previous);
+            }
+
+            // view the values of the APARAPI result as an Eduard grid, the APARAPI grid keeps the values
+            edu.monash.fit.eduard_object.eduard.grid.Grid outputGrid =
+                    result.toEduardGrid(inputGrid.getPrjFileContent());
+            inputGrid.release();
+
+            try {
+                for (String format : formats){
+                    File file = new File(directory, fileName + "_filtered." + format);
+                    write(outputGrid, format, file);
+                    outputs.add(file);
+                }
+            } finally {
+                outputGrid.release();
+                result.release();
+            }
+            if (benchmarkFormat != null){
+                File file = new File(directory, fileName + "_aparapi." + benchmarkFormat);
+                writeBenchmark(metrics, file);
+                outputs.add(file);
+            }
+            return new Result(input, outputs, metrics, (System.nanoTime() - startTime) / 1e6, null);
+        } catch (Throwable ex){
+            return new Result(input, outputs, metrics, (System.nanoTime() - startTime) / 1e6, ex);
+        }
+    }
+
+    private static edu.monash.fit.eduard_object.eduard.grid.Grid read(File input) throws IOException {
+        if (FileUtils.hasExtension(input.getName(), FLT)){
+            return EsriFloatGridImporter.read(input.getPath());
+        }
+        return EsriASCIIGridImporter.read(input.getPath());
+    }
+
+    private static void write(edu.monash.fit.eduard_object.eduard.grid.Grid grid, String format, File file)
+            throws IOException {
+        switch (format){
+            case ASC:
+                EsriASCIIGridExporter.export(grid, file.getPath(), null);
+                break;
+            case FLT:
+                EsriFloatGridExporter.export(grid, file.getPath(), null);
+                break;
+            case PNG:
+                float[] minMax = grid.getMinMax();
+                if (!ImageIO.write(GridToImageOperator.convert(grid, minMax[0], minMax[1]), PNG, file)){
+                    throw new IOException("no PNG writer");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown format " + format);
+        }
+    }
+
+    private void writeBenchmark(RunMetrics metrics, File file) throws IOException {
+        try (Writer writer = new FileWriter(file)){
+            switch (benchmarkFormat){
+                case "json": writer.write(metrics.toJSON()); break;
+                case "csv": writer.write(metrics.toCSV()); break;
+                default: writer.write("APARAPI performance benchmark\n" + metrics.toText());
+            }
+        }
+    }
+
+    /**
+     * Find the grid files of an input. A directory is expanded to its *.asc and *.flt files. A pattern with the
+     * wildcards of {@link java.nio.file.FileSystem#getPathMatcher(String)} (*, **, ?, [] and {}) is expanded to the
+     * matching files; the path elements before the first wildcard select the directory that is searched.
+     * @param pattern a file, a directory or a glob pattern
+     * @return the files, sorted by path
+     * @throws IOException if no file is found
+     */
+    public static List<File> expand(String pattern) throws IOException {
+        File file = new File(pattern);
+        if (file.isDirectory()){
+            File[] files = file.listFiles((dir, name) -> FileUtils.hasExtension(name, ASC)
+                    || FileUtils.hasExtension(name, FLT));
+            if (files == null || files.length == 0){
+                throw new IOException("no grid files in " + pattern);
+            }
+            Arrays.sort(files);
+            return Arrays.asList(files);
+        }
+        if (!isGlob(pattern)){
+            if (!file.isFile()){
+                throw new IOException("no such file " + pattern);
+            }
+            return Collections.singletonList(file);
+        }
+
+        // split the pattern into the directory to search and the pattern relative to this directory
+        String[] elements = pattern.split("[/\\\\]", -1);
+        int first = 0;
+        while (!isGlob(elements[first])){
+            first++;
+        }
+        String base = String.join(File.separator, Arrays.copyOf(elements, first));
+        if (base.isEmpty() && pattern.startsWith("/")){
+            base = File.separator;
+        }
+        String relativePattern = String.join("/", Arrays.copyOfRange(elements, first, elements.length));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+        int maxDepth = relativePattern.contains("**") ? Integer.MAX_VALUE : elements.length - first;
+
+        Path basePath = Paths.get(base.isEmpty() ? "." : base);
+        if (!Files.isDirectory(basePath)){
+            throw new IOException("no such directory " + basePath);
+        }
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(basePath, maxDepth)){
+            files = paths.filter(path -> Files.isRegularFile(path) && matcher.matches(basePath.relativize(path)))
+                    .map(Path::toFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (files.isEmpty()){
+            throw new IOException("no files match " + pattern);
+        }
+        return files;
+    }
+
+    private static boolean isGlob(String pattern){
+        return pattern.matches(".*[*?\\[{].*");
+    }
+
+    private static void usage(String message){
+        System.err.println(message);
+        System.err.println("usage: BatchLauncher [--output directory] [--format asc,flt,png] "
+                + "[--benchmark txt|json|csv] [--threads 1] input...");
+        System.exit(2);
+    }
+
+    /**
+     * Main methods
+     * @param args command line options, see the class description
+     */
+    public static void main(String[] args) {
+        // image encoding must not initialise a window system
+        System.setProperty("java.awt.headless", "true");
+
+        File outputDirectory = null;
+        List<String> formats = Collections.singletonList(ASC);
+        String benchmarkFormat = null;
+        int threads = 1;
+        List<String> patterns = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++){
+                switch (args[i]){
+                    case "--output": outputDirectory = new File(args[++i]); break;
+                    case "--format": formats = Arrays.asList(args[++i].toLowerCase().split(",")); break;
+                    case "--benchmark": benchmarkFormat = args[++i].toLowerCase(); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--")){
+                            usage("unknown option " + args[i]);
+                        }
+                        patterns.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex){
+            usage("invalid options");
+        }
+        if (patterns.isEmpty()){
+            usage("no input");
+        }
+
+        try {
+            Set<File> inputs = new LinkedHashSet<>();
+            for (String pattern : patterns){
+                inputs.addAll(expand(pattern));
+            }
+            BatchLauncher launcher = new BatchLauncher(outputDirectory, formats, benchmarkFormat, threads);
+            long startTime = System.nanoTime();
+            List<Result> results = launcher.run(new ArrayList<>(inputs));
+            int failed = 0;
+            for (Result result : results){
+                System.out.println(result);
+                if (!result.isPassed()){
+                    failed++;
+                }
+            }
+            System.out.printf(Locale.US, "%d of %d grids filtered in %.1f s%n", results.size() - failed,
+                    results.size(), (System.nanoTime() - startTime) / 1e9);
+            System.exit(failed == 0 ? 0 : 1);
+        } catch (IllegalArgumentException ex){
+            usage(ex.getMessage());
+        } catch (Exception ex){
+            ex.printStackTrace();
+            System.exit(-1);
+        }
+    }
+}
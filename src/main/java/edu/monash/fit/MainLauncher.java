@@ -2,6 +2,7 @@ package edu.monash.fit;
 
 import edu.monash.fit.aparapi_filter.Grid;
 import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
 import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridExporter;
 import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridImporter;
 import edu.monash.fit.eduard_object.eduard.grid.operator.GridToImageOperator;
@@ -17,6 +18,8 @@ import java.io.IOException;
 
 /**
  * MainLauncher of the APARAPI raster filter
+ * Without arguments, the files are selected with dialogs. With arguments, the headless {@link BatchLauncher} is run
+ * instead, for example: MainLauncher --output out --format asc,png dems/*.asc
  */
 public class MainLauncher {
 
@@ -37,7 +40,17 @@ public class MainLauncher {
 
     private static String performanceString = "";
 
+    // metrics of the mask filter run
+    private static RunMetrics metrics;
+
+    // execute the mask filter with all buffers resident in the APARAPI execution context
+    private static final boolean residentPipeline = true;
+
     public static void main(String[] args) {
+        if (args.length > 0) {
+            BatchLauncher.main(args);
+            return;
+        }
         java.awt.EventQueue.invokeLater(() -> {
             try{
                 // read input grid file
@@ -55,22 +68,17 @@ public class MainLauncher {
                 // create Eduard grid class
                 edu.monash.fit.eduard_object.eduard.grid.Grid inputGrid = EsriASCIIGridImporter.read(inputGridFile);
 
-                // translate Eduard grid class into APARAPI grid class
-                Grid source = new Grid(inputGrid.getBufferArray(), inputGrid.getCols(), inputGrid.getRows(),
-                        inputGrid.getCellSize(), inputGrid.getNorth(), inputGrid.getSouth(),
-                        inputGrid.getEast(), inputGrid.getWest());
+                // view the values of the Eduard grid as an APARAPI grid, without copying them
+                Grid source = Grid.view(inputGrid);
 
                 // execute the mask filter procedure
-                Grid result = new MaskFilter(source).execute();
+                MaskFilter maskFilter = new MaskFilter(source);
+                Grid result = residentPipeline ? maskFilter.executeResident() : maskFilter.execute();
+                metrics = maskFilter.getMetrics();
 
-                // shallow copy of the Eduard inputGrid to create outputGrid
-                edu.monash.fit.eduard_object.eduard.grid.Grid outputGrid = edu.monash.fit.eduard_object.eduard.grid.Grid.shallowCopy(inputGrid);
-
-                // translate the Aparapi grid object to Eduard grid object
-                for (int row = 0, nRows = outputGrid.getRows(); row < nRows; row++) {
-                    for (int col = 0, nCols = outputGrid.getCols(); col < nCols; col++)
-                        outputGrid.setValue(result.get(col, row), col, row);
-                }
+                // view the values of the APARAPI result as an Eduard grid, without copying them
+                edu.monash.fit.eduard_object.eduard.grid.Grid outputGrid =
+                        result.toEduardGrid(inputGrid.getPrjFileContent());
                 // get the minimum value and maximum value from the grid matrix(1d array)
                 float[] minMax = outputGrid.getMinMax();
                 // create a bufferedImage (holder of the raster filter image)
@@ -127,7 +135,7 @@ public class MainLauncher {
     }
 
     /**
-     * export the benchmark file
+     * export the benchmark file, as JSON or CSV if the file has a json or csv extension, otherwise as text
      * @throws IOException file not found
      */
     private static void export_benchmark() throws IOException {
@@ -137,7 +145,14 @@ public class MainLauncher {
         }
         if (benchmarkingFile != null){
             FileWriter myWriter = new FileWriter(benchmarkingFile);
-            myWriter.write(performanceString);
+            String path = benchmarkingFile.toLowerCase();
+            if (path.endsWith(".json")) {
+                myWriter.write(metrics.toJSON());
+            } else if (path.endsWith(".csv")) {
+                myWriter.write(metrics.toCSV());
+            } else {
+                myWriter.write(performanceString);
+            }
             myWriter.close();
         }
     }
@@ -147,8 +162,7 @@ public class MainLauncher {
      */
     private static void create_benchmark() {
         performanceString += "APARAPI performance benchmark\n";
-        for (String line : MaskFilter.benchmarking)
-            performanceString += line + "\n";
+        performanceString += metrics.toText();
     }
 
 
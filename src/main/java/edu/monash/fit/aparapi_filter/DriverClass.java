@@ -33,14 +33,14 @@ public class DriverClass {
 //        for (float i: input.getBuffer())
 //            System.out.println(i);
 
-        output = new MaskFilter(input).execute();
+        MaskFilter maskFilter = new MaskFilter(input);
+        output = maskFilter.execute();
 
         System.out.println(output.getBuffer());
 
         try{
             FileWriter myWriter = new FileWriter("performance.txt");
-            for (String line : MaskFilter.benchmarking)
-                myWriter.write(line + "\n");
+            myWriter.write(maskFilter.getMetrics().toText());
 
             myWriter.close();
 
@@ -1,5 +1,8 @@
 package edu.monash.fit.aparapi_filter;
 
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.FloatBuffer;
+
 import java.util.Random;
 
 /**
@@ -12,9 +15,11 @@ public class Grid {
     private int cols, rows;                 // total columns and rows
     private double cellSize, north, south;  // cell size, north and south latitude
     private double east, west;              // east and west longitude
+    private boolean owner;                  // true if the buffer was acquired from the BufferArena by this grid
 
     /**
-     * Default constructor which can pass in the buffer received
+     * Default constructor which can pass in the buffer received. The array is not copied, it is owned by the caller
+     * and is not returned to the BufferArena when this grid is released.
      * @param bufferReceived the buffer float array
      * @param cols total columns
      * @param rows total rows
@@ -37,7 +42,7 @@ public class Grid {
     }
 
     /**
-     * Default constructor, automatically create the holder buffer
+     * Default constructor, automatically create the holder buffer (acquired from the BufferArena)
      * @param cols total columns
      * @param rows total rows
      * @param cellSize cellsize for each raster grid
@@ -47,7 +52,8 @@ public class Grid {
      * @param west west longitude
      */
     public Grid(int cols, int rows, double cellSize, double north, double south, double east, double west){
-        this(new float[cols * rows], cols, rows, cellSize, north, south, east, west);
+        this(BufferArena.acquire(Math.multiplyExact(cols, rows)), cols, rows, cellSize, north, south, east, west);
+        this.owner = true;
 //        this.cols = cols;
 //        this.rows = rows;
 //        this.cellSize = cellSize;
@@ -68,6 +74,36 @@ public class Grid {
                 toCopy.getSouth(), toCopy.getEast(), toCopy.getWest());
     }
 
+    /**
+     * create a Grid object viewing the values of an Eduard grid, the values are not copied
+     * Both grids share the same array, and a change to one grid is visible in the other grid. The Eduard grid owns
+     * the array: releasing the returned grid does not release the array, releasing the Eduard grid does, after which
+     * neither grid must be used.
+     * @param grid Eduard grid object
+     * @return new grid object sharing the values of the Eduard grid
+     * @throws UnsupportedOperationException if the Eduard grid does not store its values in a float array
+     */
+    public static Grid view(edu.monash.fit.eduard_object.eduard.grid.Grid grid){
+        return new Grid(grid.getBufferArray(), grid.getCols(), grid.getRows(), grid.getCellSize(),
+                grid.getNorth(), grid.getSouth(), grid.getEast(), grid.getWest());
+    }
+
+    /**
+     * create an Eduard grid object viewing the values of this grid, the values are not copied
+     * Both grids share the same array, and a change to one grid is visible in the other grid. This grid owns the
+     * array: releasing the Eduard grid does not release the array, releasing this grid does (unless this grid is a
+     * view itself), after which neither grid must be used.
+     * @param prjFileContent projection of the Eduard grid, can be null
+     * @return new Eduard grid object sharing the values of this grid
+     */
+    public edu.monash.fit.eduard_object.eduard.grid.Grid toEduardGrid(String prjFileContent){
+        if (bufferReceived == null){
+            throw new IllegalStateException("grid already released");
+        }
+        return new edu.monash.fit.eduard_object.eduard.grid.Grid(getCellSize(), getWest(), getSouth(),
+                prjFileContent, new FloatBuffer(bufferReceived, getCols(), getRows()));
+    }
+
     /**
      * fill the array with random float value
      */
@@ -99,7 +135,8 @@ public class Grid {
     }
 
     /**
-     * Setter of the buffer received
+     * Setter of the buffer received. The array is owned by the caller and is not returned to the BufferArena when
+     * this grid is released. The previous buffer is not released.
      * @param bufferReceived float array
      */
     public void setBufferReceived(float[] bufferReceived){
@@ -107,6 +144,7 @@ public class Grid {
             throw new NullPointerException();
         }
         this.bufferReceived = bufferReceived;
+        this.owner = false;
     }
 
     /**
@@ -117,6 +155,31 @@ public class Grid {
         return bufferReceived;
     }
 
+    /**
+     * Returns whether the grid owns its buffer and returns it to the BufferArena when it is released
+     * @return true if the buffer was acquired from the BufferArena by the constructor, false for an array passed in
+     * by the caller, for example for a view of an Eduard grid, see
+     * {@link #view(edu.monash.fit.eduard_object.eduard.grid.Grid)}
+     */
+    public boolean isOwner(){
+        return owner;
+    }
+
+    /**
+     * Return the buffer to the BufferArena such that it can be reused by another grid, the grid must not be used
+     * after it has been released. An array passed in by the caller is not returned, for example the buffer of a view
+     * is owned by the viewed grid.
+     */
+    public void release(){
+        if (bufferReceived == null){
+            throw new IllegalStateException("grid already released");
+        }
+        if (owner){
+            BufferArena.release(bufferReceived);
+        }
+        bufferReceived = null;
+    }
+
     /**
      * getter of the value in the array (1d representation)
      * @param col column representation
@@ -1,80 +1,83 @@
 package edu.monash.fit.aparapi_filter;
 
 import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.processlauncher.FilterWorker;
+import edu.monash.fit.eduard_object.processlauncher.GridExchangeFile;
+import edu.monash.fit.eduard_object.processlauncher.GridProtocol;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
 
 /**
  * The original main class of the aparapi project
- * it will read in the stream input and store it into a Grid object, process and
- * output the post-process grid values through stream output
+ * it will read a grid frame (see GridProtocol) from the stream input and store it into a Grid object,
+ * process and output the post-process grid as a grid frame through stream output.
+ * With the arguments of a GridExchangeFile, the grids are exchanged through a memory-mapped file instead.
+ * With the argument --worker, it runs as a persistent worker filtering any number of grid frames
  */
 public class Main {
 
+    // execute the mask filter with all buffers resident in the APARAPI execution context
+    private static final boolean residentPipeline = true;
+
     /**
      * The main execution method
      * @param args argument list
      */
     public static void main(String[] args) {
-        // guardian code
-        if (args.length < 7) {
-            System.out.println("END");
-            System.exit(-1);
-        }
-
-
-        /**
-         * retrieve values from argument list
-         */
-        int cols = Integer.parseInt(args[0]);   // get cols
-        int rows = Integer.parseInt(args[1]);   // get rows
-        double cellsize = Double.parseDouble(args[2]);  // get cellsize
-        double north = Double.parseDouble(args[3]);     // get north
-        double south = Double.parseDouble(args[4]);     // get south
 
-        double east = Double.parseDouble(args[5]);      // get east
-        double west = Double.parseDouble(args[6]);      // get west
-
-        int n = cols * rows;                        // size of buffer
+        if (args.length == 1 && FilterWorker.WORKER_ARGUMENT.equals(args[0])) {
+            runWorker();
+            return;
+        }
 
-        float[] buffer = new float[n];              // create buffer to store value
         Grid source, output;
+        GridExchangeFile exchangeFile = null;
 
         try {
             /*
-            read from stream input, convert byte into float and store it into buffer
+            read the header with the size and georeference of the grid, and
+            decode the values into the buffer
              */
-            for (int i = 0; i < n; i++) {
-                // read four bytes
-                int b1 = System.in.read();
-                int b2 = System.in.read();
-                int b3 = System.in.read();
-                int b4 = System.in.read();
-
-                if (b4 == -1) {
-                    break;
-                }
-                // convert bytes to float
-                // Note: other languages likely use little-endian order, which would
-                // require shuffling the bytes
-                int intBits = b4 << 24 | (b3 & 0xFF) << 16 | (b2 & 0xFF) << 8 | (b1 & 0xFF);
-                buffer[i] = Float.intBitsToFloat(intBits);
+            GridProtocol.Header header;
+            float[] buffer;
+            if (GridExchangeFile.isExchangeArguments(args)) {
+                // the grid is exchanged through a memory-mapped file passed in the arguments
+                exchangeFile = GridExchangeFile.open(args);
+                header = exchangeFile.getHeader();
+                buffer = new float[Math.multiplyExact(header.cols, header.rows)];
+                exchangeFile.readInput(buffer);
+            } else {
+                // grid frames are exchanged through standard in and out, see GridProtocol
+                FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+                header = GridProtocol.readHeader(in);
+                buffer = new float[Math.multiplyExact(header.cols, header.rows)];
+                GridProtocol.readValues(in, buffer, 0, buffer.length);
             }
 
             /*
             create grid object, execute mask filter procedure, and get the buffer array
              */
-            source = new Grid(buffer, cols, rows, cellsize, north, south, east, west);
-            output = new MaskFilter(source).execute();
+            source = new Grid(buffer, header.cols, header.rows, header.cellSize,
+                    header.north, header.south, header.east, header.west);
+            MaskFilter maskFilter = new MaskFilter(source);
+            output = residentPipeline ? maskFilter.executeResident() : maskFilter.execute();
             buffer = output.getBuffer();
 
             // generate the performance report
             try{
                 // file writer
                 FileWriter myWriter = new FileWriter("performance.txt");
-                for (String line : MaskFilter.benchmarking)
-                    myWriter.write(line + "\n");
+                myWriter.write(maskFilter.getMetrics().toText());
+                myWriter.close();
+
+                myWriter = new FileWriter("performance.json");
+                myWriter.write(maskFilter.getMetrics().toJSON());
                 myWriter.close();
 
             }catch(IOException e){
@@ -82,24 +85,19 @@ public class Main {
             }
 
             /*
-            convert float to byte, and stream out the byte value
+            write the header and the filtered values
              */
-            for (int i = 0; i < n; i++) {
-                int intBits = Float.floatToIntBits(buffer[i]);
-                int b4 = (intBits >>> 24) & 0xFF;
-                int b3 = (intBits >>> 16) & 0xFF;
-                int b2 = (intBits >>> 8) & 0xFF;
-                int b1 = intBits & 0xFF;
-
-                // write four bytes
-                System.out.write(b1);
-                System.out.write(b2);
-                System.out.write(b3);
-                System.out.write(b4);
-                System.out.flush();
+            if (exchangeFile != null) {
+                exchangeFile.writeOutput(buffer);
+                exchangeFile.close();
+            } else {
+                FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+                GridProtocol.writeHeader(out, header);
+                GridProtocol.writeValues(out, buffer, 0, buffer.length);
             }
 
         } catch (IOException ex) {
+            ex.printStackTrace();
             System.exit(-1);
         }
         System.exit(0);
@@ -107,4 +105,46 @@ public class Main {
     }
 
 
+    /**
+     * Persistent worker mode: filter grid frames read from the stream input until
+     * the stream input ends, and write a grid frame for each of them to the stream
+     * output. Kernels and buffers are kept between jobs, so only the first job pays
+     * for Aparapi initialisation and JIT compilation. The latency of each job is
+     * reported to the error stream.
+     */
+    private static void runWorker() {
+        FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+        FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        try {
+            GridProtocol.Header header;
+            for (int job = 1; (header = GridProtocol.readNextHeader(in)) != null; job++) {
+                long start = System.nanoTime();
+                // the buffer of the source grid is acquired from the BufferArena and reused by the next job
+                Grid source = new Grid(header.cols, header.rows, header.cellSize,
+                        header.north, header.south, header.east, header.west);
+                float[] buffer = source.getBuffer();
+                GridProtocol.readValues(in, buffer, 0, buffer.length);
+                long read = System.nanoTime();
+
+                MaskFilter maskFilter = new MaskFilter(source);
+                Grid output = residentPipeline ? maskFilter.executeResident() : maskFilter.execute();
+                long filtered = System.nanoTime();
+
+                GridProtocol.writeHeader(out, header);
+                GridProtocol.writeValues(out, output.getBuffer(), 0, buffer.length);
+                long written = System.nanoTime();
+                output.release();
+                source.release();
+
+                System.err.printf(Locale.US, "job %d: %d x %d, read %.1f ms, filter %.1f ms, write %.1f ms, total %.1f ms%n",
+                        job, header.cols, header.rows, (read - start) / 1e6, (filtered - read) / 1e6,
+                        (written - filtered) / 1e6, (written - start) / 1e6);
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(-1);
+        }
+        System.exit(0);
+    }
+
 }
@@ -0,0 +1,485 @@
+package edu.monash.fit.aparapi_filter;
+
+import com.aparapi.device.JavaDevice;
+import edu.monash.fit.aparapi_filter.operator.BatchMaskFilter;
+import edu.monash.fit.aparapi_filter.operator.KernelPool;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridImporter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Performance regression harness of the mask filter. The Eduard path (FIT3161 Main.maskFilter) and the APARAPI paths
+ * are applied to a fixed corpus of digital elevation models: the operator pipeline ({@link MaskFilter#execute()}), the
+ * resident pipeline ({@link MaskFilter#executeResident()}) and the batch pipeline ({@link BatchMaskFilter}) with a
+ * batch of {@link #BATCH_SIZE} copies of each model. The results of the APARAPI paths have to be equal to the Eduard
+ * result within a tolerance, and the throughput of each path is compared to a baseline file. The harness fails if the
+ * throughput of a path drops below the baseline by more than a threshold.
+ *
+ * The APARAPI kernels are executed by the Java thread pool, such that the harness runs on machines without an
+ * OpenCL device.
+ *
+ * Usage: RegressionHarness [--baseline file] [--threshold 0.2] [--tolerance 0.001] [--repetitions 5]
+ * [--size 1024] [--corpus directory with *.asc files] [--update]
+ */
+public class RegressionHarness {
+
+    public static final String EDUARD = "eduard";
+    public static final String APARAPI = "aparapi";
+    public static final String RESIDENT = "resident";
+    public static final String BATCH = "batch";
+
+    /**
+     * number of grids filtered by the batch path
+     */
+    public static final int BATCH_SIZE = 4;
+
+    private final double tolerance;     // maximum difference between the results of the two paths
+    private final double threshold;     // maximum relative drop of the throughput below the baseline
+    private final int repetitions;      // number of timed executions of each path
+
+    /**
+     * The throughput of one path for one elevation model
+     */
+    public static final class Measurement {
+        private final String dem;
+        private final String path;
+        private final long cells;
+        private final double millis;
+        private final double baselineCellsPerSecond;
+        private final double maxDifference;
+        private final String failure;
+
+        Measurement(String dem, String path, long cells, double millis, double baselineCellsPerSecond,
+                    double maxDifference, String failure){
+            this.dem = dem;
+            this.path = path;
+            this.cells = cells;
+            this.millis = millis;
+            this.baselineCellsPerSecond = baselineCellsPerSecond;
+            this.maxDifference = maxDifference;
+            this.failure = failure;
+        }
+
+        public String getDem(){
+            return dem;
+        }
+
+        public String getPath(){
+            return path;
+        }
+
+        /**
+         * get the median time of the timed executions
+         * @return time in milliseconds
+         */
+        public double getMillis(){
+            return millis;
+        }
+
+        public double getCellsPerSecond(){
+            return cells / (millis / 1000);
+        }
+
+        /**
+         * get the throughput in the baseline file
+         * @return cells per second, NaN if the baseline file has no entry
+         */
+        public double getBaselineCellsPerSecond(){
+            return baselineCellsPerSecond;
+        }
+
+        /**
+         * get the maximum difference to the result of the Eduard path
+         * @return the maximum difference, 0 for the Eduard path
+         */
+        public double getMaxDifference(){
+            return maxDifference;
+        }
+
+        /**
+         * get the reason for the failure of this measurement
+         * @return the reason, or null if the measurement passed
+         */
+        public String getFailure(){
+            return failure;
+        }
+
+        public boolean isPassed(){
+            return failure == null;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-24s %-8s %10.1f ms %14.0f cells/s %14.0f baseline %10.2e diff  %s", dem, path,
+                    millis, getCellsPerSecond(), baselineCellsPerSecond, maxDifference,
+                    failure == null ? "passed" : "FAILED: " + failure);
+        }
+    }
+
+    /**
+     * Constructor
+     * @param tolerance maximum difference between the results of the two paths
+     * @param threshold maximum relative drop of the throughput below the baseline, for example 0.2 for 20%
+     * @param repetitions number of timed executions of each path, the median time is used
+     */
+    public RegressionHarness(double tolerance, double threshold, int repetitions){
+        if (tolerance < 0 || threshold < 0 || threshold >= 1){
+            throw new IllegalArgumentException("invalid tolerance or threshold");
+        }
+        if (repetitions < 1){
+            throw new IllegalArgumentException("repetitions must be at least 1");
+        }
+        this.tolerance = tolerance;
+        this.threshold = threshold;
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Apply all paths to each elevation model of the corpus and compare the throughput to the baseline.
+     * @param corpus the elevation models, keyed by name
+     * @param baseline throughput of earlier runs, keys are "name.path"
+     * @return the measurements, four for each elevation model
+     */
+    public List<Measurement> run(Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> corpus,
+                                 Properties baseline){
+        List<Measurement> measurements = new ArrayList<>();
+        for (Map.Entry<String, edu.monash.fit.eduard_object.eduard.grid.Grid> entry : corpus.entrySet()){
+            String dem = entry.getKey();
+            edu.monash.fit.eduard_object.eduard.grid.Grid eduardSource = entry.getValue();
+            Grid aparapiSource = Grid.view(eduardSource);
+            long cells = (long) eduardSource.getCols() * eduardSource.getRows();
+
+            // untimed executions warm up the JIT compiler and the kernel pool, and provide the results to compare
+            edu.monash.fit.eduard_object.eduard.grid.Grid eduardResult =
+                    edu.monash.fit.eduard_object.FIT3161.Main.maskFilter(eduardSource);
+            Grid aparapiResult = new MaskFilter(aparapiSource).execute();
+            double maxDifference = maxDifference(eduardResult, aparapiResult);
+            aparapiResult.release();
+            Grid residentResult = new MaskFilter(aparapiSource).executeResident();
+            double residentMaxDifference = maxDifference(eduardResult, residentResult);
+            residentResult.release();
+            List<Grid> batch = createBatch(aparapiSource);
+            double batchMaxDifference = 0;
+            for (Grid batchResult : new BatchMaskFilter(batch).execute()){
+                batchMaxDifference = Math.max(batchMaxDifference, maxDifference(eduardResult, batchResult));
+                batchResult.release();
+            }
+            eduardResult.release();
+
+            double[] eduardMillis = new double[repetitions];
+            double[] aparapiMillis = new double[repetitions];
+            double[] residentMillis = new double[repetitions];
+            double[] batchMillis = new double[repetitions];
+            for (int i = 0; i < repetitions; i++){
+                double startTime = System.nanoTime();
+                edu.monash.fit.eduard_object.FIT3161.Main.maskFilter(eduardSource).release();
+                eduardMillis[i] = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                new MaskFilter(aparapiSource).execute().release();
+                aparapiMillis[i] = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                new MaskFilter(aparapiSource).executeResident().release();
+                residentMillis[i] = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                for (Grid batchResult : new BatchMaskFilter(batch).execute()){
+                    batchResult.release();
+                }
+                batchMillis[i] = (System.nanoTime() - startTime) / 1e6;
+            }
+            for (Grid grid : batch){
+                grid.release();
+            }
+
+            measurements.add(measure(dem, EDUARD, cells, median(eduardMillis), baseline, 0));
+            measurements.add(measure(dem, APARAPI, cells, median(aparapiMillis), baseline, maxDifference));
+            measurements.add(measure(dem, RESIDENT, cells, median(residentMillis), baseline, residentMaxDifference));
+            measurements.add(measure(dem, BATCH, cells * BATCH_SIZE, median(batchMillis), baseline,
+                    batchMaxDifference));
+        }
+        return measurements;
+    }
+
+    /**
+     * Create the grids of the batch path, copies of an elevation model
+     * @param src the elevation model
+     * @return {@link #BATCH_SIZE} copies
+     */
+    private static List<Grid> createBatch(Grid src){
+        List<Grid> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++){
+            Grid grid = Grid.shallowCopy(src);
+            System.arraycopy(src.getBuffer(), 0, grid.getBuffer(), 0, src.getLength());
+            batch.add(grid);
+        }
+        return batch;
+    }
+
+    private Measurement measure(String dem, String path, long cells, double millis, Properties baseline,
+                                double maxDifference){
+        String baselineValue = baseline.getProperty(dem + "." + path);
+        double baselineCellsPerSecond = baselineValue == null ? Double.NaN : Double.parseDouble(baselineValue);
+        double cellsPerSecond = cells / (millis / 1000);
+        String failure = null;
+        if (!(maxDifference <= tolerance)){
+            failure = "results differ by " + maxDifference;
+        } else if (cellsPerSecond < baselineCellsPerSecond * (1 - threshold)){
+            failure = String.format("throughput %.1f%% below baseline",
+                    100 * (1 - cellsPerSecond / baselineCellsPerSecond));
+        }
+        return new Measurement(dem, path, cells, millis, baselineCellsPerSecond, maxDifference, failure);
+    }
+
+    /**
+     * Compute the maximum difference between the results of the Eduard path and an APARAPI path. Void cells are -1
+     * in both results.
+     * @param eduardResult result of the Eduard path
+     * @param aparapiResult result of an APARAPI path
+     * @return the maximum difference, infinity if a value is not finite in one result only
+     */
+    static double maxDifference(edu.monash.fit.eduard_object.eduard.grid.Grid eduardResult, Grid aparapiResult){
+        double maxDifference = 0;
+        for (int i = 0; i < aparapiResult.getLength(); i++){
+            float eduardValue = eduardResult.getValue(i);
+            float aparapiValue = aparapiResult.get(i);
+            if (Float.isFinite(eduardValue) != Float.isFinite(aparapiValue)){
+                return Double.POSITIVE_INFINITY;
+            }
+            if (Float.isFinite(eduardValue)){
+                maxDifference = Math.max(maxDifference, Math.abs(eduardValue - aparapiValue));
+            }
+        }
+        return maxDifference;
+    }
+
+    private static double median(double[] values){
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    /**
+     * Returns whether all measurements passed
+     * @param measurements the measurements
+     * @return true if no measurement failed
+     */
+    public static boolean isPassed(List<Measurement> measurements){
+        for (Measurement measurement : measurements){
+            if (!measurement.isPassed()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the throughput of the measurements in the baseline.
+     * @param measurements the measurements
+     * @param baseline the baseline to update
+     */
+    public static void updateBaseline(List<Measurement> measurements, Properties baseline){
+        for (Measurement measurement : measurements){
+            baseline.setProperty(measurement.getDem() + "." + measurement.getPath(),
+                    Double.toString(measurement.getCellsPerSecond()));
+        }
+    }
+
+    /**
+     * Create the fixed corpus of synthetic elevation models. The models are generated with a fixed seed, such that
+     * the corpus is identical for each run.
+     * @param size number of columns of the largest model
+     * @return the elevation models, keyed by name
+     */
+    public static Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> createCorpus(int size){
+        if (size < 16){
+            throw new IllegalArgumentException("size must be at least 16");
+        }
+        Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> corpus = new LinkedHashMap<>();
+
+        // rolling hills with a cell size of 5 m
+        edu.monash.fit.eduard_object.eduard.grid.Grid hills = createDem(size, size, 5, 0, 0);
+        fillTerrain(hills, 1, 3, 150);
+        corpus.put("hills-" + size, hills);
+
+        // rugged mountains with a cell size of 10 m and more detail
+        edu.monash.fit.eduard_object.eduard.grid.Grid mountains = createDem(size, size / 2, 10, 0, 0);
+        fillTerrain(mountains, 2, 6, 2500);
+        corpus.put("mountains-" + size + "x" + size / 2, mountains);
+
+        // mountains at the coast, the sea is void
+        edu.monash.fit.eduard_object.eduard.grid.Grid coast = createDem(size * 3 / 4, size * 3 / 4, 5, 0, 0);
+        fillTerrain(coast, 3, 5, 1200);
+        for (int row = 0; row < coast.getRows(); row++){
+            for (int col = 0; col < coast.getCols(); col++){
+                if (coast.getValue(col, row) < 300){
+                    coast.setVoid(col, row);
+                }
+            }
+        }
+        corpus.put("coast-" + size * 3 / 4, coast);
+
+        // geographic coordinates with a cell size of 3 arc seconds
+        edu.monash.fit.eduard_object.eduard.grid.Grid geographic =
+                createDem(size / 2, size / 2, 3. / 3600, 8, 46);
+        fillTerrain(geographic, 4, 5, 3000);
+        corpus.put("geographic-" + size / 2, geographic);
+
+        return corpus;
+    }
+
+    private static edu.monash.fit.eduard_object.eduard.grid.Grid createDem(int cols, int rows, double cellSize,
+                                                                           double west, double south){
+        return new edu.monash.fit.eduard_object.eduard.grid.Grid(cols, rows, cellSize, west, south, "");
+    }
+
+    /**
+     * Fill a grid with fractal value noise
+     * @param grid the grid
+     * @param seed seed of the noise
+     * @param octaves number of octaves, more octaves add detail
+     * @param relief difference between the lowest and highest elevation
+     */
+    private static void fillTerrain(edu.monash.fit.eduard_object.eduard.grid.Grid grid, long seed, int octaves,
+                                    float relief){
+        final int lattice = 8;          // number of lattice cells of the first octave along the longer side
+        Random random = new Random(seed);
+        float[][] lattices = new float[octaves][];
+        for (int octave = 0; octave < octaves; octave++){
+            int n = (lattice << octave) + 2;
+            lattices[octave] = new float[n * n];
+            for (int i = 0; i < lattices[octave].length; i++){
+                lattices[octave][i] = random.nextFloat();
+            }
+        }
+        int cols = grid.getCols();
+        int rows = grid.getRows();
+        float cellsPerLatticeCell = (float) Math.max(cols, rows) / lattice;
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                float value = 0, amplitude = 0.5f;
+                for (int octave = 0; octave < octaves; octave++){
+                    int n = (lattice << octave) + 2;
+                    float x = (col / cellsPerLatticeCell) * (1 << octave);
+                    float y = (row / cellsPerLatticeCell) * (1 << octave);
+                    value += amplitude * valueNoise(lattices[octave], n, x, y);
+                    amplitude *= 0.5f;
+                }
+                grid.setValue(value * relief, col, row);
+            }
+        }
+    }
+
+    private static float valueNoise(float[] lattice, int n, float x, float y){
+        int x0 = (int) x;
+        int y0 = (int) y;
+        float fx = smoothStep(x - x0);
+        float fy = smoothStep(y - y0);
+        float top = lattice[x0 + y0 * n] * (1 - fx) + lattice[x0 + 1 + y0 * n] * fx;
+        float bottom = lattice[x0 + (y0 + 1) * n] * (1 - fx) + lattice[x0 + 1 + (y0 + 1) * n] * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+
+    private static float smoothStep(float t){
+        return t * t * (3 - 2 * t);
+    }
+
+    /**
+     * Read all Esri ASCII grid files of a directory
+     * @param directory the directory
+     * @return the elevation models, keyed by file name
+     * @throws IOException if a file cannot be read
+     */
+    public static Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> readCorpus(File directory)
+            throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".asc"));
+        if (files == null){
+            throw new IOException("cannot read directory " + directory);
+        }
+        Arrays.sort(files);
+        Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> corpus = new LinkedHashMap<>();
+        for (File file : files){
+            corpus.put(file.getName(), EsriASCIIGridImporter.read(file.getPath()));
+        }
+        return corpus;
+    }
+
+    /**
+     * Main methods
+     * @param args command line options, see the class description
+     */
+    public static void main(String[] args) {
+        String baselinePath = "performance-baseline.properties";
+        double threshold = 0.2, tolerance = 0.001;
+        int repetitions = 5, size = 1024;
+        String corpusPath = null;
+        boolean update = false;
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--baseline": baselinePath = args[++i]; break;
+                case "--threshold": threshold = Double.parseDouble(args[++i]); break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+                case "--repetitions": repetitions = Integer.parseInt(args[++i]); break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--corpus": corpusPath = args[++i]; break;
+                case "--update": update = true; break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        try {
+            // execute the kernels with the Java thread pool, such that no OpenCL device is required
+            KernelPool.setPreferredDevice(JavaDevice.THREAD_POOL);
+
+            Map<String, edu.monash.fit.eduard_object.eduard.grid.Grid> corpus =
+                    corpusPath == null ? createCorpus(size) : readCorpus(new File(corpusPath));
+            Properties baseline = new Properties();
+            File baselineFile = new File(baselinePath);
+            if (baselineFile.exists()){
+                try (InputStream in = new FileInputStream(baselineFile)){
+                    baseline.load(in);
+                }
+            }
+
+            List<Measurement> measurements = new RegressionHarness(tolerance, threshold, repetitions)
+                    .run(corpus, baseline);
+            for (Measurement measurement : measurements){
+                System.out.println(measurement);
+            }
+            boolean passed = isPassed(measurements);
+
+            // record the throughput if requested, or if the baseline does not exist yet
+            if (update || !baselineFile.exists()){
+                updateBaseline(measurements, baseline);
+                try (OutputStream out = new FileOutputStream(baselineFile)){
+                    baseline.store(out, "mask filter throughput in cells per second");
+                }
+                System.out.println("Baseline written to " + baselineFile);
+            }
+            System.out.println(passed ? "PASSED" : "FAILED");
+            KernelPool.disposeAll();
+            System.exit(passed ? 0 : 1);
+        } catch (IOException ex){
+            ex.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+}
@@ -20,4 +20,13 @@ public interface AparapiOperator {
      */
     double getTimer();
 
+    /**
+     * Get the number of rows above and below a row that are needed to compute the row, such that the operator can
+     * be applied to strips of rows with a halo, see {@link TiledOperator}
+     * @return the number of rows, or -1 if the operator needs all rows of the grid
+     */
+    default int getRadius(){
+        return -1;
+    }
+
 }
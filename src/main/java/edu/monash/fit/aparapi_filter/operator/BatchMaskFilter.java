@@ -0,0 +1,277 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import com.aparapi.Range;
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Execute the resident mask filter for a batch of grids with the same number of columns and rows, for example many
+ * small tiles of a digital elevation model. The grids are packed into one contiguous buffer, and each stage is
+ * executed once for the whole batch with a two-dimensional range of cells (or low-pass lanes) and grids, instead of
+ * executing every stage with a small range for every grid. Each grid is filtered as by
+ * {@link MaskFilter#executeResident()}, with its own void values and borders. The resident mask filter is a batch
+ * with a single grid.
+ *
+ * The packed buffers hold all grids of the batch, thus the memory of the execution context limits the size of a
+ * batch.
+ */
+public class BatchMaskFilter {
+    private final List<Grid> src;                           // input grids
+    private final int cols, rows;                           // dimension of each grid
+
+    private RunMetrics metrics;                             // metrics of the last execution
+
+    double startTime;
+
+    /**
+     * the constructor
+     * @param src source grids with the same number of columns and rows
+     */
+    public BatchMaskFilter(List<Grid> src){
+        if (src == null || src.contains(null)){
+            throw new NullPointerException("");
+        }
+        if (src.isEmpty()){
+            throw new IllegalArgumentException("empty batch");
+        }
+        this.cols = src.get(0).getCols();
+        this.rows = src.get(0).getRows();
+        for (Grid grid : src){
+            if (grid.getCols() != cols || grid.getRows() != rows){
+                throw new IllegalArgumentException("grids of different size");
+            }
+        }
+        this.src = new ArrayList<>(src);
+    }
+
+    /**
+     * get the metrics of the last execution. If a run was bound to the executing thread, the stages were recorded
+     * with this run, otherwise a new run was created for the execution.
+     * @return the metrics, or null if the filter has not been executed
+     */
+    public RunMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * get the number of lanes of each grid for the low-pass stages, such that the lanes of the batch do not exceed
+     * the lanes of a single large grid
+     * @param cols total columns of each grid
+     * @param rows total rows of each grid
+     * @param grids number of grids in the batch
+     * @return number of lanes, at least 1
+     */
+    static int getLanes(int cols, int rows, int grids){
+        int lanes = HorizontalTransposingLowPassFilter.getLanes(cols, rows);
+        return Math.max(1, Math.min(lanes, HorizontalTransposingLowPassFilter.MAX_LANES / grids));
+    }
+
+    /**
+     * Execute the mask filter for all grids of the batch and record its stages with the run bound to the current
+     * thread, or a new run if none is bound. The cells of a stage are the cells of all grids.
+     * @return the result grids, in the order of the source grids
+     */
+    public List<Grid> execute(){
+        metrics = RunMetrics.current() != null ? RunMetrics.current() : new RunMetrics("Batch mask filter");
+        RunMetrics previous = RunMetrics.bind(metrics);
+        try {
+            StageMetrics stage = RunMetrics.beginGroup("Batch mask filter", cols, rows * src.size());
+            try {
+                return executeStages();
+            } finally {
+                stage.end();
+            }
+        } finally {
+            RunMetrics.bind(previous);
+        }
+    }
+
+    /**
+     * Execute the stages of the mask filter for all grids of the batch and record them with the run bound to the
+     * current thread. A batch with a single grid is not packed, the kernel is bound to the source and result grid.
+     * @return the result grids, in the order of the source grids
+     */
+    List<Grid> executeStages(){
+        float gainSlopeThreshold = MaskFilter.getGainSlopeThreshold();
+        float slopeThreshold = MaskFilter.getSlopeThreshold();
+        // scale the slopeThreshold and gainSlopeThreshold
+        float scale = 1f / (slopeThreshold - gainSlopeThreshold);
+
+        final int grids = src.size();
+        final int cells = cols * rows;
+        final int lanes = getLanes(cols, rows, grids);
+
+        List<Grid> dest = new ArrayList<>(grids);
+        for (Grid grid : src){
+            dest.add(Grid.shallowCopy(grid));
+        }
+        boolean packed = grids > 1;
+        boolean completed = false;
+        float[] packedSrc = packed ? BufferArena.acquire(Math.multiplyExact(cells, grids)) : src.get(0).getBuffer();
+        float[] packedDest = packed ? BufferArena.acquire(packedSrc.length) : dest.get(0).getBuffer();
+        try {
+            double[] norths = new double[grids];
+            double[] cellSizes = new double[grids];
+            for (int i = 0; i < grids; i++){
+                norths[i] = src.get(i).getNorth();
+                cellSizes[i] = src.get(i).getCellSize();
+            }
+            if (packed){
+                // pack the grids into one buffer
+                StageMetrics packStage = RunMetrics.begin("Pack", cols, rows * grids);
+                startTime = System.nanoTime();
+                for (int i = 0; i < grids; i++){
+                    System.arraycopy(src.get(i).getBuffer(), 0, packedSrc, i * cells, cells);
+                }
+                packStage.addTransferMillis((System.nanoTime() - startTime) / 1e6);
+                packStage.end();
+            }
+
+            executeKernel(packedSrc, packedDest, norths, cellSizes, lanes, gainSlopeThreshold, slopeThreshold, scale);
+
+            if (packed){
+                // unpack the masks into the result grid of each source grid
+                StageMetrics unpackStage = RunMetrics.begin("Unpack", cols, rows * grids);
+                startTime = System.nanoTime();
+                for (int i = 0; i < grids; i++){
+                    System.arraycopy(packedDest, i * cells, dest.get(i).getBuffer(), 0, cells);
+                }
+                unpackStage.addTransferMillis((System.nanoTime() - startTime) / 1e6);
+                unpackStage.end();
+            }
+            completed = true;
+            return dest;
+        } finally {
+            if (packed){
+                BufferArena.release(packedSrc);
+                BufferArena.release(packedDest);
+            }
+            if (!completed){
+                for (Grid grid : dest){
+                    grid.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute all stages of the resident kernel on the packed buffers, the source grids are sent once and only the
+     * final masks are fetched
+     * @param packedSrc the packed source grids
+     * @param packedDest the packed result grids
+     * @param norths north coordinate of each grid
+     * @param cellSizes cell size of each grid
+     * @param lanes number of lanes of each grid for the low-pass stages
+     * @param gainSlopeThreshold gain slope threshold
+     * @param slopeThreshold slope threshold
+     * @param scale scale of the slopeThreshold and gainSlopeThreshold
+     */
+    private void executeKernel(float[] packedSrc, float[] packedDest, double[] norths, double[] cellSizes, int lanes,
+                               float gainSlopeThreshold, float slopeThreshold, float scale){
+        final int grids = src.size();
+        // acquire a warmed kernel (with its intermediate buffers) for the batch size and rebind the packed buffers
+        ResidentMaskFilterKernel kernel = KernelPool.acquire(ResidentMaskFilterKernel.class, cols, rows, grids,
+                () -> new ResidentMaskFilterKernel(cols, rows, lanes, grids));
+        try {
+            Range gridRange = KernelPool.createRange(kernel, cols * rows, grids);
+            Range laneRange = KernelPool.createRange(kernel, kernel.getLanes(), grids);
+
+            /*
+            generate a KernelRunner run instantly, to eagerly create it (once per pooled kernel). The kernel is warmed
+            with the buffers allocated by its constructor, before the grids are bound, such that the transfer of the
+            grids is not carried out by the warm-up run
+             */
+            kernel.setNoStage();
+            KernelPool.warmUp(kernel);
+
+            kernel.bind(packedSrc, packedDest, norths, cellSizes);
+            kernel.put(kernel.getBuffer(ResidentMaskFilterKernel.BUFFER_SRC));  // send the packed grids to GPU
+
+            // the explicit put is carried out with the next execution, thus a run without stage is measured as transfer
+            startTime = System.nanoTime();
+            kernel.execute(1);
+            StageMetrics transferStage = RunMetrics.begin("Transfer", cols, rows * grids);
+            transferStage.addTransferMillis((System.nanoTime() - startTime) / 1e6);
+            transferStage.end();
+
+            // compute grids with dimensionless rise/run slope values
+            kernel.setGradientStage(cols, rows);
+            executeStage(kernel, gridRange, "Gradient [rise/run]");
+
+            // low pass filter to blur grids: A -> B (transposed) -> C, then void cells of A are copied to C
+            executeLowPass(kernel, laneRange, gridRange, MaskFilter.getSigmaBlur(),
+                    ResidentMaskFilterKernel.BUFFER_A, ResidentMaskFilterKernel.BUFFER_C);
+
+            // clamp the range of the mountaineous area
+            kernel.setClampStage(ResidentMaskFilterKernel.BUFFER_C, ResidentMaskFilterKernel.BUFFER_C, cols, rows,
+                    gainSlopeThreshold, slopeThreshold);
+            executeStage(kernel, gridRange, "Clamp to range");
+
+            // low pass filter to blur edges again: C -> B (transposed) -> A, then void cells of C are copied to A
+            executeLowPass(kernel, laneRange, gridRange, MaskFilter.getSigmaSmooth(),
+                    ResidentMaskFilterKernel.BUFFER_C, ResidentMaskFilterKernel.BUFFER_A);
+
+            // Inverted mapping of slopeThreshold to 0 and gainSlopeThreshold to 1.
+            kernel.setMaskStage(ResidentMaskFilterKernel.BUFFER_A, ResidentMaskFilterKernel.BUFFER_A, cols, rows,
+                    gainSlopeThreshold, scale);
+            executeStage(kernel, gridRange, "Slope to normalized mask");
+
+            // fetch the final masks only
+            transferStage = RunMetrics.begin("Transfer", cols, rows * grids);
+            startTime = System.nanoTime();
+            kernel.get(packedDest);
+            transferStage.addTransferMillis((System.nanoTime() - startTime) / 1e6);
+            transferStage.end();
+        } finally {
+            KernelPool.release(kernel);
+        }
+    }
+
+    /**
+     * Execute the two horizontal transposing passes and the copy void stage of a low-pass filter for all grids of
+     * the batch. Buffer B holds the intermediate transposed grids.
+     * @param kernel the resident kernel
+     * @param laneRange range of the low-pass lanes and grids
+     * @param gridRange range of the grid cells and grids
+     * @param sigma standard deviation
+     * @param from buffer to blur
+     * @param to buffer to write the result to
+     */
+    private void executeLowPass(ResidentMaskFilterKernel kernel, Range laneRange, Range gridRange,
+                                float sigma, int from, int to){
+        int r = HorizontalTransposingLowPassFilter.calculateR(sigma);
+        double alpha = HorizontalTransposingLowPassFilter.calculateAlpha(sigma, r);
+        float c1 = HorizontalTransposingLowPassFilter.calculateC1(sigma, r, alpha);
+        float c2 = HorizontalTransposingLowPassFilter.calculateC2(sigma, r, alpha);
+
+        StageMetrics lowPassStage = RunMetrics.beginGroup("Low-pass", cols, rows * src.size());
+        kernel.setLowPassStage(from, ResidentMaskFilterKernel.BUFFER_B, cols, rows, true, r, c1, c2);
+        executeStage(kernel, laneRange, "Horizontal transposing 1D low-pass filter");
+
+        kernel.setLowPassStage(ResidentMaskFilterKernel.BUFFER_B, to, rows, cols, false, r, c1, c2);
+        executeStage(kernel, laneRange, "Horizontal transposing 1D low-pass filter");
+
+        kernel.setCopyVoidStage(from, to, cols, rows);
+        executeStage(kernel, gridRange, "Copy void");
+        lowPassStage.end();
+    }
+
+    /**
+     * Execute the selected stage of the resident kernel once for all grids and record its kernel time
+     * @param kernel the resident kernel
+     * @param range the execution range
+     * @param name name of the stage
+     */
+    private void executeStage(ResidentMaskFilterKernel kernel, Range range, String name){
+        StageMetrics stage = RunMetrics.begin(name, cols, rows * src.size());
+        double timer = System.nanoTime();
+        kernel.execute(range);
+        stage.addKernelMillis((System.nanoTime() - timer) / 1e6);
+        stage.end();
+    }
+}
@@ -1,15 +1,16 @@
 package edu.monash.fit.aparapi_filter.operator;
 
 import com.aparapi.Kernel;
-import com.aparapi.Range;
 import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 
 /**
  * clamp slope values to range between min and max
  *
  * [REFERENCE: Eduard ClampToRangeOperator class]
  */
-public class ClampToRangeOperator implements AparapiOperator {
+public class ClampToRangeOperator implements StagedOperator {
     Grid src;           // the source grid
     Grid dest;          // the result grid
     float minI, maxI;
@@ -30,49 +31,63 @@ public class ClampToRangeOperator implements AparapiOperator {
 
     @Override
     public Grid operate(Grid src) {
-        this.src = src;
         if (src == null){
             throw new NullPointerException("");
         }
-        this.dest = Grid.shallowCopy(src);      // create the Grid holder with the attributes of src Grid
+        StageMetrics stage = RunMetrics.begin("Clamp to range", src.getCols(), src.getRows());
+        Execution execution = upload(src);
+        Grid result;
+        try {
+            stage.addKernelMillis(execution.execute());
 
-        /*
-        As APARAPI doesnt supported Object-oriented design and method calling, thus arguments has to be
-        assigned
-         */
-        int srcCols = src.getCols();
-        int srcRows = src.getRows();
+            double transferTimer = System.nanoTime();
+            result = execution.download();     // fetch destBuffer from GPU
+            stage.addTransferMillis((System.nanoTime() - transferTimer) / 1e6);
+        } finally {
+            execution.cancel();                 // return the kernel after a failure, no effect after the download
+        }
+        stage.end();
+        return result;
+    }
+
+    @Override
+    public Execution upload(Grid src) {
+        if (src == null){
+            throw new NullPointerException("");
+        }
+        this.src = src;
+        this.dest = Grid.shallowCopy(src);      // create the Grid holder with the attributes of src Grid
+        final Grid result = this.dest;
 
         float[] srcBuffer = src.getBuffer();    // holder
         float[] destBuffer = dest.getBuffer();  // holder
 
-        float min = minI;
-        float max = maxI;
+        // acquire a warmed kernel from the pool and rebind its buffers
+        ClampKernel kernel = KernelPool.acquire(ClampKernel.class, src.getCols(), src.getRows(), ClampKernel::new);
+        KernelExecution execution = new KernelExecution(kernel, result) {
+            @Override
+            public double execute() {
+                double startTime = System.nanoTime();
+                kernel.execute(KernelPool.createRange(kernel, result.getLength()));     // execute KernelRunner
+                timer = (System.nanoTime() - startTime) / 1e6;
+                return timer;
+            }
 
-        // anonymous object of APARAPI kernel
-        Kernel kernel = new Kernel(){
             @Override
-            public void run() {
-                int i = getGlobalId();
-                // clamp the range of the value
-                destBuffer[i] = Math.min(max, Math.max(min, srcBuffer[i]));
+            void fetch() {
+                kernel.get(destBuffer);             // fetch destBuffer from GPU
             }
         };
-        kernel.setExplicit(true);           // explicitly manage transfers between GPU memory and CPU
-        kernel.put(srcBuffer);              // send srcBuffer to GPU
-        kernel.put(destBuffer);             // send destBuffer to GPU
-        kernel.execute(1);                  // as creating KernelRunner is lazy, thus force create
-        timer = System.nanoTime();
-        kernel.execute(Range.create(srcCols* srcRows));     // execute KernelRunner
-        timer = System.nanoTime() - timer;
-        timer = timer/ 1000000;
-
-        MaskFilter.benchmarking.add("Clamp to range:  " + timer + " ms");
-
-        kernel.get(destBuffer);             // fetch destBuffer from GPU
-        kernel.dispose();                   // clean kernel when finish job
-        dest.setBufferReceived(destBuffer);
-        return dest;
+        try {
+            kernel.bind(srcBuffer, destBuffer, minI, maxI);
+            kernel.put(srcBuffer);              // send srcBuffer to GPU
+            kernel.put(destBuffer);             // send destBuffer to GPU
+            KernelPool.warmUp(kernel);          // as creating KernelRunner is lazy, thus force create (once per kernel)
+        } catch (RuntimeException | Error ex){
+            execution.cancel();                 // return the kernel to the pool
+            throw ex;
+        }
+        return execution;
     }
 
     @Override
@@ -80,4 +95,44 @@ public class ClampToRangeOperator implements AparapiOperator {
         return timer;
     }
 
+    @Override
+    public int getRadius(){
+        return 0;     // each cell is computed from the same cell
+    }
+
+    /**
+     * The APARAPI kernel of the operator, the buffers are fields such that a pooled kernel can be rebound.
+     */
+    static final class ClampKernel extends Kernel implements KernelPool.Rebindable {
+        private float[] srcBuffer, destBuffer;
+        private float min, max;
+
+        /**
+         * Bind the kernel to a grid
+         * @param srcBuffer the source buffer
+         * @param destBuffer the result buffer
+         * @param min minimum value
+         * @param max maximum value
+         */
+        void bind(float[] srcBuffer, float[] destBuffer, float min, float max){
+            this.srcBuffer = srcBuffer;
+            this.destBuffer = destBuffer;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public void unbind(){
+            this.srcBuffer = null;
+            this.destBuffer = null;
+        }
+
+        @Override
+        public void run() {
+            int i = getGlobalId();
+            // clamp the range of the value
+            destBuffer[i] = Math.min(max, Math.max(min, srcBuffer[i]));
+        }
+    }
+
 }
@@ -1,15 +1,16 @@
 package edu.monash.fit.aparapi_filter.operator;
 
 import com.aparapi.Kernel;
-import com.aparapi.Range;
 import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 
 /**
  * Compute dimensionless gradient or slope steepness as rise or run
  *
  * [REFERENCE: Eduard GradientOperator class]
  */
-public class GradientOperator implements AparapiOperator {
+public class GradientOperator implements StagedOperator {
     Grid src;           // the source grid
     Grid dest;          // the result grid
     double timer;       // timer
@@ -22,6 +23,27 @@ public class GradientOperator implements AparapiOperator {
 
     @Override
     public Grid operate(Grid src) {
+        if (src == null){
+            throw new NullPointerException("");
+        }
+        StageMetrics stage = RunMetrics.begin("Gradient [rise/run]", src.getCols(), src.getRows());
+        Execution execution = upload(src);
+        Grid result;
+        try {
+            stage.addKernelMillis(execution.execute());
+
+            double transferTimer = System.nanoTime();
+            result = execution.download();     // fetch destBuffer from GPU
+            stage.addTransferMillis((System.nanoTime() - transferTimer) / 1e6);
+        } finally {
+            execution.cancel();                 // return the kernel after a failure, no effect after the download
+        }
+        stage.end();
+        return result;
+    }
+
+    @Override
+    public Execution upload(Grid src) {
         if (src == null){
             throw new NullPointerException("");
         }
@@ -30,126 +52,170 @@ public class GradientOperator implements AparapiOperator {
          */
         this.src = src;
         this.dest = Grid.shallowCopy(src);      // create the Grid holder with the attributes of src Grid
+        final Grid result = this.dest;
 
-        /*
-        As APARAPI doesnt supported Object-oriented design and method calling, thus arguments has to be
-        assigned
-         */
-        int srcCols = src.getCols();
-        int srcRows = src.getRows();
-        double srcNorth = src.getNorth();
-        double srcCellSizes = src.getCellSize();
         float[] srcBuffer = src.getBuffer();    // holder
         float[] destBuffer = dest.getBuffer();  // holder
 
-        // anonymous object of APARAPI kernel
-        /*
-         * As no function call allowed in Kernel object and Kernel doesnt support Inherited method,
-         * thus we will have to code the duplicate method. It is the trade-off between functionality and OODesign
-         */
-        Kernel kernel = new Kernel(){
+        // acquire a warmed kernel from the pool and rebind its buffers
+        GradientKernel kernel = KernelPool.acquire(GradientKernel.class, src.getCols(), src.getRows(),
+                GradientKernel::new);
+        KernelExecution execution = new KernelExecution(kernel, result) {
             @Override
-            public void run() {
-                int i = getGlobalId();
-                destBuffer[i] = get8NeighborGradient(getCol(i), getRow(i));
+            public double execute() {
+                double startTime = System.nanoTime();
+                kernel.execute(KernelPool.createRange(kernel, result.getLength()));  // kernel execution
+                timer = (System.nanoTime() - startTime) / 1e6;
+                return timer;
             }
 
-
-            public int getRow(int directIndex){
-                return directIndex / srcCols;
-            }
-
-            public int getCol(int directIndex){
-                return directIndex % srcCols;
-            }
-
-            public int getDirectIndex(int col, int row){
-                return col + row * srcCols;
+            @Override
+            void fetch() {
+                kernel.get(destBuffer);             // fetch destBuffer from GPU
             }
+        };
+        try {
+            kernel.bind(srcBuffer, destBuffer, src.getCols(), src.getRows(), src.getNorth(), src.getCellSize());
+            kernel.put(srcBuffer);              // send srcBuffer to GPU
+            kernel.put(destBuffer);             // send destBuffer to GPU
 
-            /**
-             * Returns the distance between two neighboring rows or columns. If the cell
-             * size is in spherical coordinates, the cell size is converted to meters.
-             * This conversion is approximate, as a spherical model of the Earth is used
-             * (authalic sphere for GRS 1980 with R = 6371007 m).
-             *
-             * [REFERENCE: Eduard Grid class]
-             * @param row if the grid coordinate system uses spherical coordinates, the
-             * cell size for this grid row is computed.
-             * @return the distance between two rows or columns in meters
+            /*
+            generate a KernelRunner run instantly, to eagerly create it (once per pooled kernel)
              */
-            public double getProjectedCellSize(int row) {
-                // TODO replace with a better test to detect geographic coordinate systems that also uses the extent of the grid
-                if (srcCellSizes < 0.1) {
-                    double latRad = Math.toRadians(srcNorth - row * srcCellSizes);
-                    double latitudeCorrectedCellSizeRad = Math.cos(latRad) * Math.toRadians(srcCellSizes);
-                    return latitudeCorrectedCellSizeRad * 6_371_007; // radius of authalic sphere for GRS 1980
-                }
-                return srcCellSizes;
-            }
+            KernelPool.warmUp(kernel);
+        } catch (RuntimeException | Error ex){
+            execution.cancel();                 // return the kernel to the pool
+            throw ex;
+        }
+        return execution;
+    }
 
-            /**
-             * Returns the dimensionless rise/run slope computed from 8 neighboring
-             * cells.
-             *
-             * Equation from:
-             * http://help.arcgis.com/en/arcgisdesktop/10.0/help../index.html#/How_Slope_works/009z000000vz000000/
-             * [REFERENCE: Eduard Grid class]
-             * @param col Column index. Must be in [0, columns - 1].
-             * @param row Row index. Must be in [0, rows - 1].
-             * @return dimensionless gradient
-             */
-            public float get8NeighborGradient(int col, int row) {
-                final float projectedCellSize = (float) getProjectedCellSize(row);
-                final float cellSizeTimes8 = 8 * projectedCellSize;
-
-                final int cols = srcCols;
-                final int rows = srcRows;
-            //
-                final int colLeft = col > 0 ? col - 1 : 0;
-                final int colRight = col < cols - 1 ? col + 1 : cols - 1;
-                final int rowTop = row > 0 ? row - 1 : 0;
-                final int rowBottom = row < rows - 1 ? row + 1 : rows - 1;
-            //
-                final float a = srcBuffer[getDirectIndex(colLeft, rowTop)]; //(colLeft, rowTop);
-                final float b = srcBuffer[getDirectIndex(col, rowTop)]; //get(col, rowTop);
-                final float c = srcBuffer[getDirectIndex(colRight, rowTop)]; //get(colRight, rowTop);
-                final float d = srcBuffer[getDirectIndex(colLeft, row)]; //get(colLeft, row);
-            //
-                final float f = srcBuffer[getDirectIndex(colRight, row)]; //get(colRight, row);
-                final float g = srcBuffer[getDirectIndex(colLeft, rowBottom)]; //get(colLeft, rowBottom);
-                final float h = srcBuffer[getDirectIndex(col, rowBottom)]; //get(col, rowBottom);
-                final float i = srcBuffer[getDirectIndex(colRight, rowBottom)]; //get(colRight, rowBottom);
-            //
-                final float dZdX = ((c + (2 * f) + i) - (a + (2 * d) + g)) / cellSizeTimes8;
-                final float dZdY = ((g + (2 * h) + i) - (a + (2 * b) + c)) / cellSizeTimes8;
-                return (float) Math.sqrt((dZdX * dZdX) + (dZdY * dZdY));
-            }
+    @Override
+    public double getTimer(){
+        return timer;
+    }
 
-        };
-        kernel.setExplicit(true);           // explicitly manage transfers between GPU memory and CPU
-        kernel.put(srcBuffer);              // send srcBuffer to GPU
-        kernel.put(destBuffer);             // send destBuffer to GPU
+    @Override
+    public int getRadius(){
+        return 1;     // the 8 neighbors of a cell are used
+    }
 
+    /**
+     * The APARAPI kernel of the operator. As no function call allowed in Kernel object and Kernel doesnt support
+     * Inherited method, thus we will have to code the duplicate method. It is the trade-off between functionality
+     * and OODesign. The buffers are fields, such that a pooled kernel can be rebound to another grid.
+     */
+    static final class GradientKernel extends Kernel implements KernelPool.Rebindable {
         /*
-        generate a KernelRunner run instantly, to eagerly create it
+        As APARAPI doesnt supported Object-oriented design and method calling, thus arguments has to be
+        assigned
+         */
+        private float[] srcBuffer, destBuffer;
+        private int srcCols, srcRows;
+        private double srcNorth, srcCellSizes;
+
+        /**
+         * Bind the kernel to a grid
+         * @param srcBuffer the source buffer
+         * @param destBuffer the result buffer
+         * @param cols total columns
+         * @param rows total rows
+         * @param north north latitude
+         * @param cellSize cellsize for each raster grid
          */
-        kernel.execute(1);
-        timer = System.nanoTime();
-        kernel.execute(Range.create(src.getLength()));  // kernel execution
-        timer = (System.nanoTime() - timer) / 1000000;
+        void bind(float[] srcBuffer, float[] destBuffer, int cols, int rows, double north, double cellSize){
+            this.srcBuffer = srcBuffer;
+            this.destBuffer = destBuffer;
+            this.srcCols = cols;
+            this.srcRows = rows;
+            this.srcNorth = north;
+            this.srcCellSizes = cellSize;
+        }
 
-        MaskFilter.benchmarking.add("Gradient [rise/run]:  " + timer + " ms");
+        @Override
+        public void unbind(){
+            this.srcBuffer = null;
+            this.destBuffer = null;
+        }
 
-        kernel.get(destBuffer);             // fetch destBuffer from GPU
-        kernel.dispose();                   // clean kernel when finish job
-        dest.setBufferReceived(destBuffer);
-        return dest;
-    }
+        @Override
+        public void run() {
+            int i = getGlobalId();
+            destBuffer[i] = get8NeighborGradient(getCol(i), getRow(i));
+        }
+
+
+        public int getRow(int directIndex){
+            return directIndex / srcCols;
+        }
+
+        public int getCol(int directIndex){
+            return directIndex % srcCols;
+        }
+
+        public int getDirectIndex(int col, int row){
+            return col + row * srcCols;
+        }
+
+        /**
+         * Returns the distance between two neighboring rows or columns. If the cell
+         * size is in spherical coordinates, the cell size is converted to meters.
+         * This conversion is approximate, as a spherical model of the Earth is used
+         * (authalic sphere for GRS 1980 with R = 6371007 m).
+         *
+         * [REFERENCE: Eduard Grid class]
+         * @param row if the grid coordinate system uses spherical coordinates, the
+         * cell size for this grid row is computed.
+         * @return the distance between two rows or columns in meters
+         */
+        public double getProjectedCellSize(int row) {
+            // TODO replace with a better test to detect geographic coordinate systems that also uses the extent of the grid
+            if (srcCellSizes < 0.1) {
+                double latRad = Math.toRadians(srcNorth - row * srcCellSizes);
+                double latitudeCorrectedCellSizeRad = Math.cos(latRad) * Math.toRadians(srcCellSizes);
+                return latitudeCorrectedCellSizeRad * 6_371_007; // radius of authalic sphere for GRS 1980
+            }
+            return srcCellSizes;
+        }
+
+        /**
+         * Returns the dimensionless rise/run slope computed from 8 neighboring
+         * cells.
+         *
+         * Equation from:
+         * http://help.arcgis.com/en/arcgisdesktop/10.0/help../index.html#/How_Slope_works/009z000000vz000000/
+         * [REFERENCE: Eduard Grid class]
+         * @param col Column index. Must be in [0, columns - 1].
+         * @param row Row index. Must be in [0, rows - 1].
+         * @return dimensionless gradient
+         */
+        public float get8NeighborGradient(int col, int row) {
+            final float projectedCellSize = (float) getProjectedCellSize(row);
+            final float cellSizeTimes8 = 8 * projectedCellSize;
+
+            final int cols = srcCols;
+            final int rows = srcRows;
+        //
+            final int colLeft = col > 0 ? col - 1 : 0;
+            final int colRight = col < cols - 1 ? col + 1 : cols - 1;
+            final int rowTop = row > 0 ? row - 1 : 0;
+            final int rowBottom = row < rows - 1 ? row + 1 : rows - 1;
+        //
+            final float a = srcBuffer[getDirectIndex(colLeft, rowTop)]; //(colLeft, rowTop);
+            final float b = srcBuffer[getDirectIndex(col, rowTop)]; //get(col, rowTop);
+            final float c = srcBuffer[getDirectIndex(colRight, rowTop)]; //get(colRight, rowTop);
+            final float d = srcBuffer[getDirectIndex(colLeft, row)]; //get(colLeft, row);
+        //
+            final float f = srcBuffer[getDirectIndex(colRight, row)]; //get(colRight, row);
+            final float g = srcBuffer[getDirectIndex(colLeft, rowBottom)]; //get(colLeft, rowBottom);
+            final float h = srcBuffer[getDirectIndex(col, rowBottom)]; //get(col, rowBottom);
+            final float i = srcBuffer[getDirectIndex(colRight, rowBottom)]; //get(colRight, rowBottom);
+        //
+            final float dZdX = ((c + (2 * f) + i) - (a + (2 * d) + g)) / cellSizeTimes8;
+            final float dZdY = ((g + (2 * h) + i) - (a + (2 * b) + c)) / cellSizeTimes8;
+            return (float) Math.sqrt((dZdX * dZdX) + (dZdY * dZdY));
+        }
 
-    @Override
-    public double getTimer(){
-        return timer;
     }
 
 }
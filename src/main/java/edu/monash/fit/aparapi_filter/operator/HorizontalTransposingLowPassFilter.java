@@ -1,17 +1,16 @@
 package edu.monash.fit.aparapi_filter.operator;
 
 import com.aparapi.Kernel;
-import com.aparapi.Range;
 import edu.monash.fit.aparapi_filter.Grid;
-
-import java.util.Arrays;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 
 /**
  * Applied horizontal row-wise Gaussian convolution and stores results in transposed grid
  *
  * [REFERENCE: Eduard AbstractFrequencyOperator class (HorizontalTransposingLowPassFilter private class)]
  */
-public class HorizontalTransposingLowPassFilter implements AparapiOperator {
+public class HorizontalTransposingLowPassFilter implements StagedOperator {
     private final double sigmaI;
     Grid src;           // the source grid
     Grid dest;          // the result grid
@@ -19,16 +18,14 @@ public class HorizontalTransposingLowPassFilter implements AparapiOperator {
 
     boolean firstPassI;     // indicator of the progress
 
-    // compute multiple rows in cached buffers before writing to the transposed
-    // intermediate and final grids to reduce number of cache misses
-    private static final int NBR_CACHED_ROWS = 4;
+    long peakMemory;        // bytes of the buffers and scratch rows of the last operation
+
+    // maximum number of concurrently executing lanes, each lane has its own scratch rows
+    static final int MAX_LANES = 1024;
 
     // numbers of filter passes
     private static final int ITERATIONS = 4;
 
-    // maximum value of the float can be (APARAPI not support FLOAT library, thus has to copy the attribute)
-    private final float FLOAT_MAX = Float.MAX_VALUE;
-
     /**
      * Constructor of HorizontalTransposingLowPassFilter
      * @param firstPass project indicator
@@ -49,6 +46,28 @@ public class HorizontalTransposingLowPassFilter implements AparapiOperator {
         if (src == null){
             throw new NullPointerException("");
         }
+        StageMetrics stage = RunMetrics.begin("Horizontal transposing 1D low-pass filter", src.getCols(), src.getRows());
+        Execution execution = upload(src);
+        Grid result;
+        try {
+            stage.addKernelMillis(execution.execute());
+
+            double transferTimer = System.nanoTime();
+            result = execution.download();     // move destBuffer from GPU
+            stage.addTransferMillis((System.nanoTime() - transferTimer) / 1e6);
+            stage.setPeakBytes(peakMemory);
+        } finally {
+            execution.cancel();                 // return the kernel after a failure, no effect after the download
+        }
+        stage.end();
+        return result;
+    }
+
+    @Override
+    public Execution upload(Grid src) {
+        if (src == null){
+            throw new NullPointerException("");
+        }
 
         int r = calculateR(this.sigmaI);                // r value
         double alpha = calculateAlpha(this.sigmaI, r);  // alpha value
@@ -58,261 +77,383 @@ public class HorizontalTransposingLowPassFilter implements AparapiOperator {
         this.src = src;
         // create transposed grid
         this.dest = new Grid(src.getRows(), src.getCols(), src.getCellSize(),src.getNorth(), src.getSouth(), src.getEast(), src.getWest());
+        final Grid result = this.dest;
 
         float[] srcBuffer = this.src.getBuffer();       // holder
         float[] destBuffer = this.dest.getBuffer();     // holder
-        boolean[] firstPass = {this.firstPassI};        // APARAPI not support "non-constant value", thus use a buffer holder
-
         final int srcCols = src.getCols();
         final int srcRows = src.getRows();
 
-        /*
-           calculate chunk size for each processing unit, thus each unit will have their own
-           cachedRows[i], srcRow[i], tmpRow[i]
-         */
-        int size = srcRows/NBR_CACHED_ROWS + (srcRows%NBR_CACHED_ROWS > 0 ? 1 : 0);
-
-        // cache of the destination rows (to be written into the dest buffer)
-        float[][][] cachedRows = new float[size][][];
+        // acquire a warmed kernel from the pool (with its scratch rows for the lanes) and rebind its buffers, the
+        // kernel is keyed by the longest row and the lanes such that both passes share it
+        final int rowLength = Math.max(srcCols, srcRows);
+        final int lanes = getLanes(srcCols, srcRows);
+        LowPassKernel kernel = KernelPool.acquire(LowPassKernel.class, rowLength, lanes,
+                () -> new LowPassKernel(rowLength, lanes));
+        KernelExecution execution = new KernelExecution(kernel, result) {
+            @Override
+            public double execute() {
+                double startTime = System.nanoTime();
+                kernel.execute(KernelPool.createRange(kernel, kernel.getLanes()));
+                timer = (System.nanoTime() - startTime) / 1e6;
+                return timer;
+            }
 
-        // initialization
-        for(int i = 0 ; i < size ; i++){
-            cachedRows[i] = new float[NBR_CACHED_ROWS][];
-            for (int j = 0; j < NBR_CACHED_ROWS; j ++)
-                cachedRows[i][j] = new float[srcCols];
+            @Override
+            void fetch() {
+                kernel.get(destBuffer);             // move destBuffer from GPU
+                peakMemory = (long) (srcBuffer.length + destBuffer.length) * Float.BYTES + kernel.getScratchBytes();
+            }
+        };
+        try {
+            kernel.bind(srcBuffer, destBuffer, srcCols, srcRows, this.firstPassI, r, c1, c2);
+            kernel.put(srcBuffer);              // send srcBuffer to GPU
+            kernel.put(destBuffer);             // send destBuffer to GPU
+
+            // eagerly execution (once per pooled kernel)
+            KernelPool.warmUp(kernel);
+        } catch (RuntimeException | Error ex){
+            execution.cancel();                 // return the kernel to the pool
+            throw ex;
         }
+        return execution;
+    }
 
-        float[][] srcRow = new float[size][];
-        float[][] tmpRow = new float[size][];            // temporary buffer for repeatetly smoothing a row
+    /**
+     * get the number of lanes for a grid, such that both passes over the grid use the same number of lanes
+     * @param cols total columns
+     * @param rows total rows
+     * @return number of lanes
+     */
+    static int getLanes(int cols, int rows){
+        return Math.min(Math.max(cols, rows), MAX_LANES);
+    }
 
-        // initialization
-        for(int i = 0 ; i < size; i++){
-            srcRow[i] = new float[srcCols];
-            tmpRow[i] = new float[srcCols];
-        }
+    static float calculateC1(double sigma, int r, double alpha){
+        return (float) (alpha / (2.0 * (alpha + r) + 1));
+    }
 
-        boolean[] foundVoid = new boolean[size];         // each unit will have their own foundVoid flag
-        Arrays.fill(foundVoid, false);              // initialization
-        int[] tester = {0};                             // testing flag
+    static float calculateC2(double sigma, int r, double alpha) {
+        return (float) ((1.0 - alpha) / (2.0 * (alpha + r) + 1));
+    }
 
-        // anonymous object of APARAPI kernel
-        Kernel kernel = new Kernel(){
-            @Override
-            public void run() {
-                // for each compute unit
-                int index = getGlobalId();
-                int start = index * NBR_CACHED_ROWS;
-                for (int i = 0 ; i < NBR_CACHED_ROWS; i++){
-                    int rowID = start + i;
-                    if (rowID < srcRows){
-                        for (int c = 0; c < srcCols; c++){
-                            srcRow[index][c] = srcBuffer[getDirectIndex(c, rowID)];
-                        }
-                        if (firstPass[0] && foundVoid[index]){
-                            // found a void value before, assume this row also contains void values
-                            copyAndReplaceVoids(srcRow[index], cachedRows[index][i], srcRow[index].length);
-                            blurRow(cachedRows[index][i], tmpRow[index], cachedRows[index][i].length);
-                        } else{
-                            // no void value found so far, assume there will be none in this row
-                            blurRow(srcRow[index], tmpRow[index], srcRow[index].length);
-                            if (firstPass[0] && !isFinite(tmpRow[index][srcCols -1])){
-                                // if there is any void value in this filtered row, the last value will be void
-                                foundVoid[index] = true;
-                                copyAndReplaceVoids(srcRow[index], cachedRows[index][i], srcRow[index].length);
-                                blurRow(cachedRows[index][i], tmpRow[index], cachedRows[index][i].length);
-
-                            }
-                        }
-                        // if LowPassOperator::ITERATIONS is not 4, the following
-                        // lines need to be changed. If it is not an even number,
-                        // the result needs to be copied to cachedRows[i]
-                        blurRow(tmpRow[index], cachedRows[index][i], tmpRow[index].length);
-                        blurRow(cachedRows[index][i], tmpRow[index], cachedRows[index][i].length);
-                        blurRow(tmpRow[index], cachedRows[index][i], tmpRow[index].length);
-                    }
-                    else{
-                        tester[0] ++;
-                    }
-                }
+    static int calculateR(double sigma){
+        return (int) (0.5 * Math.sqrt((12.0 * sigma * sigma) / ITERATIONS + 1.0) - 0.5);
+    }
 
-                // write into the result buffer (transposed matrix in 1D array)
-                for (int col = 0; col < srcCols; col ++){
-                    for (int i = 0 ; i < NBR_CACHED_ROWS; i ++ ){
-                        if (start + i < srcRows){
-                            float[] r = cachedRows[index][i];
-                            destBuffer[getDirectIndex(start+i, col)]= r[col];
-                        }
-                    }
-                }
+    static double calculateAlpha(double sigma, int r){
+        return (2 * r + 1) * (r * (r + 1) - 3.0 * sigma * sigma / ITERATIONS)
+                / (6.0 * (sigma * sigma / ITERATIONS - (r + 1) * (r + 1)));
+    }
 
-            }
+    @Override
+    public double getTimer(){
+        return timer;
+    }
 
+    /**
+     * get the peak memory of the last operation: the source and transposed grids and the scratch rows
+     * @return peak memory in bytes
+     */
+    public long getPeakMemory(){
+        return peakMemory;
+    }
+
+    /**
+     * The APARAPI kernel of the filter. The scratch rows are held in one flat buffer with two rows for each lane,
+     * such that the scratch memory is bounded by the number of lanes instead of the number of grid rows. A pooled
+     * kernel is shared by the first and the transposed second pass, the grid buffers, the dimension and the filter
+     * parameters are rebound for each operation.
+     */
+    static final class LowPassKernel extends Kernel implements KernelPool.Rebindable {
+        // maximum value of the float can be (APARAPI not support FLOAT library, thus has to copy the attribute)
+        private final float FLOAT_MAX = Float.MAX_VALUE;
+
+        private float[] srcBuffer, destBuffer;
+        private int srcCols, srcRows;
+        private final int rowLength;                    // length of the scratch rows
+        private final int lanes;                        // number of processing units
+        private int firstPass;                          // 1 if void values are to be replaced before blurring
+        private int r;                                  // r value
+        private float c1, c2;
+
+        private final float[] scratch;                  // two rows for each lane, for repeatedly smoothing a row
+
+        /**
+         * Constructor, allocates the scratch rows for the lanes
+         * @param rowLength maximum length of a row to blur
+         * @param lanes number of processing units
+         */
+        LowPassKernel(int rowLength, int lanes){
+            this.rowLength = rowLength;
+            this.lanes = lanes;
+            this.scratch = new float[2 * lanes * rowLength];
+        }
 
-            public int getDirectIndex(int col, int row){
-                return col + row * srcCols;
+        /**
+         * Bind the kernel to a grid and the filter parameters
+         * @param srcBuffer the source buffer
+         * @param destBuffer the transposed result buffer
+         * @param srcCols total columns of the source grid, at most the row length of the kernel
+         * @param srcRows total rows of the source grid
+         * @param firstPass project indicator
+         * @param r r value
+         * @param c1 c1 value
+         * @param c2 c2 value
+         */
+        void bind(float[] srcBuffer, float[] destBuffer, int srcCols, int srcRows, boolean firstPass,
+                  int r, float c1, float c2){
+            if (srcCols > rowLength){
+                throw new IllegalArgumentException("row longer than the scratch rows");
             }
+            this.srcBuffer = srcBuffer;
+            this.destBuffer = destBuffer;
+            this.srcCols = srcCols;
+            this.srcRows = srcRows;
+            this.firstPass = firstPass ? 1 : 0;
+            this.r = r;
+            this.c1 = c1;
+            this.c2 = c2;
+        }
 
-            /**
-             * Reflect index for out-of-bounds access. This is currently a
-             * bottleneck and could be avoided for the center of the grid (if the
-             * filter is smaller than the grid).
-             *
-             * @param N
-             * @param n
-             * @return
-             */
-            private int extension(int N, int n) {
-                while (n < 0 || n >= N) {
-                    if (n < 0) {
-                        n = -1 - n;
-                        /* Reflect over n = -1/2.    */
-                    } else if (n >= N) {
-                        n = 2 * N - 1 - n;
-                        /* Reflect over n = N - 1/2. */
-                    } else{
-                    }
+        /**
+         * get the number of processing units
+         * @return number of processing units
+         */
+        int getLanes(){
+            return lanes;
+        }
+
+        /**
+         * get the size of the scratch buffer
+         * @return size of the scratch buffer in bytes
+         */
+        long getScratchBytes(){
+            return (long) scratch.length * Float.BYTES;
+        }
+
+        @Override
+        public void unbind(){
+            this.srcBuffer = null;
+            this.destBuffer = null;
+        }
+
+        @Override
+        public long getOwnedBytes(){
+            return getScratchBytes();
+        }
+
+        @Override
+        public void run() {
+            // for each compute unit, blur every lanes-th row
+            int lane = getGlobalId();
+            int row0 = 2 * lane * rowLength;    // offset of the first scratch row
+            int row1 = row0 + rowLength;        // offset of the second scratch row
+            int foundVoid = 0;
+            for (int row = lane; row < srcRows; row += lanes){
+                foundVoid = blurSourceRow(row, row0, row1, foundVoid);
+
+                // if LowPassOperator::ITERATIONS is not 4, the following
+                // lines need to be changed. If it is not an even number,
+                // the result needs to be copied to the first scratch row
+                blurRow(row1, row0);
+                blurRow(row0, row1);
+                blurRow(row1, row0);
+
+                // write into the result buffer (transposed matrix in 1D array with srcRows columns)
+                for (int col = 0; col < srcCols; col ++){
+                    destBuffer[row + col * srcRows] = scratch[row0 + col];
                 }
-                return n;
             }
+        }
 
-            /**
-             * Blurs a row once.
-             *
-             * @param src input
-             * @param dst output
-             */
-            private void blurRow(float[] src, float[] dest, int N){
-                double sum = 0;
-                for (int n = -r; n <= r ; ++n){
-                    sum += src[extension(N, n)];
+        /**
+         * Blur a row of the source buffer once into the second scratch row. In the first pass void values are
+         * replaced by the nearest valid neighbor.
+         * @param row row of the source buffer
+         * @param row0 offset of the first scratch row
+         * @param row1 offset of the second scratch row
+         * @param foundVoid 1 if a void value was found in a previous row of the lane
+         * @return 1 if a void value was found in this or a previous row of the lane
+         */
+        private int blurSourceRow(int row, int row0, int row1, int foundVoid){
+            int found = foundVoid;
+            int offset = row * srcCols;
+            if (firstPass == 1 && found == 1){
+                // found a void value before, assume this row also contains void values
+                copyAndReplaceVoids(offset, row0);
+            } else{
+                // no void value found so far, assume there will be none in this row
+                for (int c = 0; c < srcCols; c++){
+                    scratch[row0 + c] = srcBuffer[offset + c];
                 }
+            }
+            blurRow(row0, row1);
+            if (firstPass == 1 && found == 0 && !isFinite(scratch[row1 + srcCols - 1])){
+                // if there is any void value in this filtered row, the last value will be void
+                found = 1;
+                copyAndReplaceVoids(offset, row0);
+                blurRow(row0, row1);
+            }
+            return found;
+        }
 
-                sum = c1 * (src[extension(N, r + 1)]
-                        + src[extension(N, -r - 1)])
-                        + (c1 + c2) * sum;
-                dest[0] = (float) sum;
-
-                for (int n = 1; n < N; ++n) {
-                    sum += c1 * (src[extension(N, n + r + 1)]
-                            - src[extension(N, n - r - 2)])
-                            + c2 * (src[extension(N, n + r)]
-                            - src[extension(N, n - r - 1)]);
-                    dest[n] = (float) sum;
+        /**
+         * Reflect index for out-of-bounds access. Only used for the borders of
+         * a row.
+         *
+         * @param N
+         * @param n
+         * @return
+         */
+        private int extension(int N, int n) {
+            while (n < 0 || n >= N) {
+                if (n < 0) {
+                    n = -1 - n;
+                    /* Reflect over n = -1/2.    */
+                } else {
+                    n = 2 * N - 1 - n;
+                    /* Reflect over n = N - 1/2. */
                 }
             }
+            return n;
+        }
 
-            /**
-             * Copy a source row to a destination row and replace void values with
-             * the nearest valid neighbor in the row.
-             *
-             * @param src input
-             * @param dst output
-             */
-            private void copyAndReplaceVoids(float[] src, float[] dest, int N){
-                int first = 0;
-
-                // check from the first column (toward)
-                while (first < N && !isFinite(src[first]))
-                    first++;
-
-                if (first == N){
-                    for (int j =0 ; j < N; j++) {
-                        dest[j] = 0;
-                    }
-                    return;
-                }
+        /**
+         * Blurs a scratch row once. Only the first and last r + 2 samples may access cells outside of the row, which are
+         * reflected at the borders. The interior samples use a loop without reflection.
+         *
+         * @param src offset of the input row in the scratch buffer
+         * @param dest offset of the output row in the scratch buffer
+         */
+        private void blurRow(int src, int dest){
+            int N = srcCols;
+            double sum = 0;
+            for (int n = -r; n <= r ; ++n){
+                sum += scratch[src + extension(N, n)];
+            }
 
-                for (int j= 0 ; j < first; j++)
-                    dest[j] = src[first];
-
-                // check from last column (backward)
-                int last = N -1;
-                while (last > 0&& !isFinite(src[first]))
-                    last --;
-
-                for (int j= N-1; j > last ; j--)
-                    dest[j] = src[last];
-
-                for (int j = first; j <= last; j ++){
-                    float v = src[j];
-                    if (!isFinite(v)){
-                        boolean flagChecker = false;
-
-                        for (int k = 1 ; k < N && !flagChecker ; k++){
-                            if (j+k <= last){
-                                v = src[j +k];
-                                if (isFinite(v)) {
-                                    dest[j] = v;
-                                    flagChecker = true;
-                                }
-                            }
-
-                            if (j - k >= first){
-                                v = src[j - k];
-                                if (isFinite((v))){
-                                    dest[j] = v;
-                                    flagChecker = true;
-                                }
-                            }
-                        }
-                    } else{
-                        dest[j] = src[j];
-                    }
-                }
+            sum = c1 * (scratch[src + extension(N, r + 1)]
+                    + scratch[src + extension(N, -r - 1)])
+                    + (c1 + c2) * sum;
+            scratch[dest] = (float) sum;
 
+            // samples in [interiorStart, interiorEnd) only access cells in the row
+            int interiorStart = Math.min(r + 2, N);
+            int interiorEnd = Math.max(interiorStart, N - r - 1);
+
+            sum = blurBorder(src, dest, sum, 1, interiorStart);
+            for (int n = interiorStart; n < interiorEnd; ++n) {
+                sum += c1 * (scratch[src + n + r + 1] - scratch[src + n - r - 2])
+                        + c2 * (scratch[src + n + r] - scratch[src + n - r - 1]);
+                scratch[dest + n] = (float) sum;
             }
+            sum = blurBorder(src, dest, sum, interiorEnd, N);     // APARAPI not support discarding a double result
+        }
 
-            public boolean isFinite(float f){
-                return Math.abs(f) <= FLOAT_MAX;
+        /**
+         * Blurs border samples of a scratch row with reflected access.
+         *
+         * @param src offset of the input row in the scratch buffer
+         * @param dest offset of the output row in the scratch buffer
+         * @param previousSum moving sum of the previous sample
+         * @param start first sample
+         * @param end end of samples (exclusive)
+         * @return moving sum of the last sample
+         */
+        private double blurBorder(int src, int dest, double previousSum, int start, int end){
+            int N = srcCols;
+            double sum = previousSum;
+            for (int n = start; n < end; ++n) {
+                sum += c1 * (scratch[src + extension(N, n + r + 1)]
+                        - scratch[src + extension(N, n - r - 2)])
+                        + c2 * (scratch[src + extension(N, n + r)]
+                        - scratch[src + extension(N, n - r - 1)]);
+                scratch[dest + n] = (float) sum;
             }
+            return sum;
+        }
 
+        /**
+         * Copy a source row to a scratch row and replace void values with
+         * the nearest valid neighbor in the row.
+         *
+         * @param src offset of the row in the source buffer
+         * @param dest offset of the row in the scratch buffer
+         */
+        private void copyAndReplaceVoids(int src, int dest){
+            int N = srcCols;
+            int first = 0;
 
-        };
-        kernel.setExplicit(true);           // explicitly manage transfers between GPU memory and CPU
-        kernel.put(srcBuffer);              // send srcBuffer to GPU
-        kernel.put(destBuffer);             // send destBuffer to GPU
-
-        kernel.put(firstPass);              // send firstPass to GPU
-        kernel.put(foundVoid);              // send foundVoid to GPU
-        kernel.put(cachedRows);             // send cachedRows to GPU
-        kernel.put(srcRow);                 // send srcRow to GPU
-        kernel.put(tmpRow);                 // send tmpRow to GPU
-
-        // eagerly execution
-        kernel.execute(1);
-        timer = System.nanoTime();
-        kernel.execute(Range.create(size));
-        timer = System.nanoTime() - timer;
-        timer = timer/ 1000000;
-
-        kernel.get(destBuffer);             // move destBuffer from GPU
-        kernel.dispose();
-
-        dest.setBufferReceived(destBuffer);
-        return this.dest;
-    }
+            // check from the first column (toward)
+            while (first < N && !isFinite(srcBuffer[src + first]))
+                first++;
 
-    private float calculateC1(double sigma, int r, double alpha){
-        return (float) (alpha / (2.0 * (alpha + r) + 1));
-    }
+            if (first == N){
+                for (int j =0 ; j < N; j++) {
+                    scratch[dest + j] = 0;
+                }
+                return;
+            }
 
-    private float calculateC2(double sigma, int r, double alpha) {
-        return (float) ((1.0 - alpha) / (2.0 * (alpha + r) + 1));
-    }
+            for (int j= 0 ; j < first; j++)
+                scratch[dest + j] = srcBuffer[src + first];
 
-    private int calculateR(double sigma){
-        return (int) (0.5 * Math.sqrt((12.0 * sigma * sigma) / ITERATIONS + 1.0) - 0.5);
-    }
+            // check from last column (backward)
+            int last = N -1;
+            while (last > 0&& !isFinite(srcBuffer[src + last]))
+                last --;
 
-    private double calculateAlpha(double sigma, int r){
-        return (2 * r + 1) * (r * (r + 1) - 3.0 * sigma * sigma / ITERATIONS)
-                / (6.0 * (sigma * sigma / ITERATIONS - (r + 1) * (r + 1)));
-    }
+            for (int j= N-1; j > last ; j--)
+                scratch[dest + j] = srcBuffer[src + last];
 
-    @Override
-    public double getTimer(){
-        return timer;
-    }
+            /*
+             single sweep over the runs of void values between first and last, src[first] and src[last] are valid,
+             thus each run is bounded by valid values, each void value takes the closer one (the previous one if
+             both are equally close)
+             */
+            int j = first;
+            while (j <= last){
+                float v = srcBuffer[src + j];
+                if (isFinite(v)){
+                    scratch[dest + j] = v;
+                    j++;
+                } else{
+                    j = replaceVoidRun(src, dest, j);
+                }
+            }
 
+        }
+
+        /**
+         * Replace a run of void values with the closer valid neighbor bounding the run
+         *
+         * @param src offset of the row in the source buffer
+         * @param dest offset of the row in the scratch buffer
+         * @param start first void value of the run, the previous value is valid
+         * @return index of the valid value following the run
+         */
+        private int replaceVoidRun(int src, int dest, int start){
+            int prev = start - 1;
+            int next = start + 1;
+            while (!isFinite(srcBuffer[src + next]))
+                next++;
+
+            float prevValue = srcBuffer[src + prev];
+            float nextValue = srcBuffer[src + next];
+            for (int j = start; j < next; j++){
+                if (j - prev <= next - j){
+                    scratch[dest + j] = prevValue;
+                } else{
+                    scratch[dest + j] = nextValue;
+                }
+            }
+            return next;
+        }
+
+        public boolean isFinite(float f){
+            return Math.abs(f) <= FLOAT_MAX;
+        }
+    }
 
 }
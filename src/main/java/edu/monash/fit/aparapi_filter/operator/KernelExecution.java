@@ -0,0 +1,57 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import com.aparapi.Kernel;
+import edu.monash.fit.aparapi_filter.Grid;
+
+/**
+ * An uploaded operation of a kernel acquired from the {@link KernelPool}. The kernel is returned to the pool when the
+ * result is downloaded, or when the operation is cancelled, such that a failed operation does not keep the kernel.
+ */
+abstract class KernelExecution implements StagedOperator.Execution {
+    private final Kernel kernel;        // the acquired kernel
+    private final Grid result;          // the result grid
+    private boolean done = false;       // true after the download or the cancellation
+
+    /**
+     * Constructor
+     * @param kernel the acquired kernel
+     * @param result the result grid
+     */
+    KernelExecution(Kernel kernel, Grid result){
+        this.kernel = kernel;
+        this.result = result;
+    }
+
+    /**
+     * Fetch the result buffer from the execution context, the kernel is still acquired
+     */
+    abstract void fetch();
+
+    @Override
+    public synchronized Grid download() {
+        if (done){
+            throw new IllegalStateException("operation downloaded or cancelled");
+        }
+        done = true;
+        boolean fetched = false;
+        try {
+            fetch();
+            fetched = true;
+        } finally {
+            KernelPool.release(kernel);         // return kernel to the pool when finish job
+            if (!fetched){
+                result.release();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void cancel() {
+        if (!done){
+            done = true;
+            KernelPool.release(kernel);
+            result.release();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import com.aparapi.Kernel;
+import com.aparapi.Range;
+import com.aparapi.device.Device;
+import com.aparapi.device.JavaDevice;
+import com.aparapi.internal.kernel.KernelManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A process-wide pool of APARAPI kernels, keyed by kernel type and grid dimensions.
+ * Creating a KernelRunner (and compiling the OpenCL program) is expensive, thus the operators acquire a warmed
+ * kernel from the pool, rebind its buffers, execute it and release it again instead of disposing it.
+ * A kernel is warmed (its KernelRunner eagerly created) only once per process.
+ *
+ * A released kernel does not reference the grids of its last operation, see {@link Rebindable}. The number of
+ * released kernels kept for each type and grid dimensions, and the total size of the arrays owned by released kernels,
+ * are limited, see {@link #setMaxIdle(int, long)}. The least recently used kernels are disposed first.
+ */
+public final class KernelPool {
+
+    // released kernels, the least recently used dimensions first
+    private static final Map<Key, ArrayDeque<Kernel>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Kernel, Key> acquired = new IdentityHashMap<>();       // kernels in use
+    private static final Set<Kernel> warmed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private static int maxIdlePerKey = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static long maxIdleBytes = Runtime.getRuntime().maxMemory() / 8;
+    private static long idleBytes = 0;  // total size of the arrays owned by released kernels
+
+    private static int created = 0;     // number of created kernels
+    private static int reused = 0;      // number of acquisitions served by a released kernel
+    private static int disposed = 0;    // number of released kernels disposed to respect the limits
+
+    /**
+     * A kernel whose buffers are bound to a grid for each operation. The pool unbinds a released kernel, such that
+     * an idle kernel does not keep the arrays of a grid reachable, which may have been returned to the BufferArena.
+     */
+    interface Rebindable {
+
+        /**
+         * Remove the references to the arrays of the bound grid
+         */
+        void unbind();
+
+        /**
+         * get the size of the arrays owned by the kernel, which are kept while the kernel is idle
+         * @return size in bytes
+         */
+        default long getOwnedBytes(){
+            return 0;
+        }
+    }
+
+    /**
+     * Static class, no instance
+     */
+    private KernelPool(){
+    }
+
+    /**
+     * Acquire a kernel for the passed type and grid dimensions. A released kernel is reused if available,
+     * otherwise a new kernel is created with the factory. The kernel must be released after use.
+     * @param type kernel type
+     * @param cols total columns of the grid
+     * @param rows total rows of the grid
+     * @param factory creates a new kernel if there is no released kernel
+     * @param <K> kernel type
+     * @return a kernel set to explicit transfer mode
+     */
+    public static <K extends Kernel> K acquire(Class<K> type, int cols, int rows, Supplier<K> factory){
+        return acquire(type, cols, rows, 1, factory);
+    }
+
+    /**
+     * Acquire a kernel for the passed type and a batch of grids with the same dimensions. A released kernel is
+     * reused if it was created for the same type, grid dimensions and number of grids.
+     * @param type kernel type
+     * @param cols total columns of each grid
+     * @param rows total rows of each grid
+     * @param grids number of grids in the batch
+     * @param factory creates a new kernel if there is no released kernel
+     * @param <K> kernel type
+     * @return a kernel set to explicit transfer mode
+     */
+    public static <K extends Kernel> K acquire(Class<K> type, int cols, int rows, int grids, Supplier<K> factory){
+        Objects.requireNonNull(factory);
+        Key key = new Key(type, cols, rows, grids);
+        Kernel kernel = null;
+        synchronized (KernelPool.class){
+            ArrayDeque<Kernel> kernels = idle.get(key);
+            if (kernels != null){
+                kernel = kernels.poll();
+            }
+            if (kernel != null){
+                reused++;
+                idleBytes -= getOwnedBytes(kernel);
+            }
+        }
+        if (kernel == null){
+            kernel = factory.get();
+            kernel.setExplicit(true);       // explicitly manage transfers between GPU memory and CPU
+            synchronized (KernelPool.class){
+                created++;
+            }
+        }
+        synchronized (KernelPool.class){
+            acquired.put(kernel, key);
+        }
+        return type.cast(kernel);
+    }
+
+    /**
+     * Generate a KernelRunner run instantly, to eagerly create it. This is done only once for each pooled kernel,
+     * the buffers have to be bound and put before.
+     * @param kernel acquired kernel
+     */
+    public static void warmUp(Kernel kernel){
+        synchronized (KernelPool.class){
+            if (warmed.contains(kernel)){
+                return;
+            }
+        }
+        kernel.execute(1);
+        synchronized (KernelPool.class){
+            warmed.add(kernel);
+        }
+    }
+
+    /**
+     * Select the device executing all kernels, for example the Java thread pool on machines without an OpenCL
+     * device.
+     * @param device the device, for example {@link JavaDevice#THREAD_POOL} or {@link JavaDevice#SEQUENTIAL}
+     */
+    public static void setPreferredDevice(Device device){
+        Objects.requireNonNull(device);
+        LinkedHashSet<Device> devices = new LinkedHashSet<>();
+        devices.add(device);
+        KernelManager.instance().setDefaultPreferredDevices(devices);
+    }
+
+    /**
+     * Create a one-dimensional range for an acquired kernel. The kernels of the operators do not synchronise the
+     * work-items of a group, thus groups of one work-item are used if the kernel is executed by the sequential Java
+     * device, which cannot execute larger groups.
+     * @param kernel acquired kernel
+     * @param globalSize number of work-items
+     * @return the range
+     */
+    public static Range createRange(Kernel kernel, int globalSize){
+        Device device = KernelManager.instance().getPreferences(kernel).getPreferredDevice(kernel);
+        return device == JavaDevice.SEQUENTIAL ? Range.create(globalSize, 1) : Range.create(globalSize);
+    }
+
+    /**
+     * Create a two-dimensional range for an acquired kernel, for example with the cells of a grid in the first
+     * dimension and the grids of a batch in the second dimension. Groups of one work-item are used if the kernel is
+     * executed by the sequential Java device.
+     * @param kernel acquired kernel
+     * @param width number of work-items in the first dimension
+     * @param height number of work-items in the second dimension
+     * @return the range
+     */
+    public static Range createRange(Kernel kernel, int width, int height){
+        Device device = KernelManager.instance().getPreferences(kernel).getPreferredDevice(kernel);
+        return device == JavaDevice.SEQUENTIAL ? Range.create2D(width, height, 1, 1) : Range.create2D(width, height);
+    }
+
+    /**
+     * Release an acquired kernel, such that it can be reused with the same type and grid dimensions. The kernel is
+     * unbound from its grid. If the limits of the pool are exceeded, the least recently used released kernels are
+     * disposed.
+     * @param kernel acquired kernel
+     */
+    public static void release(Kernel kernel){
+        List<Kernel> evicted = new ArrayList<>();
+        synchronized (KernelPool.class){
+            Key key = acquired.remove(kernel);
+            if (key == null){
+                throw new IllegalStateException("kernel not acquired from the pool");
+            }
+            if (kernel instanceof Rebindable){
+                ((Rebindable) kernel).unbind();
+            }
+            ArrayDeque<Kernel> kernels = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+            kernels.push(kernel);
+            idleBytes += getOwnedBytes(kernel);
+            if (kernels.size() > maxIdlePerKey){
+                evictLast(kernels, evicted);
+            }
+            evictIdle(maxIdleBytes, evicted);
+        }
+        dispose(evicted);
+    }
+
+    /**
+     * Set the limits of the released kernels kept by the pool. Released kernels exceeding the limits are disposed.
+     * @param perKey maximum number of released kernels for each type and grid dimensions
+     * @param bytes maximum total size of the arrays owned by released kernels
+     */
+    public static void setMaxIdle(int perKey, long bytes){
+        if (perKey < 0 || bytes < 0){
+            throw new IllegalArgumentException("negative limit");
+        }
+        List<Kernel> evicted = new ArrayList<>();
+        synchronized (KernelPool.class){
+            maxIdlePerKey = perKey;
+            maxIdleBytes = bytes;
+            for (ArrayDeque<Kernel> kernels : idle.values()){
+                while (kernels.size() > perKey){
+                    evictLast(kernels, evicted);
+                }
+            }
+            evictIdle(bytes, evicted);
+        }
+        dispose(evicted);
+    }
+
+    /**
+     * Dispose all released kernels, for example before the process exits.
+     */
+    public static void disposeAll(){
+        List<Kernel> kernels = new ArrayList<>();
+        synchronized (KernelPool.class){
+            for (ArrayDeque<Kernel> deque : idle.values()){
+                kernels.addAll(deque);
+            }
+            idle.clear();
+            idleBytes = 0;
+            warmed.removeAll(kernels);
+        }
+        for (Kernel kernel : kernels){
+            kernel.dispose();
+        }
+    }
+
+    /**
+     * Remove the least recently used released kernels until the arrays owned by the released kernels do not exceed
+     * a size. Must be called while holding the lock of the pool.
+     * @param bytes maximum size
+     * @param evicted receives the removed kernels, and the kernels removed by the caller
+     */
+    private static void evictIdle(long bytes, List<Kernel> evicted){
+        Iterator<ArrayDeque<Kernel>> iterator = idle.values().iterator();
+        while (iterator.hasNext()){
+            ArrayDeque<Kernel> kernels = iterator.next();
+            while (idleBytes > bytes && !kernels.isEmpty()){
+                evictLast(kernels, evicted);
+            }
+            if (kernels.isEmpty()){
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove the least recently released kernel of a type and grid dimensions. Must be called while holding the lock
+     * of the pool.
+     */
+    private static void evictLast(ArrayDeque<Kernel> kernels, List<Kernel> evicted){
+        Kernel kernel = kernels.pollLast();
+        idleBytes -= getOwnedBytes(kernel);
+        evicted.add(kernel);
+    }
+
+    /**
+     * Dispose kernels removed from the pool
+     */
+    private static void dispose(List<Kernel> kernels){
+        synchronized (KernelPool.class){
+            warmed.removeAll(kernels);
+            disposed += kernels.size();
+        }
+        for (Kernel kernel : kernels){
+            kernel.dispose();
+        }
+    }
+
+    private static long getOwnedBytes(Kernel kernel){
+        return kernel instanceof Rebindable ? ((Rebindable) kernel).getOwnedBytes() : 0;
+    }
+
+    /**
+     * get the number of released kernels kept by the pool
+     * @return number of idle kernels
+     */
+    public static synchronized int getIdleCount(){
+        int count = 0;
+        for (ArrayDeque<Kernel> kernels : idle.values()){
+            count += kernels.size();
+        }
+        return count;
+    }
+
+    /**
+     * get the number of released kernels disposed because the limits of the pool were exceeded
+     * @return number of disposed kernels
+     */
+    public static synchronized int getDisposedCount(){
+        return disposed;
+    }
+
+    /**
+     * get the number of kernels created by the pool
+     * @return number of created kernels
+     */
+    public static synchronized int getCreatedCount(){
+        return created;
+    }
+
+    /**
+     * get the number of acquisitions served by a released kernel
+     * @return number of reused kernels
+     */
+    public static synchronized int getReusedCount(){
+        return reused;
+    }
+
+    /**
+     * Pool key: kernel type, grid dimensions and number of grids in a batch
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final int cols, rows, grids;
+
+        private Key(Class<?> type, int cols, int rows, int grids){
+            this.type = Objects.requireNonNull(type);
+            this.cols = cols;
+            this.rows = rows;
+            this.grids = grids;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key k = (Key) o;
+            return type == k.type && cols == k.cols && rows == k.rows && grids == k.grids;
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(type, cols, rows, grids);
+        }
+    }
+
+}
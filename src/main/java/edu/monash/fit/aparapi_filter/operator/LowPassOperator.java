@@ -1,8 +1,9 @@
 package edu.monash.fit.aparapi_filter.operator;
 
 import com.aparapi.Kernel;
-import com.aparapi.Range;
 import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 
 /**
  * Low-pass filter which applies Gaussian blur
@@ -11,8 +12,8 @@ import edu.monash.fit.aparapi_filter.Grid;
  * [REFERENCE: Eduard LowPassOperator class]
  */
 public class LowPassOperator implements AparapiOperator {
-    private final float FLOAT_MAX = Float.MAX_VALUE, FLOAT_VOID = Float.NaN;    // FLOAT library attribute
     double timer;
+    long peakMemory;    // peak memory of the horizontal transposing passes in bytes
     Grid src;           // the source grid
     float sigmaValue;   // sigma value holder
 
@@ -35,62 +36,99 @@ public class LowPassOperator implements AparapiOperator {
             throw new NullPointerException("");
         }
 
-        MaskFilter.benchmarking.add("Low-pass:");
+        // the times of the low-pass group are the sums of the passes and the copy void stage
+        StageMetrics lowPassStage = RunMetrics.beginGroup("Low-pass", src.getCols(), src.getRows());
 
         /*
         execute HorizontalTransposingLowPassFilter two times to blur the image
          */
-        AparapiOperator horizontalTransposingFirstPass = new HorizontalTransposingLowPassFilter(true, this.sigmaValue);
+        HorizontalTransposingLowPassFilter horizontalTransposingFirstPass = new HorizontalTransposingLowPassFilter(true, this.sigmaValue);
         Grid transposedGrid = horizontalTransposingFirstPass.operate(this.src);
-        MaskFilter.benchmarking.add("\tHorizontal transposing 1D low-pass filter:  " + horizontalTransposingFirstPass.getTimer() + " ms");
 
-        AparapiOperator horizontalTransposingSecondPass = new HorizontalTransposingLowPassFilter(false, this.sigmaValue);
+        HorizontalTransposingLowPassFilter horizontalTransposingSecondPass = new HorizontalTransposingLowPassFilter(false, this.sigmaValue);
         postProcessingGrid = horizontalTransposingSecondPass.operate(transposedGrid);
-        MaskFilter.benchmarking.add("\tHorizontal transposing 1D low-pass filter:  " + horizontalTransposingSecondPass.getTimer() + " ms");
-
-        MaskFilter.benchmarking.add(" " + ((horizontalTransposingFirstPass.getTimer() + horizontalTransposingSecondPass.getTimer()))+ " ms");
+        transposedGrid.release();           // return the intermediate transposed buffer to the arena
+        peakMemory = Math.max(horizontalTransposingFirstPass.getPeakMemory(), horizontalTransposingSecondPass.getPeakMemory());
 
         float[] srcBuffer = src.getBuffer();
         float[] destBuffer = postProcessingGrid.getBuffer();
 
         // consistency ensure
-        Kernel kernel = new Kernel(){
-            @Override
-            public void run() {
-                int i = getGlobalId();
-                if (!isFinite(srcBuffer[i]))
-                    destBuffer[i] = FLOAT_VOID;
-
-            }
+        StageMetrics copyVoidStage = RunMetrics.begin("Copy void", src.getCols(), src.getRows());
+        CopyVoidKernel kernel = KernelPool.acquire(CopyVoidKernel.class, src.getCols(), src.getRows(),
+                CopyVoidKernel::new);
+        try {
+            kernel.bind(srcBuffer, destBuffer);
+            kernel.put(srcBuffer);              // send srcBuffer to GPU
+            kernel.put(destBuffer);             // send destBuffer to GPU
+
+            KernelPool.warmUp(kernel);          // generate a KernelRunner run instantly, to eagerly create it (once)
+
+            timer = System.nanoTime();
+            kernel.execute(KernelPool.createRange(kernel, src.getCols() * src.getRows()));
+            timer = System.nanoTime() - timer;
+            timer = timer/ 1e6;
+            copyVoidStage.addKernelMillis(timer);
+
+            double transferTimer = System.nanoTime();
+            kernel.get(destBuffer);             // fetch destBuffer from GPU
+            copyVoidStage.addTransferMillis((System.nanoTime() - transferTimer) / 1e6);
+        } finally {
+            KernelPool.release(kernel);         // return kernel to the pool when finish job
+        }
+        copyVoidStage.end();
+        lowPassStage.end();
 
-            public boolean isFinite(float f){
-                return Math.abs(f) <= FLOAT_MAX;
-            }
-        };
+        return postProcessingGrid;
+    }
 
+    @Override
+    public double getTimer(){
+        return timer;
+    }
 
-        kernel.setExplicit(true);           // explicitly manage transfers between GPU memory and CPU
-        kernel.put(srcBuffer);              // send srcBuffer to GPU
-        kernel.put(destBuffer);             // send destBuffer to GPU
+    /**
+     * get the peak memory of the horizontal transposing passes of the last operation
+     * @return peak memory in bytes
+     */
+    public long getPeakMemory(){
+        return peakMemory;
+    }
 
-        kernel.execute(1);                  // generate a KernelRunner run instantly, to eagerly create it
+    /**
+     * The APARAPI kernel voiding the cells of the blurred grid which are void in the source grid.
+     */
+    static final class CopyVoidKernel extends Kernel implements KernelPool.Rebindable {
+        private final float FLOAT_MAX = Float.MAX_VALUE, FLOAT_VOID = Float.NaN;    // FLOAT library attribute
+        private float[] srcBuffer, destBuffer;
+
+        /**
+         * Bind the kernel to a grid
+         * @param srcBuffer the source buffer
+         * @param destBuffer the blurred buffer
+         */
+        void bind(float[] srcBuffer, float[] destBuffer){
+            this.srcBuffer = srcBuffer;
+            this.destBuffer = destBuffer;
+        }
 
-        timer = System.nanoTime();
-        kernel.execute(Range.create(src.getCols() * src.getRows()));
-        timer = System.nanoTime() - timer;
-        timer = timer/ 1000000;
-        MaskFilter.benchmarking.add("Copy void:  " + timer + " ms");
+        @Override
+        public void unbind(){
+            this.srcBuffer = null;
+            this.destBuffer = null;
+        }
 
-        kernel.get(destBuffer);             // fetch destBuffer from GPU
-        kernel.dispose();                   // clean kernel when finish job
-        postProcessingGrid.setBufferReceived(destBuffer);
+        @Override
+        public void run() {
+            int i = getGlobalId();
+            if (!isFinite(srcBuffer[i]))
+                destBuffer[i] = FLOAT_VOID;
 
-        return postProcessingGrid;
-    }
+        }
 
-    @Override
-    public double getTimer(){
-        return timer;
+        public boolean isFinite(float f){
+            return Math.abs(f) <= FLOAT_MAX;
+        }
     }
 
 }
@@ -1,10 +1,12 @@
 package edu.monash.fit.aparapi_filter.operator;
 
 import com.aparapi.Kernel;
-import com.aparapi.Range;
 import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Supplier;
 
 /**
  * Blurred slope values are now between gainSlopeThreshold and slopeThreshold.
@@ -24,9 +26,8 @@ public class MaskFilter {
     private final static float sigmaBlur = 6f, relativeGain = 0.5f, sigmaSmooth = 20f;
     private final Grid src;                                 // input grid
     private Grid dest;                                      // result grid
-    private final float FLOAT_MAX = Float.MAX_VALUE;        // maximum valve of the float [float library not supported ]
 
-    public static ArrayList<String> benchmarking = new ArrayList<>();   // list to store benchmark details
+    private RunMetrics metrics;                             // metrics of the last execution
 
     double startTime;
 
@@ -40,14 +41,84 @@ public class MaskFilter {
         }
 
         this.src = src;
-        this.dest = Grid.shallowCopy(src);              // shallow copy of src
     }
 
+    /**
+     * get the metrics of the last execution. If a run was bound to the executing thread, the stages were recorded
+     * with this run, otherwise a new run was created for the execution.
+     * @return the metrics, or null if the filter has not been executed
+     */
+    public RunMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Execute the pipeline and record its stages with the run bound to the current thread, or a new run if none
+     * is bound.
+     * @param name name of the group of stages of the pipeline
+     * @param pipeline the pipeline
+     * @return the result grid
+     */
+    private Grid measure(String name, Supplier<Grid> pipeline){
+        metrics = RunMetrics.current() != null ? RunMetrics.current() : new RunMetrics("Mask filter");
+        RunMetrics previous = RunMetrics.bind(metrics);
+        try {
+            StageMetrics stage = RunMetrics.beginGroup(name, src.getCols(), src.getRows());
+            try {
+                return pipeline.get();
+            } finally {
+                stage.end();
+            }
+        } finally {
+            RunMetrics.bind(previous);
+        }
+    }
+
+    /**
+     * Execute the mask filter, each stage is an operator with its own buffers.
+     * @return the result grid
+     */
     public Grid execute(){
+        return measure("Mask filter", this::executeStages);
+    }
+
+    /**
+     * get the gain slope threshold, between 0 and the slope threshold
+     * @return gain slope threshold as rise/run
+     */
+    static float getGainSlopeThreshold(){
         // Compute gain slope threshold in degrees. Threshold is between 0 and slopeThresholdDeg.
         float gainSlopeThresholdDeg = slopeThresholdDeg * Math.min(0.995f, relativeGain);
         // convert to rise/run
-        float gainSlopeThreshold = (float) Math.tan(Math.toRadians(gainSlopeThresholdDeg));
+        return (float) Math.tan(Math.toRadians(gainSlopeThresholdDeg));
+    }
+
+    /**
+     * get the slope threshold
+     * @return slope threshold as rise/run
+     */
+    static float getSlopeThreshold(){
+        return slopeThreshold;
+    }
+
+    /**
+     * get the standard deviation of the low-pass filter blurring the slope grid
+     * @return standard deviation
+     */
+    static float getSigmaBlur(){
+        return sigmaBlur;
+    }
+
+    /**
+     * get the standard deviation of the low-pass filter blurring the clamped slope grid
+     * @return standard deviation
+     */
+    static float getSigmaSmooth(){
+        return sigmaSmooth;
+    }
+
+    private Grid executeStages(){
+        float gainSlopeThreshold = getGainSlopeThreshold();
         // scale the slopeThreshold and gainSlopeThreshold
         float scale = 1f / (slopeThreshold - gainSlopeThreshold);
 
@@ -59,59 +130,118 @@ public class MaskFilter {
 
         // low pass filter to blur grid
         AparapiOperator lowPassOperatorSigmaBlur = new LowPassOperator(sigmaBlur) ;
-        dest = lowPassOperatorSigmaBlur.operate(dest);
+        dest = releaseAfter(dest, lowPassOperatorSigmaBlur);
 
         // clamp the range of the mountaineous area
         AparapiOperator clampToRangeOperator = new ClampToRangeOperator(gainSlopeThreshold, slopeThreshold);
-        dest = clampToRangeOperator.operate(dest);
+        dest = releaseAfter(dest, clampToRangeOperator);
 
         // low pass filter to blur edges again
         AparapiOperator lowPassOperatorSigmaSmooth = new LowPassOperator(sigmaSmooth);
-        dest =lowPassOperatorSigmaSmooth.operate(dest);
+        dest = releaseAfter(dest, lowPassOperatorSigmaSmooth);
 
         float[] newSrcBuffer = dest.getBuffer();                // get buffer
-        float[] newDestBuffer = new float[srcCols * srcRows];   // initialize new buffer
+        StageMetrics stage = RunMetrics.begin("Slope to normalized mask", srcCols, srcRows);
+        Grid mask = Grid.shallowCopy(dest);                     // initialize new grid
+        float[] newDestBuffer = mask.getBuffer();
 
         // Inverted mapping of slopeThreshold to 0 and gainSlopeThreshold to 1.
-        Kernel maskFilter = new Kernel() {
-            @Override
-            public void run() {
-                int i = getGlobalId();
-                float value = newSrcBuffer[i];
-                if (isFinite(value)){
-                    value = 1 - (value - gainSlopeThreshold) * scale;
-                    value = Math.max(0, Math.min(1, value)); // clamp to valid range
-                } else{
-                    value = -1; // invalid value
-                }
-                newDestBuffer[i] = value;
-            }
-
-            // method copied as APARAPI not support object method call
-            private boolean isFinite(float f){
-                return Math.abs(f) <= FLOAT_MAX;
-            }
+        MaskKernel maskFilter = KernelPool.acquire(MaskKernel.class, srcCols, srcRows, MaskKernel::new);
+        try {
+            maskFilter.bind(newSrcBuffer, newDestBuffer, gainSlopeThreshold, scale);
+            maskFilter.put(newSrcBuffer);                   // send srcBuffer to GPU
+            maskFilter.put(newDestBuffer);                  // send destBuffer to GPU
+            KernelPool.warmUp(maskFilter);
+            startTime = System.nanoTime();
+
+            maskFilter.execute(KernelPool.createRange(maskFilter, dest.getLength()));     // kernel execution
+            double timerMaskFilter = (System.nanoTime() - startTime)/ 1e6;
+            stage.addKernelMillis(timerMaskFilter);
+
+            startTime = System.nanoTime();
+            maskFilter.get(newDestBuffer);
+            stage.addTransferMillis((System.nanoTime() - startTime) / 1e6);
+        } finally {
+            KernelPool.release(maskFilter);
+        }
+        stage.end();
 
-        };
+        dest.release();                                 // the blurred slope grid is replaced by the mask
+        dest = mask;
+        return dest;
+    }
 
-        maskFilter.setExplicit(true);               // explicitly manage transfers between GPU memory and CPU
-        maskFilter.put(newSrcBuffer);                   // send srcBuffer to GPU
-        maskFilter.put(newDestBuffer);                  // send destBuffer to GPU
-        maskFilter.execute(1);
-        startTime = System.nanoTime();
+    /**
+     * Apply an operator to an intermediate grid of the pipeline and return the intermediate grid to the
+     * BufferArena, such that its buffer can be reused by a later stage.
+     * @param intermediate the intermediate grid, must not be used after this call
+     * @param operator the operator to apply
+     * @return the result grid of the operator
+     */
+    private static Grid releaseAfter(Grid intermediate, AparapiOperator operator){
+        Grid result = operator.operate(intermediate);
+        intermediate.release();
+        return result;
+    }
 
-        maskFilter.execute(Range.create(dest.getLength()));     // kernel execution
-        double timerMaskFilter = (System.nanoTime() - startTime)/1000000;
+    /**
+     * Execute the mask filter with all buffers resident in the APARAPI execution context. The source grid is sent
+     * once, all stages run on the resident buffers, and only the final mask is fetched. The kernel time of each
+     * stage and the transfer time are reported separately. This is the {@link BatchMaskFilter} with a single grid.
+     * @return the result grid
+     */
+    public Grid executeResident(){
+        return measure("Resident mask filter",
+                () -> new BatchMaskFilter(Collections.singletonList(src)).executeStages().get(0));
+    }
 
-        maskFilter.get(newDestBuffer);
-        maskFilter.dispose();
-        MaskFilter.benchmarking.add("Slope to normalized mask:  " + timerMaskFilter + " ms");
+    /**
+     * The APARAPI kernel of the slope to normalized mask stage, the buffers are fields such that a pooled kernel
+     * can be rebound.
+     */
+    static final class MaskKernel extends Kernel implements KernelPool.Rebindable {
+        private final float FLOAT_MAX = Float.MAX_VALUE;        // maximum valve of the float [float library not supported ]
+        private float[] newSrcBuffer, newDestBuffer;
+        private float gainSlopeThreshold, scale;
+
+        /**
+         * Bind the kernel to a grid
+         * @param srcBuffer the blurred slope buffer
+         * @param destBuffer the mask buffer
+         * @param gainSlopeThreshold gain slope threshold
+         * @param scale scale of the slopeThreshold and gainSlopeThreshold
+         */
+        void bind(float[] srcBuffer, float[] destBuffer, float gainSlopeThreshold, float scale){
+            this.newSrcBuffer = srcBuffer;
+            this.newDestBuffer = destBuffer;
+            this.gainSlopeThreshold = gainSlopeThreshold;
+            this.scale = scale;
+        }
 
-        dest.setBufferReceived(newDestBuffer);
-        return dest;
-    }
+        @Override
+        public void unbind(){
+            this.newSrcBuffer = null;
+            this.newDestBuffer = null;
+        }
 
+        @Override
+        public void run() {
+            int i = getGlobalId();
+            float value = newSrcBuffer[i];
+            if (isFinite(value)){
+                value = 1 - (value - gainSlopeThreshold) * scale;
+                value = Math.max(0, Math.min(1, value)); // clamp to valid range
+            } else{
+                value = -1; // invalid value
+            }
+            newDestBuffer[i] = value;
+        }
 
+        // method copied as APARAPI not support object method call
+        private boolean isFinite(float f){
+            return Math.abs(f) <= FLOAT_MAX;
+        }
 
+    }
 
 }
@@ -0,0 +1,556 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import com.aparapi.Kernel;
+
+/**
+ * A single APARAPI kernel holding every stage of the mask filter, such that all buffers stay resident in the
+ * execution context between the stages. The host selects the stage and the buffers it reads from and writes to
+ * before each execution; only the scalar parameters are sent with each execution, the buffers are transferred
+ * once before the first stage and once after the last stage.
+ *
+ * The kernel can process a batch of grids of the same size. The grids are packed one after the other into each
+ * buffer, and each stage is executed once for the whole batch with a two-dimensional range, where the second
+ * dimension selects the grid of the batch. Each grid is processed exactly as a single grid, with its own void
+ * values, borders and scratch rows.
+ *
+ * [REFERENCE: GradientOperator, HorizontalTransposingLowPassFilter, LowPassOperator, ClampToRangeOperator and
+ * MaskFilter classes]
+ */
+final class ResidentMaskFilterKernel extends Kernel implements KernelPool.Rebindable {
+
+    /*
+    stage identifiers
+     */
+    static final int STAGE_NONE = 0;
+    static final int STAGE_GRADIENT = 1;
+    static final int STAGE_LOW_PASS = 2;
+    static final int STAGE_COPY_VOID = 3;
+    static final int STAGE_CLAMP = 4;
+    static final int STAGE_MASK = 5;
+
+    /*
+    buffer identifiers (APARAPI not support array reference as argument, thus select the buffer by identifier)
+     */
+    static final int BUFFER_SRC = 0;
+    static final int BUFFER_A = 1;
+    static final int BUFFER_B = 2;
+    static final int BUFFER_C = 3;
+
+    // maximum value of the float can be (APARAPI not support FLOAT library, thus has to copy the attribute)
+    private final float FLOAT_MAX = Float.MAX_VALUE, FLOAT_VOID = Float.NaN;
+
+    /*
+    resident buffers
+     */
+    private float[] srcBuffer;          // input grid
+    private float[] bufferA;            // intermediate and result grid
+    private final float[] bufferB;      // intermediate transposed grid
+    private final float[] bufferC;      // intermediate grid
+    private final float[] scratch;      // two rows for each lane of each grid of the low-pass stage
+
+    /*
+    grid attributes
+     */
+    private final double[] srcNorths, srcCellSizes;    // north and cell size of each grid of the batch
+    private final int rowLength;        // length of the scratch rows (max of columns and rows)
+    private final int grids;            // number of grids in the batch
+
+    /*
+    stage parameters, set by the host before each execution
+     */
+    private int stage = STAGE_NONE;
+    private int from, to;               // buffer identifiers
+    private int cols, rows;             // dimension of the buffer read by the stage
+    private final int lanes;            // number of lanes of each grid for the low-pass stage
+    private int firstPass;              // 1 if void values are to be replaced before blurring
+    private int r;                      // radius of the box filter
+    private float c1, c2;               // box filter scale factors
+    private float min, max;             // clamp range
+    private float gainSlopeThreshold, scale;
+
+    /**
+     * Constructor, allocates the intermediate buffers B and C and the scratch rows for a batch of grids. The input
+     * grid and buffer A are bound with {@link #bind(float[], float[], double[], double[])}.
+     * @param cols total columns of each input grid
+     * @param rows total rows of each input grid
+     * @param lanes number of lanes of each grid for the low-pass stage
+     * @param grids number of grids in the batch
+     */
+    ResidentMaskFilterKernel(int cols, int rows, int lanes, int grids){
+        int n = Math.multiplyExact(Math.multiplyExact(cols, rows), grids);
+        // the input and result buffers are bound later, placeholders are only read by the warm-up run without stage
+        this.srcBuffer = new float[1];
+        this.bufferA = new float[1];
+        this.bufferB = new float[n];
+        this.bufferC = new float[n];
+        this.rowLength = Math.max(cols, rows);
+        this.scratch = new float[Math.multiplyExact(2 * lanes * rowLength, grids)];
+        this.srcNorths = new double[grids];
+        this.srcCellSizes = new double[grids];
+        this.cols = cols;
+        this.rows = rows;
+        this.lanes = lanes;
+        this.grids = grids;
+    }
+
+    /**
+     * Bind the kernel to an input grid and a result buffer (buffer A). The other intermediate buffers are reused.
+     * @param srcBuffer the input grid
+     * @param resultBuffer the result buffer
+     * @param north north latitude
+     * @param cellSize cell size for each raster grid
+     */
+    void bind(float[] srcBuffer, float[] resultBuffer, double north, double cellSize){
+        bind(srcBuffer, resultBuffer, new double[]{north}, new double[]{cellSize});
+    }
+
+    /**
+     * Bind the kernel to a batch of packed input grids and a packed result buffer (buffer A), and send the north
+     * and the cell size of each grid. The other intermediate buffers are reused.
+     * @param srcBuffer the packed input grids
+     * @param resultBuffer the packed result buffer
+     * @param norths north latitude of each grid
+     * @param cellSizes cell size of each grid
+     */
+    void bind(float[] srcBuffer, float[] resultBuffer, double[] norths, double[] cellSizes){
+        if (srcBuffer.length != bufferB.length || resultBuffer.length != bufferB.length
+                || norths.length != grids || cellSizes.length != grids){
+            throw new IllegalArgumentException("batch size not matching the kernel");
+        }
+        this.srcBuffer = srcBuffer;
+        this.bufferA = resultBuffer;
+        System.arraycopy(norths, 0, srcNorths, 0, grids);
+        System.arraycopy(cellSizes, 0, srcCellSizes, 0, grids);
+        put(srcNorths);
+        put(srcCellSizes);
+    }
+
+    /**
+     * get the number of grids in the batch
+     * @return number of grids
+     */
+    int getGrids(){
+        return grids;
+    }
+
+    /**
+     * get the number of lanes of each grid for the low-pass stage
+     * @return number of lanes
+     */
+    int getLanes(){
+        return lanes;
+    }
+
+    /**
+     * Prepare the gradient stage, reading the input grid and writing to buffer A
+     * @param cols total columns
+     * @param rows total rows
+     */
+    void setGradientStage(int cols, int rows){
+        setStage(STAGE_GRADIENT, BUFFER_SRC, BUFFER_A, cols, rows);
+    }
+
+    /**
+     * Prepare one horizontal transposing low-pass pass
+     * @param from buffer to read from
+     * @param to buffer to write the transposed result to
+     * @param cols total columns of the buffer to read from
+     * @param rows total rows of the buffer to read from
+     * @param firstPass replace void values before blurring
+     * @param r radius of the box filter
+     * @param c1 box filter scale factor
+     * @param c2 box filter scale factor
+     */
+    void setLowPassStage(int from, int to, int cols, int rows, boolean firstPass, int r, float c1, float c2){
+        setStage(STAGE_LOW_PASS, from, to, cols, rows);
+        this.firstPass = firstPass ? 1 : 0;
+        this.r = r;
+        this.c1 = c1;
+        this.c2 = c2;
+    }
+
+    /**
+     * Prepare the copy void stage, voiding cells in the to buffer which are void in the from buffer
+     * @param from buffer with the void cells
+     * @param to buffer to void
+     * @param cols total columns of the buffers
+     * @param rows total rows of the buffers
+     */
+    void setCopyVoidStage(int from, int to, int cols, int rows){
+        setStage(STAGE_COPY_VOID, from, to, cols, rows);
+    }
+
+    /**
+     * Prepare the clamp stage
+     * @param from buffer to read from
+     * @param to buffer to write to
+     * @param cols total columns of the buffers
+     * @param rows total rows of the buffers
+     * @param min minimum value
+     * @param max maximum value
+     */
+    void setClampStage(int from, int to, int cols, int rows, float min, float max){
+        setStage(STAGE_CLAMP, from, to, cols, rows);
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Prepare the slope to normalized mask stage
+     * @param from buffer to read from
+     * @param to buffer to write to
+     * @param cols total columns of the buffers
+     * @param rows total rows of the buffers
+     * @param gainSlopeThreshold gain slope threshold
+     * @param scale scale of the slopeThreshold and gainSlopeThreshold
+     */
+    void setMaskStage(int from, int to, int cols, int rows, float gainSlopeThreshold, float scale){
+        setStage(STAGE_MASK, from, to, cols, rows);
+        this.gainSlopeThreshold = gainSlopeThreshold;
+        this.scale = scale;
+    }
+
+    /**
+     * Select no stage, used to eagerly create the KernelRunner
+     */
+    void setNoStage(){
+        this.stage = STAGE_NONE;
+    }
+
+    private void setStage(int stage, int from, int to, int cols, int rows){
+        this.stage = stage;
+        this.from = from;
+        this.to = to;
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * Getter of a resident buffer
+     * @param buffer buffer identifier
+     * @return the buffer array
+     */
+    float[] getBuffer(int buffer){
+        if (buffer == BUFFER_SRC){
+            return srcBuffer;
+        } else if (buffer == BUFFER_A){
+            return bufferA;
+        } else if (buffer == BUFFER_B){
+            return bufferB;
+        }
+        return bufferC;
+    }
+
+    @Override
+    public void unbind(){
+        this.srcBuffer = null;
+        this.bufferA = null;
+    }
+
+    @Override
+    public long getOwnedBytes(){
+        return (long) (bufferB.length + bufferC.length + scratch.length) * Float.BYTES;
+    }
+
+    @Override
+    public void run() {
+        // the first dimension is the cell or lane, the second dimension the grid of the batch (0 for a 1D range)
+        int cell = getGlobalId(0);
+        int grid = getGlobalId(1);
+        int i = grid * cols * rows + cell;     // index in the packed buffers
+        if (stage == STAGE_GRADIENT){
+            write(to, i, get8NeighborGradient(grid, cell % cols, cell / cols));
+        } else if (stage == STAGE_LOW_PASS){
+            lowPass(grid, cell);
+        } else if (stage == STAGE_COPY_VOID){
+            copyVoid(i);
+        } else if (stage == STAGE_CLAMP){
+            write(to, i, Math.min(max, Math.max(min, read(from, i))));
+        } else if (stage == STAGE_MASK){
+            write(to, i, toMask(read(from, i)));
+        }
+    }
+
+    /**
+     * void the cell of the to buffer if the cell of the from buffer is void
+     * @param i direct index
+     */
+    private void copyVoid(int i){
+        if (!isFinite(read(from, i))){
+            write(to, i, FLOAT_VOID);
+        }
+    }
+
+    /**
+     * Inverted mapping of slopeThreshold to 0 and gainSlopeThreshold to 1.
+     * @param value slope value
+     * @return mask value
+     */
+    private float toMask(float value){
+        if (isFinite(value)){
+            value = 1 - (value - gainSlopeThreshold) * scale;
+            value = Math.max(0, Math.min(1, value)); // clamp to valid range
+        } else{
+            value = -1; // invalid value
+        }
+        return value;
+    }
+
+    private float read(int buffer, int i){
+        if (buffer == BUFFER_SRC){
+            return srcBuffer[i];
+        } else if (buffer == BUFFER_A){
+            return bufferA[i];
+        } else if (buffer == BUFFER_B){
+            return bufferB[i];
+        }
+        return bufferC[i];
+    }
+
+    private void write(int buffer, int i, float value){
+        if (buffer == BUFFER_A){
+            bufferA[i] = value;
+        } else if (buffer == BUFFER_B){
+            bufferB[i] = value;
+        } else if (buffer == BUFFER_C){
+            bufferC[i] = value;
+        }
+    }
+
+    /**
+     * Returns the distance between two neighboring rows or columns.
+     *
+     * [REFERENCE: GradientOperator class]
+     * @param grid grid of the batch
+     * @param row grid row
+     * @return the distance between two rows or columns in meters
+     */
+    private double getProjectedCellSize(int grid, int row) {
+        double cellSize = srcCellSizes[grid];
+        if (cellSize < 0.1) {
+            double latRad = Math.toRadians(srcNorths[grid] - row * cellSize);
+            double latitudeCorrectedCellSizeRad = Math.cos(latRad) * Math.toRadians(cellSize);
+            return latitudeCorrectedCellSizeRad * 6_371_007; // radius of authalic sphere for GRS 1980
+        }
+        return cellSize;
+    }
+
+    /**
+     * Returns the dimensionless rise/run slope computed from 8 neighboring cells.
+     *
+     * [REFERENCE: GradientOperator class]
+     * @param grid grid of the batch
+     * @param col Column index. Must be in [0, columns - 1].
+     * @param row Row index. Must be in [0, rows - 1].
+     * @return dimensionless gradient
+     */
+    private float get8NeighborGradient(int grid, int col, int row) {
+        final float projectedCellSize = (float) getProjectedCellSize(grid, row);
+        final int offset = grid * cols * rows;     // offset of the grid in the packed buffer
+        final float cellSizeTimes8 = 8 * projectedCellSize;
+
+        final int colLeft = col > 0 ? col - 1 : 0;
+        final int colRight = col < cols - 1 ? col + 1 : cols - 1;
+        final int rowTop = row > 0 ? row - 1 : 0;
+        final int rowBottom = row < rows - 1 ? row + 1 : rows - 1;
+
+        final float a = srcBuffer[offset + colLeft + rowTop * cols];
+        final float b = srcBuffer[offset + col + rowTop * cols];
+        final float c = srcBuffer[offset + colRight + rowTop * cols];
+        final float d = srcBuffer[offset + colLeft + row * cols];
+
+        final float f = srcBuffer[offset + colRight + row * cols];
+        final float g = srcBuffer[offset + colLeft + rowBottom * cols];
+        final float h = srcBuffer[offset + col + rowBottom * cols];
+        final float k = srcBuffer[offset + colRight + rowBottom * cols];
+
+        final float dZdX = ((c + (2 * f) + k) - (a + (2 * d) + g)) / cellSizeTimes8;
+        final float dZdY = ((g + (2 * h) + k) - (a + (2 * b) + c)) / cellSizeTimes8;
+        return (float) Math.sqrt((dZdX * dZdX) + (dZdY * dZdY));
+    }
+
+    /**
+     * Blur the rows of one lane four times and write them into the transposed to buffer
+     *
+     * [REFERENCE: HorizontalTransposingLowPassFilter class]
+     * @param grid grid of the batch
+     * @param lane lane index
+     */
+    private void lowPass(int grid, int lane){
+        int offset = grid * cols * rows;                    // offset of the grid in the packed buffers
+        int row0 = 2 * (grid * lanes + lane) * rowLength;   // offset of the first scratch row
+        int row1 = row0 + rowLength;                        // offset of the second scratch row
+        for (int row = lane; row < rows; row += lanes){
+            if (firstPass == 1){
+                copyAndReplaceVoids(offset + row * cols, row0);
+            } else{
+                for (int c = 0; c < cols; c++)
+                    scratch[row0 + c] = read(from, offset + c + row * cols);
+            }
+            blurRow(row0, row1);
+            blurRow(row1, row0);
+            blurRow(row0, row1);
+            blurRow(row1, row0);
+
+            // write into the transposed buffer
+            for (int c = 0; c < cols; c++)
+                write(to, offset + row + c * rows, scratch[row0 + c]);
+        }
+    }
+
+    /**
+     * Reflect index for out-of-bounds access.
+     *
+     * [REFERENCE: HorizontalTransposingLowPassFilter class]
+     * @param N row length
+     * @param n index
+     * @return reflected index
+     */
+    private int extension(int N, int n) {
+        while (n < 0 || n >= N) {
+            if (n < 0) {
+                n = -1 - n;
+                /* Reflect over n = -1/2.    */
+            } else {
+                n = 2 * N - 1 - n;
+                /* Reflect over n = N - 1/2. */
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Blurs a scratch row once. Only the first and last r + 2 samples may access cells outside of the row, which are
+     * reflected at the borders. The interior samples use a loop without reflection.
+     *
+     * [REFERENCE: HorizontalTransposingLowPassFilter class]
+     * @param src offset of the input row in the scratch buffer
+     * @param dest offset of the output row in the scratch buffer
+     */
+    private void blurRow(int src, int dest){
+        int N = cols;
+        double sum = 0;
+        for (int n = -r; n <= r ; ++n){
+            sum += scratch[src + extension(N, n)];
+        }
+
+        sum = c1 * (scratch[src + extension(N, r + 1)]
+                + scratch[src + extension(N, -r - 1)])
+                + (c1 + c2) * sum;
+        scratch[dest] = (float) sum;
+
+        // samples in [interiorStart, interiorEnd) only access cells in the row
+        int interiorStart = Math.min(r + 2, N);
+        int interiorEnd = Math.max(interiorStart, N - r - 1);
+
+        sum = blurBorder(src, dest, sum, 1, interiorStart);
+        for (int n = interiorStart; n < interiorEnd; ++n) {
+            sum += c1 * (scratch[src + n + r + 1] - scratch[src + n - r - 2])
+                    + c2 * (scratch[src + n + r] - scratch[src + n - r - 1]);
+            scratch[dest + n] = (float) sum;
+        }
+        sum = blurBorder(src, dest, sum, interiorEnd, N);     // APARAPI not support discarding a double result
+    }
+
+    /**
+     * Blurs border samples of a scratch row with reflected access.
+     *
+     * @param src offset of the input row in the scratch buffer
+     * @param dest offset of the output row in the scratch buffer
+     * @param previousSum moving sum of the previous sample
+     * @param start first sample
+     * @param end end of samples (exclusive)
+     * @return moving sum of the last sample
+     */
+    private double blurBorder(int src, int dest, double previousSum, int start, int end){
+        int N = cols;
+        double sum = previousSum;
+        for (int n = start; n < end; ++n) {
+            sum += c1 * (scratch[src + extension(N, n + r + 1)]
+                    - scratch[src + extension(N, n - r - 2)])
+                    + c2 * (scratch[src + extension(N, n + r)]
+                    - scratch[src + extension(N, n - r - 1)]);
+            scratch[dest + n] = (float) sum;
+        }
+        return sum;
+    }
+
+    /**
+     * Copy a row of the from buffer to a scratch row and replace void values with the nearest valid neighbor in
+     * the row.
+     *
+     * [REFERENCE: HorizontalTransposingLowPassFilter class]
+     * @param src offset of the row in the from buffer
+     * @param dest offset of the row in the scratch buffer
+     */
+    private void copyAndReplaceVoids(int src, int dest){
+        int N = cols;
+        int first = 0;
+
+        // check from the first column (toward)
+        while (first < N && !isFinite(read(from, src + first)))
+            first++;
+
+        if (first == N){
+            for (int j = 0; j < N; j++)
+                scratch[dest + j] = 0;
+            return;
+        }
+
+        for (int j = 0; j < first; j++)
+            scratch[dest + j] = read(from, src + first);
+
+        // check from last column (backward)
+        int last = N - 1;
+        while (last > 0 && !isFinite(read(from, src + last)))
+            last--;
+
+        for (int j = N - 1; j > last; j--)
+            scratch[dest + j] = read(from, src + last);
+
+        // single sweep over the runs of void values between first and last, each run is bounded by valid values
+        int j = first;
+        while (j <= last){
+            float v = read(from, src + j);
+            if (isFinite(v)){
+                scratch[dest + j] = v;
+                j++;
+            } else{
+                j = replaceVoidRun(src, dest, j);
+            }
+        }
+    }
+
+    /**
+     * Replace a run of void values with the closer valid neighbor bounding the run (the previous one if both are
+     * equally close).
+     *
+     * [REFERENCE: HorizontalTransposingLowPassFilter class]
+     * @param src offset of the row in the from buffer
+     * @param dest offset of the row in the scratch buffer
+     * @param start first void value of the run, the previous value is valid
+     * @return index of the valid value following the run
+     */
+    private int replaceVoidRun(int src, int dest, int start){
+        int prev = start - 1;
+        int next = start + 1;
+        while (!isFinite(read(from, src + next)))
+            next++;
+
+        float prevValue = read(from, src + prev);
+        float nextValue = read(from, src + next);
+        for (int j = start; j < next; j++){
+            if (j - prev <= next - j){
+                scratch[dest + j] = prevValue;
+            } else{
+                scratch[dest + j] = nextValue;
+            }
+        }
+        return next;
+    }
+
+    private boolean isFinite(float f){
+        return Math.abs(f) <= FLOAT_MAX;
+    }
+
+}
@@ -0,0 +1,43 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import edu.monash.fit.aparapi_filter.Grid;
+
+/**
+ * An APARAPI operator whose operation is split into three steps: the upload of the buffers to the execution context,
+ * the execution of the kernel, and the download of the result. The steps of an operation can be executed by different
+ * threads, such that a pipeline can upload the next tile and download the previous tile while the kernel computes a
+ * tile, see {@link TiledOperator#setBufferSets(int)}.
+ */
+public interface StagedOperator extends AparapiOperator {
+
+    /**
+     * Acquire a kernel, bind it to the source grid and a new result grid, and upload both grids
+     * @param src the source grid
+     * @return the uploaded operation, to be executed and downloaded
+     */
+    Execution upload(Grid src);
+
+    /**
+     * An uploaded operation
+     */
+    interface Execution {
+
+        /**
+         * Execute the kernel
+         * @return the runtime of the kernel in milliseconds
+         */
+        double execute();
+
+        /**
+         * Download the result and release the kernel to the pool
+         * @return the result grid
+         */
+        Grid download();
+
+        /**
+         * Release the kernel to the pool and the result grid without downloading the result, for example after a
+         * failure. Has no effect after the result has been downloaded.
+         */
+        void cancel();
+    }
+}
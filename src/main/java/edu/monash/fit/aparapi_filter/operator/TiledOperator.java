@@ -0,0 +1,619 @@
+package edu.monash.fit.aparapi_filter.operator;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Apply an APARAPI operator to a grid in tiles, such that a kernel only receives the values of one tile, and the size
+ * of the grid is not limited by the memory of the device. The tiles are strips of rows. Each tile is extended by a
+ * halo of {@link AparapiOperator#getRadius()} rows above and below, which is discarded after the operator has been
+ * applied, such that the stitched result is identical to the result of the operator applied to the whole grid. The
+ * tiles are processed one after the other, or concurrently by a pool of threads.
+ *
+ * The {@link LowPassOperator} blurs whole rows and columns with a moving sum and replaces void values with the nearest
+ * valid value of a row, thus a halo of limited size cannot reproduce its result. Its two passes are tiled separately
+ * instead: the first pass blurs strips of rows, the second pass blurs strips of rows of the transposed grid, that is
+ * strips of columns.
+ *
+ * Grids that do not fit into the heap can be filtered with {@link #operate(edu.monash.fit.eduard_object.eduard.grid.Grid,
+ * edu.monash.fit.eduard_object.eduard.grid.Grid)}, for example grids with values in memory-mapped files. Only the
+ * tiles are held in arrays.
+ *
+ * With more than one buffer set, see {@link #setBufferSets(int)}, the tiles are pipelined: while the kernel computes a
+ * tile, the next tile is read from the source grid and uploaded, and the result of the previous tile is downloaded
+ * and written to the result grid. The operators implementing {@link StagedOperator} are split into these steps, the
+ * other operators are applied to a tile in the compute step. If a step fails, the other steps of the pipeline are
+ * cancelled, the tiles in the pipeline are released, and the failure is rethrown.
+ */
+public class TiledOperator implements AparapiOperator {
+    private final Supplier<? extends AparapiOperator> factory;  // creates an operator for each tile
+    private final int tileRows;     // number of rows computed by a tile, without the halo
+    private final int threads;      // number of tiles processed concurrently
+    private int bufferSets = 1;     // number of tiles in the pipeline, 1 if the tiles are not pipelined
+    double timer;                   // sum of the kernel times of the tiles
+    double transferTimer;           // sum of the times for reading, uploading, downloading and writing the tiles
+    double overlapTimer;            // time of the transfers overlapping with computations
+
+    // the thread computing pipelined tiles checks for a failed storing thread at this interval
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Constructor
+     * @param factory creates the operator, an operator is created for each tile, such that tiles can be processed
+     *                concurrently
+     * @param tileRows number of rows computed by a tile, without the halo. The second pass of the low-pass filter
+     *                 computes this number of columns with each tile.
+     * @param threads number of tiles processed concurrently, 1 to process the tiles in the current thread
+     */
+    public TiledOperator(Supplier<? extends AparapiOperator> factory, int tileRows, int threads){
+        if (factory == null){
+            throw new NullPointerException("");
+        }
+        if (tileRows < 1 || threads < 1){
+            throw new IllegalArgumentException("tile rows and threads must be at least 1");
+        }
+        this.factory = factory;
+        this.tileRows = tileRows;
+        this.threads = threads;
+    }
+
+    /**
+     * Set the number of tiles in the pipeline. With one buffer set the tiles are processed one after the other, or
+     * concurrently by the pool of threads. With two buffer sets one tile is loaded or stored while another tile is
+     * computed, with three buffer sets a tile can be loaded and another tile stored while a third tile is computed.
+     * The pipeline is executed by a loading thread, a storing thread and the current thread, instead of the pool of
+     * threads.
+     * @param bufferSets number of tiles in the pipeline, 1 to 3
+     */
+    public void setBufferSets(int bufferSets){
+        if (bufferSets < 1 || bufferSets > 3){
+            throw new IllegalArgumentException("1 to 3 buffer sets");
+        }
+        this.bufferSets = bufferSets;
+    }
+
+    public int getBufferSets(){
+        return bufferSets;
+    }
+
+    @Override
+    public Grid operate(Grid src) {
+        if (src == null){
+            throw new NullPointerException("");
+        }
+        Grid dest = Grid.shallowCopy(src);
+        // the Eduard grids share the arrays of the APARAPI grids
+        operate(src.toEduardGrid(null), dest.toEduardGrid(null), src.getNorth());
+        return dest;
+    }
+
+    /**
+     * Apply the operator to a grid that can store its values in any kind of buffer, for example in a memory-mapped
+     * file, see {@link BufferArena#setMapped(long, java.io.File)}.
+     * @param src the source grid
+     * @param dest the grid receiving the result, with the size of the source grid
+     */
+    public void operate(edu.monash.fit.eduard_object.eduard.grid.Grid src,
+                        edu.monash.fit.eduard_object.eduard.grid.Grid dest){
+        if (src == null || dest == null){
+            throw new NullPointerException("");
+        }
+        if (src.getCols() != dest.getCols() || src.getRows() != dest.getRows()){
+            throw new IllegalArgumentException("grids of different size");
+        }
+        operate(src, dest, src.getNorth());
+    }
+
+    private void operate(edu.monash.fit.eduard_object.eduard.grid.Grid src,
+                         edu.monash.fit.eduard_object.eduard.grid.Grid dest, double north){
+        // the operator of the first tile, also queried for the kind of tiling
+        AparapiOperator operator = factory.get();
+        synchronized (this){
+            timer = 0;
+            transferTimer = 0;
+            overlapTimer = 0;
+        }
+        StageMetrics stage = RunMetrics.begin("Tiled", src.getCols(), src.getRows());
+        if (operator instanceof LowPassOperator){
+            operateLowPass(src, dest, north, ((LowPassOperator) operator).sigmaValue);
+        } else {
+            if (operator.getRadius() < 0){
+                throw new UnsupportedOperationException("the operator needs all rows of the grid");
+            }
+            operateStrips(src, dest, north, operator);
+        }
+        stage.addKernelMillis(getTimer());
+        stage.addTransferMillis(getTransferMillis());
+        stage.addOverlapMillis(getOverlapMillis());
+        stage.end();
+    }
+
+    /**
+     * Apply the operator to strips of rows with a halo
+     * @param operator the operator of the first tile, the other tiles receive an operator of the factory
+     */
+    private void operateStrips(edu.monash.fit.eduard_object.eduard.grid.Grid src,
+                               edu.monash.fit.eduard_object.eduard.grid.Grid dest, double north,
+                               AparapiOperator operator){
+        final int cols = src.getCols();
+        final int rows = src.getRows();
+        final int radius = operator.getRadius();
+        List<Tile> tiles = new ArrayList<>();
+        for (int firstRow = 0; firstRow < rows; firstRow += tileRows){
+            final int first = firstRow;
+            final int last = Math.min(rows, firstRow + tileRows);
+            final int haloFirst = Math.max(0, first - radius);
+            final int haloRows = Math.min(rows, last + radius) - haloFirst;
+            tiles.add(new Tile(tiles.isEmpty() ? operator : factory.get()) {
+                @Override
+                Grid gather() {
+                    Grid tile = createTile(cols, haloRows, src.getCellSize(),
+                            north - haloFirst * src.getCellSize(), src.getEast(), src.getWest());
+                    readBlock(src, 0, haloFirst, cols, haloRows, tile.getBuffer());
+                    return tile;
+                }
+
+                @Override
+                void scatter(Grid tile, Grid result) {
+                    // discard the halo
+                    writeBlock(dest, 0, first, cols, last - first, result.getBuffer(), (first - haloFirst) * cols);
+                }
+            });
+        }
+        run(tiles);
+    }
+
+    /**
+     * Apply the two passes of the low-pass filter to strips of rows and strips of columns
+     */
+    private void operateLowPass(edu.monash.fit.eduard_object.eduard.grid.Grid src,
+                                edu.monash.fit.eduard_object.eduard.grid.Grid dest, double north, float sigma){
+        final int cols = src.getCols();
+        final int rows = src.getRows();
+        final double cellSize = src.getCellSize();
+
+        // the result of the first pass, stored like other grids, for example in a memory-mapped file
+        edu.monash.fit.eduard_object.eduard.grid.Grid transposed = new edu.monash.fit.eduard_object.eduard.grid.Grid(
+                cellSize, 0, 0, null, BufferArena.createGridBuffer(rows, cols));
+
+        // first pass: each strip of rows is blurred and transposed to a strip of columns of the transposed grid
+        List<Tile> tiles = new ArrayList<>();
+        for (int firstRow = 0; firstRow < rows; firstRow += tileRows){
+            final int first = firstRow;
+            final int nRows = Math.min(rows, firstRow + tileRows) - firstRow;
+            tiles.add(new Tile(new HorizontalTransposingLowPassFilter(true, sigma)) {
+                @Override
+                Grid gather() {
+                    Grid tile = createTile(cols, nRows, cellSize, north - first * cellSize,
+                            src.getEast(), src.getWest());
+                    readBlock(src, 0, first, cols, nRows, tile.getBuffer());
+                    return tile;
+                }
+
+                @Override
+                void scatter(Grid tile, Grid result) {
+                    writeBlock(transposed, first, 0, nRows, cols, result.getBuffer(), 0);
+                }
+            });
+        }
+        run(tiles);
+
+        // second pass: each strip of rows of the transposed grid is blurred and transposed to a strip of columns
+        tiles.clear();
+        for (int firstCol = 0; firstCol < cols; firstCol += tileRows){
+            final int first = firstCol;
+            final int nCols = Math.min(cols, firstCol + tileRows) - firstCol;
+            tiles.add(new Tile(new HorizontalTransposingLowPassFilter(false, sigma)) {
+                @Override
+                Grid gather() {
+                    Grid tile = createTile(rows, nCols, cellSize, north, src.getEast(), src.getWest());
+                    readBlock(transposed, 0, first, rows, nCols, tile.getBuffer());
+                    return tile;
+                }
+
+                @Override
+                void scatter(Grid tile, Grid result) {
+                    // void the cells which are void in the source grid, as LowPassOperator.CopyVoidKernel, the
+                    // buffer of the tile is not needed anymore
+                    float[] values = result.getBuffer();
+                    float[] buffer = tile.getBuffer();
+                    readBlock(src, first, 0, nCols, rows, buffer);
+                    for (int i = 0; i < buffer.length; i++){
+                        if (!(Math.abs(buffer[i]) <= Float.MAX_VALUE)){
+                            values[i] = Float.NaN;
+                        }
+                    }
+                    writeBlock(dest, first, 0, nCols, rows, values, 0);
+                }
+            });
+        }
+        try {
+            run(tiles);
+        } finally {
+            transposed.release();
+        }
+    }
+
+    private static Grid createTile(int cols, int rows, double cellSize, double north, double east, double west){
+        return new Grid(cols, rows, cellSize, north, north - (rows - 1) * cellSize, east, west);
+    }
+
+    /**
+     * Process the tiles in the current thread, with a pool of threads, or with a pipeline
+     */
+    private void run(List<Tile> tiles){
+        try {
+            if (bufferSets > 1){
+                runPipeline(tiles);
+            } else if (threads == 1){
+                for (Tile tile : tiles){
+                    tile.run();
+                }
+            } else {
+                runPool(tiles);
+            }
+        } finally {
+            addTransfers(tiles);
+        }
+    }
+
+    private void runPool(List<Tile> tiles){
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Tile tile : tiles){
+                futures.add(executor.submit(tile::run));
+            }
+            for (Future<?> future : futures){
+                future.get();
+            }
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex){
+            throw rethrow(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Load, compute and store the tiles in a pipeline. A loading thread loads the tiles as long as a buffer set is
+     * free, the current thread computes the loaded tiles, and a storing thread stores the computed tiles and frees
+     * their buffer sets. If a step fails, the loading thread is interrupted, the tiles in the pipeline are released
+     * and the failure of the step is rethrown.
+     */
+    private void runPipeline(List<Tile> tiles){
+        final Semaphore freeSets = new Semaphore(bufferSets);
+        final BlockingQueue<Tile> loaded = new LinkedBlockingQueue<>();
+        final BlockingQueue<Tile> computed = new LinkedBlockingQueue<>();
+        final Tile end = new Tile(null) {   // marks the end of a queue
+            @Override
+            Grid gather() {
+                return null;
+            }
+
+            @Override
+            void scatter(Grid tile, Grid result) {
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        boolean completed = false;
+        try {
+            Future<?> loader = executor.submit(() -> {
+                try {
+                    for (Tile tile : tiles){
+                        freeSets.acquire();
+                        tile.load();
+                        loaded.put(tile);
+                    }
+                } finally {
+                    loaded.put(end);
+                }
+                return null;
+            });
+            Future<?> storer = executor.submit(() -> {
+                for (Tile tile = computed.take(); tile != end; tile = computed.take()){
+                    try {
+                        tile.store();
+                    } finally {
+                        freeSets.release();
+                    }
+                }
+                return null;
+            });
+            try {
+                while (true){
+                    if (storer.isDone()){
+                        // the storing thread failed and does not free buffer sets anymore, the loading thread
+                        // would wait forever
+                        storer.get();
+                        throw new IllegalStateException("storing thread ended");
+                    }
+                    Tile tile = loaded.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (tile == end){
+                        break;
+                    }
+                    if (tile != null){
+                        tile.compute();
+                        computed.put(tile);
+                    }
+                }
+            } finally {
+                computed.put(end);
+            }
+            storer.get();
+            loader.get();
+            completed = true;
+            addOverlap(tiles);
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex){
+            throw rethrow(ex);
+        } finally {
+            // interrupt the loading thread waiting for a free buffer set
+            executor.shutdownNow();
+            if (!completed && awaitTermination(executor)){
+                // release the tiles in the pipeline, and the kernels of their uploaded operations
+                for (Tile tile : tiles){
+                    tile.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until the threads of the pipeline have ended
+     * @return false if the current thread was interrupted before
+     */
+    private static boolean awaitTermination(ExecutorService executor){
+        try {
+            while (!executor.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)){
+                // a step of a tile is still executing
+            }
+            return true;
+        } catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * get the failure of a step of a tile
+     * @param ex the exception of the thread executing the step
+     * @return the failure, if it is a RuntimeException, or the failure wrapped in an IllegalStateException
+     */
+    private static RuntimeException rethrow(ExecutionException ex){
+        Throwable cause = ex.getCause();
+        if (cause instanceof Error){
+            throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+    }
+
+    /**
+     * Add the time of the transfers of the tiles
+     */
+    private synchronized void addTransfers(List<Tile> tiles){
+        for (Tile tile : tiles){
+            transferTimer += (tile.loadEnd - tile.loadStart + tile.storeEnd - tile.storeStart) / 1e6;
+        }
+    }
+
+    /**
+     * Add the time of the transfers of pipelined tiles that overlapped with computations: the time during which a
+     * tile was loaded or stored while another tile was computed
+     */
+    private synchronized void addOverlap(List<Tile> tiles){
+        // the intervals of the loading and storing steps, merged such that they do not overlap each other
+        long[][] transfers = new long[2 * tiles.size()][];
+        for (int i = 0; i < tiles.size(); i++){
+            Tile tile = tiles.get(i);
+            transfers[2 * i] = new long[]{tile.loadStart, tile.loadEnd};
+            transfers[2 * i + 1] = new long[]{tile.storeStart, tile.storeEnd};
+        }
+        Arrays.sort(transfers, (a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] transfer : transfers){
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && transfer[0] <= last[1]){
+                last[1] = Math.max(last[1], transfer[1]);
+            } else {
+                merged.add(transfer.clone());
+            }
+        }
+
+        // the computations are executed one after the other by the current thread
+        long overlap = 0;
+        for (Tile tile : tiles){
+            for (long[] transfer : merged){
+                overlap += Math.max(0, Math.min(tile.computeEnd, transfer[1])
+                        - Math.max(tile.computeStart, transfer[0]));
+            }
+        }
+        overlapTimer += overlap / 1e6;
+    }
+
+    /**
+     * Copy a block of cells of a grid to an array, row by row
+     */
+    private static void readBlock(edu.monash.fit.eduard_object.eduard.grid.Grid grid, int firstCol, int firstRow,
+                                  int nCols, int nRows, float[] values){
+        float[] array = getArray(grid);
+        for (int row = 0; row < nRows; row++){
+            if (array != null){
+                System.arraycopy(array, firstCol + (firstRow + row) * grid.getCols(), values, row * nCols, nCols);
+            } else {
+                for (int col = 0; col < nCols; col++){
+                    values[row * nCols + col] = grid.getValue(firstCol + col, firstRow + row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy an array to a block of cells of a grid, row by row
+     */
+    private static void writeBlock(edu.monash.fit.eduard_object.eduard.grid.Grid grid, int firstCol, int firstRow,
+                                   int nCols, int nRows, float[] values, int offset){
+        float[] array = getArray(grid);
+        for (int row = 0; row < nRows; row++){
+            if (array != null){
+                System.arraycopy(values, offset + row * nCols, array, firstCol + (firstRow + row) * grid.getCols(),
+                        nCols);
+            } else {
+                for (int col = 0; col < nCols; col++){
+                    grid.setValue(values[offset + row * nCols + col], firstCol + col, firstRow + row);
+                }
+            }
+        }
+    }
+
+    /**
+     * get the array of a grid
+     * @return the array, or null if the grid does not store its values in an array
+     */
+    private static float[] getArray(edu.monash.fit.eduard_object.eduard.grid.Grid grid){
+        try {
+            return grid.getBufferArray();
+        } catch (UnsupportedOperationException ex){
+            return null;
+        }
+    }
+
+    private synchronized void addTimer(double millis){
+        timer += millis;
+    }
+
+    @Override
+    public synchronized double getTimer(){
+        return timer;
+    }
+
+    /**
+     * get the time for reading, uploading, downloading and writing the tiles of the last operation
+     * @return sum of the times of the tiles in milliseconds
+     */
+    public synchronized double getTransferMillis(){
+        return transferTimer;
+    }
+
+    /**
+     * get the time of the transfers of the last operation that overlapped with the computation of other tiles
+     * @return time in milliseconds, 0 if the tiles were processed one after the other
+     */
+    public synchronized double getOverlapMillis(){
+        return overlapTimer;
+    }
+
+    /**
+     * A tile processed in three steps: loading reads the tile from a grid and uploads it, computing executes the
+     * kernel, and storing downloads the result and writes it to a grid. The steps of a tile are executed one after
+     * the other, but can be executed by different threads.
+     */
+    private abstract class Tile {
+        private final AparapiOperator operator;     // the operator applied to this tile
+        private Grid tile;                          // the values of the tile
+        private Grid result;                        // the result of the operator
+        private StagedOperator.Execution execution; // the uploaded operation of a staged operator
+        long loadStart, loadEnd;                    // start and end of the steps in nanoseconds
+        long computeStart, computeEnd;
+        long storeStart, storeEnd;
+
+        Tile(AparapiOperator operator){
+            this.operator = operator;
+        }
+
+        /**
+         * Read the values of the tile
+         * @return the tile
+         */
+        abstract Grid gather();
+
+        /**
+         * Write the result of the tile
+         * @param tile the tile
+         * @param result the result of the operator
+         */
+        abstract void scatter(Grid tile, Grid result);
+
+        void load(){
+            loadStart = System.nanoTime();
+            tile = gather();
+            if (operator instanceof StagedOperator){
+                execution = ((StagedOperator) operator).upload(tile);
+            }
+            loadEnd = System.nanoTime();
+        }
+
+        void compute(){
+            computeStart = System.nanoTime();
+            if (execution != null){
+                execution.execute();
+            } else {
+                result = operator.operate(tile);
+            }
+            addTimer(operator.getTimer());
+            computeEnd = System.nanoTime();
+        }
+
+        void store(){
+            storeStart = System.nanoTime();
+            try {
+                if (execution != null){
+                    result = execution.download();
+                    execution = null;
+                }
+                scatter(tile, result);
+            } finally {
+                release();
+            }
+            storeEnd = System.nanoTime();
+        }
+
+        void run(){
+            try {
+                load();
+                compute();
+                store();
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Release the values and the result of the tile, and return the kernel of an uploaded operation that has not
+         * been downloaded. Has no effect after the tile has been stored.
+         */
+        void release(){
+            if (execution != null){
+                execution.cancel();
+                execution = null;
+            }
+            if (result != null){
+                result.release();
+                result = null;
+            }
+            if (tile != null){
+                tile.release();
+                tile = null;
+            }
+        }
+    }
+}
@@ -203,11 +203,10 @@ public class Main {
         Grid lowPassGrid = new LowPassOperator(ridgesRemovalBlurSigma, null).operate(grid);
         Grid planCurvature = new PlanCurvatureZevenbergenThorneOperator(null).operate(lowPassGrid);
 
-        // blur curvature grid to remove artefacts along mountain ridges
-        new LowPassOperator(curvatureBlurSigma, null).operate(planCurvature, planCurvature);
-
-        // scale curvature to 0..1
-        new ScaleToRangeOperator(0, 1, null).operate(planCurvature, planCurvature);
+        // blur curvature grid to remove artefacts along mountain ridges and
+        // scale curvature to 0..1 (fused with the last sweep of the low-pass filter)
+        new LowPassOperator(curvatureBlurSigma, null,
+                new ScaleToRangeOperator(0, 1, null)).operate(planCurvature, planCurvature);
 
         // smooth original grid; reuse lowPassGrid to avoid allocation of another grid
         new LowPassOperator(lodBlurSigma, null).operate(grid, lowPassGrid);
@@ -217,6 +216,9 @@ public class Main {
                 ridgesExaggeration, null);
         Grid filteredGrid = wsOp.operate(lowPassGrid);
 
+        // return intermediate grids to the buffer arena
+        lowPassGrid.release();
+        planCurvature.release();
         return filteredGrid;
     }
 
@@ -245,47 +247,42 @@ public class Main {
         // cell. Results with rise/run are almost identical to results with degrees.
         Grid slopeGrid = new GradientOperator(null).operate(grid);
 
-        // blur  grid with rise/run values
-        slopeGrid = new LowPassOperator(sigmaBlur, null).operate(slopeGrid);
-
-        // The combination of a low-pass filter (above) followed by clamping to 
-        // slopeThreshold (below) results in mountaineous areas with values equal to 
+        // The combination of a low-pass filter followed by clamping to 
+        // slopeThreshold results in mountaineous areas with values equal to 
         // slopeThreshold.
         // Compute gain slope threshold in degrees. Threshold is between 0 and slopeThresholdDeg.
         float gainSlopeThresholdDeg = slopeThresholdDeg * Math.min(0.995f, relativeGain);
         // convert to rise/run
         float gainSlopeThreshold = (float) Math.tan(Math.toRadians(gainSlopeThresholdDeg));
 
-        // clamp slope values to range between gainSlopeThreshold and slopeThreshold
-        new ClampToRangeOperator(gainSlopeThreshold, slopeThreshold, null).operate(slopeGrid, slopeGrid);
-
-        // apply another low-pass filter to break sharp edges in the mask that
-        // occur around the lower gain slope threshold and the upper slope threshold
-        slopeGrid = new LowPassOperator(sigmaSmooth, null).operate(slopeGrid);
+        // blur grid with rise/run values, then clamp slope values to range
+        // between gainSlopeThreshold and slopeThreshold (fused with the last
+        // sweep of the low-pass filter)
+        Grid blurredSlopeGrid = new LowPassOperator(sigmaBlur, null,
+                new ClampToRangeOperator(gainSlopeThreshold, slopeThreshold, null)).operate(slopeGrid);
+        slopeGrid.release();
 
         // Blurred slope values are now between gainSlopeThreshold and slopeThreshold.
         // Scale all slope values from [gainSlopeThreshold..slopeThreshold] to [0..1].
         // Inverted mapping of slopeThreshold to 0 and gainSlopeThreshold to 1.
         float scale = 1f / (slopeThreshold - gainSlopeThreshold);
-        Grid maskBuffer = new ThreadedGridOperator(null) {
-            @Override
-            protected void operateValue(Grid src, Grid dst, int col, int row) {
-                float v = src.getValue(col, row);
-                if (Grid.isValid(v)) {
-                    v = 1 - (v - gainSlopeThreshold) * scale;
-                    // clamp to valid range. Overshoots can happen with float values!
-                    v = Math.max(0, Math.min(1, v));
-                } else {
-                    v = -1; // negative value indicates void cell
-                }
-                dst.setValue(v, col, row);
+        PointOperator slopeToMask = (v, col, row) -> {
+            if (Grid.isValid(v)) {
+                v = 1 - (v - gainSlopeThreshold) * scale;
+                // clamp to valid range. Overshoots can happen with float values!
+                v = Math.max(0, Math.min(1, v));
+            } else {
+                v = -1; // negative value indicates void cell
             }
+            return v;
+        };
 
-            @Override
-            public String getName() {
-                return "Slope to normalized mask";
-            }
-        }.operate(slopeGrid);
+        // apply another low-pass filter to break sharp edges in the mask that
+        // occur around the lower gain slope threshold and the upper slope
+        // threshold, then convert slope to the normalized mask (fused with the
+        // last sweep of the low-pass filter)
+        Grid maskBuffer = new LowPassOperator(sigmaSmooth, null, slopeToMask).operate(blurredSlopeGrid);
+        blurredSlopeGrid.release();
         return maskBuffer;
     }
 
@@ -0,0 +1,476 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A process-wide arena of grid buffers. Pipelines of grid operators allocate
+ * many buffers of identical size, which are only needed for a short time.
+ * Instead of allocating a new buffer for each operator and leaving released
+ * buffers to the garbage collector, buffers are acquired from the arena and
+ * released to the arena when they are not needed anymore. A released buffer is
+ * reused by the next acquisition of the same size.
+ * <p>
+ * Buffers are pooled in size classes of identical length, as grids require
+ * arrays with exactly cols * rows values. A transposed grid has the same size
+ * class as the original grid. Buffers can be float arrays on the Java heap, or
+ * direct byte buffers outside of the Java heap, see {@link #setOffHeap(boolean)}
+ * and {@link OffHeapFloatBuffer}. Quantized buffers use arrays of shorts, see
+ * {@link ShortBuffer} and {@link SignedNormalizedBuffer}. Very large grids are
+ * stored in memory-mapped files, see {@link #setMapped(long, File)} and
+ * {@link MappedFloatBuffer}.
+ * <p>
+ * Acquired buffers are always filled with 0. A buffer must not be used after
+ * it has been released. Buffers that are never released are reclaimed by the
+ * garbage collector as usual. The total size of released buffers kept by the
+ * arena is limited, see {@link #setMaxIdleBytes(long)}. Acquisitions are
+ * added to the open stages of the {@link RunMetrics} bound to the current
+ * thread.
+ */
+public final class BufferArena {
+
+    /**
+     * released arrays, keyed by length
+     */
+    private static final Map<Integer, ArrayDeque<float[]>> idleArrays = new HashMap<>();
+
+    /**
+     * released arrays of quantized values, keyed by length
+     */
+    private static final Map<Integer, ArrayDeque<short[]>> idleShortArrays = new HashMap<>();
+
+    /**
+     * released direct buffers, keyed by capacity in bytes
+     */
+    private static final Map<Integer, ArrayDeque<ByteBuffer>> idleDirectBuffers = new HashMap<>();
+
+    /**
+     * all released buffers kept by the arena, for detecting a buffer released
+     * twice. Compared by identity, as direct buffers with equal content are
+     * equal.
+     */
+    private static final Set<Object> idleBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * maximum total size of released buffers kept by the arena
+     */
+    private static long maxIdleBytes = Runtime.getRuntime().maxMemory() / 4;
+
+    /**
+     * total size of released buffers kept by the arena
+     */
+    private static long idleBytes = 0;
+
+    /**
+     * if true, new grids store values outside of the Java heap
+     */
+    private static volatile boolean offHeap = false;
+
+    /**
+     * grids with at least this number of cells store values in a
+     * memory-mapped file
+     */
+    private static volatile long mappedThreshold = Integer.MAX_VALUE;
+
+    /**
+     * directory of the files of memory-mapped grids, null for the default
+     * temporary directory
+     */
+    private static volatile File mappedDirectory = null;
+
+    private static long allocatedCount = 0;   // number of buffers allocated by the arena
+    private static long reusedCount = 0;      // number of acquisitions served by a released buffer
+    private static long releasedCount = 0;    // number of released buffers
+    private static long discardedCount = 0;   // number of released buffers exceeding maxIdleBytes
+    private static long allocatedBytes = 0;   // total size of allocated buffers
+    private static long reusedBytes = 0;      // total size of reused buffers
+
+    /**
+     * Static class, no instance
+     */
+    private BufferArena() {
+    }
+
+    /**
+     * Acquire an array of floats filled with 0.
+     *
+     * @param length length of the array
+     * @return the array
+     */
+    public static float[] acquire(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length");
+        }
+        float[] array;
+        synchronized (BufferArena.class) {
+            array = poll(idleArrays, length);
+            if (array == null) {
+                count(false, (long) length * Float.BYTES);
+            } else {
+                idleBytes -= (long) length * Float.BYTES;
+                count(true, (long) length * Float.BYTES);
+            }
+        }
+        RunMetrics.countAcquisition((long) length * Float.BYTES, array != null);
+        if (array == null) {
+            return new float[length];
+        }
+        Arrays.fill(array, 0f);
+        return array;
+    }
+
+    /**
+     * Release an array, such that it can be reused by a later acquisition of
+     * the same length. The array must not be used after it has been released.
+     *
+     * @param array the array to release
+     */
+    public static void release(float[] array) {
+        if (array == null) {
+            throw new NullPointerException("");
+        }
+        synchronized (BufferArena.class) {
+            offer(idleArrays, array.length, array, (long) array.length * Float.BYTES);
+        }
+    }
+
+    /**
+     * Acquire an array of shorts filled with 0, for example for quantized
+     * values, see {@link ShortBuffer}.
+     *
+     * @param length length of the array
+     * @return the array
+     */
+    public static short[] acquireShorts(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length");
+        }
+        short[] array;
+        synchronized (BufferArena.class) {
+            array = poll(idleShortArrays, length);
+            if (array == null) {
+                count(false, (long) length * Short.BYTES);
+            } else {
+                idleBytes -= (long) length * Short.BYTES;
+                count(true, (long) length * Short.BYTES);
+            }
+        }
+        RunMetrics.countAcquisition((long) length * Short.BYTES, array != null);
+        if (array == null) {
+            return new short[length];
+        }
+        Arrays.fill(array, (short) 0);
+        return array;
+    }
+
+    /**
+     * Release an array of shorts, such that it can be reused by a later
+     * acquisition of the same length. The array must not be used after it has
+     * been released.
+     *
+     * @param array the array to release
+     */
+    public static void release(short[] array) {
+        if (array == null) {
+            throw new NullPointerException("");
+        }
+        synchronized (BufferArena.class) {
+            offer(idleShortArrays, array.length, array, (long) array.length * Short.BYTES);
+        }
+    }
+
+    /**
+     * Acquire a direct byte buffer in native byte order filled with 0. The
+     * memory of a direct buffer is outside of the Java heap.
+     *
+     * @param nbrFloats number of float values the buffer can store
+     * @return the buffer
+     */
+    public static ByteBuffer acquireDirect(int nbrFloats) {
+        if (nbrFloats < 0 || nbrFloats > Integer.MAX_VALUE / Float.BYTES) {
+            throw new IllegalArgumentException("invalid number of values: " + nbrFloats);
+        }
+        final int capacity = nbrFloats * Float.BYTES;
+        ByteBuffer buffer;
+        synchronized (BufferArena.class) {
+            buffer = poll(idleDirectBuffers, capacity);
+            if (buffer == null) {
+                count(false, capacity);
+            } else {
+                idleBytes -= capacity;
+                count(true, capacity);
+            }
+        }
+        RunMetrics.countAcquisition(capacity, buffer != null);
+        if (buffer == null) {
+            // direct buffers are initialized with 0
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        int i = 0;
+        for (; i + Long.BYTES <= capacity; i += Long.BYTES) {
+            buffer.putLong(i, 0L);
+        }
+        for (; i < capacity; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        return buffer;
+    }
+
+    /**
+     * Release a direct byte buffer, such that it can be reused by a later
+     * acquisition of the same size. The buffer must not be used after it has
+     * been released.
+     *
+     * @param buffer the buffer to release
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("");
+        }
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("not a direct buffer");
+        }
+        synchronized (BufferArena.class) {
+            offer(idleDirectBuffers, buffer.capacity(), buffer, buffer.capacity());
+        }
+    }
+
+    /**
+     * Remove a released buffer from the arena.
+     *
+     * @param idle released buffers
+     * @param size size class
+     * @return the buffer or null
+     */
+    private static <T> T poll(Map<Integer, ArrayDeque<T>> idle, int size) {
+        ArrayDeque<T> buffers = idle.get(size);
+        T buffer = buffers == null ? null : buffers.poll();
+        if (buffer != null) {
+            idleBuffers.remove(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Add a released buffer to the arena if the maximum size of released
+     * buffers is not exceeded.
+     *
+     * @param idle released buffers
+     * @param size size class
+     * @param buffer the released buffer
+     * @param bytes size of the buffer in bytes
+     */
+    private static <T> void offer(Map<Integer, ArrayDeque<T>> idle, int size, T buffer, long bytes) {
+        if (idleBuffers.contains(buffer)) {
+            throw new IllegalStateException("buffer released twice");
+        }
+        releasedCount++;
+        if (idleBytes + bytes > maxIdleBytes) {
+            discardedCount++;
+            return;
+        }
+        idle.computeIfAbsent(size, k -> new ArrayDeque<>()).push(buffer);
+        idleBuffers.add(buffer);
+        idleBytes += bytes;
+    }
+
+    /**
+     * Update the counters for an acquisition.
+     *
+     * @param reused true if a released buffer is reused
+     * @param bytes size of the buffer
+     */
+    private static void count(boolean reused, long bytes) {
+        if (reused) {
+            reusedCount++;
+            reusedBytes += bytes;
+        } else {
+            allocatedCount++;
+            allocatedBytes += bytes;
+        }
+    }
+
+    /**
+     * Set whether new grids store their values outside of the Java heap. Grids
+     * with values outside of the heap cannot return an array with their values,
+     * see {@link Grid#getBufferArray()}.
+     *
+     * @param offHeap if true, new grids use a {@link OffHeapFloatBuffer}
+     */
+    public static void setOffHeap(boolean offHeap) {
+        BufferArena.offHeap = offHeap;
+    }
+
+    /**
+     * Returns whether new grids store their values outside of the Java heap.
+     *
+     * @return true if new grids use a {@link OffHeapFloatBuffer}
+     */
+    public static boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Set the minimum number of cells of grids that store their values in a
+     * temporary memory-mapped file. Grids with more than 2^31 - 1 cells always
+     * use a memory-mapped file. Memory-mapped buffers are not pooled by the
+     * arena, their file is deleted when they are released.
+     *
+     * @param cells minimum number of cells
+     * @param directory directory of the temporary files, or null for the
+     * default temporary directory
+     */
+    public static void setMapped(long cells, File directory) {
+        if (cells < 0) {
+            throw new IllegalArgumentException("negative number of cells");
+        }
+        mappedThreshold = Math.min(cells, Integer.MAX_VALUE);
+        mappedDirectory = directory;
+    }
+
+    /**
+     * Returns the minimum number of cells of grids that store their values in
+     * a memory-mapped file.
+     *
+     * @return minimum number of cells
+     */
+    public static long getMappedThreshold() {
+        return mappedThreshold;
+    }
+
+    /**
+     * Creates a new buffer for a grid, which stores its values on the Java heap,
+     * outside of the heap, see {@link #setOffHeap(boolean)}, or in a
+     * memory-mapped file, see {@link #setMapped(long, File)}.
+     *
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @return the new buffer
+     */
+    public static GridBuffer createGridBuffer(int cols, int rows) {
+        if ((long) cols * rows >= mappedThreshold) {
+            return new MappedFloatBuffer(cols, rows, mappedDirectory);
+        }
+        return offHeap ? new OffHeapFloatBuffer(cols, rows) : new FloatBuffer(cols, rows);
+    }
+
+    /**
+     * Set the maximum total size of released buffers kept by the arena. Released
+     * buffers exceeding this size are left to the garbage collector.
+     *
+     * @param maxIdleBytes maximum size in bytes
+     */
+    public static synchronized void setMaxIdleBytes(long maxIdleBytes) {
+        if (maxIdleBytes < 0) {
+            throw new IllegalArgumentException("negative size");
+        }
+        BufferArena.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * Returns the maximum total size of released buffers kept by the arena.
+     *
+     * @return maximum size in bytes
+     */
+    public static synchronized long getMaxIdleBytes() {
+        return maxIdleBytes;
+    }
+
+    /**
+     * Remove all released buffers from the arena, such that they can be
+     * reclaimed by the garbage collector.
+     */
+    public static synchronized void clear() {
+        idleArrays.clear();
+        idleShortArrays.clear();
+        idleDirectBuffers.clear();
+        idleBuffers.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * get the number of buffers allocated by the arena
+     *
+     * @return number of allocated buffers
+     */
+    public static synchronized long getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    /**
+     * get the number of acquisitions served by a released buffer
+     *
+     * @return number of reused buffers
+     */
+    public static synchronized long getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * get the number of released buffers, including discarded buffers
+     *
+     * @return number of released buffers
+     */
+    public static synchronized long getReleasedCount() {
+        return releasedCount;
+    }
+
+    /**
+     * get the number of released buffers that were not kept by the arena
+     * because the maximum size of released buffers was exceeded
+     *
+     * @return number of discarded buffers
+     */
+    public static synchronized long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * get the total size of buffers allocated by the arena
+     *
+     * @return size in bytes
+     */
+    public static synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * get the total size of acquisitions served by a released buffer
+     *
+     * @return size in bytes
+     */
+    public static synchronized long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    /**
+     * get the total size of released buffers kept by the arena
+     *
+     * @return size in bytes
+     */
+    public static synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    /**
+     * Returns a summary of the counters.
+     *
+     * @return description of the counters
+     */
+    public static synchronized String getStatistics() {
+        return "Buffer arena: allocated " + allocatedCount + " ("
+                + allocatedBytes / (1024 * 1024) + " MB), reused " + reusedCount
+                + " (" + reusedBytes / (1024 * 1024) + " MB), released " + releasedCount
+                + ", discarded " + discardedCount + ", idle "
+                + idleBytes / (1024 * 1024) + " MB";
+    }
+}
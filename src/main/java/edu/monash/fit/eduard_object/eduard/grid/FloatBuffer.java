@@ -8,7 +8,16 @@ package edu.monash.fit.eduard_object.eduard.grid;
  */
 public final class FloatBuffer implements GridBuffer {
 
-    private final float[] buffer;
+    /**
+     * grid values, null after release
+     */
+    private float[] buffer;
+
+    /**
+     * true if the values were acquired from the {@link BufferArena} and are
+     * released to the arena, false for a wrapped array
+     */
+    private final boolean pooled;
 
     private final int cols, rows;
 
@@ -22,7 +31,31 @@ public final class FloatBuffer implements GridBuffer {
         if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM) {
             throw new IllegalArgumentException();
         }
-        buffer = new float[cols * rows];
+        buffer = BufferArena.acquire(Math.multiplyExact(cols, rows));
+        pooled = true;
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * Constructor for a buffer storing its values in an existing array. The
+     * array is not copied. The array is owned by the caller, and is not
+     * released to the {@link BufferArena} with this buffer.
+     *
+     * @param buffer the values, with at least cols * rows elements
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     */
+    public FloatBuffer(float[] buffer, int cols, int rows) {
+        if (buffer == null) {
+            throw new NullPointerException("");
+        }
+        if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM
+                || buffer.length < (long) cols * rows) {
+            throw new IllegalArgumentException();
+        }
+        this.buffer = buffer;
+        pooled = false;
         this.cols = cols;
         this.rows = rows;
     }
@@ -33,8 +66,9 @@ public final class FloatBuffer implements GridBuffer {
      * @param b A new instance with all grid values copied.
      */
     public FloatBuffer(FloatBuffer b) {
-        // arrays are best copied by clone: J. Bloch, Effective Java, 3rd ed. p. 65.
-        buffer = b.buffer.clone();
+        buffer = BufferArena.acquire(b.buffer.length);
+        System.arraycopy(b.buffer, 0, buffer, 0, buffer.length);
+        pooled = true;
         cols = b.cols;
         rows = b.rows;
     }
@@ -84,6 +118,16 @@ public final class FloatBuffer implements GridBuffer {
         set(Float.NaN, col, row);
     }
 
+    @Override
+    public void release() {
+        if (buffer != null) {
+            if (pooled) {
+                BufferArena.release(buffer);
+            }
+            buffer = null;
+        }
+    }
+
     @Override
     public String toString() {
         return "FloatBuffer: columns=" + cols + ", rows=" + rows;
@@ -10,7 +10,11 @@ import java.util.Objects;
  * A Grid is a regular scalar field, for example a digital elevation model.
  * <p>
  * A Grid stores field values in a {@link GridBuffer}, see
- * {@link FloatBuffer}, {@link ShortBuffer} and {@link SignedNormalizedBuffer}.
+ * {@link FloatBuffer}, {@link ShortBuffer}, {@link SignedNormalizedBuffer} and
+ * {@link MappedFloatBuffer}.
+ * Buffers of new grids are acquired from the {@link BufferArena}, and can be
+ * returned to the arena with {@link #release()} when the grid is not needed
+ * anymore.
  * <p>
  * This is an immutable class with the important exception of the values in the
  * GridBuffer. It is the responsibility of the client to apply synchronization
@@ -56,8 +60,8 @@ public final class Grid {
     /**
      * Create a new grid with the same dimensions, position, resolution and
      * coordinate reference information as a template grid. Grid values are not
-     * copied. A new {@link FloatBuffer} is allocated with all values equal to
-     * 0.
+     * copied. A new buffer is acquired from the {@link BufferArena} with all
+     * values equal to 0.
      *
      * @param grid Grid to copy.
      * @return A shallow copy of the passed grid.
@@ -65,7 +69,7 @@ public final class Grid {
     public static Grid shallowCopy(Grid grid) {
         return new Grid(grid.getCellSize(), grid.getWest(), grid.getSouth(),
                 grid.getPrjFileContent(),
-                new FloatBuffer(grid.getCols(), grid.getRows()));
+                BufferArena.createGridBuffer(grid.getCols(), grid.getRows()));
     }
     
     /**
@@ -103,7 +107,7 @@ public final class Grid {
      */
     public Grid(int cols, int rows, double cellSize, double west, double south,
             String prjFileContent) {
-        this(cellSize, west, south, prjFileContent, new FloatBuffer(cols, rows));
+        this(cellSize, west, south, prjFileContent, BufferArena.createGridBuffer(cols, rows));
     }
 
     /**
@@ -158,6 +162,17 @@ public final class Grid {
         return grid.get(id);
     }
 
+    /**
+     * Returns the value at a specified position in the grid with more than
+     * 2^31 cells.
+     *
+     * @param id Position in the grid: id = col + row * (long) getCols()
+     * @return The value at the specified position.
+     */
+    public float getValue(long id) {
+        return grid.get(id);
+    }
+
     /**
      * Sets a value in the grid.
      *
@@ -215,6 +230,17 @@ public final class Grid {
         return grid.isVoid(id);
     }
 
+    /**
+     * Returns true if the cell at a specified position in a grid with more
+     * than 2^31 cells is a void value.
+     *
+     * @param id Position in the grid: id = col + row * (long) getCols()
+     * @return True if the cell is void, false otherwise.
+     */
+    public boolean isVoid(long id) {
+        return grid.isVoid(id);
+    }
+
     /**
      * Returns true if the passed value is a valid, non-void cell value.
      *
@@ -234,10 +260,10 @@ public final class Grid {
      * differ or if all values are void.
      */
     public boolean isFlat() {
-        int nbrValues = getRows() * getCols();
+        long nbrValues = grid.getCellCount();
 
         // search first non-void value
-        int i = 0;
+        long i = 0;
         for (; i < nbrValues; i++) {
             if (!isVoid(i)) {
                 break;
@@ -251,7 +277,7 @@ public final class Grid {
 
         // search for a value that is different from the first value
         float firstValue = getValue(i);
-        for (int j = i; j < nbrValues; j++) {
+        for (long j = i; j < nbrValues; j++) {
             float v = getValue(j);
             if (v != firstValue && isValid(v)) {
                 return false;
@@ -455,6 +481,16 @@ public final class Grid {
         return grid.getRows();
     }
 
+    /**
+     * Returns the number of cells in the grid, which can exceed the range of
+     * int for grids in a {@link MappedFloatBuffer}.
+     *
+     * @return The number of columns times the number of rows.
+     */
+    public long getCellCount() {
+        return grid.getCellCount();
+    }
+
     /**
      * Returns the distance between two neighboring rows or columns. The
      * returned value can be in projected ground coordinates or in spherical
@@ -1037,4 +1073,13 @@ public final class Grid {
         return grid.getBuffer();
     }
 
+    /**
+     * Release the values of this grid, for example to the {@link BufferArena},
+     * such that the memory can be reused by another grid. This grid must not be
+     * used after it has been released.
+     */
+    public void release() {
+        grid.release();
+    }
+
 }
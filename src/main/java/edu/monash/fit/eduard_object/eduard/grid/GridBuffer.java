@@ -48,6 +48,27 @@ public interface GridBuffer {
      */
     float get(int id);
 
+    /**
+     * Returns the number of cells in the grid, which can exceed the range of
+     * int.
+     *
+     * @return getCols() * getRows()
+     */
+    default long getCellCount() {
+        return (long) getCols() * getRows();
+    }
+
+    /**
+     * Returns the value at a specified position in the grid. Buffers with more
+     * than 2^31 cells override this default implementation.
+     *
+     * @param id Position in the grid: id = col + row * (long) getCols()
+     * @return The value at the specified position.
+     */
+    default float get(long id) {
+        return get(Math.toIntExact(id));
+    }
+
     /**
      * Sets a value in the grid.
      *
@@ -74,6 +95,17 @@ public interface GridBuffer {
      */
     boolean isVoid(int id);
 
+    /**
+     * Returns true if the value at a specified position is void. Buffers with
+     * more than 2^31 cells override this default implementation.
+     *
+     * @param id Position in the grid: id = col + row * (long) getCols()
+     * @return true if cell at id is void, false otherwise.
+     */
+    default boolean isVoid(long id) {
+        return isVoid(Math.toIntExact(id));
+    }
+
     /**
      * Void a value in the grid.
      *
@@ -87,5 +119,13 @@ public interface GridBuffer {
      * @return the buffer array
      */
     float[] getBuffer();
+
+    /**
+     * Release the memory of this buffer, for example to the
+     * {@link BufferArena}. The buffer must not be used after it has been
+     * released. This default implementation does nothing.
+     */
+    default void release() {
+    }
     
 }
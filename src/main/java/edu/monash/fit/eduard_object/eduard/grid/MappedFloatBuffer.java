@@ -0,0 +1,339 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * GridBuffer with 4-bytes float values stored in a memory-mapped file. The
+ * values are paged in and out by the operating system, such that grids can be
+ * larger than the Java heap and the physical memory, and can have more than
+ * 2^31 cells. Cells are stored row by row without header, as in the binary
+ * .flt format.
+ * <p>
+ * A single mapping is limited to 2^31 bytes, so the file is mapped in
+ * segments of {@link #getSegmentCells()} values. The position of a cell is a
+ * long, the segment is selected with a shift and the position in the segment
+ * with a mask. Use {@link #get(long)} and {@link #isVoid(long)} or the column
+ * and row accessors for grids with more than 2^31 cells. As the values are not
+ * stored in a Java array, {@link #getBuffer()} is not supported.
+ */
+public final class MappedFloatBuffer implements GridBuffer {
+
+    /**
+     * default binary logarithm of the number of values in a segment, 2^28
+     * values are 1 GB
+     */
+    public static final int DEFAULT_SEGMENT_SHIFT = 28;
+
+    private static volatile int segmentShift = DEFAULT_SEGMENT_SHIFT;
+
+    /**
+     * float views of the mapped segments, null after release
+     */
+    private java.nio.FloatBuffer[] segments;
+
+    private final MappedByteBuffer[] mappedSegments;
+
+    private final int cols, rows;
+
+    private final int shift;
+
+    private final long mask;
+
+    private final Path file;
+
+    private final ByteOrder byteOrder;
+
+    /**
+     * if true, the file is deleted when the buffer is released
+     */
+    private final boolean temporary;
+
+    /**
+     * Constructor for a buffer in a new temporary file, which is deleted when
+     * the buffer is released or the virtual machine exits. All values are 0.
+     *
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @param directory directory of the temporary file, or null for the
+     * default temporary directory
+     */
+    public MappedFloatBuffer(int cols, int rows, File directory) {
+        this(createTemporaryFile(directory), 0, cols, rows, ByteOrder.nativeOrder(), true, true);
+    }
+
+    private MappedFloatBuffer(Path file, long offset, int cols, int rows, ByteOrder byteOrder,
+            boolean writable, boolean temporary) {
+        if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM || offset < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.file = file;
+        this.byteOrder = byteOrder;
+        this.temporary = temporary;
+        shift = segmentShift;
+        mask = (1L << shift) - 1;
+
+        long cells = (long) cols * rows;
+        int nbrSegments = (int) ((cells + mask) >>> shift);
+        mappedSegments = new MappedByteBuffer[nbrSegments];
+        segments = new java.nio.FloatBuffer[nbrSegments];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        try (FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset + cells * Float.BYTES) {
+                if (!writable) {
+                    throw new IOException("file too small for " + cols + " x " + rows + " values: " + file);
+                }
+                // extends the file with zeros, without writing the values
+                channel.write(java.nio.ByteBuffer.allocate(1), offset + cells * Float.BYTES - 1);
+            }
+            for (int i = 0; i < nbrSegments; i++) {
+                long start = (long) i << shift;
+                long length = Math.min(mask + 1, cells - start);
+                mappedSegments[i] = channel.map(mode, offset + start * Float.BYTES, length * Float.BYTES);
+                mappedSegments[i].order(byteOrder);
+                segments[i] = mappedSegments[i].asFloatBuffer();
+            }
+        } catch (IOException ex) {
+            if (temporary) {
+                file.toFile().delete();
+            }
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Creates a buffer in a new file. All values are 0. An existing file is
+     * replaced.
+     *
+     * @param file the file
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @return the new buffer
+     * @throws IOException if the file cannot be created
+     */
+    public static MappedFloatBuffer create(Path file, int cols, int rows) throws IOException {
+        Files.deleteIfExists(file);
+        Files.createFile(file);
+        return new MappedFloatBuffer(file, 0, cols, rows, ByteOrder.nativeOrder(), true, false);
+    }
+
+    /**
+     * Maps an existing file with cols * rows float values stored row by row.
+     *
+     * @param file the file
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @param byteOrder the byte order of the values in the file
+     * @param writable if true, changes to the values are written to the file
+     * @return the new buffer
+     * @throws IOException if the file cannot be read or is too small
+     */
+    public static MappedFloatBuffer open(Path file, int cols, int rows, ByteOrder byteOrder,
+            boolean writable) throws IOException {
+        return open(file, 0, cols, rows, byteOrder, writable);
+    }
+
+    /**
+     * Maps cols * rows float values stored row by row in an existing file,
+     * starting at an offset, for example after a header.
+     *
+     * @param file the file
+     * @param offset position of the first value in bytes
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @param byteOrder the byte order of the values in the file
+     * @param writable if true, changes to the values are written to the file
+     * @return the new buffer
+     * @throws IOException if the file cannot be read or is too small
+     */
+    public static MappedFloatBuffer open(Path file, long offset, int cols, int rows,
+            ByteOrder byteOrder, boolean writable) throws IOException {
+        try {
+            return new MappedFloatBuffer(file, offset, cols, rows, byteOrder, writable, false);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static Path createTemporaryFile(File directory) {
+        try {
+            File file = File.createTempFile("grid", ".flt", directory);
+            file.deleteOnExit();
+            return file.toPath();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Set the number of values in a segment of buffers created later.
+     *
+     * @param segmentCells number of values, a power of two between 2^10 and
+     * 2^29
+     */
+    public static void setSegmentCells(int segmentCells) {
+        if (Integer.bitCount(segmentCells) != 1 || segmentCells < (1 << 10) || segmentCells > (1 << 29)) {
+            throw new IllegalArgumentException("segment size must be a power of two between 2^10 and 2^29");
+        }
+        segmentShift = Integer.numberOfTrailingZeros(segmentCells);
+    }
+
+    /**
+     * Returns the number of values in a segment of buffers created later.
+     *
+     * @return number of values
+     */
+    public static int getSegmentCells() {
+        return 1 << segmentShift;
+    }
+
+    @Override
+    public MappedFloatBuffer copy() {
+        MappedFloatBuffer copy = new MappedFloatBuffer(cols, rows,
+                temporary ? file.getParent().toFile() : null);
+        for (int i = 0; i < segments.length; i++) {
+            java.nio.FloatBuffer src = segments[i].duplicate();
+            if (copy.shift == shift) {
+                copy.segments[i].duplicate().put(src);
+            } else {
+                long start = (long) i << shift;
+                for (int j = 0; j < src.limit(); j++) {
+                    copy.set(src.get(j), start + j);
+                }
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public long getCellCount() {
+        return (long) cols * rows;
+    }
+
+    @Override
+    public float get(int col, int row) {
+        return get(col + (long) row * cols);
+    }
+
+    @Override
+    public float get(int id) {
+        return get((long) id);
+    }
+
+    @Override
+    public float get(long id) {
+        return segments[(int) (id >>> shift)].get((int) (id & mask));
+    }
+
+    @Override
+    public void set(float value, int col, int row) {
+        set(value, col + (long) row * cols);
+    }
+
+    private void set(float value, long id) {
+        segments[(int) (id >>> shift)].put((int) (id & mask), value);
+    }
+
+    @Override
+    public boolean isVoid(int col, int row) {
+        return !Float.isFinite(get(col, row));
+    }
+
+    @Override
+    public boolean isVoid(int id) {
+        return !Float.isFinite(get(id));
+    }
+
+    @Override
+    public boolean isVoid(long id) {
+        return !Float.isFinite(get(id));
+    }
+
+    @Override
+    public void setVoid(int col, int row) {
+        set(Float.NaN, col, row);
+    }
+
+    /**
+     * The values are not stored in a Java array.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public float[] getBuffer() {
+        throw new UnsupportedOperationException("memory-mapped grid buffer has no array");
+    }
+
+    /**
+     * Write changed values to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : mappedSegments) {
+            if (!segment.isReadOnly()) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Returns the mapped file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the byte order of the values in the file.
+     *
+     * @return the byte order
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Release the mapping. Changed values of a file that is not temporary are
+     * written to the file, a temporary file is deleted. The mapped memory is
+     * unmapped by the garbage collector.
+     */
+    @Override
+    public void release() {
+        if (segments != null) {
+            segments = null;
+            if (temporary) {
+                file.toFile().delete();
+            } else {
+                force();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MappedFloatBuffer: columns=" + cols + ", rows=" + rows + ", file=" + file;
+    }
+
+}
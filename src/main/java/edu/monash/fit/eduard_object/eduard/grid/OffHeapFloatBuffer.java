@@ -0,0 +1,116 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GridBuffer with 4-bytes float values stored outside of the Java heap in a
+ * direct byte buffer acquired from the {@link BufferArena}. The values do not
+ * add to the size of the Java heap and are not moved by the garbage collector.
+ * As the values are not stored in a Java array, {@link #getBuffer()} is not
+ * supported.
+ */
+public final class OffHeapFloatBuffer implements GridBuffer {
+
+    private ByteBuffer byteBuffer;
+
+    private java.nio.FloatBuffer buffer;
+
+    private final int cols, rows;
+
+    /**
+     * Constructor.
+     *
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     */
+    public OffHeapFloatBuffer(int cols, int rows) {
+        if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM) {
+            throw new IllegalArgumentException();
+        }
+        byteBuffer = BufferArena.acquireDirect(Math.multiplyExact(cols, rows));
+        buffer = byteBuffer.asFloatBuffer();
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param b A new instance with all grid values copied.
+     */
+    public OffHeapFloatBuffer(OffHeapFloatBuffer b) {
+        this(b.cols, b.rows);
+        buffer.put(b.buffer.duplicate());
+        buffer.clear();
+    }
+
+    @Override
+    public OffHeapFloatBuffer copy() {
+        return new OffHeapFloatBuffer(this);
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public float get(int col, int row) {
+        return buffer.get(col + row * cols);
+    }
+
+    @Override
+    public float get(int id) {
+        return buffer.get(id);
+    }
+
+    @Override
+    public void set(float value, int col, int row) {
+        buffer.put(col + row * cols, value);
+    }
+
+    @Override
+    public boolean isVoid(int col, int row) {
+        return isVoid(col + row * cols);
+    }
+
+    @Override
+    public boolean isVoid(int id) {
+        return !Float.isFinite(get(id));
+    }
+
+    @Override
+    public void setVoid(int col, int row) {
+        set(Float.NaN, col, row);
+    }
+
+    /**
+     * The values are not stored in a Java array.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public float[] getBuffer() {
+        throw new UnsupportedOperationException("off-heap grid buffer has no array");
+    }
+
+    @Override
+    public void release() {
+        if (byteBuffer != null) {
+            BufferArena.release(byteBuffer);
+            byteBuffer = null;
+            buffer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapFloatBuffer: columns=" + cols + ", rows=" + rows;
+    }
+
+}
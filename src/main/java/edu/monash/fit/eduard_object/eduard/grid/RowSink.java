@@ -0,0 +1,39 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.io.IOException;
+
+/**
+ * A destination for grid rows that are written one after the other, from the
+ * top to the bottom of the grid. See {@link RowSource}.
+ */
+public interface RowSink {
+
+    /**
+     * Writes the next row. Void values are NaN.
+     *
+     * @param values the values of the row. The array may be reused by the
+     * caller after this method returns.
+     * @throws IOException if the row cannot be written
+     */
+    void writeRow(float[] values) throws IOException;
+
+    /**
+     * Returns a sink writing rows to a grid in memory.
+     *
+     * @param grid the grid to write to
+     * @return a new row sink
+     */
+    static RowSink of(Grid grid) {
+        return new RowSink() {
+            private int row = 0;
+
+            @Override
+            public void writeRow(float[] values) {
+                for (int col = 0, nCols = grid.getCols(); col < nCols; col++) {
+                    grid.setValue(values[col], col, row);
+                }
+                row++;
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.io.IOException;
+
+/**
+ * A source of grid rows that are read one after the other, from the top to the
+ * bottom of the grid. A RowSource is used by operators in streaming mode, which
+ * only keep a window of rows in memory, see
+ * {@link edu.monash.fit.eduard_object.eduard.grid.operator.GridOperator#operateStreaming}.
+ */
+public interface RowSource {
+
+    /**
+     * Returns the number of columns in the grid.
+     *
+     * @return The number of columns in the grid.
+     */
+    int getCols();
+
+    /**
+     * Returns the number of rows in the grid.
+     *
+     * @return The number of rows in the grid.
+     */
+    int getRows();
+
+    /**
+     * Returns the distance between two neighboring rows or columns.
+     *
+     * @return the cell size
+     */
+    double getCellSize();
+
+    /**
+     * Returns the horizontal coordinate of the first column.
+     *
+     * @return west coordinate
+     */
+    double getWest();
+
+    /**
+     * Returns the vertical coordinate of the last row.
+     *
+     * @return south coordinate
+     */
+    double getSouth();
+
+    /**
+     * Get the content of the .prj file with information about the coordinate
+     * reference system of the grid.
+     *
+     * @return the content of the .prj file, can be null
+     */
+    String getPrjFileContent();
+
+    /**
+     * Reads the next row. Void values are NaN.
+     *
+     * @param values array of length getCols() receiving the values
+     * @throws IOException if the row cannot be read
+     */
+    void readRow(float[] values) throws IOException;
+
+    /**
+     * Returns a source reading the rows of a grid in memory.
+     *
+     * @param grid the grid to read
+     * @return a new row source
+     */
+    static RowSource of(Grid grid) {
+        return new RowSource() {
+            private int row = 0;
+
+            @Override
+            public int getCols() {
+                return grid.getCols();
+            }
+
+            @Override
+            public int getRows() {
+                return grid.getRows();
+            }
+
+            @Override
+            public double getCellSize() {
+                return grid.getCellSize();
+            }
+
+            @Override
+            public double getWest() {
+                return grid.getWest();
+            }
+
+            @Override
+            public double getSouth() {
+                return grid.getSouth();
+            }
+
+            @Override
+            public String getPrjFileContent() {
+                return grid.getPrjFileContent();
+            }
+
+            @Override
+            public void readRow(float[] values) {
+                for (int col = 0, nCols = grid.getCols(); col < nCols; col++) {
+                    values[col] = grid.getValue(col, row);
+                }
+                row++;
+            }
+        };
+    }
+}
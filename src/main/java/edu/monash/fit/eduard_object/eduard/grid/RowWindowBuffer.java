@@ -0,0 +1,200 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.util.Arrays;
+
+/**
+ * GridBuffer with 4-bytes float values that only stores a sliding window of
+ * consecutive rows. The buffer has the dimensions of the entire grid, but only
+ * rows inside the window can be accessed. The rows are stored in a ring, such
+ * that rows remaining in the window are not moved when the window slides.
+ * Memory is bounded by the size of the window instead of the size of the grid.
+ */
+public final class RowWindowBuffer implements GridBuffer {
+
+    /**
+     * ring of rows, row r is stored at r % windowRows
+     */
+    private final float[][] window;
+
+    private final int cols, rows;
+
+    /**
+     * index of the first row in the window
+     */
+    private int firstRow = 0;
+
+    /**
+     * Constructor. The window initially contains the first rows of the grid
+     * and all values are 0.
+     *
+     * @param cols number of horizontal columns of the grid
+     * @param rows number of vertical rows of the grid
+     * @param windowRows number of rows in the window
+     */
+    public RowWindowBuffer(int cols, int rows, int windowRows) {
+        if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM || windowRows < 1) {
+            throw new IllegalArgumentException();
+        }
+        window = new float[windowRows][cols];
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param b A new instance with all values in the window copied.
+     */
+    public RowWindowBuffer(RowWindowBuffer b) {
+        window = new float[b.window.length][];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = b.window[i].clone();
+        }
+        cols = b.cols;
+        rows = b.rows;
+        firstRow = b.firstRow;
+    }
+
+    @Override
+    public RowWindowBuffer copy() {
+        return new RowWindowBuffer(this);
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of rows in the window.
+     *
+     * @return number of rows
+     */
+    public int getWindowRows() {
+        return window.length;
+    }
+
+    /**
+     * Returns the index of the first row in the window.
+     *
+     * @return row index
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * Slide the window down. Rows that remain in the window keep their values,
+     * rows entering the window are set to 0.
+     *
+     * @param firstRow index of the new first row in the window, cannot be
+     * smaller than the current first row.
+     */
+    public void setFirstRow(int firstRow) {
+        if (firstRow < this.firstRow) {
+            throw new IllegalArgumentException("the window cannot slide up");
+        }
+        int n = window.length;
+        int firstNewRow = Math.max(firstRow, this.firstRow + n);
+        for (int row = firstNewRow, end = firstRow + n; row < end; row++) {
+            Arrays.fill(window[row % n], 0f);
+        }
+        this.firstRow = firstRow;
+    }
+
+    /**
+     * Returns whether a row is inside the window.
+     *
+     * @param row row index
+     * @return true if the row can be accessed
+     */
+    public boolean isInWindow(int row) {
+        return row >= firstRow && row < firstRow + window.length && row < rows;
+    }
+
+    /**
+     * Returns the array storing a row.
+     *
+     * @param row row index
+     * @return the row array
+     */
+    private float[] row(int row) {
+        if (!isInWindow(row)) {
+            throw new IndexOutOfBoundsException("row " + row + " is outside of window ["
+                    + firstRow + ", " + (firstRow + window.length) + ")");
+        }
+        return window[row % window.length];
+    }
+
+    /**
+     * Copies values to a row in the window.
+     *
+     * @param values the values to copy
+     * @param row row index
+     */
+    public void setRow(float[] values, int row) {
+        System.arraycopy(values, 0, row(row), 0, cols);
+    }
+
+    /**
+     * Copies the values of a row in the window.
+     *
+     * @param values array receiving the values
+     * @param row row index
+     */
+    public void getRow(float[] values, int row) {
+        System.arraycopy(row(row), 0, values, 0, cols);
+    }
+
+    @Override
+    public float get(int col, int row) {
+        return row(row)[col];
+    }
+
+    @Override
+    public float get(int id) {
+        return get(id % cols, id / cols);
+    }
+
+    @Override
+    public void set(float value, int col, int row) {
+        row(row)[col] = value;
+    }
+
+    @Override
+    public boolean isVoid(int col, int row) {
+        return !Float.isFinite(get(col, row));
+    }
+
+    @Override
+    public boolean isVoid(int id) {
+        return !Float.isFinite(get(id));
+    }
+
+    @Override
+    public void setVoid(int col, int row) {
+        set(Float.NaN, col, row);
+    }
+
+    /**
+     * The values of a window buffer are not stored in a single array.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public float[] getBuffer() {
+        throw new UnsupportedOperationException("a row window has no grid buffer array");
+    }
+
+    @Override
+    public String toString() {
+        return "RowWindowBuffer: columns=" + cols + ", rows=" + rows
+                + ", window rows=" + window.length + ", first row=" + firstRow;
+    }
+
+}
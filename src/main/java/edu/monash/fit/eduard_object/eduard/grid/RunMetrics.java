@@ -0,0 +1,339 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Metrics of a single run of a filter, such as a mask filter applied to one
+ * grid. A run collects the {@link StageMetrics} of its operators and kernels,
+ * and can be exported as text, JSON or CSV.
+ * <p>
+ * A run is bound to the thread executing it with {@link #bind(RunMetrics)}.
+ * Operators start their stages with {@link #begin(String, int, int)}, which
+ * records the stage with the run bound to the current thread, such that
+ * several runs can be executed concurrently by different threads. If no run is
+ * bound to the current thread, stages are not recorded.
+ */
+public final class RunMetrics {
+
+    private static final String CSV_HEADER = "run,stage,depth,cols,rows,kernel_ms,"
+            + "transfer_ms,cells_per_second,allocated_bytes,reused_bytes,peak_bytes,overlap_ms";
+
+    /**
+     * the run bound to each thread
+     */
+    private static final ThreadLocal<RunMetrics> currentRun = new ThreadLocal<>();
+
+    private final String name;
+
+    private final long startTimeNanos = System.nanoTime();
+
+    /**
+     * ended stages
+     */
+    private final List<StageMetrics> stages = new ArrayList<>();
+
+    /**
+     * stages that have been started and not ended yet
+     */
+    private final List<StageMetrics> openStages = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param name name of the run
+     */
+    public RunMetrics(String name) {
+        if (name == null) {
+            throw new NullPointerException("");
+        }
+        this.name = name;
+    }
+
+    /**
+     * Bind a run to the current thread.
+     *
+     * @param run the run, or null to unbind the current run
+     * @return the run previously bound to the current thread, or null
+     */
+    public static RunMetrics bind(RunMetrics run) {
+        RunMetrics previous = currentRun.get();
+        if (run == null) {
+            currentRun.remove();
+        } else {
+            currentRun.set(run);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the run bound to the current thread.
+     *
+     * @return the run or null
+     */
+    public static RunMetrics current() {
+        return currentRun.get();
+    }
+
+    /**
+     * Start a stage of the run bound to the current thread. If no run is
+     * bound, the returned stage is not recorded.
+     *
+     * @param name name of the stage
+     * @param cols number of columns of the processed grid, 0 if unknown
+     * @param rows number of rows of the processed grid, 0 if unknown
+     * @return the started stage, to be ended with {@link StageMetrics#end()}
+     */
+    public static StageMetrics begin(String name, int cols, int rows) {
+        return begin(name, cols, rows, false);
+    }
+
+    /**
+     * Start a group of stages of the run bound to the current thread. The
+     * times of the group are the sums of the times of the stages nested in the
+     * group. If no run is bound, the returned group is not recorded.
+     *
+     * @param name name of the group
+     * @param cols number of columns of the processed grid, 0 if unknown
+     * @param rows number of rows of the processed grid, 0 if unknown
+     * @return the started group, to be ended with {@link StageMetrics#end()}
+     */
+    public static StageMetrics beginGroup(String name, int cols, int rows) {
+        return begin(name, cols, rows, true);
+    }
+
+    private static StageMetrics begin(String name, int cols, int rows, boolean group) {
+        if (name == null) {
+            throw new NullPointerException("");
+        }
+        RunMetrics run = currentRun.get();
+        if (run == null) {
+            return new StageMetrics(null, name, cols, rows, 0, group, 0);
+        }
+        synchronized (run) {
+            StageMetrics stage = new StageMetrics(run, name, cols, rows,
+                    run.openStages.size(), group, System.nanoTime() - run.startTimeNanos);
+            run.openStages.add(stage);
+            return stage;
+        }
+    }
+
+    /**
+     * Add an acquisition of a buffer from the {@link BufferArena} to the open
+     * stages of the run bound to the current thread.
+     *
+     * @param bytes size of the buffer
+     * @param reused true if a released buffer is reused
+     */
+    static void countAcquisition(long bytes, boolean reused) {
+        RunMetrics run = currentRun.get();
+        if (run != null) {
+            synchronized (run) {
+                for (StageMetrics stage : run.openStages) {
+                    stage.addAcquisition(bytes, reused);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record an ended stage.
+     *
+     * @param stage the stage
+     */
+    synchronized void end(StageMetrics stage) {
+        openStages.remove(stage);
+        stages.add(stage);
+        // add the times to the enclosing group
+        for (int i = openStages.size() - 1; i >= 0; i--) {
+            StageMetrics enclosing = openStages.get(i);
+            if (enclosing.getDepth() < stage.getDepth()) {
+                if (enclosing.isGroup()) {
+                    enclosing.addNested(stage);
+                }
+                break;
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the ended stages in the order they were started, such that
+     * nested stages follow their enclosing stage.
+     *
+     * @return the stages
+     */
+    public synchronized List<StageMetrics> getStages() {
+        List<StageMetrics> sorted = new ArrayList<>(stages);
+        sorted.sort(Comparator.comparingLong(StageMetrics::getStartNanos)
+                .thenComparingInt(StageMetrics::getDepth));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * get the total computation time of all stages that are not nested
+     *
+     * @return time in milliseconds
+     */
+    public synchronized double getKernelMillis() {
+        double millis = 0;
+        for (StageMetrics stage : stages) {
+            if (stage.getDepth() == 0) {
+                millis += stage.getKernelMillis();
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * get the total transfer time of all stages that are not nested
+     *
+     * @return time in milliseconds
+     */
+    public synchronized double getTransferMillis() {
+        double millis = 0;
+        for (StageMetrics stage : stages) {
+            if (stage.getDepth() == 0) {
+                millis += stage.getTransferMillis();
+            }
+        }
+        return millis;
+    }
+
+    /**
+     * Returns a human-readable report with one line per stage, nested stages
+     * are indented.
+     *
+     * @return the report
+     */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (StageMetrics stage : getStages()) {
+            for (int i = 0; i < stage.getDepth(); i++) {
+                sb.append('\t');
+            }
+            sb.append(stage.getName()).append(":  ").append(stage.getKernelMillis()).append(" ms");
+            if (stage.getTransferMillis() > 0) {
+                sb.append(", transfer:  ").append(stage.getTransferMillis()).append(" ms");
+            }
+            if (stage.getOverlapMillis() > 0) {
+                sb.append(", overlap:  ").append(stage.getOverlapMillis()).append(" ms");
+            }
+            if (stage.getPeakBytes() > 0) {
+                sb.append(", peak memory:  ").append(stage.getPeakBytes() / (1024 * 1024)).append(" MB");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the run as a JSON object.
+     *
+     * @return JSON text
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"run\":").append(jsonString(name));
+        sb.append(",\"kernel_ms\":").append(jsonNumber(getKernelMillis()));
+        sb.append(",\"transfer_ms\":").append(jsonNumber(getTransferMillis()));
+        sb.append(",\"stages\":[");
+        List<StageMetrics> sortedStages = getStages();
+        for (int i = 0; i < sortedStages.size(); i++) {
+            StageMetrics stage = sortedStages.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"stage\":").append(jsonString(stage.getName()));
+            sb.append(",\"depth\":").append(stage.getDepth());
+            sb.append(",\"group\":").append(stage.isGroup());
+            sb.append(",\"cols\":").append(stage.getCols());
+            sb.append(",\"rows\":").append(stage.getRows());
+            sb.append(",\"kernel_ms\":").append(jsonNumber(stage.getKernelMillis()));
+            sb.append(",\"transfer_ms\":").append(jsonNumber(stage.getTransferMillis()));
+            sb.append(",\"cells_per_second\":").append(jsonNumber(stage.getCellsPerSecond()));
+            sb.append(",\"allocated_bytes\":").append(stage.getAllocatedBytes());
+            sb.append(",\"reused_bytes\":").append(stage.getReusedBytes());
+            sb.append(",\"peak_bytes\":").append(stage.getPeakBytes());
+            sb.append(",\"overlap_ms\":").append(jsonNumber(stage.getOverlapMillis()));
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * Returns the run as CSV text with a header line and one line per stage.
+     *
+     * @return CSV text
+     */
+    public String toCSV() {
+        return toCSV(Collections.singletonList(this));
+    }
+
+    /**
+     * Returns several runs as CSV text with a header line and one line per
+     * stage, such that the timings of several runs can be aggregated.
+     *
+     * @param runs the runs
+     * @return CSV text
+     */
+    public static String toCSV(Collection<RunMetrics> runs) {
+        StringBuilder sb = new StringBuilder(CSV_HEADER).append('\n');
+        for (RunMetrics run : runs) {
+            for (StageMetrics stage : run.getStages()) {
+                sb.append(csvString(run.getName())).append(',');
+                sb.append(csvString(stage.getName())).append(',');
+                sb.append(stage.getDepth()).append(',');
+                sb.append(stage.getCols()).append(',');
+                sb.append(stage.getRows()).append(',');
+                sb.append(stage.getKernelMillis()).append(',');
+                sb.append(stage.getTransferMillis()).append(',');
+                double cellsPerSecond = stage.getCellsPerSecond();
+                sb.append(Double.isNaN(cellsPerSecond) ? "" : Double.toString(cellsPerSecond)).append(',');
+                sb.append(stage.getAllocatedBytes()).append(',');
+                sb.append(stage.getReusedBytes()).append(',');
+                sb.append(stage.getPeakBytes()).append(',');
+                sb.append(stage.getOverlapMillis()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String jsonNumber(double d) {
+        return Double.isFinite(d) ? Double.toString(d) : "null";
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String csvString(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String toString() {
+        return "Run " + name + ": " + getKernelMillis() + " ms";
+    }
+}
@@ -0,0 +1,228 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+/**
+ * GridBuffer with 2-bytes quantized values. A value is stored as a short
+ * integer q and restored as q * scale + offset, such that the buffer needs half
+ * the memory and memory bandwidth of a {@link FloatBuffer}. For example, an
+ * elevation model with integer decimetres is stored without loss with a scale
+ * of 0.1 and an offset in the middle of the elevation range. Stored values are
+ * rounded to the nearest multiple of the scale and clamped to the range of
+ * representable values, see {@link #getMin()} and {@link #getMax()}. Void
+ * values are stored as {@link #VOID}.
+ */
+public final class ShortBuffer implements GridBuffer {
+
+    /**
+     * quantized value of void cells
+     */
+    public static final short VOID = Short.MIN_VALUE;
+
+    /**
+     * quantized grid values, acquired from the {@link BufferArena}, null after
+     * release
+     */
+    private short[] buffer;
+
+    private final int cols, rows;
+
+    private final float scale, offset;
+
+    /**
+     * 1 / scale, multiplication is faster than division
+     */
+    private final float inverseScale;
+
+    /**
+     * Constructor.
+     *
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @param scale difference between two successive representable values
+     * @param offset value of a quantized 0
+     */
+    public ShortBuffer(int cols, int rows, float scale, float offset) {
+        if (cols < Grid.MIN_DIM || rows < Grid.MIN_DIM) {
+            throw new IllegalArgumentException();
+        }
+        if (!Float.isFinite(scale) || scale <= 0 || !Float.isFinite(offset)) {
+            throw new IllegalArgumentException("invalid scale or offset");
+        }
+        buffer = BufferArena.acquireShorts(Math.multiplyExact(cols, rows));
+        this.cols = cols;
+        this.rows = rows;
+        this.scale = scale;
+        this.offset = offset;
+        inverseScale = 1f / scale;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param b A new instance with all grid values copied.
+     */
+    public ShortBuffer(ShortBuffer b) {
+        buffer = BufferArena.acquireShorts(b.buffer.length);
+        System.arraycopy(b.buffer, 0, buffer, 0, buffer.length);
+        cols = b.cols;
+        rows = b.rows;
+        scale = b.scale;
+        offset = b.offset;
+        inverseScale = b.inverseScale;
+    }
+
+    /**
+     * Creates a buffer for values between a minimum and a maximum with the
+     * smallest possible scale.
+     *
+     * @param cols number of horizontal columns
+     * @param rows number of vertical rows
+     * @param min minimum value
+     * @param max maximum value
+     * @return the new buffer
+     */
+    public static ShortBuffer forRange(int cols, int rows, float min, float max) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException("invalid range");
+        }
+        // 65534 steps between the smallest and the largest non-void value
+        float scale = (float) (((double) max - min) / (Short.MAX_VALUE - (Short.MIN_VALUE + 1)));
+        float offset = (float) (((double) max + min) / 2);
+        return new ShortBuffer(cols, rows, scale, offset);
+    }
+
+    @Override
+    public ShortBuffer copy() {
+        return new ShortBuffer(this);
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public float get(int col, int row) {
+        return get(col + row * cols);
+    }
+
+    @Override
+    public float get(int id) {
+        short q = buffer[id];
+        return q == VOID ? Float.NaN : toFloat(q) * scale + offset;
+    }
+
+    /**
+     * Converts a short to a float without an int to float conversion
+     * instruction. On x86 the conversion instruction only writes the lower
+     * part of its register, which makes it wait for the previous value of the
+     * register, and serializes loops summing or filtering the values. Instead,
+     * q + 32768 is placed in the mantissa of 2^23, which is exact for all 16 bit
+     * values.
+     *
+     * @param q the short
+     * @return q as a float
+     */
+    static float toFloat(short q) {
+        return Float.intBitsToFloat(0x4B000000 | (q + 32768)) - 8421376f;
+    }
+
+    @Override
+    public void set(float value, int col, int row) {
+        buffer[col + row * cols] = quantize(value);
+    }
+
+    private short quantize(float value) {
+        if (!Float.isFinite(value)) {
+            return VOID;
+        }
+        float q = Math.round((value - offset) * inverseScale);
+        if (q > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (q < Short.MIN_VALUE + 1) {
+            return Short.MIN_VALUE + 1;
+        }
+        return (short) q;
+    }
+
+    @Override
+    public boolean isVoid(int col, int row) {
+        return isVoid(col + row * cols);
+    }
+
+    @Override
+    public boolean isVoid(int id) {
+        return buffer[id] == VOID;
+    }
+
+    @Override
+    public void setVoid(int col, int row) {
+        buffer[col + row * cols] = VOID;
+    }
+
+    /**
+     * Returns the difference between two successive representable values.
+     *
+     * @return the scale
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the value of a quantized 0.
+     *
+     * @return the offset
+     */
+    public float getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the smallest representable value.
+     *
+     * @return the smallest value
+     */
+    public float getMin() {
+        return (Short.MIN_VALUE + 1) * scale + offset;
+    }
+
+    /**
+     * Returns the largest representable value.
+     *
+     * @return the largest value
+     */
+    public float getMax() {
+        return Short.MAX_VALUE * scale + offset;
+    }
+
+    /**
+     * The values are not stored in a float array.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public float[] getBuffer() {
+        throw new UnsupportedOperationException("quantized grid buffer has no float array");
+    }
+
+    @Override
+    public void release() {
+        if (buffer != null) {
+            BufferArena.release(buffer);
+            buffer = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShortBuffer: columns=" + cols + ", rows=" + rows
+                + ", scale=" + scale + ", offset=" + offset;
+    }
+
+}
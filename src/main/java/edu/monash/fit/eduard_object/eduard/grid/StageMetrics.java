@@ -0,0 +1,220 @@
+package edu.monash.fit.eduard_object.eduard.grid;
+
+/**
+ * Metrics of a single stage of a run, such as an operator or a kernel. A stage
+ * is started with {@link RunMetrics#begin(String, int, int)}, the times are
+ * added while the stage is executed, and the stage is recorded by the run with
+ * {@link #end()}. Buffers acquired from the {@link BufferArena} by the thread
+ * of the run while the stage is open are added to the allocation of the stage.
+ * <p>
+ * The depth of a stage is the number of stages enclosing it. The times of a
+ * stage include the times of its nested stages. The times of a group of stages
+ * started with {@link RunMetrics#beginGroup(String, int, int)} are the sums of
+ * the times of its nested stages.
+ */
+public final class StageMetrics {
+
+    /**
+     * the run recording this stage, null for a stage started without a run
+     */
+    private final RunMetrics run;
+
+    private final String name;
+    private final int cols, rows;
+    private final int depth;
+    private final boolean group;
+
+    /**
+     * start time relative to the start of the run
+     */
+    private final long startNanos;
+
+    private double kernelMillis = 0;    // computation time
+    private double transferMillis = 0;  // time for moving buffers to and from the execution context
+    private double overlapMillis = 0;   // time of transfers hidden behind computations of a pipeline
+    private long allocatedBytes = 0;    // size of buffers allocated by the arena
+    private long reusedBytes = 0;       // size of released buffers reused by the arena
+    private long peakBytes = 0;         // peak memory reported by the stage, 0 if unknown
+    private boolean ended = false;
+
+    StageMetrics(RunMetrics run, String name, int cols, int rows, int depth,
+            boolean group, long startNanos) {
+        this.run = run;
+        this.group = group;
+        this.name = name;
+        this.cols = cols;
+        this.rows = rows;
+        this.depth = depth;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Add computation time.
+     *
+     * @param millis time in milliseconds
+     */
+    public synchronized void addKernelMillis(double millis) {
+        kernelMillis += millis;
+    }
+
+    /**
+     * Add time for moving buffers to and from the execution context.
+     *
+     * @param millis time in milliseconds
+     */
+    public synchronized void addTransferMillis(double millis) {
+        transferMillis += millis;
+    }
+
+    /**
+     * Add time of transfers that overlapped with computations, for stages
+     * that upload and download buffers while kernels are executed.
+     *
+     * @param millis time in milliseconds
+     */
+    public synchronized void addOverlapMillis(double millis) {
+        overlapMillis += millis;
+    }
+
+    /**
+     * Set the peak memory used by the stage, if the stage can estimate it.
+     *
+     * @param bytes peak memory in bytes
+     */
+    public synchronized void setPeakBytes(long bytes) {
+        peakBytes = bytes;
+    }
+
+    /**
+     * Add an acquisition of a buffer from the {@link BufferArena}.
+     *
+     * @param bytes size of the buffer
+     * @param reused true if a released buffer is reused
+     */
+    synchronized void addAcquisition(long bytes, boolean reused) {
+        if (reused) {
+            reusedBytes += bytes;
+        } else {
+            allocatedBytes += bytes;
+        }
+    }
+
+    /**
+     * Add the times of a nested stage to this group.
+     *
+     * @param nested the ended nested stage
+     */
+    synchronized void addNested(StageMetrics nested) {
+        kernelMillis += nested.getKernelMillis();
+        transferMillis += nested.getTransferMillis();
+        overlapMillis += nested.getOverlapMillis();
+        peakBytes = Math.max(peakBytes, nested.getPeakBytes());
+    }
+
+    /**
+     * End the stage and record it with the run. Calling this more than once
+     * has no effect.
+     */
+    public void end() {
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+        }
+        if (run != null) {
+            run.end(this);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * get the number of grid cells processed by the stage
+     *
+     * @return cols * rows
+     */
+    public long getCells() {
+        return (long) cols * rows;
+    }
+
+    /**
+     * get the number of stages enclosing this stage
+     *
+     * @return 0 for a stage that is not nested
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns whether the times of this stage are the sums of the times of its
+     * nested stages.
+     *
+     * @return true for a group of stages
+     */
+    public boolean isGroup() {
+        return group;
+    }
+
+    /**
+     * get the start time relative to the start of the run
+     *
+     * @return start time in nanoseconds
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public synchronized double getKernelMillis() {
+        return kernelMillis;
+    }
+
+    public synchronized double getTransferMillis() {
+        return transferMillis;
+    }
+
+    public synchronized double getOverlapMillis() {
+        return overlapMillis;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * get the throughput of the computation
+     *
+     * @return grid cells per second, NaN if the size of the grid or the
+     * computation time is unknown
+     */
+    public synchronized double getCellsPerSecond() {
+        if (getCells() == 0 || kernelMillis <= 0) {
+            return Double.NaN;
+        }
+        return getCells() / (kernelMillis / 1000);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getKernelMillis() + " ms";
+    }
+}
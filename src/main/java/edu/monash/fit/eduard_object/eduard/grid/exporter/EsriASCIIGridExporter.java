@@ -7,18 +7,35 @@
 package edu.monash.fit.eduard_object.eduard.grid.exporter;
 
 import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.importer.WKTProjectionFile;
 import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Exporter for Esri ASCII grid file format, optionally with a WKT file.
+ * <p>
+ * Files are written by formatting blocks of rows in parallel into byte
+ * buffers, which are written in order to the file channel. Values are formatted
+ * with a fixed-decimal formatter, which creates the same characters as
+ * DecimalFormat. Streams are written with DecimalFormat.
  *
  * @author Bernhard Jenny, Institute of Cartography, ETH Zurich.
  */
@@ -29,6 +46,22 @@ public class EsriASCIIGridExporter extends GridExporter {
      */
     private int nbrDecimals = 3;
 
+    /**
+     * Maximum number of decimals of the fixed-decimal formatter. A float
+     * multiplied by 10^12 is exactly represented by a double, as 5^12 has 28
+     * significant bits and a float 24.
+     */
+    private static final int MAX_FIXED_DECIMALS = 12;
+
+    /**
+     * approximate size of the blocks of rows formatted in parallel
+     */
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private static final double[] POWERS_OF_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12
+    };
+
     public EsriASCIIGridExporter() {
     }
 
@@ -65,23 +98,15 @@ public class EsriASCIIGridExporter extends GridExporter {
         try (PrintWriter writer = new PrintWriter(new BufferedWriter(
                 new OutputStreamWriter(bos, "US-ASCII")))) {
 
-            DecimalFormat df = new DecimalFormat();
-            df.setDecimalFormatSymbols(new DecimalFormatSymbols(Locale.US));
-            df.setMinimumFractionDigits(0);
-            df.setMaximumFractionDigits(nbrDecimals);
-            df.setGroupingUsed(false);
+            DecimalFormat df = createDecimalFormat(nbrDecimals);
 
             float voidValue = findVoidValue(grid);
             String voidValueStr = Float.toString(voidValue);
             String lineSeparator = System.getProperty("line.separator");
 
             // write header
-            writer.write("ncols " + grid.getCols() + lineSeparator);
-            writer.write("nrows " + grid.getRows() + lineSeparator);
-            writer.write("xllcorner " + grid.getWest() + lineSeparator);
-            writer.write("yllcorner " + grid.getSouth() + lineSeparator);
-            writer.write("cellsize " + grid.getCellSize() + lineSeparator);
-            writer.write("nodata_value " + voidValueStr + lineSeparator);
+            writeHeader(writer, grid.getCols(), grid.getRows(), grid.getWest(),
+                    grid.getSouth(), grid.getCellSize(), voidValueStr, lineSeparator);
 
             // write grid values
             int nRows = grid.getRows();
@@ -114,6 +139,227 @@ public class EsriASCIIGridExporter extends GridExporter {
         }
     }
 
+    /**
+     * Export a grid to a file channel by formatting blocks of rows in parallel.
+     *
+     * @param grid the grid to export
+     * @param channel the channel of the file
+     * @return false if the number of decimals is too large for the
+     * fixed-decimal formatter
+     * @throws IOException throws an exception of a file-related error occurs
+     */
+    @Override
+    protected boolean export(Grid grid, FileChannel channel) throws IOException {
+        if (nbrDecimals < 0 || nbrDecimals > MAX_FIXED_DECIMALS) {
+            return false;
+        }
+
+        float voidValue = findVoidValue(grid);
+        String voidValueStr = Float.toString(voidValue);
+        String lineSeparator = System.getProperty("line.separator");
+
+        // write header
+        StringWriter header = new StringWriter();
+        writeHeader(header, grid.getCols(), grid.getRows(), grid.getWest(),
+                grid.getSouth(), grid.getCellSize(), voidValueStr, lineSeparator);
+        write(channel, ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.US_ASCII)));
+
+        // write grid values
+        final int nRows = grid.getRows();
+        final int nCols = grid.getCols();
+        final byte[] voidValueBytes = voidValueStr.getBytes(StandardCharsets.US_ASCII);
+        final byte[] lineSeparatorBytes = lineSeparator.getBytes(StandardCharsets.US_ASCII);
+        final int blockRows = Math.max(1, BLOCK_SIZE / (nCols * (nbrDecimals + 6)));
+        final int nbrThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(nbrThreads);
+        try {
+            // formatted blocks waiting to be written in order
+            ArrayDeque<Future<ByteBuffer>> blocks = new ArrayDeque<>();
+            int writtenRows = 0;
+            for (int firstRow = 0; firstRow < nRows || !blocks.isEmpty();) {
+                if (firstRow < nRows && blocks.size() < 2 * nbrThreads) {
+                    final int first = firstRow;
+                    final int last = Math.min(nRows, firstRow + blockRows);
+                    blocks.add(executor.submit(() -> formatRows(grid, first, last,
+                            voidValueBytes, lineSeparatorBytes, nbrDecimals)));
+                    firstRow = last;
+                    continue;
+                }
+                write(channel, blocks.poll().get());
+                writtenRows = Math.min(nRows, writtenRows + blockRows);
+                if (!rowProgress(writtenRows - 1, grid)
+                        || (progressIndicator != null && progressIndicator.isCancelled())) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return true;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Format a block of rows.
+     *
+     * @param grid the grid
+     * @param firstRow first row of the block
+     * @param lastRow row after the last row of the block
+     * @param voidValueBytes characters for void values
+     * @param lineSeparatorBytes characters at the end of a row
+     * @param nbrDecimals the maximum number of decimals
+     * @return the characters of the block
+     */
+    private static ByteBuffer formatRows(Grid grid, int firstRow, int lastRow,
+            byte[] voidValueBytes, byte[] lineSeparatorBytes, int nbrDecimals) {
+        final int nCols = grid.getCols();
+        byte[] bytes = new byte[(lastRow - firstRow) * nCols * (nbrDecimals + 6) + 64];
+        int pos = 0;
+        DecimalFormat df = null;
+        for (int row = firstRow; row < lastRow; row++) {
+            for (int col = 0; col < nCols; col++) {
+                // longest value: sign, 39 integer digits, decimal point, decimals, space
+                if (pos + 64 + voidValueBytes.length + lineSeparatorBytes.length > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                float v = grid.getValue(col, row);
+                if (Float.isNaN(v)) {
+                    System.arraycopy(voidValueBytes, 0, bytes, pos, voidValueBytes.length);
+                    pos += voidValueBytes.length;
+                } else {
+                    int end = formatFixed(v, nbrDecimals, bytes, pos);
+                    if (end < 0) {
+                        // infinite and very large values
+                        if (df == null) {
+                            df = createDecimalFormat(nbrDecimals);
+                        }
+                        byte[] str = df.format(v).getBytes(StandardCharsets.US_ASCII);
+                        System.arraycopy(str, 0, bytes, pos, str.length);
+                        end = pos + str.length;
+                    }
+                    pos = end;
+                }
+                bytes[pos++] = ' ';
+            }
+            System.arraycopy(lineSeparatorBytes, 0, bytes, pos, lineSeparatorBytes.length);
+            pos += lineSeparatorBytes.length;
+        }
+        return ByteBuffer.wrap(bytes, 0, pos);
+    }
+
+    /**
+     * Formats a value with at most nbrDecimals decimals like the DecimalFormat
+     * returned by {@link #createDecimalFormat(int)}: the value is rounded half
+     * to even, trailing zeros and a trailing decimal point are removed, and
+     * negative values rounded to 0 are written as -0.
+     *
+     * @param v the value
+     * @param nbrDecimals number of decimals, at most MAX_FIXED_DECIMALS
+     * @param bytes destination of the characters
+     * @param pos position of the first character
+     * @return position after the last character, or -1 if the value is
+     * infinite or too large for a long after multiplication with 10^nbrDecimals
+     */
+    static int formatFixed(float v, int nbrDecimals, byte[] bytes, int pos) {
+        // exact product, rint rounds half to even
+        double scaled = Math.rint(Math.abs((double) v) * POWERS_OF_10[nbrDecimals]);
+        if (!(scaled < 0x1p63)) {
+            return -1;
+        }
+        long n = (long) scaled;
+        if (v < 0 || (v == 0 && 1 / v < 0)) {
+            bytes[pos++] = '-';
+        }
+
+        // remove trailing zeros of the fractional part
+        int decimals = nbrDecimals;
+        while (decimals > 0 && n % 10 == 0) {
+            n /= 10;
+            --decimals;
+        }
+
+        // write digits from right to left
+        int nbrDigits = 1;
+        for (long t = n / 10; t != 0; t /= 10) {
+            ++nbrDigits;
+        }
+        if (nbrDigits <= decimals) {
+            nbrDigits = decimals + 1; // leading 0 of the integer part
+        }
+        int end = pos + nbrDigits + (decimals > 0 ? 1 : 0);
+        int i = end;
+        for (int d = 0; d < decimals; d++) {
+            bytes[--i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        if (decimals > 0) {
+            bytes[--i] = '.';
+        }
+        do {
+            bytes[--i] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (i > pos);
+        return end;
+    }
+
+    /**
+     * Creates the format for grid values.
+     *
+     * @param nbrDecimals the maximum number of decimals
+     * @return the format
+     */
+    static DecimalFormat createDecimalFormat(int nbrDecimals) {
+        DecimalFormat df = new DecimalFormat();
+        df.setDecimalFormatSymbols(new DecimalFormatSymbols(Locale.US));
+        df.setMinimumFractionDigits(0);
+        df.setMaximumFractionDigits(nbrDecimals);
+        df.setGroupingUsed(false);
+        return df;
+    }
+
+    /**
+     * Writes the header of an Esri ASCII grid file.
+     *
+     * @param writer writer
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param west horizontal coordinate of the first column
+     * @param south vertical coordinate of the last row
+     * @param cellSize cell size
+     * @param voidValueStr string for void values
+     * @param lineSeparator line separator
+     */
+    static void writeHeader(Writer writer, int cols, int rows, double west,
+            double south, double cellSize, String voidValueStr, String lineSeparator)
+            throws IOException {
+        writer.write("ncols " + cols + lineSeparator);
+        writer.write("nrows " + rows + lineSeparator);
+        writer.write("xllcorner " + west + lineSeparator);
+        writer.write("yllcorner " + south + lineSeparator);
+        writer.write("cellsize " + cellSize + lineSeparator);
+        writer.write("nodata_value " + voidValueStr + lineSeparator);
+    }
+
+    /**
+     * Writes a WKT .prj file if the grid has the associated WKT information.
+     *
+     * @param grid The grid that has been exported.
+     * @param filePath path to the Esri ASCII grid file
+     */
+    @Override
+    protected void exportAuxiliaryFiles(Grid grid, String filePath) {
+        WKTProjectionFile.write(grid.getPrjFileContent(), filePath);
+    }
+
     @Override
     public String getFileExtension() {
         return "asc";
@@ -0,0 +1,87 @@
+package edu.monash.fit.eduard_object.eduard.grid.exporter;
+
+import edu.monash.fit.eduard_object.eduard.grid.RowSink;
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
+import edu.monash.fit.eduard_object.eduard.grid.importer.WKTProjectionFile;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+
+/**
+ * Writes the rows of an Esri ASCII grid file one after the other, without
+ * holding the entire grid in memory. The format is identical to the format
+ * written by {@link EsriASCIIGridExporter}. As the minimum of the grid is not
+ * known before all rows are written, the value for void cells has to be
+ * passed to the constructor.
+ */
+public final class EsriASCIIGridRowWriter implements RowSink, Closeable {
+
+    private final PrintWriter writer;
+    private final DecimalFormat df;
+    private final String voidValueStr;
+    private final String lineSeparator = System.getProperty("line.separator");
+    private final int nRows;
+
+    /**
+     * number of rows written
+     */
+    private int rowCounter = 0;
+
+    /**
+     * Creates a file and writes the header, and a WKT file if the geometry has
+     * the associated WKT information.
+     *
+     * @param filePath path to file
+     * @param geometry the dimensions, position and coordinate reference system
+     * of the grid, usually the source of a streaming operator.
+     * @param voidValue value for void cells, must not be contained in the grid
+     * @param nbrDecimals the maximum number of decimals
+     * @throws IOException if the file cannot be written
+     */
+    public EsriASCIIGridRowWriter(String filePath, RowSource geometry,
+            float voidValue, int nbrDecimals) throws IOException {
+        writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(filePath), "US-ASCII")));
+        df = EsriASCIIGridExporter.createDecimalFormat(nbrDecimals);
+        voidValueStr = Float.toString(voidValue);
+        nRows = geometry.getRows();
+        EsriASCIIGridExporter.writeHeader(writer, geometry.getCols(), nRows,
+                geometry.getWest(), geometry.getSouth(), geometry.getCellSize(),
+                voidValueStr, lineSeparator);
+        WKTProjectionFile.write(geometry.getPrjFileContent(), filePath);
+    }
+
+    @Override
+    public void writeRow(float[] values) throws IOException {
+        if (rowCounter >= nRows) {
+            throw new IOException("too many rows");
+        }
+        for (float v : values) {
+            if (Float.isNaN(v)) {
+                writer.write(voidValueStr);
+            } else {
+                writer.write(df.format(v));
+            }
+            writer.write(" ");
+        }
+        writer.write(lineSeparator);
+        ++rowCounter;
+
+        // PrintWriter does not throw an exception when an error occurs,
+        // therefore check for errors with PrintWriter.checkError(), which
+        // also flushes the writer
+        if (writer.checkError()) {
+            throw new IOException("could not write grid");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+}
@@ -0,0 +1,207 @@
+package edu.monash.fit.eduard_object.eduard.grid.exporter;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.importer.WKTProjectionFile;
+import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import edu.monash.fit.eduard_object.eduard.utils.FileUtils;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Exporter for Esri binary float grids, consisting of a .flt file with 4-bytes
+ * floats and a .hdr text file with the size, the georeference, the void value
+ * and the byte order of the grid, and optionally a WKT file. Rows are copied
+ * with bulk transfers to a direct buffer, which only swap bytes if the byte
+ * order of the file differs from the native byte order.
+ */
+public class EsriFloatGridExporter extends GridExporter {
+
+    /**
+     * approximate size of the blocks of rows that are written at once
+     */
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Byte order of the values. Little endian is used by Esri software on
+     * most platforms.
+     */
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * value of void cells in the last exported file
+     */
+    private float voidValue = Float.NaN;
+
+    public EsriFloatGridExporter() {
+    }
+
+    /**
+     * Utility method for exporting a grid to an Esri binary float grid with
+     * little endian byte order, and a WKT file if the grid has the associated
+     * WKT information.
+     *
+     * @param grid the grid to export
+     * @param filePath path to the .flt file
+     * @param progressIndicator progress indicator
+     * @throws IOException throws an exception of a file-related error occurs
+     */
+    public static void export(Grid grid, String filePath,
+            ProgressIndicator progressIndicator) throws IOException {
+        EsriFloatGridExporter exporter = new EsriFloatGridExporter();
+        exporter.setProgressIndicator(progressIndicator);
+        exporter.exportToFile(grid, filePath);
+    }
+
+    @Override
+    protected void export(Grid grid, BufferedOutputStream bos) throws IOException {
+        write(grid, Channels.newChannel(bos), ByteBuffer.allocate(blockSize(grid)));
+        bos.flush();
+    }
+
+    @Override
+    protected boolean export(Grid grid, FileChannel channel) throws IOException {
+        write(grid, channel, ByteBuffer.allocateDirect(blockSize(grid)));
+        return true;
+    }
+
+    /**
+     * Returns the size of a buffer for a block of rows.
+     *
+     * @param grid the grid to export
+     * @return size in bytes
+     */
+    private static int blockSize(Grid grid) {
+        int rowSize = 4 * grid.getCols();
+        return Math.max(1, Math.min(grid.getRows(), BLOCK_SIZE / rowSize)) * rowSize;
+    }
+
+    /**
+     * Writes the values of a grid in blocks of rows.
+     *
+     * @param grid the grid to export
+     * @param channel destination
+     * @param buffer buffer for a block of rows
+     */
+    private void write(Grid grid, WritableByteChannel channel, ByteBuffer buffer)
+            throws IOException {
+        voidValue = findVoidValue(grid);
+        final int nCols = grid.getCols();
+        final int nRows = grid.getRows();
+        float[] array;
+        try {
+            array = grid.getBufferArray();
+        } catch (UnsupportedOperationException exc) {
+            // grid values are not stored in a Java array
+            array = null;
+        }
+        float[] rowValues = new float[nCols];
+        FloatBuffer values = buffer.order(byteOrder).asFloatBuffer();
+
+        for (int row = 0; row < nRows; ++row) {
+            if (array != null) {
+                System.arraycopy(array, row * nCols, rowValues, 0, nCols);
+            } else {
+                for (int col = 0; col < nCols; col++) {
+                    rowValues[col] = grid.getValue(col, row);
+                }
+            }
+            for (int col = 0; col < nCols; col++) {
+                if (Float.isNaN(rowValues[col])) {
+                    rowValues[col] = voidValue;
+                }
+            }
+            values.put(rowValues);
+
+            // write the block when it is full or after the last row
+            if (!values.hasRemaining() || row == nRows - 1) {
+                buffer.position(0);
+                buffer.limit(values.position() * 4);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                values.clear();
+
+                if (!rowProgress(row, grid)
+                        || (progressIndicator != null && progressIndicator.isCancelled())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the .hdr file and a WKT .prj file if the grid has the associated
+     * WKT information.
+     *
+     * @param grid The grid that has been exported.
+     * @param filePath path to the .flt file
+     * @throws IOException
+     */
+    @Override
+    protected void exportAuxiliaryFiles(Grid grid, String filePath) throws IOException {
+        String hdrFilePath = FileUtils.replaceExtension(filePath, "hdr", 3);
+        try (PrintWriter writer = new PrintWriter(hdrFilePath, "US-ASCII")) {
+            writeHeader(writer, grid, voidValue, byteOrder);
+            if (writer.checkError()) {
+                throw new IOException("could not write header file");
+            }
+        }
+        WKTProjectionFile.write(grid.getPrjFileContent(), filePath);
+    }
+
+    /**
+     * Writes the content of a .hdr file. The coordinates of the center of the
+     * lower left cell are written, which are the coordinates of the grid.
+     *
+     * @param writer writer
+     * @param grid the grid
+     * @param voidValue value of void cells
+     * @param byteOrder byte order of the values
+     */
+    static void writeHeader(PrintWriter writer, Grid grid, float voidValue, ByteOrder byteOrder) {
+        writer.println("ncols " + grid.getCols());
+        writer.println("nrows " + grid.getRows());
+        writer.println("xllcenter " + grid.getWest());
+        writer.println("yllcenter " + grid.getSouth());
+        writer.println("cellsize " + grid.getCellSize());
+        writer.println("nodata_value " + voidValue);
+        writer.println("byteorder "
+                + (byteOrder == ByteOrder.BIG_ENDIAN ? "MSBFIRST" : "LSBFIRST"));
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "flt";
+    }
+
+    @Override
+    public String getFileFormatName() {
+        return "Esri Float Grid";
+    }
+
+    /**
+     * @return the byte order of the values
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * @param byteOrder the byte order of the values
+     */
+    public void setByteOrder(ByteOrder byteOrder) {
+        if (byteOrder == null) {
+            throw new NullPointerException("");
+        }
+        this.byteOrder = byteOrder;
+    }
+
+}
@@ -1,7 +1,6 @@
 package edu.monash.fit.eduard_object.eduard.grid.exporter;
 
 import edu.monash.fit.eduard_object.eduard.grid.Grid;
-import edu.monash.fit.eduard_object.eduard.grid.importer.WKTProjectionFile;
 import edu.monash.fit.eduard_object.eduard.grid.operator.MinMaxOperator;
 import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
 import java.io.BufferedOutputStream;
@@ -9,6 +8,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * Abstract base class for grid exporters.
@@ -84,10 +84,12 @@ public abstract class GridExporter {
         FileOutputStream fileOutputStream = null;
         try {
             fileOutputStream = new FileOutputStream(file);
-            writeGridAndCloseStream(grid, fileOutputStream);
-            
-            if (this instanceof EsriASCIIGridExporter) {
-                WKTProjectionFile.write(grid.getPrjFileContent(), filePath);
+            if (!export(grid, fileOutputStream.getChannel())) {
+                writeGridAndCloseStream(grid, fileOutputStream);
+            }
+
+            if (progressIndicator == null || !progressIndicator.isCancelled()) {
+                exportAuxiliaryFiles(grid, filePath);
             }
         } catch (Exception exc) {
             // Delete the file if an exception is thrown. Before the file can be 
@@ -171,6 +173,35 @@ public abstract class GridExporter {
     protected abstract void export(Grid grid, BufferedOutputStream bos)
             throws IOException;
 
+    /**
+     * Writes a grid to a file channel. Derived classes can overwrite this
+     * method to write files faster than with
+     * {@link #export(Grid, BufferedOutputStream)}, for example with large
+     * buffers filled in parallel. The channel is closed by the caller.
+     *
+     * @param grid The grid to export.
+     * @param channel The channel of the file to write.
+     * @return false if the grid has not been written and is to be written with
+     * {@link #export(Grid, BufferedOutputStream)}. This default implementation
+     * always returns false.
+     * @throws java.io.IOException
+     */
+    protected boolean export(Grid grid, FileChannel channel) throws IOException {
+        return false;
+    }
+
+    /**
+     * Writes files accompanying the main file, such as a WKT .prj file, after
+     * the main file has been written. This default implementation does
+     * nothing.
+     *
+     * @param grid The grid that has been exported.
+     * @param filePath path to the main file
+     * @throws java.io.IOException
+     */
+    protected void exportAuxiliaryFiles(Grid grid, String filePath) throws IOException {
+    }
+
     /**
      * Update progress indicator.
      *
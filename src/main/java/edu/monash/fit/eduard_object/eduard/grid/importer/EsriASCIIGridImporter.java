@@ -6,16 +6,43 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.StringTokenizer;
-import java.util.concurrent.BlockingQueue;
+import java.io.LineNumberReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Importer for Esri ASCII grid files. The file is memory-mapped and split at
+ * line boundaries into chunks, which are parsed in parallel. A first pass
+ * counts the values in each chunk, such that each chunk knows the position of
+ * its first value in the grid. A second pass parses the values with an
+ * allocation-free parser and writes them directly to the grid.
+ */
 public final class EsriASCIIGridImporter {
 
-    volatile private Throwable producerConsumerException = null;
+    /**
+     * approximate size of the chunks parsed in parallel
+     */
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * powers of 10 that are exactly represented by a double
+     */
+    private static final double[] POWERS_OF_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
     private EsriASCIIGridImporter() {
     }
@@ -85,205 +112,322 @@ public final class EsriASCIIGridImporter {
             throws java.io.IOException {
 
         String projFileContent = WKTProjectionFile.read(filePath);
-        
+
         File file = new File(filePath);
-        
-        InputStream fis = new FileInputStream(file.getAbsolutePath());
-        EsriASCIIGridImporter esriReader = new EsriASCIIGridImporter();
-        Grid grid = esriReader.read(fis, projFileContent, progressIndicator);
-        if (progressIndicator != null && progressIndicator.isCancelled()) {
-            return null;
+
+        try (FileChannel channel = FileChannel.open(file.getAbsoluteFile().toPath(), StandardOpenOption.READ)) {
+            Grid grid = read(channel, projFileContent, progressIndicator);
+            if (progressIndicator != null && progressIndicator.isCancelled()) {
+                return null;
+            }
+            return grid;
         }
-        
-        return grid;
     }
 
     /**
-     * Read a grid from a stream in ESRI ASCII format.
+     * Read a grid from a file in ESRI ASCII format.
      *
-     * @param input The stream to read from. The stream is closed at the end.
+     * @param channel The file to read from.
+     * @param projFileContent content of the .prj file or null
      * @param progressIndicator A WorkerProgress to inform about the progress.
      * @return The read grid.
-     * @throws java.io.IOException
      */
-    private Grid read(InputStream input, String projFileContent, ProgressIndicator progressIndicator)
+    private static Grid read(FileChannel channel, String projFileContent, ProgressIndicator progressIndicator)
             throws IOException {
 
-        BufferedReader br = null;
-        try {
-            InputStreamReader in = new InputStreamReader(input);
-            br = new BufferedReader(in);
-            GridHeaderImporter header = new GridHeaderImporter();
-            String firstGridLine = header.readHeader(br);
-            if (header.isValid() == false) {
-                throw new IOException("Unsupported file format.");
-            }
-            Grid grid = new Grid(header.getCols(), header.getRows(),
-                    header.getCellSize(), header.getWest(), header.getSouth(), projFileContent);
+        // the reader is not closed, as this would close the channel
+        LineNumberReader reader = new LineNumberReader(new InputStreamReader(
+                Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+        GridHeaderImporter header = new GridHeaderImporter();
+        header.readHeader(reader);
+        if (header.isValid() == false) {
+            throw new IOException("Unsupported file format.");
+        }
+        // the header reader has read all header lines and the first grid line
+        long dataStart = findLineStart(channel, reader.getLineNumber() - 1);
 
-            // http://www.java2s.com/Code/Java/Threads/ProducerconsumerforJ2SE15usingconcurrent.htm
-            // a limited capacity of around 64 works fastest on the system used
-            // for development with large grids
-            BlockingQueue<String> q = new LinkedBlockingQueue<>(64);
-            q.put(firstGridLine);
+        Grid grid = new Grid(header.getCols(), header.getRows(),
+                header.getCellSize(), header.getWest(), header.getSouth(), projFileContent);
+        final long nbrValues = (long) header.getCols() * header.getRows();
+        final float noDataValue = header.getNoDataValue();
 
-            Producer producer = new Producer(q, br);
-            Thread producerThread = new Thread(producer);
-            producerThread.start();
+        long[] chunks = splitAtLines(channel, dataStart);
+        int nbrChunks = chunks.length - 1;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(nbrChunks, Runtime.getRuntime().availableProcessors()));
+        try {
+            // first pass: count the values in each chunk
+            List<Future<Long>> counts = new ArrayList<>();
+            for (int i = 0; i < nbrChunks; i++) {
+                final MappedByteBuffer chunk = map(channel, chunks[i], chunks[i + 1]);
+                counts.add(executor.submit(() -> countValues(chunk)));
+            }
+            long[] firstValue = new long[nbrChunks + 1];
+            for (int i = 0; i < nbrChunks; i++) {
+                firstValue[i + 1] = firstValue[i] + counts.get(i).get();
+            }
+            // make sure the correct number of values is read
+            if (firstValue[nbrChunks] > nbrValues) {
+                throw new IOException("corrupt Esri Ascii grid file");
+            }
+            if (firstValue[nbrChunks] < nbrValues) {
+                throw new IOException("invalid Esri Ascii grid file");
+            }
 
-            Consumer consumer = new Consumer(q, grid, header.getNoDataValue(), progressIndicator);
-            Thread consumerThread = new Thread(consumer);
-            consumerThread.start();
+            // second pass: parse the values of each chunk and write them to the grid
+            List<Future<?>> parsers = new ArrayList<>();
+            for (int i = 0; i < nbrChunks; i++) {
+                final MappedByteBuffer chunk = map(channel, chunks[i], chunks[i + 1]);
+                final long first = firstValue[i];
+                parsers.add(executor.submit(() -> parseValues(chunk, grid, first, noDataValue)));
+            }
+            for (int i = 0; i < nbrChunks; i++) {
+                parsers.get(i).get();
 
-            // only wait for the consumer thread to finish.
-            // By also joining the producer thread we would block the producer if 
-            // the consumer cancels the operation (for example through a progress GUI).
-            consumerThread.join();
+                // update progress info
+                if (progressIndicator != null) {
+                    int perc = (int) (100d * (i + 1) / nbrChunks);
+                    if (!progressIndicator.progress(perc)) {
+                        throw new IOException(new CancellationException());
+                    }
+                }
+            }
             return grid;
         } catch (InterruptedException ex) {
             throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
         } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (IOException exc) {
-            }
-
-            if (producerConsumerException != null) {
-                throw new IOException(producerConsumerException);
-            }
+            executor.shutdownNow();
         }
     }
 
     /**
-     * Indicates end of file.
+     * Returns the position of the first byte of a line.
+     *
+     * @param channel the file
+     * @param line index of the line, starting at 0
+     * @return position in bytes
      */
-    private static final String EOF = "END_OF_FILE";
+    private static long findLineStart(FileChannel channel, int line) throws IOException {
+        long position = 0;
+        int lineCounter = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (lineCounter < line) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n && lineCounter < line; i++) {
+                position++;
+                if (buffer.get(i) == '\n') {
+                    ++lineCounter;
+                }
+            }
+        }
+        return position;
+    }
 
     /**
-     * Reads the grid body line by line.
+     * Split the grid lines into chunks of approximately CHUNK_SIZE bytes. Each
+     * chunk starts at the beginning of a line.
+     *
+     * @param channel the file
+     * @param dataStart position of the first grid line
+     * @return start positions of the chunks, followed by the end of the file
      */
-    private class Producer implements Runnable {
-
-        private final BlockingQueue<String> queue;
-        private final BufferedReader reader;
-
-        Producer(BlockingQueue<String> queue, BufferedReader reader) {
-            this.queue = queue;
-            this.reader = reader;
+    private static long[] splitAtLines(FileChannel channel, long dataStart) throws IOException {
+        long fileSize = channel.size();
+        List<Long> starts = new ArrayList<>();
+        starts.add(dataStart);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = dataStart + CHUNK_SIZE;
+        while (position < fileSize) {
+            // search the end of the line containing position
+            long lineStart = -1;
+            while (lineStart < 0 && position < fileSize) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                for (int i = 0; i < n; i++) {
+                    if (buffer.get(i) == '\n') {
+                        lineStart = position + i + 1;
+                        break;
+                    }
+                }
+                position += Math.max(n, 0);
+            }
+            if (lineStart < 0 || lineStart >= fileSize) {
+                break;
+            }
+            starts.add(lineStart);
+            position = lineStart + CHUNK_SIZE;
+        }
+        long[] chunks = new long[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            chunks[i] = starts.get(i);
         }
+        chunks[starts.size()] = fileSize;
+        return chunks;
+    }
 
-        @Override
-        public void run() {
-            try {
-                // read file line by line and store read lines in blocking queue
-                String line;
-                while ((line = reader.readLine()) != null
-                        // check whether this thread has been interrupted
-                        && !Thread.currentThread().isInterrupted()
-                        // check whether consumer thread has encountered an exception
-                        && producerConsumerException == null) {
-                    queue.put(line);
-                }
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
 
-                // add end-of-file object (a "poison pill")
-                queue.put(EOF);
-            } catch (Throwable ex) {
-                // store the exception for the main thread and the consumer thread
-                producerConsumerException = ex;
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    /**
+     * Count the values in a chunk.
+     *
+     * @param chunk the chunk, starting at the beginning of a line
+     * @return number of values
+     */
+    private static long countValues(ByteBuffer chunk) {
+        long counter = 0;
+        boolean separator = true;
+        final int length = chunk.limit();
+        for (int i = 0; i < length; i++) {
+            boolean s = isSeparator(chunk.get(i));
+            if (separator && !s) {
+                ++counter;
             }
+            separator = s;
         }
+        return counter;
     }
 
     /**
-     * Parses grid lines.
+     * Parse the values of a chunk and write them to the grid.
+     *
+     * @param chunk the chunk, starting at the beginning of a line
+     * @param grid the grid to write to
+     * @param firstValue position in the grid of the first value in the chunk
+     * @param noDataValue values equal to this value are void
      */
-    private class Consumer implements Runnable {
-
-        private final BlockingQueue<String> queue;
-        private final float noDataValue;
-        private final Grid grid;
-        private final ProgressIndicator progressIndicator;
-        private int counter = 0;
-
-        Consumer(BlockingQueue<String> queue, Grid grid, float noDataValue,
-                ProgressIndicator progressIndicator) {
-            this.queue = queue;
-            this.grid = grid;
-            this.noDataValue = noDataValue;
-            this.progressIndicator = progressIndicator;
+    private static Void parseValues(ByteBuffer chunk, Grid grid, long firstValue, float noDataValue) {
+        final int nCols = grid.getCols();
+        int col = (int) (firstValue % nCols);
+        int row = (int) (firstValue / nCols);
+        final int length = chunk.limit();
+        int i = 0;
+        while (i < length) {
+            // skip separators
+            while (i < length && isSeparator(chunk.get(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int tokenStart = i;
+            while (i < length && !isSeparator(chunk.get(i))) {
+                i++;
+            }
+            float v = parseFloat(chunk, tokenStart, i);
+            if (!Float.isFinite(v) || v == noDataValue) {
+                grid.setVoid(col, row);
+            } else {
+                grid.setValue(v, col, row);
+            }
+            if (++col == nCols) {
+                col = 0;
+                ++row;
+            }
         }
+        return null;
+    }
 
-        @Override
-        public void run() {
-            try {
-                final int nCols = grid.getCols();
-                final int nRows = grid.getRows();
-                final int nbrValues = nRows * nCols;
-                do {
-                    String str = queue.take();
-
-                    // test for end of file
-                    if (EOF.equals(str)) {
-                        // make sure the correct number of values has been read
-                        if (counter != nbrValues) {
-                            throw new IOException("invalid Esri Ascii grid file");
-                        }
-                        break;
-                    }
-
-                    // split each line in tokens and parse the tokens for a float.
-                    // One row in the grid might not correspond to a grid row.
-                    // StringTokenizer is faster than String.split()
-                    // About 50% of the time is this spent with tokenizing the string,
-                    // and 50% is spent with Float.parseFloat().
-                    StringTokenizer tokenizer = new StringTokenizer(str, " \t");
-                    while (tokenizer.hasMoreTokens()
-                            // check whether this thread has been interrupted
-                            && !Thread.currentThread().isInterrupted()
-                            // check whether producer thread has encountered an exception
-                            && producerConsumerException == null) {
-                        int col = counter % nCols;
-                        int row = counter / nCols;
-                        ++counter;
-
-                        // make sure we do not read too many cell values
-                        if (counter > nbrValues) {
-                            throw new IOException("corrupt Esri Ascii grid file");
-                        }
-
-                        String token = tokenizer.nextToken();
-                        try {
-                            float v = Float.parseFloat(token);
-                            if (!Float.isFinite(v) || v == noDataValue) {
-                                grid.setVoid(col, row);
-                            } else {
-                                grid.setValue(v, col, row);
-                            }
-                        } catch (NumberFormatException exc) {
-                            throw new IllegalArgumentException("Illegal input string: \"" + token + "\"", exc);
-                        }
-                    }
-
-                    // update progress info
-                    if (progressIndicator != null) {
-                        int row = counter / nCols;
-                        int perc = (int) (100d * row / nRows);
-                        if (!progressIndicator.progress(perc)) {
-                            producerConsumerException = new CancellationException();
-                            break;
-                        }
-                    }
-                } while (counter < nbrValues
-                        // check whether this thread has been interrupted
-                        && !Thread.currentThread().isInterrupted()
-                        // check whether producer thread has encountered an exception
-                        && producerConsumerException == null);
-            } catch (Throwable ex) {
-                // store the exception for the main thread and producer thread
-                producerConsumerException = ex;
+    /**
+     * Parse a decimal number without allocating objects. The result is
+     * identical to Float.parseFloat(). Numbers with a mantissa up to 2^53 and a
+     * decimal exponent between -22 and +22 are converted with a single
+     * division or multiplication of two exact doubles, which is correctly
+     * rounded to a double. Rounding this double to a float gives the correctly
+     * rounded float, unless the double is exactly half-way between two floats,
+     * in which case the exact number may be on either side. Half-way numbers
+     * and all other numbers are parsed by Float.parseFloat().
+     *
+     * @param buffer the bytes
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return the parsed number
+     */
+    private static float parseFloat(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        byte c = buffer.get(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean digits = false;
+        for (; i < end && (c = buffer.get(i)) >= '0' && c <= '9'; i++) {
+            mantissa = mantissa * 10 + (c - '0');
+            digits = true;
+            if (mantissa != 0) {
+                ++significantDigits;
+            }
+        }
+        if (i < end && buffer.get(i) == '.') {
+            for (i++; i < end && (c = buffer.get(i)) >= '0' && c <= '9'; i++) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits = true;
+                --exponent;
+                if (mantissa != 0) {
+                    ++significantDigits;
+                }
+            }
+        }
+        if (digits && i < end && ((c = buffer.get(i)) == 'e' || c == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && ((c = buffer.get(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i++;
             }
+            int e = 0;
+            int exponentStart = i;
+            for (; i < end && (c = buffer.get(i)) >= '0' && c <= '9'; i++) {
+                e = Math.min(e * 10 + (c - '0'), 10000);
+            }
+            if (i == exponentStart) {
+                return parseFloatString(buffer, start, end);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!digits || i != end || significantDigits > 18) {
+            return parseFloatString(buffer, start, end);
+        }
+        if (mantissa == 0) {
+            return negative ? -0f : 0f;
+        }
+        if (mantissa > (1L << 53) || exponent < -22 || exponent > 22) {
+            return parseFloatString(buffer, start, end);
+        }
+        double d = exponent < 0 ? mantissa / POWERS_OF_10[-exponent] : mantissa * POWERS_OF_10[exponent];
+        // the 29 bits of a double mantissa below the float mantissa are 1 followed by 0s
+        if ((Double.doubleToRawLongBits(d) & 0x1FFFFFFFL) == 0x10000000L) {
+            return parseFloatString(buffer, start, end);
+        }
+        float f = (float) d;
+        return negative ? -f : f;
+    }
+
+    private static float parseFloatString(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        String token = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Float.parseFloat(token);
+        } catch (NumberFormatException exc) {
+            throw new IllegalArgumentException("Illegal input string: \"" + token + "\"", exc);
         }
     }
 }
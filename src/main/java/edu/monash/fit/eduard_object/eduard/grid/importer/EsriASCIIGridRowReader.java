@@ -0,0 +1,120 @@
+package edu.monash.fit.eduard_object.eduard.grid.importer;
+
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.StringTokenizer;
+
+/**
+ * Reads the rows of an Esri ASCII grid file one after the other, without
+ * loading the entire grid into memory. Use {@link EsriASCIIGridImporter} to
+ * read an entire grid.
+ */
+public final class EsriASCIIGridRowReader implements RowSource, Closeable {
+
+    private final BufferedReader reader;
+    private final GridHeaderImporter header = new GridHeaderImporter();
+    private final String prjFileContent;
+
+    /**
+     * tokens of the current line
+     */
+    private StringTokenizer tokenizer;
+
+    /**
+     * number of rows read
+     */
+    private int rowCounter = 0;
+
+    /**
+     * Opens a file and reads the header.
+     *
+     * @param filePath The path to the file to be read.
+     * @throws IOException if the file cannot be read or has an invalid header
+     */
+    public EsriASCIIGridRowReader(String filePath) throws IOException {
+        prjFileContent = WKTProjectionFile.read(filePath);
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)));
+        try {
+            String firstGridLine = header.readHeader(reader);
+            if (header.isValid() == false) {
+                throw new IOException("Unsupported file format.");
+            }
+            tokenizer = new StringTokenizer(firstGridLine, " \t");
+        } catch (IOException | RuntimeException exc) {
+            reader.close();
+            throw exc;
+        }
+    }
+
+    @Override
+    public int getCols() {
+        return header.getCols();
+    }
+
+    @Override
+    public int getRows() {
+        return header.getRows();
+    }
+
+    @Override
+    public double getCellSize() {
+        return header.getCellSize();
+    }
+
+    @Override
+    public double getWest() {
+        return header.getWest();
+    }
+
+    @Override
+    public double getSouth() {
+        return header.getSouth();
+    }
+
+    @Override
+    public String getPrjFileContent() {
+        return prjFileContent;
+    }
+
+    /**
+     * Reads the next row. One line in the file might not correspond to a grid
+     * row.
+     *
+     * @param values array receiving the values
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    @Override
+    public void readRow(float[] values) throws IOException {
+        if (rowCounter >= header.getRows()) {
+            throw new IOException("corrupt Esri Ascii grid file");
+        }
+        final float noDataValue = header.getNoDataValue();
+        for (int col = 0, nCols = header.getCols(); col < nCols; col++) {
+            while (!tokenizer.hasMoreTokens()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("invalid Esri Ascii grid file");
+                }
+                tokenizer = new StringTokenizer(line, " \t");
+            }
+            String token = tokenizer.nextToken();
+            try {
+                float v = Float.parseFloat(token);
+                values[col] = (!Float.isFinite(v) || v == noDataValue) ? Float.NaN : v;
+            } catch (NumberFormatException exc) {
+                throw new IllegalArgumentException("Illegal input string: \"" + token + "\"", exc);
+            }
+        }
+        ++rowCounter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,172 @@
+package edu.monash.fit.eduard_object.eduard.grid.importer;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import edu.monash.fit.eduard_object.eduard.utils.FileUtils;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Importer for Esri binary float grids, consisting of a .flt file with 4-bytes
+ * floats and a .hdr text file with the size, the georeference, the void value
+ * and the byte order of the grid. Blocks of rows of the .flt file are
+ * memory-mapped and copied to the grid with bulk transfers, which only swap
+ * bytes if the byte order of the file differs from the native byte order.
+ */
+public final class EsriFloatGridImporter {
+
+    /**
+     * approximate size of the blocks of rows that are mapped at once
+     */
+    private static final int BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private EsriFloatGridImporter() {
+    }
+
+    /**
+     * Returns whether a file references valid data that can be read.
+     *
+     * @param filePath path to the .flt or the .hdr file
+     * @return true if the header is valid and the .flt file is large enough
+     */
+    public static boolean canRead(String filePath) {
+        try {
+            GridHeaderImporter header = readHeader(filePath);
+            File fltFile = new File(FileUtils.replaceExtension(filePath, "flt", 3));
+            return header.isValid()
+                    && fltFile.length() >= 4L * header.getCols() * header.getRows();
+        } catch (Throwable ignore) {
+            return false;
+        }
+    }
+
+    /**
+     * Read a grid from a file in Esri binary float format.
+     *
+     * @param filePath path to the .flt or the .hdr file
+     * @return The read grid.
+     * @throws java.io.IOException
+     */
+    public static Grid read(String filePath) throws IOException {
+        return EsriFloatGridImporter.read(filePath, null);
+    }
+
+    /**
+     * Read a grid from a file in Esri binary float format.
+     *
+     * @param filePath path to the .flt or the .hdr file
+     * @param progressIndicator A WorkerProgress to inform about the progress.
+     * @return The read grid.
+     * @throws java.io.IOException
+     */
+    public static Grid read(String filePath, ProgressIndicator progressIndicator)
+            throws IOException {
+
+        GridHeaderImporter header = readHeader(filePath);
+        if (header.isValid() == false) {
+            throw new IOException("Unsupported file format.");
+        }
+        String fltFilePath = FileUtils.replaceExtension(filePath, "flt", 3);
+        String projFileContent = WKTProjectionFile.read(fltFilePath);
+        File file = new File(fltFilePath);
+
+        try (FileChannel channel = FileChannel.open(file.getAbsoluteFile().toPath(), StandardOpenOption.READ)) {
+            int cols = header.getCols();
+            int rows = header.getRows();
+            if (channel.size() < 4L * cols * rows) {
+                throw new IOException("invalid Esri float grid file");
+            }
+            Grid grid = new Grid(cols, rows, header.getCellSize(),
+                    header.getWest(), header.getSouth(), projFileContent);
+            read(channel, grid, header.getByteOrder(), header.getNoDataValue(), progressIndicator);
+            if (progressIndicator != null && progressIndicator.isCancelled()) {
+                return null;
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Reads the .hdr file of a grid.
+     *
+     * @param filePath path to the .flt or the .hdr file
+     * @return the header
+     */
+    private static GridHeaderImporter readHeader(String filePath) throws IOException {
+        String hdrFilePath = FileUtils.replaceExtension(filePath, "hdr", 3);
+        try (BufferedReader reader = new BufferedReader(new FileReader(hdrFilePath))) {
+            GridHeaderImporter header = new GridHeaderImporter();
+            header.readFloatGridHeader(reader);
+            return header;
+        }
+    }
+
+    /**
+     * Copy the values of a .flt file to a grid.
+     *
+     * @param channel the .flt file
+     * @param grid the grid to write to
+     * @param byteOrder byte order of the values in the file
+     * @param noDataValue values equal to this value are void
+     * @param progressIndicator A WorkerProgress to inform about the progress.
+     */
+    private static void read(FileChannel channel, Grid grid, ByteOrder byteOrder,
+            float noDataValue, ProgressIndicator progressIndicator) throws IOException {
+
+        final int cols = grid.getCols();
+        final int rows = grid.getRows();
+        float[] array;
+        try {
+            array = grid.getBufferArray();
+        } catch (UnsupportedOperationException exc) {
+            // grid values are not stored in a Java array, copy row by row
+            array = null;
+        }
+        float[] rowValues = array == null ? new float[cols] : null;
+
+        final int blockRows = (int) Math.max(1, BLOCK_SIZE / (4L * cols));
+        for (int row = 0; row < rows; row += blockRows) {
+            int nRows = Math.min(blockRows, rows - row);
+            FloatBuffer values = channel.map(FileChannel.MapMode.READ_ONLY,
+                    4L * row * cols, 4L * nRows * cols).order(byteOrder).asFloatBuffer();
+            if (array != null) {
+                int start = row * cols;
+                int end = start + nRows * cols;
+                values.get(array, start, nRows * cols);
+                for (int i = start; i < end; i++) {
+                    float v = array[i];
+                    if (!Float.isFinite(v) || v == noDataValue) {
+                        array[i] = Float.NaN;
+                    }
+                }
+            } else {
+                for (int r = row; r < row + nRows; r++) {
+                    values.get(rowValues);
+                    for (int col = 0; col < cols; col++) {
+                        float v = rowValues[col];
+                        if (!Float.isFinite(v) || v == noDataValue) {
+                            grid.setVoid(col, r);
+                        } else {
+                            grid.setValue(v, col, r);
+                        }
+                    }
+                }
+            }
+
+            // update progress info
+            if (progressIndicator != null) {
+                int perc = (int) (100d * (row + nRows) / rows);
+                if (!progressIndicator.progress(perc)) {
+                    throw new IOException(new CancellationException());
+                }
+            }
+        }
+    }
+}
@@ -2,10 +2,12 @@ package edu.monash.fit.eduard_object.eduard.grid.importer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteOrder;
 import java.util.StringTokenizer;
 
 /**
- * Importer for headers of Esri ASCII grid files.
+ * Importer for headers of Esri ASCII grid files and of .hdr files of Esri
+ * binary float grids.
  *
  * @author Bernie Jenny
  */
@@ -17,6 +19,7 @@ public final class GridHeaderImporter {
     private double south = Double.NaN;
     private double cellSize = Double.NaN;
     private float noDataValue = Float.NaN;
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
 
     /**
      * Returns whether valid values have been found in the header.
@@ -38,13 +41,32 @@ public final class GridHeaderImporter {
      * @throws IOException
      */
     String readHeader(BufferedReader reader) throws IOException {
+        return readHeader(reader, false);
+    }
+
+    /**
+     * Reads a .hdr file of an Esri binary float grid. Empty lines and unknown
+     * lines are ignored.
+     *
+     * @param reader read from this
+     * @throws IOException
+     */
+    void readFloatGridHeader(BufferedReader reader) throws IOException {
+        readHeader(reader, true);
+    }
+
+    private String readHeader(BufferedReader reader, boolean floatGridHeader) throws IOException {
         cols = rows = 0;
         west = south = cellSize = Double.NaN;
         noDataValue = Float.NaN;
+        byteOrder = ByteOrder.LITTLE_ENDIAN;
         boolean xCornerCoordinates = false, yCornerCoordinates = false;
         String line;
         while ((line = reader.readLine()) != null) {
             StringTokenizer tokenizer = new StringTokenizer(line, " \t,;");
+            if (floatGridHeader && !tokenizer.hasMoreTokens()) {
+                continue;
+            }
             String str = tokenizer.nextToken().trim().toLowerCase();
             if (str.equals("ncols")) {
                 cols = Integer.parseInt(tokenizer.nextToken());
@@ -64,6 +86,11 @@ public final class GridHeaderImporter {
                 cellSize = Double.parseDouble(tokenizer.nextToken());
             } else if (str.startsWith("nodata")) {
                 noDataValue = Float.parseFloat(tokenizer.nextToken());
+            } else if (str.equals("byteorder")) {
+                String order = tokenizer.nextToken().toLowerCase();
+                byteOrder = order.startsWith("msb") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            } else if (floatGridHeader) {
+                // ignore unknown lines, such as nbits or layout
             } else {
                 // found first grid line or unknonwn header line
                 if (xCornerCoordinates) {
@@ -76,6 +103,16 @@ public final class GridHeaderImporter {
             }
         }
 
+        if (floatGridHeader) {
+            if (xCornerCoordinates) {
+                west += cellSize / 2;
+            }
+            if (yCornerCoordinates) {
+                south += cellSize / 2;
+            }
+            return null;
+        }
+
         // this should not be reached: the header is not complete.
         cols = rows = 0;
         west = south = cellSize = Double.NaN;
@@ -123,4 +160,12 @@ public final class GridHeaderImporter {
     public float getNoDataValue() {
         return noDataValue;
     }
+
+    /**
+     * @return the byte order of binary values, little endian if the header
+     * does not specify the byte order
+     */
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
 }
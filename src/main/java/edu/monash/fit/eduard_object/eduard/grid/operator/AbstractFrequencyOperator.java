@@ -1,8 +1,12 @@
 package edu.monash.fit.eduard_object.eduard.grid.operator;
 
 import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RowSink;
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
 import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Abstract base class for low-pass and high-pass filters. Results are close to
@@ -105,7 +109,7 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
 
     @Override
     public Grid operate(Grid src, Grid dst) {
-        logStart();
+        logStart(src.getCols(), src.getRows());
         try {
             Grid transposedGrid = new HorizontalTransposingLowPassFilter(
                     progressIndicator, true).operate(src);
@@ -113,18 +117,214 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
                 return null;
             }
 
-            return new HorizontalTransposingLowPassFilter(progressIndicator, false)
+            Grid result = new HorizontalTransposingLowPassFilter(progressIndicator, false)
                     .operate(transposedGrid, dst);
+            // the transposed grid is not needed anymore, its buffer can be reused
+            transposedGrid.release();
+            return result;
         } finally {
             logEnd();
         }
     }
 
+    /**
+     * Streaming mode applies the horizontal pass to each row when it is read,
+     * and the vertical pass with a pipeline of {@link VerticalBlurStage}, one
+     * stage for each iteration of the box filter. Each stage only stores the
+     * rows covered by the filter. The moving sums of the vertical pass are
+     * accumulated in the same order as in the transposed grid used by
+     * {@link #operate(Grid, Grid)}, and the results are identical.
+     *
+     * @param src The source rows.
+     * @param dst The destination receiving the resulting rows.
+     * @throws IOException if a row cannot be read or written
+     */
+    @Override
+    public void operateStreaming(RowSource src, RowSink dst) throws IOException {
+        Objects.requireNonNull(src, getName() + ": source rows are null");
+        Objects.requireNonNull(dst, getName() + ": destination rows are null");
+        if (!isStreamable()) {
+            throw new UnsupportedOperationException(getName() + ": streaming is not supported");
+        }
+        logStart(src.getCols(), src.getRows());
+        try {
+            final int nCols = src.getCols();
+            final int nRows = src.getRows();
+            // the source rows are retained until the corresponding blurred rows
+            // leave the pipeline, which is delayed by r + 1 rows for each stage
+            final float[][] srcRows = new float[Math.min(nRows, ITERATIONS * (r + 1) + 1)][nCols];
+            HorizontalTransposingLowPassFilter horizontalFilter
+                    = new HorizontalTransposingLowPassFilter(progressIndicator, true);
+            // the last stage post-processes the blurred rows and writes them
+            RowSink postProcessor = new RowSink() {
+                private int row = 0;
+
+                @Override
+                public void writeRow(float[] values) throws IOException {
+                    postProcessStreamedRow(srcRows[row % srcRows.length], values, row);
+                    dst.writeRow(values);
+                    row++;
+                }
+            };
+            VerticalBlurStage firstStage = null;
+            for (int i = 0; i < ITERATIONS; i++) {
+                firstStage = new VerticalBlurStage(nCols, nRows,
+                        firstStage == null ? postProcessor : firstStage);
+            }
+
+            float[] blurredRow = new float[nCols];
+            float[] tmpRow = new float[nCols];
+            boolean foundVoid = false;
+            for (int row = 0; row < nRows; row++) {
+                if (!reportProgress(100f * row / nRows)) {
+                    return;
+                }
+                float[] srcRow = srcRows[row % srcRows.length];
+                src.readRow(srcRow);
+                foundVoid = horizontalFilter.filterRow(srcRow, blurredRow, tmpRow, foundVoid);
+                firstStage.writeRow(blurredRow);
+            }
+        } finally {
+            logEnd();
+        }
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return true;
+    }
+
+    /**
+     * Called in streaming mode for each blurred row before it is written.
+     * Derived classes can override this method to post-process the blurred
+     * values. This default implementation does nothing.
+     *
+     * @param srcRow The source row, which must not be changed.
+     * @param dstRow The blurred row.
+     * @param row The index of the row.
+     */
+    protected void postProcessStreamedRow(float[] srcRow, float[] dstRow, int row) {
+    }
+
     @Override
     public String toString() {
         return getName() + ": sigma=" + sigma;
     }
 
+    /**
+     * Reflect index for out-of-bounds access. Only used for the borders of a
+     * row or a column.
+     *
+     * @param N
+     * @param n
+     * @return
+     */
+    private static int extension(int N, int n) {
+        while (true) {
+            if (n < 0) {
+                n = -1 - n;
+                /* Reflect over n = -1/2.    */
+            } else if (n >= N) {
+                n = 2 * N - 1 - n;
+                /* Reflect over n = N - 1/2. */
+            } else {
+                break;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * One iteration of the box filter applied to the columns of a stream of
+     * rows. The moving sums of all columns are updated for each row. A row is
+     * passed to the next stage as soon as the r + 1 rows below it have been
+     * written. Only the last 2 * r + 4 rows are stored, which is the range of
+     * rows accessed by the moving sum.
+     * [REFERENCE: HorizontalTransposingLowPassFilter.blurRow]
+     */
+    private final class VerticalBlurStage implements RowSink {
+
+        /**
+         * ring of rows, row n is stored at n % rows.length
+         */
+        private final float[][] rows;
+
+        /**
+         * moving sum for each column
+         */
+        private final double[] sums;
+
+        /**
+         * number of rows of the grid
+         */
+        private final int N;
+
+        /**
+         * receives the blurred rows
+         */
+        private final RowSink next;
+
+        /**
+         * buffer for the blurred row
+         */
+        private final float[] blurredRow;
+
+        private int nbrPushed = 0;
+        private int nbrEmitted = 0;
+
+        private VerticalBlurStage(int nCols, int nRows, RowSink next) {
+            rows = new float[Math.min(nRows, 2 * r + 4)][nCols];
+            sums = new double[nCols];
+            blurredRow = new float[nCols];
+            N = nRows;
+            this.next = next;
+        }
+
+        @Override
+        public void writeRow(float[] values) throws IOException {
+            System.arraycopy(values, 0, rows[nbrPushed % rows.length], 0, values.length);
+            nbrPushed++;
+            while (canEmit()) {
+                emit(blurredRow);
+                next.writeRow(blurredRow);
+            }
+        }
+
+        private boolean canEmit() {
+            return nbrEmitted < N && nbrPushed > Math.min(N - 1, nbrEmitted + r + 1);
+        }
+
+        private float[] row(int n) {
+            return rows[extension(N, n) % rows.length];
+        }
+
+        private void emit(float[] dst) {
+            final int n = nbrEmitted++;
+            final int nCols = sums.length;
+            if (n == 0) {
+                for (int col = 0; col < nCols; col++) {
+                    double sum = 0;
+                    for (int k = -r; k <= r; ++k) {
+                        sum += row(k)[col];
+                    }
+                    sum = c1 * (row(r + 1)[col] + row(-r - 1)[col]) + (c1 + c2) * sum;
+                    sums[col] = sum;
+                    dst[col] = (float) sum;
+                }
+            } else {
+                float[] a = row(n + r + 1);
+                float[] b = row(n - r - 2);
+                float[] c = row(n + r);
+                float[] d = row(n - r - 1);
+                for (int col = 0; col < nCols; col++) {
+                    double sum = sums[col] + (c1 * (a[col] - b[col]) + c2 * (c[col] - d[col]));
+                    sums[col] = sum;
+                    dst[col] = (float) sum;
+                }
+            }
+        }
+    }
+
     /**
      * Applies horizontal row-wise Gaussian convolution and stores results in a
      * transposed grid.
@@ -188,29 +388,7 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
                         for (int c = 0; c < ncols; c++) {
                             srcRow[c] = src.getValue(c, rowID);
                         }
-                        float[] dstRow = cachedRows[i];
-
-                        if (firstPass && foundVoid) {
-                            // found a void value before, assume this row also contains void values
-                            copyAndReplaceVoids(srcRow, dstRow);
-                            blurRow(dstRow, tmpRow);
-                        } else {
-                            // no void value found so far, assume there will be none in this row
-                            blurRow(srcRow, tmpRow);
-                            if (firstPass && !Grid.isValid(tmpRow[ncols - 1])) {
-                                // if there is any void value in this filtered row, the last value will be void
-                                foundVoid = true;
-                                copyAndReplaceVoids(srcRow, dstRow);
-                                blurRow(dstRow, tmpRow);
-                            }
-                        }
-
-                        // if LowPassOperator::ITERATIONS is not 4, the following 
-                        // lines need to be changed. If it is not an even number,
-                        // the result needs to be copied to cachedRows[i]
-                        blurRow(tmpRow, dstRow);
-                        blurRow(dstRow, tmpRow);
-                        blurRow(tmpRow, dstRow);
+                        foundVoid = filterRow(srcRow, cachedRows[i], tmpRow, foundVoid);
                     }
                 }
 
@@ -228,7 +406,46 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
         }
 
         /**
-         * Blurs a row once.
+         * Blurs a row with all iterations. In the first pass, void values are
+         * replaced with the nearest valid value in the row.
+         *
+         * @param srcRow input
+         * @param dstRow output
+         * @param tmpRow temporary buffer
+         * @param foundVoid true if a void value has been found in a previous
+         * row, in which case void values are assumed in this row.
+         * @return true if a void value has been found in this or a previous row
+         */
+        private boolean filterRow(float[] srcRow, float[] dstRow, float[] tmpRow,
+                boolean foundVoid) {
+            if (firstPass && foundVoid) {
+                // found a void value before, assume this row also contains void values
+                copyAndReplaceVoids(srcRow, dstRow);
+                blurRow(dstRow, tmpRow);
+            } else {
+                // no void value found so far, assume there will be none in this row
+                blurRow(srcRow, tmpRow);
+                if (firstPass && !Grid.isValid(tmpRow[srcRow.length - 1])) {
+                    // if there is any void value in this filtered row, the last value will be void
+                    foundVoid = true;
+                    copyAndReplaceVoids(srcRow, dstRow);
+                    blurRow(dstRow, tmpRow);
+                }
+            }
+
+            // if LowPassOperator::ITERATIONS is not 4, the following 
+            // lines need to be changed. If it is not an even number,
+            // the result needs to be copied to dstRow
+            blurRow(tmpRow, dstRow);
+            blurRow(dstRow, tmpRow);
+            blurRow(tmpRow, dstRow);
+            return foundVoid;
+        }
+
+        /**
+         * Blurs a row once. Only the first and last r + 2 samples may access
+         * cells outside of the row, which are reflected at the borders. The
+         * interior samples use a loop without reflection.
          *
          * @param src input
          * @param dst output
@@ -245,37 +462,39 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
                     + (c1 + c2) * sum;
             dst[0] = (float) sum;
 
-            for (int n = 1; n < N; ++n) {
-                sum += c1 * (src[extension(N, n + r + 1)]
-                        - src[extension(N, n - r - 2)])
-                        + c2 * (src[extension(N, n + r)]
-                        - src[extension(N, n - r - 1)]);
+            // samples in [interiorStart, interiorEnd) only access cells in the row
+            final int interiorStart = Math.min(r + 2, N);
+            final int interiorEnd = Math.max(interiorStart, N - r - 1);
+
+            sum = blurBorder(src, dst, sum, 1, interiorStart);
+            for (int n = interiorStart; n < interiorEnd; ++n) {
+                sum += c1 * (src[n + r + 1] - src[n - r - 2])
+                        + c2 * (src[n + r] - src[n - r - 1]);
                 dst[n] = (float) sum;
             }
+            blurBorder(src, dst, sum, interiorEnd, N);
         }
 
         /**
-         * Reflect index for out-of-bounds access. This is currently a
-         * bottleneck and could be avoided for the center of the grid (if the
-         * filter is smaller than the grid).
+         * Blurs border samples of a row with reflected access.
          *
-         * @param N
-         * @param n
-         * @return
+         * @param src input
+         * @param dst output
+         * @param sum moving sum of the previous sample
+         * @param start first sample
+         * @param end end of samples (exclusive)
+         * @return moving sum of the last sample
          */
-        private int extension(int N, int n) {
-            while (true) {
-                if (n < 0) {
-                    n = -1 - n;
-                    /* Reflect over n = -1/2.    */
-                } else if (n >= N) {
-                    n = 2 * N - 1 - n;
-                    /* Reflect over n = N - 1/2. */
-                } else {
-                    break;
-                }
+        private double blurBorder(float[] src, float[] dst, double sum, int start, int end) {
+            final int N = src.length;
+            for (int n = start; n < end; ++n) {
+                sum += c1 * (src[extension(N, n + r + 1)]
+                        - src[extension(N, n - r - 2)])
+                        + c2 * (src[extension(N, n + r)]
+                        - src[extension(N, n - r - 1)]);
+                dst[n] = (float) sum;
             }
-            return n;
+            return sum;
         }
 
         /**
@@ -318,33 +537,25 @@ public abstract class AbstractFrequencyOperator extends GridOperator {
                 dst[i] = src[last];
             }
 
-            // cells betwen first and last
-            for (int i = first; i <= last; i++) {
-                float v = src[i];
-                if (!Grid.isValid(v)) {
-                    // search closest non-void value in src
-                    for (int j = 1; j < N; j++) {
-                        // scan forwards
-                        if (i + j <= last) {
-                            v = src[i + j];
-                            if (Grid.isValid(v)) {
-                                dst[i] = v;
-                                break;
-                            }
-                        }
-
-                        // scan backwards
-                        if (i - j >= first) {
-                            v = src[i - j];
-                            if (Grid.isValid(v)) {
-                                dst[i] = v;
-                                break;
-                            }
-                        }
-                    }
-
-                } else {
+            // cells betwen first and last: a single sweep over runs of void
+            // cells, each void cell takes the value of the closer valid cell
+            // bounding its run (the following cell if both are equally close)
+            int i = first;
+            while (i <= last) {
+                if (Grid.isValid(src[i])) {
                     dst[i] = src[i];
+                    i++;
+                } else {
+                    // src[first] and src[last] are valid, thus the run is
+                    // bounded by valid cells on both sides
+                    final int prev = i - 1;
+                    int next = i + 1;
+                    while (!Grid.isValid(src[next])) {
+                        next++;
+                    }
+                    for (; i < next; i++) {
+                        dst[i] = next - i <= i - prev ? src[next] : src[prev];
+                    }
                 }
             }
         }
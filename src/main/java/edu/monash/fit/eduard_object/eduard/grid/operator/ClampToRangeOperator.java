@@ -8,7 +8,7 @@ import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
  *
  * @author Bernie Jenny, Monash University
  */
-public final class ClampToRangeOperator extends ThreadedGridOperator {
+public final class ClampToRangeOperator extends ThreadedGridOperator implements PointOperator {
 
     private final float min, max;
 
@@ -39,9 +39,17 @@ public final class ClampToRangeOperator extends ThreadedGridOperator {
 
     @Override
     protected void operateValue(Grid src, Grid dst, int col, int row) {
-        float val = src.getValue(col, row);
-        val = Math.min(max, Math.max(min, val));
-        dst.setValue(val, col, row);
+        dst.setValue(operate(src.getValue(col, row), col, row), col, row);
+    }
+
+    @Override
+    public float operate(float val, int col, int row) {
+        return Math.min(max, Math.max(min, val));
+    }
+
+    @Override
+    protected int getStreamingHalo() {
+        return 0;
     }
 
     @Override
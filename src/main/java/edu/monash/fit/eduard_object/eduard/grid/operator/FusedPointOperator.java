@@ -0,0 +1,193 @@
+package edu.monash.fit.eduard_object.eduard.grid.operator;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.MinMax;
+import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Applies a chain of point operators in a single sweep over a grid. Each grid
+ * value is read once, passed through all operators, and written once; no
+ * intermediate grids are allocated. The source and the destination grid can
+ * be identical.
+ * <p>
+ * Operators that require the minimum and maximum of their input (for example,
+ * {@link ScaleToRangeOperator}) are initialized with an additional sweep that
+ * evaluates the preceding operators of the chain without storing the results.
+ * <p>
+ * This class is not thread-safe: such operators keep the minimum and maximum
+ * of the current sweep in instance fields, thus a fused operator (and its
+ * point operators) must not be applied to several grids concurrently. Use a
+ * separate instance for each concurrent operation.
+ */
+public final class FusedPointOperator extends ThreadedGridOperator {
+
+    /**
+     * the chain of operators, applied in this order
+     */
+    private final PointOperator[] operators;
+
+    /**
+     * Constructor
+     *
+     * @param progressIndicator progress indicator
+     * @param operators the chain of operators, applied in this order
+     */
+    public FusedPointOperator(ProgressIndicator progressIndicator, PointOperator... operators) {
+        super(progressIndicator);
+        this.operators = operators.clone();
+        for (PointOperator operator : this.operators) {
+            Objects.requireNonNull(operator, "point operator is null");
+        }
+    }
+
+    /**
+     * Returns a new fused operator with an operator appended to the chain of
+     * this operator.
+     *
+     * @param operator the operator to append
+     * @return the new fused operator
+     */
+    public FusedPointOperator then(PointOperator operator) {
+        PointOperator[] chain = Arrays.copyOf(operators, operators.length + 1);
+        chain[operators.length] = operator;
+        return new FusedPointOperator(progressIndicator, chain);
+    }
+
+    @Override
+    public Grid operate(Grid src, Grid dst) {
+        Objects.requireNonNull(src, getName() + ": source grid is null");
+        // initialize operators that depend on the minimum and maximum of the
+        // values computed by the preceding operators
+        for (int i = 0; i < operators.length; i++) {
+            if (operators[i].requiresMinMax()) {
+                MinMax minMax = new ChainMinMaxOperator(progressIndicator, i).findMinMax(src);
+                operators[i].initMinMax(minMax);
+            }
+        }
+        return super.operate(src, dst);
+    }
+
+    @Override
+    protected void operateRow(Grid src, Grid dst, int row) {
+        for (int col = 0, nCols = src.getCols(); col < nCols; col++) {
+            dst.setValue(apply(src.getValue(col, row), col, row, operators.length), col, row);
+        }
+    }
+
+    /**
+     * Streaming mode is not supported if an operator requires the minimum and
+     * maximum of its input values, as these require an additional sweep.
+     *
+     * @return 0 or -1
+     */
+    @Override
+    protected int getStreamingHalo() {
+        for (PointOperator operator : operators) {
+            if (operator.requiresMinMax()) {
+                return -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Apply the first operators of the chain to a value.
+     *
+     * @param value source value
+     * @param col Column of the value.
+     * @param row Row of the value.
+     * @param nbrOperators number of operators to apply
+     * @return the new value
+     */
+    private float apply(float value, int col, int row, int nbrOperators) {
+        for (int i = 0; i < nbrOperators; i++) {
+            value = operators[i].operate(value, col, row);
+        }
+        return value;
+    }
+
+    @Override
+    public String getName() {
+        return "Fused point operators";
+    }
+
+    @Override
+    public String toString() {
+        return getName() + ": " + Arrays.toString(operators);
+    }
+
+    /**
+     * Searches the minimum and maximum values computed by the first operators
+     * of the chain, without storing the computed values.
+     * [REFERENCE: MinMaxOperator]
+     */
+    private final class ChainMinMaxOperator extends ThreadedGridOperator {
+
+        private final int nbrOperators;
+        private float min = Float.MAX_VALUE;
+        private float max = -Float.MAX_VALUE;
+
+        private ChainMinMaxOperator(ProgressIndicator progressIndicator, int nbrOperators) {
+            super(progressIndicator);
+            this.nbrOperators = nbrOperators;
+        }
+
+        private MinMax findMinMax(Grid grid) {
+            boolean initialIgnoreProgress = false;
+            try {
+                if (progressIndicator != null) {
+                    initialIgnoreProgress = progressIndicator.isIgnoreProgress();
+                    progressIndicator.setIgnoreProgress(true);
+                }
+                super.operate(grid, null);
+                if (min == Float.MAX_VALUE) {
+                    return new MinMax(Float.NaN, Float.NaN); // all values are NaN or Inf
+                }
+                return new MinMax(min, max);
+            } finally {
+                if (progressIndicator != null) {
+                    progressIndicator.setIgnoreProgress(initialIgnoreProgress);
+                }
+            }
+        }
+
+        @Override
+        protected void threadedOperate(Grid src, Grid ignore, int startRow, int endRow) {
+            // cannot initialise with first grid value as it might be NaN.
+            float localMin = Float.MAX_VALUE;
+            float localMax = -Float.MAX_VALUE;
+
+            final int nCols = src.getCols();
+            for (int row = startRow; row < endRow; ++row) {
+                if (reportProgress(startRow, endRow, row) == false) {
+                    return;
+                }
+                for (int col = 0; col < nCols; ++col) {
+                    float val = apply(src.getValue(col, row), col, row, nbrOperators);
+                    if (val > localMax) {
+                        localMax = val;
+                    }
+                    if (val < localMin) {
+                        localMin = val;
+                    }
+                }
+            }
+
+            synchronized (this) {
+                if (localMin < min) {
+                    min = localMin;
+                }
+                if (localMax > max) {
+                    max = localMax;
+                }
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "Find mimimum and maximum";
+        }
+    }
+}
@@ -23,6 +23,12 @@ public final class GradientOperator extends ThreadedGridOperator {
         dst.setValue((float) src.get8NeighborGradient(col, row), col, row);
     }
 
+    @Override
+    protected int getStreamingHalo() {
+        // 3x3 neighborhood
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "Gradient [rise/run]";
@@ -38,6 +38,12 @@ public final class GradientXZevenbergenThorneOperator extends ThreadedGridOperat
         dst.setValue(src.getXGradient(col, row), col, row);
     }
     
+    @Override
+    protected int getStreamingHalo() {
+        // 3x3 neighborhood
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "X gradient (Zevenbergen-Thorne)";
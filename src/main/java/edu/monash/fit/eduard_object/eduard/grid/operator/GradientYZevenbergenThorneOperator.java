@@ -38,6 +38,12 @@ public final class GradientYZevenbergenThorneOperator extends ThreadedGridOperat
         dst.setValue(src.getYGradient(col, row), col, row);
     }
 
+    @Override
+    protected int getStreamingHalo() {
+        // 3x3 neighborhood
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "Y gradient (Zevenbergen-Thorne)";
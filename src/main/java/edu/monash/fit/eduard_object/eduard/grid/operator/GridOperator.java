@@ -7,7 +7,12 @@
 package edu.monash.fit.eduard_object.eduard.grid.operator;
 
 import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RowSink;
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
 import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import java.io.IOException;
 
 /**
  * A GridOperator performs an operation on a grid and normally stores the result
@@ -33,6 +38,11 @@ public abstract class GridOperator {
      */
     private volatile long startTimeNanoSeconds = -1L;
 
+    /**
+     * metrics of the current operation
+     */
+    private StageMetrics stageMetrics;
+
     /**
      * Constructor
      */
@@ -95,21 +105,42 @@ public abstract class GridOperator {
     }
 
     /**
-     * Log start of operation in standard output stream.
+     * Log start of operation in standard output stream, and start a stage of
+     * the {@link RunMetrics} bound to the current thread.
      */
     protected void logStart() {
-        if (LOG_TO_STD_OUT && startTimeNanoSeconds == -1L) {
-            printLogStart();
+        logStart(0, 0);
+    }
+
+    /**
+     * Log start of operation in standard output stream, and start a stage of
+     * the {@link RunMetrics} bound to the current thread.
+     *
+     * @param cols number of columns of the processed grid
+     * @param rows number of rows of the processed grid
+     */
+    protected void logStart(int cols, int rows) {
+        if (startTimeNanoSeconds == -1L) {
+            if (LOG_TO_STD_OUT) {
+                printLogStart();
+            }
+            stageMetrics = RunMetrics.begin(getName(), cols, rows);
             startTimeNanoSeconds = System.nanoTime();
         }
     }
 
     /**
-     * Log end of operation in standard output stream.
+     * Log end of operation in standard output stream, and record the
+     * execution time with the {@link RunMetrics} bound to the current thread.
      */
     protected void logEnd() {
-        if (LOG_TO_STD_OUT && startTimeNanoSeconds != -1L) {
-            printLogEnd();
+        if (startTimeNanoSeconds != -1L) {
+            if (LOG_TO_STD_OUT) {
+                printLogEnd();
+            }
+            stageMetrics.addKernelMillis((System.nanoTime() - startTimeNanoSeconds) / 1e6);
+            stageMetrics.end();
+            stageMetrics = null;
             startTimeNanoSeconds = -1L;
         }
     }
@@ -180,7 +211,7 @@ public abstract class GridOperator {
      */
     public Grid operate(Grid src) {
         try {
-            logStart();
+            logStart(src == null ? 0 : src.getCols(), src == null ? 0 : src.getRows());
             Grid dst = initDestinationGrid(src);
             return operate(src, dst);
         } finally {
@@ -198,6 +229,33 @@ public abstract class GridOperator {
      */
     public abstract Grid operate(Grid src, Grid dst);
 
+    /**
+     * Returns whether this operator can be applied in streaming mode with
+     * {@link #operateStreaming(RowSource, RowSink)}.
+     *
+     * @return true if streaming mode is supported
+     */
+    public boolean isStreamable() {
+        return false;
+    }
+
+    /**
+     * Apply the operator in streaming mode. Rows are read from the source and
+     * the resulting rows are written to the sink, both from the top to the
+     * bottom of the grid. Only a window of rows is held in memory, such that
+     * grids larger than the available memory can be processed. The results are
+     * identical to {@link #operate(Grid, Grid)}.
+     *
+     * @param src The source rows.
+     * @param dst The destination receiving the resulting rows.
+     * @throws IOException if a row cannot be read or written
+     * @throws UnsupportedOperationException if this operator requires the
+     * entire grid, see {@link #isStreamable()}
+     */
+    public void operateStreaming(RowSource src, RowSink dst) throws IOException {
+        throw new UnsupportedOperationException(getName() + ": streaming is not supported");
+    }
+
     /**
      * Creates a new grid that will store the results of the operator.
      *
@@ -12,6 +12,12 @@ import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
  */
 public final class LowPassOperator extends AbstractFrequencyOperator {
 
+    /**
+     * point operators applied to the blurred values in the sweep that copies
+     * void values
+     */
+    private final PointOperator[] postOperators;
+
     /**
      * Constructor
      *
@@ -19,13 +25,66 @@ public final class LowPassOperator extends AbstractFrequencyOperator {
      * @param progressIndicator progress indicator
      */
     public LowPassOperator(double sigma, ProgressIndicator progressIndicator) {
+        this(sigma, progressIndicator, new PointOperator[0]);
+    }
+
+    /**
+     * Constructor with point operators applied to the blurred grid. The point
+     * operators are fused with the sweep that copies void values from the
+     * source grid, such that no additional pass over the grid is required.
+     *
+     * @param sigma standard deviation
+     * @param progressIndicator progress indicator
+     * @param postOperators point operators applied to the blurred values,
+     * after void values have been copied.
+     */
+    public LowPassOperator(double sigma, ProgressIndicator progressIndicator,
+            PointOperator... postOperators) {
         super(sigma, progressIndicator);
+        this.postOperators = postOperators.clone();
     }
 
     @Override
     public Grid operate(Grid src, Grid dst) {
         super.operate(src, dst);
-        return new CopyVoidOperator(progressIndicator).operate(src, dst);
+        if (postOperators.length == 0) {
+            return new CopyVoidOperator(progressIndicator).operate(src, dst);
+        }
+
+        // copy void values from the source grid and apply the point operators in one sweep
+        PointOperator copyVoid = (v, col, row) -> src.isVoid(col, row) ? Float.NaN : v;
+        FusedPointOperator fused = new FusedPointOperator(progressIndicator, copyVoid);
+        for (PointOperator postOperator : postOperators) {
+            fused = fused.then(postOperator);
+        }
+        return fused.operate(dst, dst);
+    }
+
+    /**
+     * Streaming mode is not supported if a point operator requires the minimum
+     * and maximum of the blurred values.
+     *
+     * @return true if no point operator requires the minimum and maximum
+     */
+    @Override
+    public boolean isStreamable() {
+        for (PointOperator postOperator : postOperators) {
+            if (postOperator.requiresMinMax()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void postProcessStreamedRow(float[] srcRow, float[] dstRow, int row) {
+        for (int col = 0; col < dstRow.length; col++) {
+            float v = Grid.isValid(srcRow[col]) ? dstRow[col] : Float.NaN;
+            for (PointOperator postOperator : postOperators) {
+                v = postOperator.operate(v, col, row);
+            }
+            dstRow[col] = v;
+        }
     }
 
     @Override
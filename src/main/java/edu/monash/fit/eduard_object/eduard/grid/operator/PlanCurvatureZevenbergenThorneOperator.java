@@ -66,6 +66,12 @@ public final class PlanCurvatureZevenbergenThorneOperator extends ThreadedGridOp
         dst.setValue((float) pc, col, row);
     }
 
+    @Override
+    protected int getStreamingHalo() {
+        // 3x3 neighborhood
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "Plan curvature (Zevenbergen-Thorne)";
@@ -0,0 +1,48 @@
+package edu.monash.fit.eduard_object.eduard.grid.operator;
+
+import edu.monash.fit.eduard_object.eduard.grid.MinMax;
+
+/**
+ * A point-wise operation that computes a new value from a single grid value.
+ * Point operators can be chained with a {@link FusedPointOperator}, which
+ * applies all operations in a single sweep over the grid without allocating
+ * intermediate grids.
+ */
+public interface PointOperator {
+
+    /**
+     * Compute the new value. This is called in parallel from multiple threads
+     * for different grid values.
+     *
+     * @param value the value computed by the previous operation in the chain,
+     * or the source grid value.
+     * @param col Column of the value.
+     * @param row Row of the value.
+     * @return the new value
+     */
+    float operate(float value, int col, int row);
+
+    /**
+     * Returns whether the operation depends on the minimum and maximum of its
+     * input values, which then have to be passed to
+     * {@link #initMinMax(MinMax)} before the first call to
+     * {@link #operate(float, int, int)}.
+     *
+     * @return true if the minimum and maximum of the input are required
+     */
+    default boolean requiresMinMax() {
+        return false;
+    }
+
+    /**
+     * Initialize the operation with the minimum and maximum of its input
+     * values. Only called if {@link #requiresMinMax()} returns true.
+     * Implementations may store the minimum and maximum in instance fields,
+     * which are read by the following calls to {@link #operate(float, int, int)};
+     * an operator is therefore not used by several operations concurrently.
+     *
+     * @param minMax minimum and maximum of the input values
+     */
+    default void initMinMax(MinMax minMax) {
+    }
+}
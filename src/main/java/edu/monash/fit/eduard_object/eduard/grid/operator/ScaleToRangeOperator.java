@@ -13,7 +13,7 @@ import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
  *
  * @author Bernie Jenny
  */
-public final class ScaleToRangeOperator extends ThreadedGridOperator {
+public final class ScaleToRangeOperator extends ThreadedGridOperator implements PointOperator {
 
     /**
      * New minimum and maximum values in the destination grid.
@@ -23,7 +23,7 @@ public final class ScaleToRangeOperator extends ThreadedGridOperator {
     /**
      * Minimum and maximum values in source grid. Initialized by the
      * single-threaded operate() method and then read by all threads in the
-     * multi-threaded {@link operateValue} method. There is no need to make this
+     * multi-threaded {@link #operateValue} method. There is no need to make this
      * volatile, as {@link ThreadedGridOperator}s are used with an
      * ExecutorService, which ensures that the threaded operator will see all
      * actions taken prior to the submission of the task.
@@ -32,8 +32,8 @@ public final class ScaleToRangeOperator extends ThreadedGridOperator {
 
     /**
      * Scale factor initialized by the single-threaded operate() method and then
-     * read by all threads in the multi-threaded {@link operateValue} method. See
-     * {@link srcMinMax} for absence of volatile qualifier.
+     * read by all threads in the multi-threaded {@link #operateValue} method. See
+     * {@link #srcMinMax} for absence of volatile qualifier.
      */
     private float scale;
 
@@ -58,13 +58,17 @@ public final class ScaleToRangeOperator extends ThreadedGridOperator {
         this.dstMax = newMax;
     }
 
+    /**
+     * True if all values are set to the new minimum, because the source or
+     * the destination range is empty. Initialized with {@link #srcMinMax}.
+     */
+    private boolean fill;
+
     @Override
     public Grid operate(Grid src, Grid dst) {
-        srcMinMax = new MinMaxOperator(progressIndicator).findMinMax(src);
-        float dstRange = dstMax - dstMin;
-        scale = dstRange / srcMinMax.range;
+        initMinMax(new MinMaxOperator(progressIndicator).findMinMax(src));
 
-        if (srcMinMax.range <= 0 || dstRange <= 0) {
+        if (fill) {
             // set everything in dst to the new minimum
             return new FillOperator(dstMin, progressIndicator).operate(src, dst);
         } else {
@@ -74,9 +78,28 @@ public final class ScaleToRangeOperator extends ThreadedGridOperator {
 
     @Override
     protected void operateValue(Grid src, Grid dst, int col, int row) {
-        float v = src.getValue(col, row);
-        v = (v - srcMinMax.min) * scale + dstMin;
-        dst.setValue(v, col, row);
+        dst.setValue(operate(src.getValue(col, row), col, row), col, row);
+    }
+
+    @Override
+    public float operate(float v, int col, int row) {
+        if (fill) {
+            return dstMin;
+        }
+        return (v - srcMinMax.min) * scale + dstMin;
+    }
+
+    @Override
+    public boolean requiresMinMax() {
+        return true;
+    }
+
+    @Override
+    public void initMinMax(MinMax minMax) {
+        srcMinMax = minMax;
+        float dstRange = dstMax - dstMin;
+        scale = dstRange / srcMinMax.range;
+        fill = srcMinMax.range <= 0 || dstRange <= 0;
     }
 
     @Override
@@ -110,6 +110,12 @@ public final class ShadingOperator extends ThreadedGridOperator {
         return new Vector3D(nx, ny, nz);
     }
 
+    @Override
+    protected int getStreamingHalo() {
+        // 3x3 neighborhood
+        return 1;
+    }
+
     @Override
     public String getName() {
         return "Shading";
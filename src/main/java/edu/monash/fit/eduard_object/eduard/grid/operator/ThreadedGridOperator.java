@@ -2,13 +2,21 @@ package edu.monash.fit.eduard_object.eduard.grid.operator;
 
 import edu.monash.fit.eduard_object.eduard.utils.ThreadUtils;
 import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RowSink;
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
+import edu.monash.fit.eduard_object.eduard.grid.RowWindowBuffer;
 import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A base class for asynchronous multi-threaded grid operators. It uses as many
@@ -16,6 +24,22 @@ import java.util.concurrent.Future;
  * grid is split into equally sized chunks, and each thread operates on one
  * chunk.
  * <p>
+ * Alternatively, with {@link Scheduling#WORK_STEALING}, the rows are
+ * recursively split into blocks that are executed by a ForkJoinPool. Blocks
+ * are only split while other threads are short of work, such that the block
+ * size adapts to the load of the grid, and idle threads steal blocks from
+ * busy threads. Operators started from within a worker thread (nested
+ * operators) join the blocks of the running operator instead of blocking a
+ * thread.
+ * <p>
+ * Operators that only read a limited number of rows above and below the
+ * current row (for example, 3x3 stencil operators) declare this number with
+ * {@link #getStreamingHalo()} and can be applied in streaming mode with
+ * {@link #operateStreaming(RowSource, RowSink)}. The grid is then processed in
+ * blocks of rows with the selected execution mode, and the source and
+ * destination grids only store a sliding window of rows in a
+ * {@link RowWindowBuffer}.
+ * <p>
  * Memory consistency effects: Subclasses are designed to be used with an
  * ExecutorService, which will ensure that the threaded operator will see all
  * actions taken prior to the submission of the task (i.e. actions of the calling
@@ -46,6 +70,61 @@ public abstract class ThreadedGridOperator extends GridOperator {
     private static final ExecutorService threadPool
             = Executors.newFixedThreadPool(nbrThreads);
 
+    /**
+     * Execution modes.
+     */
+    public enum Scheduling {
+        /**
+         * One equally sized chunk of rows for each thread of a fixed pool.
+         */
+        FIXED_CHUNKS,
+        /**
+         * Adaptively sized blocks of rows executed by a work-stealing
+         * ForkJoinPool.
+         */
+        WORK_STEALING
+    }
+
+    /**
+     * execution mode used by all ThreadedGridOperators
+     */
+    private static volatile Scheduling scheduling = Scheduling.FIXED_CHUNKS;
+
+    /**
+     * A work-stealing pool shared among all ThreadedGridOperators for the
+     * WORK_STEALING mode.
+     */
+    private static volatile ForkJoinPool forkJoinPool = new ForkJoinPool(nbrThreads);
+
+    /**
+     * Blocks are not split further if the current worker has more than this
+     * number of queued blocks that have not been stolen by other workers.
+     */
+    private static final int MAX_SURPLUS_BLOCKS = 2;
+
+    /**
+     * minimum number of rows of a block is the number of rows divided by
+     * this value and by the parallelism
+     */
+    private static final int MIN_BLOCKS_PER_THREAD = 16;
+
+    /**
+     * default number of rows of a block in streaming mode
+     */
+    public static final int DEFAULT_STREAMING_BLOCK_ROWS = 64;
+
+    /**
+     * number of rows completed by the current WORK_STEALING or streaming
+     * operation, used to report progress
+     */
+    private final AtomicInteger completedRows = new AtomicInteger();
+
+    /**
+     * number of rows of the current WORK_STEALING or streaming operation, 0 if
+     * the operator uses FIXED_CHUNKS on a grid in memory
+     */
+    private volatile int trackedRows = 0;
+
     /**
      * Constructor
      *
@@ -64,6 +143,50 @@ public abstract class ThreadedGridOperator extends GridOperator {
         super(progressIndicator);
     }
 
+    /**
+     * Set the execution mode of all ThreadedGridOperators. Operations that are
+     * running are not affected.
+     *
+     * @param scheduling the execution mode
+     */
+    public static void setScheduling(Scheduling scheduling) {
+        ThreadedGridOperator.scheduling = Objects.requireNonNull(scheduling);
+    }
+
+    /**
+     * Returns the execution mode of all ThreadedGridOperators.
+     *
+     * @return the execution mode
+     */
+    public static Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    /**
+     * Set the number of threads used by the WORK_STEALING mode. Operations that
+     * are running complete with the previous pool, including nested operators
+     * started by these operations.
+     *
+     * @param parallelism number of threads, at least 1
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        ForkJoinPool previousPool = forkJoinPool;
+        forkJoinPool = new ForkJoinPool(parallelism);
+        previousPool.shutdown();
+    }
+
+    /**
+     * Returns the number of threads used by the WORK_STEALING mode.
+     *
+     * @return number of threads
+     */
+    public static int getParallelism() {
+        return forkJoinPool.getParallelism();
+    }
+
     /**
      * Update the value displayed by the progress indicator.
      *
@@ -74,6 +197,16 @@ public abstract class ThreadedGridOperator extends GridOperator {
      * should be cancelled.
      */
     protected boolean reportProgress(int startRow, int endRow, int row) {
+        // with WORK_STEALING or streaming, report the rows of all completed blocks
+        int nRows = trackedRows;
+        if (nRows > 0) {
+            if (progressIndicator == null) {
+                return true;
+            }
+            synchronized (completedRows) {
+                return reportProgress(100f * completedRows.get() / nRows);
+            }
+        }
         // report progress if this is the thread working on the first chunk of the grid
         if (startRow == 0) {
             float percentage = 100f * row / (endRow - startRow - 1);
@@ -152,61 +285,229 @@ public abstract class ThreadedGridOperator extends GridOperator {
      */
     @Override
     public Grid operate(Grid src, Grid dst) {
+        Objects.requireNonNull(src, getName() + ": source grid is null");
         try {
-            logStart();
-            Objects.requireNonNull(src, getName() + ": source grid is null");
+            logStart(src.getCols(), src.getRows());
 
             if (!src.isWellFormed()) {
                 throw new IllegalStateException(getName() + ": grid is not well formed");
             }
 
-            // number of rows that one task will operate on
-            int nRows = src.getRows();
-            int rowChunk = (nRows / nbrThreads) + 1;
-            // ensure chunk size is even, as required by some operators
-            rowChunk += rowChunk % 2 == 1 ? 1 : 0;
-
-            // number of tasks cannot be greater than the number of rows of the grid
-            int nbrTasks = Math.min(nbrThreads, nRows);
-
-            ArrayList<Future> futures = new ArrayList<>(nbrTasks);
-            ArrayList<Task> tasks = new ArrayList<>(nbrTasks);
-
-            // create tasks, start them and add them to the futures array
-            for (int i = 0; i < nbrTasks; i++) {
-                int startRow = i * rowChunk;
-                int endRow = Math.min(nRows, startRow + rowChunk);
-                Task task = new Task(src, dst, startRow, endRow);
-                tasks.add(task);
-                Future f = threadPool.submit(task);
-                futures.add(f);
+            if (scheduling == Scheduling.WORK_STEALING) {
+                completedRows.set(0);
+                trackedRows = src.getRows();
+                try {
+                    operateWorkStealing(src, dst, 0, src.getRows());
+                } finally {
+                    trackedRows = 0;
+                }
+            } else if (operateFixedChunks(src, dst, 0, src.getRows()) == false) {
+                // user cancelled
+                return null;
+            }
+            return dst;
+        } finally {
+            logEnd();
+        }
+    }
+
+    /**
+     * Returns the number of rows above and below the current row that
+     * {@link #operateRow(Grid, Grid, int)} reads from the source grid. This is
+     * 0 for point operators and 1 for 3x3 stencil operators. Operators that
+     * read from the entire source grid, or that depend on other state computed
+     * from the entire grid, return -1 and cannot be used in streaming mode.
+     * This default implementation returns -1.
+     *
+     * @return number of rows, or -1 if streaming mode is not supported
+     */
+    protected int getStreamingHalo() {
+        return -1;
+    }
+
+    @Override
+    public boolean isStreamable() {
+        return getStreamingHalo() >= 0;
+    }
+
+    /**
+     * {@inheritDoc }
+     * <p>
+     * Blocks of {@link #DEFAULT_STREAMING_BLOCK_ROWS} rows are processed.
+     */
+    @Override
+    public void operateStreaming(RowSource src, RowSink dst) throws IOException {
+        operateStreaming(src, dst, DEFAULT_STREAMING_BLOCK_ROWS);
+    }
+
+    /**
+     * Apply the operator in streaming mode to blocks of rows. The source window
+     * stores the rows of a block and {@link #getStreamingHalo()} rows above and
+     * below the block, and the destination window stores the rows of a block.
+     * The rows of each block are processed in parallel with the current
+     * execution mode, see {@link #setScheduling(Scheduling)}.
+     *
+     * @param src The source rows.
+     * @param dst The destination receiving the resulting rows.
+     * @param blockRows number of rows of a block. Odd numbers are rounded up
+     * to the next even number, as required by some operators.
+     * @throws IOException if a row cannot be read or written
+     * @throws UnsupportedOperationException if this operator does not support
+     * streaming mode, see {@link #getStreamingHalo()}
+     */
+    public void operateStreaming(RowSource src, RowSink dst, int blockRows) throws IOException {
+        Objects.requireNonNull(src, getName() + ": source rows are null");
+        Objects.requireNonNull(dst, getName() + ": destination rows are null");
+        final int halo = getStreamingHalo();
+        if (halo < 0) {
+            throw new UnsupportedOperationException(getName() + ": streaming is not supported");
+        }
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("block rows must be at least 1");
+        }
+        blockRows += blockRows % 2;
+
+        try {
+            logStart(src.getCols(), src.getRows());
+            final int nCols = src.getCols();
+            final int nRows = src.getRows();
+            RowWindowBuffer srcBuffer = new RowWindowBuffer(nCols, nRows,
+                    Math.min(nRows, blockRows + 2 * halo));
+            RowWindowBuffer dstBuffer = new RowWindowBuffer(nCols, nRows,
+                    Math.min(nRows, blockRows));
+            Grid srcWindow = new Grid(src.getCellSize(), src.getWest(), src.getSouth(),
+                    src.getPrjFileContent(), srcBuffer);
+            Grid dstWindow = new Grid(src.getCellSize(), src.getWest(), src.getSouth(),
+                    src.getPrjFileContent(), dstBuffer);
+            if (!srcWindow.isWellFormed()) {
+                throw new IllegalStateException(getName() + ": grid is not well formed");
             }
 
-            // wait for all tasks to complete
-            try {
-                for (Future future : futures) {
-                    future.get();
+            float[] values = new float[nCols];
+            // index of the next row to read from the source
+            int nextRow = 0;
+            completedRows.set(0);
+            trackedRows = nRows;
+            for (int startRow = 0; startRow < nRows; startRow += blockRows) {
+                final int endRow = Math.min(nRows, startRow + blockRows);
+
+                // slide the source window and read the rows of the block and 
+                // the halo below the block
+                srcBuffer.setFirstRow(Math.max(0, startRow - halo));
+                for (int lastRow = Math.min(nRows, endRow + halo); nextRow < lastRow; nextRow++) {
+                    src.readRow(values);
+                    srcBuffer.setRow(values, nextRow);
                 }
 
-                // give each task a chance to clean up, or treat border pixels
-                // that cannot be handled in parallel mode
-                for (Task task : tasks) {
-                    task.cleanup();
+                dstBuffer.setFirstRow(startRow);
+                if (scheduling == Scheduling.WORK_STEALING) {
+                    operateWorkStealing(srcWindow, dstWindow, startRow, endRow);
+                } else if (operateFixedChunks(srcWindow, dstWindow, startRow, endRow) == false) {
+                    // user cancelled
+                    return;
+                }
+                if (isCancelled()) {
+                    return;
                 }
-            } catch (InterruptedException ex) {
-                // user cancelled
-                return null;
-            } catch (ExecutionException ex) {
-                // ExecutionException wraps anything thrown by the task code
-                throw ThreadUtils.launderThrowable(ex);
-            }
 
-            return dst;
+                for (int row = startRow; row < endRow; row++) {
+                    dstBuffer.getRow(values, row);
+                    dst.writeRow(values);
+                }
+            }
         } finally {
+            trackedRows = 0;
             logEnd();
         }
     }
 
+    /**
+     * Operate on equally sized chunks of rows, one chunk for each thread of
+     * the fixed thread pool.
+     *
+     * @param src The source grid.
+     * @param dst The destination grid.
+     * @param firstRow The index of the first row to operate on. Must be even.
+     * @param lastRow The index of the last row (exclusive).
+     * @return false if the calling thread was interrupted.
+     */
+    private boolean operateFixedChunks(Grid src, Grid dst, int firstRow, int lastRow) {
+        // number of rows that one task will operate on
+        int nRows = lastRow - firstRow;
+        int rowChunk = (nRows / nbrThreads) + 1;
+        // ensure chunk size is even, as required by some operators
+        rowChunk += rowChunk % 2 == 1 ? 1 : 0;
+
+        // number of tasks cannot be greater than the number of rows of the grid
+        int nbrTasks = Math.min(nbrThreads, nRows);
+
+        ArrayList<Future> futures = new ArrayList<>(nbrTasks);
+        ArrayList<Task> tasks = new ArrayList<>(nbrTasks);
+
+        // create tasks, start them and add them to the futures array
+        for (int i = 0; i < nbrTasks; i++) {
+            int startRow = firstRow + i * rowChunk;
+            int endRow = Math.min(lastRow, startRow + rowChunk);
+            Task task = new Task(src, dst, startRow, endRow);
+            tasks.add(task);
+            Future f = threadPool.submit(task);
+            futures.add(f);
+        }
+
+        // wait for all tasks to complete
+        try {
+            for (Future future : futures) {
+                future.get();
+            }
+
+            // give each task a chance to clean up, or treat border pixels
+            // that cannot be handled in parallel mode
+            for (Task task : tasks) {
+                task.cleanup();
+            }
+        } catch (InterruptedException ex) {
+            // user cancelled
+            return false;
+        } catch (ExecutionException ex) {
+            // ExecutionException wraps anything thrown by the task code
+            throw ThreadUtils.launderThrowable(ex);
+        }
+
+        return true;
+    }
+
+    /**
+     * Operate on adaptively sized blocks of rows in the work-stealing pool. If
+     * called from a worker thread of a pool (a nested operator), the blocks
+     * are executed by the calling worker and stolen by idle workers.
+     *
+     * @param src The source grid.
+     * @param dst The destination grid.
+     * @param firstRow The index of the first row to operate on. Must be even.
+     * @param lastRow The index of the last row (exclusive).
+     */
+    private void operateWorkStealing(Grid src, Grid dst, int firstRow, int lastRow) {
+        // a nested operator uses the pool of the running operation, which is
+        // not the current pool if the parallelism has been changed since
+        boolean nested = ForkJoinTask.inForkJoinPool();
+        ForkJoinPool pool = nested ? ForkJoinTask.getPool() : forkJoinPool;
+        int nRows = lastRow - firstRow;
+        // minimum block size is even, as required by some operators
+        int minBlockRows = Math.max(2, nRows / (pool.getParallelism() * MIN_BLOCKS_PER_THREAD));
+        minBlockRows += minBlockRows % 2;
+
+        Block block = new Block(src, dst, firstRow, lastRow, minBlockRows);
+        if (nested) {
+            block.invoke();
+        } else {
+            pool.invoke(block);
+        }
+
+        // give each block a chance to clean up, or treat border pixels
+        // that cannot be handled in parallel mode
+        block.cleanup();
+    }
+
     /**
      * Called in main thread after threadedOperate() has completed for all
      * threads.
@@ -244,6 +545,7 @@ public abstract class ThreadedGridOperator extends GridOperator {
         @Override
         public void run() {
             threadedOperate(srcGrid, dstGrid, startRow, endRow);
+            completedRows.addAndGet(Math.max(0, endRow - startRow));
         }
 
         private void cleanup() {
@@ -256,4 +558,64 @@ public abstract class ThreadedGridOperator extends GridOperator {
         }
     }
 
+    /**
+     * A block of rows executed by the work-stealing pool. A block is split in
+     * two halves while it is larger than the minimum size and other workers
+     * are short of work.
+     */
+    private class Block extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Grid srcGrid;
+        private final Grid dstGrid;
+        private final int startRow;
+        private final int endRow;
+        private final int minBlockRows;
+        private Block first, second;
+
+        private Block(
+                Grid srcGrid,
+                Grid dstGrid,
+                int startRow,
+                int endRow,
+                int minBlockRows) {
+            this.srcGrid = srcGrid;
+            this.dstGrid = dstGrid;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.minBlockRows = minBlockRows;
+        }
+
+        @Override
+        protected void compute() {
+            int nRows = endRow - startRow;
+            if (nRows >= 2 * minBlockRows
+                    && getSurplusQueuedTaskCount() <= MAX_SURPLUS_BLOCKS) {
+                // split at an even row, as required by some operators
+                int splitRow = startRow + (nRows / 2) + (nRows / 2) % 2;
+                first = new Block(srcGrid, dstGrid, startRow, splitRow, minBlockRows);
+                second = new Block(srcGrid, dstGrid, splitRow, endRow, minBlockRows);
+                invokeAll(first, second);
+            } else if (!ThreadedGridOperator.this.isCancelled()) { // not ForkJoinTask.isCancelled()
+                threadedOperate(srcGrid, dstGrid, startRow, endRow);
+                completedRows.addAndGet(nRows);
+            }
+        }
+
+        private void cleanup() {
+            if (first != null) {
+                first.cleanup();
+                second.cleanup();
+            } else {
+                finalizeThreadedOperate(srcGrid, dstGrid, startRow, endRow);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
 }
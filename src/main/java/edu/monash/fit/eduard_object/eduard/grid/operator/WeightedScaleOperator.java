@@ -10,7 +10,7 @@ import edu.monash.fit.eduard_object.eduard.ui.ProgressIndicator;
  *
  * @author Bernie Jenny
  */
-public final class WeightedScaleOperator extends ThreadedGridOperator {
+public final class WeightedScaleOperator extends ThreadedGridOperator implements PointOperator {
 
     private final Grid weightGrid;
     private final float scale;
@@ -23,11 +23,15 @@ public final class WeightedScaleOperator extends ThreadedGridOperator {
 
     @Override
     protected void operateValue(Grid src, Grid dst, int col, int row) {
+        dst.setValue(operate(src.getValue(col, row), col, row), col, row);
+    }
+
+    @Override
+    public float operate(float v, int col, int row) {
         // out = in * w * scale + in * (1 - w)
         // out = in * (w * scale + 1 - w)
         // out = in * (w * (scale - 1) + 1)
-        float v = src.getValue(col, row) * (weightGrid.getValue(col, row) * (scale - 1f) + 1f);
-        dst.setValue(v, col, row);
+        return v * (weightGrid.getValue(col, row) * (scale - 1f) + 1f);
     }
     
     @Override
@@ -1,11 +1,18 @@
 package edu.monash.fit.eduard_object.processlauncher;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Read and write grid float values from standard in and out streams.
+ * Read and write grid float values from standard in and out streams with
+ * {@link GridProtocol}, or from a {@link GridExchangeFile} passed in the
+ * command line arguments. With {@link FilterWorker#WORKER_ARGUMENT}, any number
+ * of grids is filtered.
  *
  * @author Bernhard Jenny, Faculty of Information Technology, Monash University,
  * Melbourne, Australia
@@ -14,58 +21,69 @@ public class ChildProcess {
 
     public static void main(String[] args) {
 
-        if (args.length < 2) {
-            System.out.println("END");
-            System.exit(-1);
+        if (args.length == 1 && FilterWorker.WORKER_ARGUMENT.equals(args[0])) {
+            runWorker();
         }
 
-        // size of grid is passed as command line arguments
-        int cols = Integer.parseInt(args[0]);
-        int rows = Integer.parseInt(args[1]);
-//        double cellSize = Double.parseDouble(args[2]);
-        int n = cols * rows;
-//        System.out.println(":::::::::::::::::::::::::::::::::::::::::::::::::::::::::::::");
+        try {
+            GridProtocol.Header header;
+            float[] values;
+            GridExchangeFile exchangeFile = null;
+            if (GridExchangeFile.isExchangeArguments(args)) {
+                // the grid is exchanged through a memory-mapped file
+                exchangeFile = GridExchangeFile.open(args);
+                header = exchangeFile.getHeader();
+                values = new float[Math.multiplyExact(header.cols, header.rows)];
+                exchangeFile.readInput(values);
+            } else {
+                // size and georeference of grid are passed in the header
+                FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+                header = GridProtocol.readHeader(in);
+                values = new float[Math.multiplyExact(header.cols, header.rows)];
+                GridProtocol.readValues(in, values, 0, values.length);
+            }
 
+            // do something useful with float values
+            for (int i = 0; i < values.length; i++) {
+                values[i] += 100;
+            }
 
-        try {
-            for (int i = 0; i < n; i++) {
-                // read four bytes
-                int b1 = System.in.read();
-                int b2 = System.in.read();
-                int b3 = System.in.read();
-                int b4 = System.in.read();
+            if (exchangeFile != null) {
+                exchangeFile.writeOutput(values);
+                exchangeFile.close();
+            } else {
+                FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+                GridProtocol.writeHeader(out, header);
+                GridProtocol.writeValues(out, values, 0, values.length);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(ChildProcess.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(-1);
+        }
+        System.exit(0);
+    }
 
-                if (b4 == -1) {
-                    break;
+    /**
+     * Filters grid frames until standard in is closed.
+     */
+    private static void runWorker() {
+        FileChannel in = new FileInputStream(FileDescriptor.in).getChannel();
+        FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        try {
+            GridProtocol.Header header;
+            while ((header = GridProtocol.readNextHeader(in)) != null) {
+                float[] values = new float[Math.multiplyExact(header.cols, header.rows)];
+                GridProtocol.readValues(in, values, 0, values.length);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] += 100;
                 }
-                // convert bytes to float
-                // Note: other languages likely use little-endian order, wich would 
-                // require shuffling the bytes
-                int intBits = b4 << 24 | (b3 & 0xFF) << 16 | (b2 & 0xFF) << 8 | (b1 & 0xFF);
-                float f = Float.intBitsToFloat(intBits);
-
-//                System.exit(-1);
-                // do something useful with float values
-                f += 100;
-                
-                // convert float to bytes
-                intBits = Float.floatToIntBits(f);
-                b4 = (intBits >>> 24) & 0xFF;
-                b3 = (intBits >>> 16) & 0xFF;
-                b2 = (intBits >>> 8) & 0xFF;
-                b1 = intBits & 0xFF;
-                
-                // write four bytes
-                System.out.write(b1);
-                System.out.write(b2);
-                System.out.write(b3);
-                System.out.write(b4);
-                System.out.flush();
+                GridProtocol.writeHeader(out, header);
+                GridProtocol.writeValues(out, values, 0, values.length);
             }
         } catch (IOException ex) {
             Logger.getLogger(ChildProcess.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(-1);
         }
-//        System.out.println("turn");
         System.exit(0);
     }
 }
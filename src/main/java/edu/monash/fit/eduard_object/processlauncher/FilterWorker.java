@@ -0,0 +1,215 @@
+package edu.monash.fit.eduard_object.processlauncher;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent child process filtering any number of grids. The child process
+ * is started once with the {@link #WORKER_ARGUMENT} argument, and then
+ * receives a {@link GridProtocol} frame for each job through its standard
+ * input and returns a frame with the filtered grid through its standard
+ * output. This avoids the start-up of a virtual machine, the initialisation of
+ * Aparapi and the JIT compilation for every grid. The child process ends when
+ * its standard input is closed, which also happens when this process ends.
+ * The standard error of the child process, with its report for each job, is
+ * copied to the standard error of this process.
+ * <p>
+ * {@link #get(List)} returns a running worker for a command, and starts a new
+ * worker if there is none or if the previous worker has ended.
+ */
+public final class FilterWorker implements Closeable {
+
+    /**
+     * argument for starting a child process as a worker
+     */
+    public static final String WORKER_ARGUMENT = "--worker";
+
+    /**
+     * running workers by command
+     */
+    private static final Map<List<String>, FilterWorker> workers = new HashMap<>();
+
+    private final Process process;
+    private final OutputStream processInput;
+    private final WritableByteChannel toWorker;
+    private final ReadableByteChannel fromWorker;
+
+    /**
+     * number of completed jobs
+     */
+    private int jobCount = 0;
+
+    /**
+     * duration of the last job in nanoseconds, including the transfer of the
+     * grids
+     */
+    private long lastLatency = 0;
+
+    /**
+     * sum of the durations of all jobs in nanoseconds
+     */
+    private long totalLatency = 0;
+
+    /**
+     * false after a job failed, after which the grid streams are out of sync
+     */
+    private boolean usable = true;
+
+    private FilterWorker(Process process) {
+        this.process = process;
+        processInput = process.getOutputStream();
+        toWorker = Channels.newChannel(processInput);
+        fromWorker = Channels.newChannel(process.getInputStream());
+    }
+
+    /**
+     * Starts a new worker.
+     *
+     * @param command the command starting the child process, without
+     * {@link #WORKER_ARGUMENT}
+     * @return the new worker
+     * @throws IOException if the process cannot be started
+     */
+    public static FilterWorker start(List<String> command) throws IOException {
+        List<String> workerCommand = new ArrayList<>(command);
+        workerCommand.add(WORKER_ARGUMENT);
+        Process process = new ProcessBuilder(workerCommand)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        return new FilterWorker(process);
+    }
+
+    /**
+     * Returns a running worker for a command. A new worker is started if no
+     * worker has been started for the command, or if the worker has ended.
+     *
+     * @param command the command starting the child process, without
+     * {@link #WORKER_ARGUMENT}
+     * @return a running worker
+     * @throws IOException if a new process cannot be started
+     */
+    public static synchronized FilterWorker get(List<String> command) throws IOException {
+        List<String> key = new ArrayList<>(command);
+        FilterWorker worker = workers.get(key);
+        if (worker == null || !worker.isAlive()) {
+            if (worker != null) {
+                worker.close();
+            }
+            worker = start(key);
+            workers.put(key, worker);
+        }
+        return worker;
+    }
+
+    /**
+     * Stops all workers started by {@link #get(List)}.
+     */
+    public static synchronized void closeAll() {
+        for (FilterWorker worker : workers.values()) {
+            worker.close();
+        }
+        workers.clear();
+    }
+
+    /**
+     * Filters a grid.
+     *
+     * @param grid the grid to filter
+     * @return a new grid with the filtered values
+     * @throws IOException if the grids cannot be transferred, in which case
+     * this worker is stopped
+     */
+    public synchronized Grid filter(Grid grid) throws IOException {
+        if (!isAlive()) {
+            throw new IOException("the worker process has ended");
+        }
+        long start = System.nanoTime();
+        try {
+            // the worker reads the complete grid before writing the result
+            GridProtocol.write(toWorker, grid);
+            processInput.flush();
+            Grid output = GridProtocol.read(fromWorker, Grid.shallowCopy(grid));
+            lastLatency = System.nanoTime() - start;
+            totalLatency += lastLatency;
+            ++jobCount;
+            return output;
+        } catch (IOException | RuntimeException exc) {
+            close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Returns whether the child process is running and can filter grids.
+     *
+     * @return true if grids can be filtered
+     */
+    public synchronized boolean isAlive() {
+        return usable && process.isAlive();
+    }
+
+    /**
+     * Returns the number of grids filtered by this worker.
+     *
+     * @return number of jobs
+     */
+    public synchronized int getJobCount() {
+        return jobCount;
+    }
+
+    /**
+     * Returns the duration of the last job, including the transfer of the
+     * grids.
+     *
+     * @return duration in milliseconds
+     */
+    public synchronized double getLastLatencyMillis() {
+        return lastLatency / 1e6;
+    }
+
+    /**
+     * Returns the mean duration of all jobs, including the transfer of the
+     * grids.
+     *
+     * @return duration in milliseconds, 0 if no job has been completed
+     */
+    public synchronized double getMeanLatencyMillis() {
+        return jobCount == 0 ? 0 : totalLatency / 1e6 / jobCount;
+    }
+
+    /**
+     * Stops the child process by closing its standard input, and kills it if
+     * it does not end.
+     */
+    @Override
+    public synchronized void close() {
+        usable = false;
+        try {
+            processInput.close();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException ex) {
+            process.destroyForcibly();
+        } catch (InterruptedException ex) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FilterWorker: jobs=" + getJobCount()
+                + ", mean latency=" + getMeanLatencyMillis() + " ms";
+    }
+}
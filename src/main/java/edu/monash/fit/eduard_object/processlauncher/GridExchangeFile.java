@@ -0,0 +1,328 @@
+package edu.monash.fit.eduard_object.processlauncher;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.MappedFloatBuffer;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory-mapped file for exchanging grids with a child process. Instead of
+ * piping the grids through standard in and out, the launcher writes the input
+ * grid to this file, and passes the path of the file and the layout of the
+ * file to the child process in command line arguments, see
+ * {@link #getArguments()}. The child process maps the file, reads the input
+ * grid, writes the output grid to the output region of the file, which can be
+ * the input region, and marks the output grid as completed. The launcher then
+ * maps the output region as the buffer of the output grid.
+ * <p>
+ * The file starts with a header of {@link GridProtocol}, followed by a status
+ * int at {@link #STATUS_OFFSET}. The values of the input grid start at
+ * {@link #VALUES_OFFSET}. All numbers use the byte order of
+ * {@link GridProtocol}.
+ */
+public final class GridExchangeFile implements Closeable {
+
+    /**
+     * first command line argument of a child process using an exchange file
+     */
+    public static final String ARGUMENT = "--mapped";
+
+    /**
+     * position of the status int in bytes
+     */
+    public static final int STATUS_OFFSET = GridProtocol.HEADER_SIZE;
+
+    /**
+     * position of the first value of the input grid in bytes
+     */
+    public static final int VALUES_OFFSET = STATUS_OFFSET + 8;
+
+    /**
+     * status before the child process has written the output grid
+     */
+    public static final int STATUS_PENDING = 0;
+
+    /**
+     * status after the child process has written the output grid
+     */
+    public static final int STATUS_DONE = 1;
+
+    /**
+     * number of bytes mapped at once when copying values from or to arrays
+     */
+    private static final int BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final GridProtocol.Header header;
+    private final long inputOffset, outputOffset;
+
+    /**
+     * if true, the file is deleted when closed
+     */
+    private final boolean temporary;
+
+    private GridExchangeFile(Path file, FileChannel channel, GridProtocol.Header header,
+            long inputOffset, long outputOffset, boolean temporary) {
+        this.file = file;
+        this.channel = channel;
+        this.header = header;
+        this.inputOffset = inputOffset;
+        this.outputOffset = outputOffset;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Creates a temporary exchange file with the values of a grid.
+     *
+     * @param grid the input grid
+     * @param inPlace if true, the child process overwrites the input grid with
+     * the output grid, which halves the size of the file
+     * @param directory directory of the file, or null for the default
+     * temporary directory
+     * @return the new exchange file
+     * @throws IOException if the file cannot be created
+     */
+    public static GridExchangeFile create(Grid grid, boolean inPlace, File directory)
+            throws IOException {
+        GridProtocol.Header header = GridProtocol.Header.of(grid);
+        long size = header.getCellCount() * Float.BYTES;
+        long outputOffset = inPlace ? VALUES_OFFSET : VALUES_OFFSET + size;
+        Path file = File.createTempFile("grid", ".exchange", directory).toPath();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            GridProtocol.writeHeader(channel, header);
+            // extends the file with zeros to the end of the output grid
+            channel.write(ByteBuffer.allocate(1), outputOffset + size - 1);
+
+            GridExchangeFile exchangeFile = new GridExchangeFile(file, channel, header,
+                    VALUES_OFFSET, outputOffset, true);
+            exchangeFile.setStatus(STATUS_PENDING);
+            exchangeFile.writeValues(VALUES_OFFSET, grid);
+            return exchangeFile;
+        } catch (IOException | RuntimeException exc) {
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(file);
+            throw exc;
+        }
+    }
+
+    /**
+     * Returns whether command line arguments of a child process reference an
+     * exchange file.
+     *
+     * @param args the command line arguments
+     * @return true if the arguments were created by {@link #getArguments()}
+     */
+    public static boolean isExchangeArguments(String[] args) {
+        return args.length == 4 && ARGUMENT.equals(args[0]);
+    }
+
+    /**
+     * Opens an exchange file in a child process.
+     *
+     * @param args the command line arguments created by
+     * {@link #getArguments()}
+     * @return the exchange file
+     * @throws IOException if the file cannot be opened or is invalid
+     */
+    public static GridExchangeFile open(String[] args) throws IOException {
+        if (!isExchangeArguments(args)) {
+            throw new IllegalArgumentException("invalid exchange file arguments");
+        }
+        Path file = Paths.get(args[1]);
+        long inputOffset = Long.parseLong(args[2]);
+        long outputOffset = Long.parseLong(args[3]);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.position(0);
+            GridProtocol.Header header = GridProtocol.readHeader(channel);
+            long size = header.getCellCount() * Float.BYTES;
+            if (inputOffset < VALUES_OFFSET || outputOffset < VALUES_OFFSET
+                    || channel.size() < Math.max(inputOffset, outputOffset) + size) {
+                throw new IOException("invalid exchange file layout");
+            }
+            return new GridExchangeFile(file, channel, header, inputOffset, outputOffset, false);
+        } catch (IOException | RuntimeException exc) {
+            channel.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Returns the command line arguments for the child process with the path
+     * and the layout of this file.
+     *
+     * @return the arguments
+     */
+    public List<String> getArguments() {
+        return Arrays.asList(ARGUMENT, file.toAbsolutePath().toString(),
+                Long.toString(inputOffset), Long.toString(outputOffset));
+    }
+
+    /**
+     * Returns the size and georeference of the grid.
+     *
+     * @return the header
+     */
+    public GridProtocol.Header getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the path of the file.
+     *
+     * @return the path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Copies the values of the input grid to an array.
+     *
+     * @param values destination with at least cols * rows values
+     * @throws IOException
+     */
+    public void readInput(float[] values) throws IOException {
+        int n = Math.toIntExact(header.getCellCount());
+        int blockValues = BLOCK_SIZE / Float.BYTES;
+        for (int i = 0; i < n; i += blockValues) {
+            int length = Math.min(blockValues, n - i);
+            map(FileChannel.MapMode.READ_ONLY, inputOffset + (long) i * Float.BYTES, length)
+                    .asFloatBuffer().get(values, i, length);
+        }
+    }
+
+    /**
+     * Copies an array to the output grid and marks the output grid as
+     * completed.
+     *
+     * @param values source with at least cols * rows values
+     * @throws IOException
+     */
+    public void writeOutput(float[] values) throws IOException {
+        int n = Math.toIntExact(header.getCellCount());
+        int blockValues = BLOCK_SIZE / Float.BYTES;
+        for (int i = 0; i < n; i += blockValues) {
+            int length = Math.min(blockValues, n - i);
+            MappedByteBuffer buffer = map(FileChannel.MapMode.READ_WRITE,
+                    outputOffset + (long) i * Float.BYTES, length);
+            buffer.asFloatBuffer().put(values, i, length);
+            buffer.force();
+        }
+        setStatus(STATUS_DONE);
+    }
+
+    /**
+     * Writes the values of a grid to a region of the file.
+     */
+    private void writeValues(long offset, Grid grid) throws IOException {
+        final int cols = header.cols;
+        float[] array;
+        try {
+            array = grid.getBufferArray();
+        } catch (UnsupportedOperationException exc) {
+            array = null;
+        }
+        float[] rowValues = new float[cols];
+        int blockRows = Math.max(1, BLOCK_SIZE / Float.BYTES / cols);
+        for (int row = 0; row < header.rows; row += blockRows) {
+            int nRows = Math.min(blockRows, header.rows - row);
+            FloatBuffer values = map(FileChannel.MapMode.READ_WRITE,
+                    offset + (long) row * cols * Float.BYTES, nRows * cols).asFloatBuffer();
+            if (array != null) {
+                values.put(array, row * cols, nRows * cols);
+            } else {
+                for (int r = row; r < row + nRows; r++) {
+                    for (int col = 0; col < cols; col++) {
+                        rowValues[col] = grid.getValue(col, r);
+                    }
+                    values.put(rowValues);
+                }
+            }
+        }
+    }
+
+    private MappedByteBuffer map(FileChannel.MapMode mode, long position, int nbrValues)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, (long) nbrValues * Float.BYTES);
+        buffer.order(GridProtocol.BYTE_ORDER);
+        return buffer;
+    }
+
+    private void setStatus(int status) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(GridProtocol.BYTE_ORDER);
+        buffer.putInt(0, status);
+        channel.write(buffer, STATUS_OFFSET);
+        channel.force(false);
+    }
+
+    /**
+     * Returns whether the child process has written the output grid.
+     *
+     * @return true if the output grid is completed
+     * @throws IOException
+     */
+    public boolean isDone() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(GridProtocol.BYTE_ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, STATUS_OFFSET + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return buffer.getInt(0) == STATUS_DONE;
+    }
+
+    /**
+     * Returns the output grid written by the child process. The values are
+     * not copied; the output region of the file is mapped as the buffer of
+     * the grid, and remains valid after this file has been closed.
+     *
+     * @param prjFileContent projection of the grid, can be null
+     * @return the output grid
+     * @throws IOException if the child process has not written the output
+     * grid
+     */
+    public Grid getOutputGrid(String prjFileContent) throws IOException {
+        if (!isDone()) {
+            throw new IOException("the child process has not written the output grid");
+        }
+        MappedFloatBuffer buffer = MappedFloatBuffer.open(file, outputOffset,
+                header.cols, header.rows, GridProtocol.BYTE_ORDER, true);
+        return new Grid(header.cellSize, header.west, header.south, prjFileContent, buffer);
+    }
+
+    /**
+     * Closes the file, and deletes it if it was created by
+     * {@link #create(Grid, boolean, File)}.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (temporary) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException exc) {
+                // a mapped file cannot be deleted on some systems
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package edu.monash.fit.eduard_object.processlauncher;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Framed binary protocol for exchanging grids with a child process through
+ * standard in and out. A frame consists of a header with the size and the
+ * georeference of the grid, followed by the cell values from the top row to
+ * the bottom row, from left to right. Each cell value is a four-bytes IEEE 754
+ * floating-point value. Values can be NaN to indicate void cells. All numbers
+ * use little-endian encoding.
+ * <p>
+ * The header has {@link #HEADER_SIZE} bytes: the int {@link #MAGIC}, the int
+ * {@link #VERSION}, the number of columns and rows as ints, followed by the
+ * cell size and the north, south, east and west coordinates as doubles.
+ * <p>
+ * Values are transferred in blocks through a large direct buffer with bulk
+ * operations, and are decoded directly into the destination array or grid.
+ */
+public final class GridProtocol {
+
+    /**
+     * first four bytes of a frame, "GRD1" in ASCII
+     */
+    public static final int MAGIC = 0x31445247;
+
+    /**
+     * version of the protocol
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * number of bytes of a header
+     */
+    public static final int HEADER_SIZE = 4 * 4 + 5 * 8;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * size of the buffer for transferring values
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private GridProtocol() {
+    }
+
+    /**
+     * Size and georeference of a grid.
+     */
+    public static final class Header {
+
+        public final int cols, rows;
+        public final double cellSize, north, south, east, west;
+
+        public Header(int cols, int rows, double cellSize,
+                double north, double south, double east, double west) {
+            if (cols <= 0 || rows <= 0) {
+                throw new IllegalArgumentException("invalid grid size");
+            }
+            this.cols = cols;
+            this.rows = rows;
+            this.cellSize = cellSize;
+            this.north = north;
+            this.south = south;
+            this.east = east;
+            this.west = west;
+        }
+
+        /**
+         * Creates the header for a grid.
+         *
+         * @param grid the grid
+         * @return the header
+         */
+        public static Header of(Grid grid) {
+            return new Header(grid.getCols(), grid.getRows(), grid.getCellSize(),
+                    grid.getNorth(), grid.getSouth(), grid.getEast(), grid.getWest());
+        }
+
+        /**
+         * Returns the number of cells.
+         *
+         * @return columns times rows
+         */
+        public long getCellCount() {
+            return (long) cols * rows;
+        }
+    }
+
+    /**
+     * Writes a header.
+     *
+     * @param channel destination
+     * @param header the header to write
+     * @throws IOException
+     */
+    public static void writeHeader(WritableByteChannel channel, Header header) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(header.cols).putInt(header.rows);
+        buffer.putDouble(header.cellSize).putDouble(header.north).putDouble(header.south);
+        buffer.putDouble(header.east).putDouble(header.west);
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    /**
+     * Reads a header.
+     *
+     * @param channel source
+     * @return the header
+     * @throws IOException if the channel ends before the header is complete,
+     * or the header is not valid
+     */
+    public static Header readHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        readFully(channel, buffer);
+        return parseHeader(buffer);
+    }
+
+    /**
+     * Reads the header of the next frame of a channel carrying a sequence of
+     * frames.
+     *
+     * @param channel source
+     * @return the header, or null if the channel has ended before the frame
+     * @throws IOException if the channel ends before the header is complete,
+     * or the header is not valid
+     */
+    public static Header readNextHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        while (buffer.position() == 0) {
+            if (channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+        readFully(channel, buffer);
+        return parseHeader(buffer);
+    }
+
+    private static Header parseHeader(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("invalid grid frame");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported grid frame version " + version);
+        }
+        int cols = buffer.getInt();
+        int rows = buffer.getInt();
+        if (cols <= 0 || rows <= 0) {
+            throw new IOException("invalid grid frame size");
+        }
+        return new Header(cols, rows, buffer.getDouble(), buffer.getDouble(),
+                buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Writes values.
+     *
+     * @param channel destination
+     * @param values source
+     * @param offset index of the first value to write
+     * @param length number of values to write
+     * @throws IOException
+     */
+    public static void writeValues(WritableByteChannel channel, float[] values,
+            int offset, int length) throws IOException {
+        ByteBuffer buffer = allocate(length);
+        writeValues(channel, values, offset, length, buffer);
+    }
+
+    private static void writeValues(WritableByteChannel channel, float[] values,
+            int offset, int length, ByteBuffer buffer) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, buffer.capacity() / 4);
+            buffer.clear();
+            buffer.asFloatBuffer().put(values, offset, n);
+            buffer.limit(n * 4);
+            writeFully(channel, buffer);
+            offset += n;
+        }
+    }
+
+    /**
+     * Reads values.
+     *
+     * @param channel source
+     * @param values destination
+     * @param offset index of the first value to read
+     * @param length number of values to read
+     * @throws IOException if the channel ends before all values are read
+     */
+    public static void readValues(ReadableByteChannel channel, float[] values,
+            int offset, int length) throws IOException {
+        ByteBuffer buffer = allocate(length);
+        readValues(channel, values, offset, length, buffer);
+    }
+
+    private static void readValues(ReadableByteChannel channel, float[] values,
+            int offset, int length, ByteBuffer buffer) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, buffer.capacity() / 4);
+            buffer.clear();
+            buffer.limit(n * 4);
+            readFully(channel, buffer);
+            buffer.flip();
+            buffer.asFloatBuffer().get(values, offset, n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes a frame with the header and the values of a grid.
+     *
+     * @param channel destination
+     * @param grid the grid to write
+     * @throws IOException
+     */
+    public static void write(WritableByteChannel channel, Grid grid) throws IOException {
+        writeHeader(channel, Header.of(grid));
+        final int cols = grid.getCols();
+        final int rows = grid.getRows();
+        float[] array = bufferArray(grid);
+        ByteBuffer buffer = allocate(grid.getCellCount());
+        if (array != null) {
+            writeValues(channel, array, 0, cols * rows, buffer);
+        } else {
+            float[] rowValues = new float[cols];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    rowValues[col] = grid.getValue(col, row);
+                }
+                writeValues(channel, rowValues, 0, cols, buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a frame and writes its values to a grid.
+     *
+     * @param channel source
+     * @param grid destination, must have the size of the grid in the frame
+     * @return the passed grid
+     * @throws IOException if the frame is invalid, has a different size than
+     * the grid, or ends before all values are read
+     */
+    public static Grid read(ReadableByteChannel channel, Grid grid) throws IOException {
+        Header header = readHeader(channel);
+        if (header.cols != grid.getCols() || header.rows != grid.getRows()) {
+            throw new IOException("grid frame has unexpected size: "
+                    + header.cols + "x" + header.rows);
+        }
+        readValues(channel, grid);
+        return grid;
+    }
+
+    /**
+     * Reads a frame into a new grid.
+     *
+     * @param channel source
+     * @param prjFileContent projection of the new grid, can be null
+     * @return the new grid
+     * @throws IOException if the frame is invalid or ends before all values are
+     * read
+     */
+    public static Grid read(ReadableByteChannel channel, String prjFileContent) throws IOException {
+        Header header = readHeader(channel);
+        Grid grid = new Grid(header.cols, header.rows, header.cellSize,
+                header.west, header.south, prjFileContent);
+        readValues(channel, grid);
+        return grid;
+    }
+
+    /**
+     * Reads the values of a frame directly into a grid.
+     *
+     * @param channel source, positioned after the header
+     * @param grid destination
+     */
+    private static void readValues(ReadableByteChannel channel, Grid grid) throws IOException {
+        final int cols = grid.getCols();
+        final int rows = grid.getRows();
+        float[] array = bufferArray(grid);
+        ByteBuffer buffer = allocate(grid.getCellCount());
+        if (array != null) {
+            readValues(channel, array, 0, cols * rows, buffer);
+        } else {
+            float[] rowValues = new float[cols];
+            for (int row = 0; row < rows; row++) {
+                readValues(channel, rowValues, 0, cols, buffer);
+                for (int col = 0; col < cols; col++) {
+                    grid.setValue(rowValues[col], col, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the array with the values of a grid.
+     *
+     * @param grid the grid
+     * @return the array or null if the values are not stored in an array
+     */
+    private static float[] bufferArray(Grid grid) {
+        try {
+            return grid.getBufferArray();
+        } catch (UnsupportedOperationException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Allocates a buffer for transferring values.
+     *
+     * @param nbrValues number of values to transfer
+     * @return a direct buffer for at most BUFFER_SIZE bytes
+     */
+    private static ByteBuffer allocate(long nbrValues) {
+        int size = (int) Math.min(BUFFER_SIZE, Math.max(4, nbrValues * 4));
+        return ByteBuffer.allocateDirect(size).order(BYTE_ORDER);
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("unexpected end of grid frame");
+            }
+        }
+    }
+}
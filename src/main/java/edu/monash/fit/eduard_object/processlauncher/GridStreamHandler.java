@@ -0,0 +1,115 @@
+package edu.monash.fit.eduard_object.processlauncher;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.apache.commons.exec.ExecuteStreamHandler;
+import org.apache.commons.exec.StreamPumper;
+
+/**
+ * Connects a child process with {@link GridProtocol}. A grid frame is written
+ * to the standard input of the child process, and the grid frame written by
+ * the child process to its standard output is decoded into an output grid,
+ * while the input grid is still being written. The standard error of the child
+ * process is copied to System.err.
+ */
+public class GridStreamHandler implements ExecuteStreamHandler {
+
+    private final Grid inputGrid;
+    private final Grid outputGrid;
+
+    private OutputStream processInput;
+    private InputStream processOutput;
+    private InputStream processError;
+
+    private FutureTask<Void> writer;
+    private FutureTask<Grid> reader;
+    private Thread errorPumper;
+
+    /**
+     * Constructor
+     *
+     * @param inputGrid grid written to the child process
+     * @param outputGrid grid receiving the values written by the child
+     * process, must have the same size as the input grid
+     */
+    public GridStreamHandler(Grid inputGrid, Grid outputGrid) {
+        if (inputGrid == null || outputGrid == null) {
+            throw new NullPointerException("");
+        }
+        this.inputGrid = inputGrid;
+        this.outputGrid = outputGrid;
+    }
+
+    @Override
+    public void setProcessInputStream(OutputStream os) {
+        processInput = os;
+    }
+
+    @Override
+    public void setProcessErrorStream(InputStream is) {
+        processError = is;
+    }
+
+    @Override
+    public void setProcessOutputStream(InputStream is) {
+        processOutput = is;
+    }
+
+    @Override
+    public void start() {
+        writer = new FutureTask<>(() -> {
+            try (OutputStream out = processInput) {
+                GridProtocol.write(Channels.newChannel(out), inputGrid);
+            }
+            return null;
+        });
+        reader = new FutureTask<>(() -> GridProtocol.read(Channels.newChannel(processOutput), outputGrid));
+        errorPumper = new Thread(new StreamPumper(processError, System.err));
+        start(writer, "grid writer");
+        start(reader, "grid reader");
+        errorPumper.setDaemon(true);
+        errorPumper.start();
+    }
+
+    private static void start(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until the grids have been transferred.
+     *
+     * @throws IOException if a grid could not be transferred
+     */
+    @Override
+    public void stop() throws IOException {
+        try {
+            reader.get();
+            writer.get();
+            errorPumper.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns the grid written by the child process.
+     *
+     * @return the grid
+     * @throws IOException if the grid could not be read
+     */
+    public Grid getOutputGrid() throws IOException {
+        stop();
+        return outputGrid;
+    }
+}
@@ -10,17 +10,17 @@ import org.apache.commons.exec.*;
 import javax.imageio.ImageIO;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * A sample program that loads a grid file, launches a child process, pipes the
  * grid to the child, reads the output grid from the child, and writes the
- * output grid to a file.
+ * output grid to a file. Grids are exchanged with {@link GridProtocol} or a
+ * {@link GridExchangeFile}, or filtered by a persistent {@link FilterWorker}.
  *
  * Uses Apache Commons Exec library for launching the child process. See
  * http://commons.apache.org/proper/commons-exec/
@@ -47,6 +47,13 @@ public class ProcessLauncher {
     private static String outputGridFile = null; // "/Users/jennyb/Documents/Java/FIT3161Eduard/data/out.asc";
 //    private static String outputGridFile = "C:\\Users\\charl\\Desktop\\out.asc"; // "/Users/jennyb/Documents/Java/FIT3161Eduard/data/out.asc";
 
+    // filter grids with a persistent worker process that is started once
+    private static final boolean persistentWorker = true;
+
+    // without a persistent worker, exchange grids through a memory-mapped file
+    // instead of standard in and out
+    private static final boolean sharedMemory = true;
+
     // exit code 0 of child process indicates success
     private static final int SUCCESS_EXIT_CODE = 0;
 
@@ -75,78 +82,8 @@ public class ProcessLauncher {
                     System.out.println("Imported grid from " + inputGridFile);
                     System.out.println(inputGrid.getDescriptionWithStatistics(null));
 
-                    CommandLine cmdLine = CommandLine.parse(CMD);
-
-                    Executor executor = new DefaultExecutor();
-                    DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
-                    // end the process when the JVM exits
-                    executor.setProcessDestroyer(new ShutdownHookProcessDestroyer());
-
-                    // this exit value is considered a success
-                    executor.setExitValue(SUCCESS_EXIT_CODE);
-
-                    // pass size of grid to child process in command line arguments
-                    cmdLine.addArgument(Integer.toString(inputGrid.getCols()));
-                    cmdLine.addArgument(Integer.toString(inputGrid.getRows()));
-                    cmdLine.addArgument(Double.toString(inputGrid.getCellSize()));
-
-                    cmdLine.addArgument(Double.toString(inputGrid.getNorth()));
-                    cmdLine.addArgument(Double.toString(inputGrid.getSouth()));
-
-                    cmdLine.addArgument(Double.toString(inputGrid.getEast()));
-                    cmdLine.addArgument(Double.toString(inputGrid.getWest()));
-
-
-                    // the child process reads from stdin or cin
-                    // GridInputStream streams grid values
-                    InputStream childIn = new GridInputStream(inputGrid);
-
-                    // ... //
-
-                    // the child process writes the result to stdout or cout
-                    ByteArrayOutputStream childOut = new ByteArrayOutputStream();
-
-                    // connect the input and output streams with the child process
-                    executor.setStreamHandler(new PumpStreamHandler(childOut, System.err, childIn));
-
-                    // run the child process
-                    executor.execute(cmdLine, resultHandler);
-
-                    // block this thread until the child process has finished
-                    resultHandler.waitFor();
-
-                    // read result of child process and convert the result to a new grid            
-                    if (executor.isFailure(SUCCESS_EXIT_CODE) == false) {
-
-                        // allocate output grid
-                        Grid outputGrid = Grid.shallowCopy(inputGrid);
-
-                        // read result from childOut
-                        byte[] b = childOut.toByteArray();
-
-
-                        for (int row = 0, nRows = outputGrid.getRows(); row < nRows; row++) {
-                            for (int col = 0, nCols = outputGrid.getCols(); col < nCols; col++) {
-
-                                int i = (col + row * nCols) * 4;
-                                // convert four bytes to one float
-                                // this assumes big-endian order, shuffle bytes if in little-endian order
-//                                System.out.println("::" + row + ", " + col);
-//                                System.out.println(b.length);
-
-                                int b1 = b[i] & 0xFF;
-
-                                int b2 = b[i + 1] & 0xFF;
-                                int b3 = b[i + 2] & 0xFF;
-                                int b4 = b[i + 3] & 0xFF;
-
-                                int intBits = b4 << 24 | b3 << 16 | b2 << 8 | b1;
-                                float f = Float.intBitsToFloat(intBits);
-                                outputGrid.setValue(f, col, row);
-
-                            }
-                        }
-
+                    Grid outputGrid = filter(inputGrid);
+                    if (outputGrid != null) {
                         // write output grid
                         if (outputGridFile == null) {
                             outputGridFile = FileUtils.askFile(null, "Export Grid", false);
@@ -168,12 +105,67 @@ public class ProcessLauncher {
                 } catch (Throwable ex) {
                     Logger.getLogger(ProcessLauncher.class.getName()).log(Level.SEVERE, null, ex);
                 } finally {
+                    FilterWorker.closeAll();
                     System.exit(0);
                 }
             }
         });
     }
 
+    /**
+     * Filters a grid with the child process. With a persistent worker, the
+     * worker started for the first grid is reused for later grids.
+     *
+     * @param inputGrid the grid to filter
+     * @return the filtered grid, or null if the child process failed
+     * @throws IOException if the grids cannot be exchanged
+     * @throws InterruptedException if interrupted while waiting for the child
+     * process
+     */
+    public static Grid filter(Grid inputGrid) throws IOException, InterruptedException {
+        CommandLine cmdLine = CommandLine.parse(CMD);
+
+        if (persistentWorker) {
+            FilterWorker worker = FilterWorker.get(Arrays.asList(cmdLine.toStrings()));
+            Grid outputGrid = worker.filter(inputGrid);
+            System.out.println("Filtered grid in " + worker.getLastLatencyMillis() + " ms, "
+                    + worker);
+            return outputGrid;
+        }
+
+        Executor executor = new DefaultExecutor();
+        DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+        // end the process when the JVM exits
+        executor.setProcessDestroyer(new ShutdownHookProcessDestroyer());
+
+        // this exit value is considered a success
+        executor.setExitValue(SUCCESS_EXIT_CODE);
+
+        if (sharedMemory) {
+            // the grids are exchanged through a memory-mapped file, the
+            // child process receives the path and layout of the file
+            try (GridExchangeFile exchangeFile = GridExchangeFile.create(inputGrid, false, null)) {
+                cmdLine.addArguments(exchangeFile.getArguments().toArray(new String[0]), false);
+                executor.setStreamHandler(new PumpStreamHandler(System.out, System.err));
+                executor.execute(cmdLine, resultHandler);
+                resultHandler.waitFor();
+                return executor.isFailure(resultHandler.getExitValue())
+                        ? null : exchangeFile.getOutputGrid(inputGrid.getPrjFileContent());
+            }
+        } else {
+            // the child process reads a grid frame from stdin or cin and
+            // writes a grid frame to stdout or cout, the output grid is
+            // decoded while the input grid is written
+            GridStreamHandler streamHandler = new GridStreamHandler(inputGrid,
+                    Grid.shallowCopy(inputGrid));
+            executor.setStreamHandler(streamHandler);
+            executor.execute(cmdLine, resultHandler);
+            resultHandler.waitFor();
+            return executor.isFailure(resultHandler.getExitValue())
+                    ? null : streamHandler.getOutputGrid();
+        }
+    }
+
     private static void exportImage(BufferedImage image, String filePath,
                                     String defaultFileName) throws IOException {
         if (filePath == null) {
@@ -0,0 +1,105 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.BatchLauncher;
+import edu.monash.fit.aparapi_filter.RegressionHarness;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriFloatGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriFloatGridImporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class BatchLauncherTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testBatch() throws IOException, InterruptedException {
+        // the corpus in binary float grids, such that the inputs are read without loss
+        Map<String, Grid> corpus = RegressionHarness.createCorpus(64);
+        Path inputDirectory = Files.createDirectories(directory.resolve("dems"));
+        for (Map.Entry<String, Grid> entry : corpus.entrySet()){
+            EsriFloatGridExporter.export(entry.getValue(),
+                    inputDirectory.resolve(entry.getKey() + ".flt").toString(), null);
+        }
+        List<File> inputs = BatchLauncher.expand(inputDirectory + File.separator + "*.flt");
+        assertEquals(corpus.size(), inputs.size());
+
+        File outputDirectory = directory.resolve("out").toFile();
+        BatchLauncher launcher = new BatchLauncher(outputDirectory, Arrays.asList(BatchLauncher.FLT,
+                BatchLauncher.ASC, BatchLauncher.PNG), "json", 2);
+        List<BatchLauncher.Result> results = launcher.run(inputs);
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < results.size(); i++){
+            BatchLauncher.Result result = results.get(i);
+            assertNull(result.getFailure());
+            assertEquals(inputs.get(i), result.getInput());
+            assertEquals(4, result.getOutputs().size());
+            for (File output : result.getOutputs()){
+                assertTrue(output.getName(), output.length() > 0);
+            }
+            assertFalse(result.getMetrics().getStages().isEmpty());
+
+            // equal to the mask filter applied in this thread
+            Grid dem = EsriFloatGridImporter.read(inputs.get(i).getPath());
+            float[] expected = new MaskFilter(new edu.monash.fit.aparapi_filter.Grid(dem.getBufferArray(),
+                    dem.getCols(), dem.getRows(), dem.getCellSize(), dem.getNorth(), dem.getSouth(),
+                    dem.getEast(), dem.getWest())).executeResident().getBuffer();
+            Grid filtered = EsriFloatGridImporter.read(result.getOutputs().get(0).getPath());
+            for (int j = 0; j < expected.length; j++){
+                assertEquals(Float.floatToIntBits(expected[j]), Float.floatToIntBits(filtered.getValue(j)));
+            }
+        }
+    }
+
+    @Test
+    void testFailureDoesNotStopBatch() throws IOException, InterruptedException {
+        Grid dem = RegressionHarness.createCorpus(32).values().iterator().next();
+        File valid = directory.resolve("valid.asc").toFile();
+        EsriASCIIGridExporter.export(dem, valid.getPath(), null);
+        File invalid = directory.resolve("invalid.asc").toFile();
+        Files.write(invalid.toPath(), "not a grid".getBytes());
+
+        BatchLauncher launcher = new BatchLauncher(null, Collections.singletonList(BatchLauncher.ASC), null, 1);
+        List<BatchLauncher.Result> results = launcher.run(Arrays.asList(invalid, valid));
+        assertFalse(results.get(0).isPassed());
+        assertTrue(results.get(1).isPassed());
+        assertTrue(directory.resolve("valid_filtered.asc").toFile().isFile());
+    }
+
+    @Test
+    void testExpand() throws IOException {
+        Path sub = Files.createDirectories(directory.resolve("a").resolve("b"));
+        for (Path file : new Path[]{directory.resolve("x.asc"), directory.resolve("y.flt"),
+                directory.resolve("z.txt"), sub.resolve("w.asc")}){
+            Files.write(file, new byte[1]);
+        }
+        assertEquals(2, BatchLauncher.expand(directory.toString()).size());
+        assertEquals(1, BatchLauncher.expand(directory + "/*.asc").size());
+        assertEquals(2, BatchLauncher.expand(directory + "/**.asc").size());
+        assertEquals(1, BatchLauncher.expand(directory + "/a/*/w.asc").size());
+        assertEquals(2, BatchLauncher.expand(directory + "/{x,y}.*").size());
+        try {
+            BatchLauncher.expand(directory + "/*.tif");
+            fail("missing files not detected");
+        } catch (IOException expected){
+        }
+    }
+}
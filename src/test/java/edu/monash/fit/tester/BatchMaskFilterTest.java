@@ -0,0 +1,126 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.BatchMaskFilter;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class BatchMaskFilterTest {
+
+    private static Grid createGrid(int cols, int rows, double cellSize, double north, long seed){
+        Grid grid = new Grid(cols, rows, cellSize, north, north - (rows - 1) * cellSize, 8 + (cols - 1) * cellSize, 8);
+        Random random = new Random(seed);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                grid.set(random.nextFloat() * 1000, col, row);
+            }
+        }
+        return grid;
+    }
+
+    // the resident mask filter is a batch with a single grid, thus every grid is compared with the operator pipeline
+    private static void assertBatch(List<Grid> grids){
+        List<Grid> results = new BatchMaskFilter(grids).execute();
+        assertEquals(grids.size(), results.size());
+        for (int i = 0; i < grids.size(); i++){
+            Grid expected = new MaskFilter(grids.get(i)).execute();
+            Grid result = results.get(i);
+            assertEquals(expected.getCols(), result.getCols());
+            assertEquals(expected.getRows(), result.getRows());
+            assertEquals(expected.getNorth(), result.getNorth(), 0);
+            for (int j = 0; j < expected.getLength(); j++){
+                if (Float.floatToIntBits(expected.get(j)) != Float.floatToIntBits(result.get(j))){
+                    fail("grid " + i + " cell " + j + ": expected " + expected.get(j) + " but was " + result.get(j));
+                }
+            }
+            expected.release();
+            result.release();
+        }
+    }
+
+    @Test
+    void testBatch() {
+        List<Grid> grids = new ArrayList<>();
+        for (int i = 0; i < 5; i++){
+            grids.add(createGrid(70, 45, 10, 5000 + i * 450, i));
+        }
+        assertBatch(grids);
+        assertBatch(Collections.singletonList(grids.get(0)));
+    }
+
+    @Test
+    void testBatchWithVoids() {
+        List<Grid> grids = new ArrayList<>();
+        for (int i = 0; i < 4; i++){
+            grids.add(createGrid(50, 60, 10, 5000, i));
+        }
+        // different void patterns in each grid, including a grid without any valid value
+        for (int row = 0; row < 60; row += 3){
+            for (int col = row % 7; col < 50; col += 4){
+                grids.get(0).set(Float.NaN, col, row);
+            }
+        }
+        for (int row = 20; row < 40; row++){
+            for (int col = 0; col < 50; col++){
+                grids.get(1).set(Float.NaN, col, row);
+            }
+        }
+        for (int i = 0; i < grids.get(3).getLength(); i++){
+            grids.get(3).set(Float.NaN, i);
+        }
+        assertBatch(grids);
+    }
+
+    @Test
+    void testGeographicBatch() {
+        // geographic cell sizes with a different latitude for each grid
+        List<Grid> grids = new ArrayList<>();
+        for (int i = 0; i < 3; i++){
+            grids.add(createGrid(40, 40, 3. / 3600, -40 + i * 20, i));
+        }
+        assertBatch(grids);
+    }
+
+    @Test
+    void testMetrics() {
+        List<Grid> grids = Arrays.asList(createGrid(30, 20, 10, 5000, 0), createGrid(30, 20, 10, 5000, 1));
+        BatchMaskFilter filter = new BatchMaskFilter(grids);
+        filter.execute();
+        RunMetrics metrics = filter.getMetrics();
+        StageMetrics batch = metrics.getStages().get(0);
+        assertEquals("Batch mask filter", batch.getName());
+        assertEquals(30 * 20 * 2, batch.getCells());
+        assertTrue(metrics.toText().contains("Gradient [rise/run]"));
+    }
+
+    @Test
+    void testInvalidBatch() {
+        try {
+            new BatchMaskFilter(null);
+            fail();
+        } catch (NullPointerException ex){
+        }
+        try {
+            new BatchMaskFilter(Collections.emptyList());
+            fail();
+        } catch (IllegalArgumentException ex){
+        }
+        try {
+            new BatchMaskFilter(Arrays.asList(createGrid(30, 20, 10, 5000, 0), createGrid(20, 30, 10, 5000, 0)));
+            fail();
+        } catch (IllegalArgumentException ex){
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class BufferArenaTest {
+    Grid eduardSource;
+
+    @Test
+    void testReleasedArrayReused() {
+        float[] array = BufferArena.acquire(1237);
+        array[5] = 3;
+        long allocated = BufferArena.getAllocatedCount();
+        long reused = BufferArena.getReusedCount();
+        BufferArena.release(array);
+
+        float[] reusedArray = BufferArena.acquire(1237);
+        assertSame(array, reusedArray);
+        // acquired arrays are filled with 0
+        assertEquals(0, reusedArray[5], 0);
+        assertEquals(allocated, BufferArena.getAllocatedCount());
+        assertEquals(reused + 1, BufferArena.getReusedCount());
+    }
+
+    @Test
+    void testReleaseTwice() {
+        float[] array = BufferArena.acquire(1511);
+        BufferArena.release(array);
+        try{
+            BufferArena.release(array);
+            fail();
+        } catch(IllegalStateException ex){
+        }
+        BufferArena.acquire(1511);
+    }
+
+    @Test
+    void testReleaseDirectBufferTwice() {
+        // direct buffers filled with 0 are equal, but only the same buffer is released twice
+        java.nio.ByteBuffer first = BufferArena.acquireDirect(1523);
+        java.nio.ByteBuffer second = BufferArena.acquireDirect(1523);
+        BufferArena.release(first);
+        BufferArena.release(second);
+        try{
+            BufferArena.release(first);
+            fail();
+        } catch(IllegalStateException ex){
+        }
+    }
+
+    @Test
+    void testWrappedArrayNotPooled() {
+        float[] array = new float[24];
+        edu.monash.fit.eduard_object.eduard.grid.FloatBuffer buffer =
+                new edu.monash.fit.eduard_object.eduard.grid.FloatBuffer(array, 6, 4);
+        long released = BufferArena.getReleasedCount();
+        buffer.release();
+        assertEquals(released, BufferArena.getReleasedCount());
+        // the owner can still release the array
+        BufferArena.release(array);
+        assertEquals(released + 1, BufferArena.getReleasedCount());
+    }
+
+    @Test
+    void testWrappedArrayNotPooledByAparapiGrid() {
+        float[] array = new float[24];
+        edu.monash.fit.aparapi_filter.Grid grid = new edu.monash.fit.aparapi_filter.Grid(array, 6, 4, 0.5, 0.6, 0.8,
+                0.8, 0.8);
+        assertFalse(grid.isOwner());
+        long released = BufferArena.getReleasedCount();
+        grid.release();
+        assertEquals(released, BufferArena.getReleasedCount());
+
+        // a grid acquiring its buffer owns it, until the buffer is replaced by an array of the caller
+        grid = new edu.monash.fit.aparapi_filter.Grid(6, 4, 0.5, 0.6, 0.8, 0.8, 0.8);
+        assertTrue(grid.isOwner());
+        float[] acquired = grid.getBuffer();
+        grid.setBufferReceived(array);
+        assertFalse(grid.isOwner());
+        grid.release();
+        assertEquals(released, BufferArena.getReleasedCount());
+        BufferArena.release(acquired);
+        assertEquals(released + 1, BufferArena.getReleasedCount());
+    }
+
+    @Test
+    void testMaxIdleBytes() {
+        long maxIdleBytes = BufferArena.getMaxIdleBytes();
+        try{
+            BufferArena.clear();
+            BufferArena.setMaxIdleBytes(0);
+            long discarded = BufferArena.getDiscardedCount();
+            BufferArena.release(BufferArena.acquire(1733));
+            assertEquals(discarded + 1, BufferArena.getDiscardedCount());
+            assertEquals(0, BufferArena.getIdleBytes());
+        } finally {
+            BufferArena.setMaxIdleBytes(maxIdleBytes);
+        }
+    }
+
+    @Test
+    void testLowPassReusesTransposedGrid() {
+        generateInput(211, 157);
+        Grid first = new LowPassOperator(6f, null).operate(eduardSource);
+        long allocated = BufferArena.getAllocatedCount();
+        long reused = BufferArena.getReusedCount();
+
+        // the transposed grid of the second run and the copy void grid reuse the released buffers
+        first.release();
+        Grid second = new LowPassOperator(6f, null).operate(eduardSource);
+        assertEquals(allocated, BufferArena.getAllocatedCount());
+        assertTrue(BufferArena.getReusedCount() >= reused + 2);
+
+        Grid expected = new LowPassOperator(6f, null).operate(eduardSource);
+        for (int i=0; i <expected.getBufferArray().length ; i++){
+            assertEquals(expected.getValue(i), second.getValue(i), 0);
+        }
+    }
+
+    @Test
+    void testOffHeapGrid() {
+        generateInput(120, 90);
+        Grid onHeapResult = new GradientOperator().operate(eduardSource);
+        Grid offHeapResult;
+        try{
+            BufferArena.setOffHeap(true);
+            offHeapResult = new GradientOperator().operate(eduardSource);
+        } finally {
+            BufferArena.setOffHeap(false);
+        }
+        for (int i=0; i <onHeapResult.getBufferArray().length ; i++){
+            assertEquals(onHeapResult.getValue(i), offHeapResult.getValue(i), 0);
+        }
+        try{
+            offHeapResult.getBufferArray();
+            fail();
+        } catch(UnsupportedOperationException ex){
+        }
+
+        // a released direct buffer is reused by the next off-heap grid
+        long reused = BufferArena.getReusedCount();
+        offHeapResult.release();
+        try{
+            BufferArena.setOffHeap(true);
+            Grid grid = Grid.shallowCopy(eduardSource);
+            assertEquals(0, grid.getValue(5, 5), 0);
+        } finally {
+            BufferArena.setOffHeap(false);
+        }
+        assertEquals(reused + 1, BufferArena.getReusedCount());
+    }
+
+    @Test
+    void testAparapiGridRelease() {
+        edu.monash.fit.aparapi_filter.Grid aparapiSource = new edu.monash.fit.aparapi_filter.Grid(
+                97, 89, 0.5, 0.6, 0.8, 0.8, 0.8);
+        aparapiSource.fillWithRandomFloat();
+        edu.monash.fit.aparapi_filter.Grid first = new MaskFilter(aparapiSource).execute();
+        float[] expected = first.getBuffer().clone();
+        first.release();
+        try{
+            first.release();
+            fail();
+        } catch(IllegalStateException ex){
+        }
+
+        // the second run of the pipeline does not allocate any grid buffer
+        long allocated = BufferArena.getAllocatedCount();
+        edu.monash.fit.aparapi_filter.Grid second = new MaskFilter(aparapiSource).execute();
+        assertEquals(allocated, BufferArena.getAllocatedCount());
+        for (int i=0; i <expected.length ; i++){
+            assertEquals(expected[i], second.get(i), 0);
+        }
+    }
+
+    private void generateInput(int cols, int rows){
+        Random random = new Random(0);
+        eduardSource = new Grid(cols, rows, 0.5, 0.8, 0.8, "");
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                // void area in the source grid
+                boolean isVoid = row > rows / 3 && row < rows / 2 && col < cols / 3;
+                eduardSource.setValue(isVoid ? Float.NaN : random.nextFloat() * 1000, col, row);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridExporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+class EsriASCIIGridExporterTest {
+
+    private static Grid createGrid(int cols, int rows){
+        Grid grid = new Grid(cols, rows, 2.5, 100, 200, null);
+        Random random = new Random(0);
+        float[] special = {0f, -0f, 0.5f, 1.5f, 2.5f, -2.5f, 0.0625f, 0.0005f, -0.0004f, 1.0005f, 0.125f,
+                123456.789f, -98765.4321f, 1e-20f, -1e-20f, 1e30f, -1e30f, 1e12f, 9.999999e18f,
+                Float.MIN_VALUE};
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                float v;
+                switch (random.nextInt(6)){
+                    case 0: v = special[random.nextInt(special.length)]; break;
+                    case 1: v = Float.NaN; break;
+                    // values with exact ties for small numbers of decimals
+                    case 2: v = (random.nextInt(20001) - 10000) / 1024f; break;
+                    case 3: v = (random.nextFloat() - 0.5f) * 1e-3f; break;
+                    // any bit pattern, values too large for fixed-point formatting included
+                    case 4: v = Float.intBitsToFloat(random.nextInt() & 0xF1FFFFFF); break;
+                    default: v = (random.nextFloat() - 0.2f) * 5000; break;
+                }
+                grid.setValue(Float.isNaN(v) ? 0 : v, col, row);
+                if (Float.isNaN(v)){
+                    grid.setVoid(col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    @Test
+    void testFileIsIdenticalToStream() throws IOException {
+        Grid grid = createGrid(301, 200);
+        File file = File.createTempFile("grid", ".asc");
+        try {
+            for (int nbrDecimals = 0; nbrDecimals <= 13; nbrDecimals++){
+                EsriASCIIGridExporter exporter = new EsriASCIIGridExporter();
+                exporter.setNbrDecimals(nbrDecimals);
+                exporter.exportToFile(grid, file.getPath());
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                exporter.writeGridAndCloseStream(grid, stream);
+                assertArrayEquals("decimals: " + nbrDecimals, stream.toByteArray(),
+                        Files.readAllBytes(file.toPath()));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testManyBlocks() throws IOException {
+        // more than one block of rows
+        Grid grid = createGrid(2000, 600);
+        File file = File.createTempFile("grid", ".asc");
+        try {
+            EsriASCIIGridExporter.export(grid, file.getPath(), null);
+            assertTrue(file.length() > 8 * 1024 * 1024);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            EsriASCIIGridExporter exporter = new EsriASCIIGridExporter();
+            exporter.writeGridAndCloseStream(grid, stream);
+            assertArrayEquals(stream.toByteArray(), Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridImporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class EsriASCIIGridImporterTest {
+
+    private static final float NO_DATA = -9999;
+
+    /**
+     * Write a grid file with values in various notations, and return the expected values.
+     */
+    private static float[] writeGrid(File file, int cols, int rows, int valuesPerLine, int extraValues)
+            throws IOException {
+        Random random = new Random(cols * 31 + rows);
+        int nbrValues = cols * rows + extraValues;
+        float[] expected = new float[nbrValues];
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))){
+            writer.write("ncols " + cols + "\r\n");
+            writer.write("nrows\t" + rows + "\r\n");
+            writer.write("xllcorner 100\r\n");
+            writer.write("yllcorner 200\r\n");
+            writer.write("cellsize 10\r\n");
+            writer.write("NODATA_value " + (int) NO_DATA + "\r\n");
+            for (int i = 0; i < nbrValues; i++){
+                String token = randomToken(random);
+                float v = Float.parseFloat(token);
+                expected[i] = (!Float.isFinite(v) || v == NO_DATA) ? Float.NaN : v;
+                writer.write(token);
+                writer.write((i + 1) % valuesPerLine == 0 ? (random.nextBoolean() ? "\n" : "\r\n")
+                        : (random.nextInt(4) == 0 ? "\t" : " "));
+            }
+        }
+        return expected;
+    }
+
+    private static String randomToken(Random random){
+        float v = (random.nextFloat() - 0.3f) * (float) Math.pow(10, random.nextInt(8) - 2);
+        switch (random.nextInt(12)){
+            case 0: return Float.toString(v);
+            case 1: return Double.toString(v * 1.0000001);
+            case 2: return String.format(Locale.US, "%.2f", v);
+            case 3: return String.format(Locale.US, "%.6f", v);
+            case 4: return String.format(Locale.US, "%e", v);
+            case 5: return Integer.toString((int) v);
+            case 6: return "-9999";
+            case 7: return random.nextBoolean() ? "-0" : "+3.5";
+            // close to half-way between two floats
+            case 8: return random.nextBoolean() ? "8.000000476837159" : "1.000000059604644775390625";
+            case 9: return String.format(Locale.US, "%.12f", v);
+            case 10: return random.nextBoolean() ? "NaN" : "1e40";
+            default: return String.format(Locale.US, "%.3E", v);
+        }
+    }
+
+    @Test
+    void testValuesAreIdenticalToFloatParseFloat() throws IOException {
+        File file = File.createTempFile("grid", ".asc");
+        try {
+            // more than two chunks of 8 MB
+            int cols = 1001, rows = 1600;
+            float[] expected = writeGrid(file, cols, rows, 7, 0);
+            assertTrue(file.length() > 2 * 8 * 1024 * 1024);
+            Grid grid = EsriASCIIGridImporter.read(file.getPath());
+            assertEquals(cols, grid.getCols());
+            assertEquals(rows, grid.getRows());
+            assertEquals(105, grid.getWest(), 0);
+            assertEquals(205, grid.getSouth(), 0);
+            for (int row = 0; row < rows; row++){
+                for (int col = 0; col < cols; col++){
+                    float v = grid.getValue(col, row);
+                    float e = expected[col + row * cols];
+                    if (Float.floatToIntBits(e) != Float.floatToIntBits(v)){
+                        fail("col " + col + " row " + row + ": expected " + e + " but was " + v);
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testNumberOfValues() throws IOException {
+        File file = File.createTempFile("grid", ".asc");
+        try {
+            writeGrid(file, 20, 10, 20, -1);
+            try {
+                EsriASCIIGridImporter.read(file.getPath());
+                fail("missing value not detected");
+            } catch (IOException expected){
+            }
+            writeGrid(file, 20, 10, 20, 1);
+            try {
+                EsriASCIIGridImporter.read(file.getPath());
+                fail("additional value not detected");
+            } catch (IOException expected){
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
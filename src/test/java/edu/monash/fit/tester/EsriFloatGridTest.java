@@ -0,0 +1,138 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriFloatGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriFloatGridImporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class EsriFloatGridTest {
+
+    private static Grid createGrid(int cols, int rows){
+        Grid grid = new Grid(cols, rows, 2.5, 100.25, -200.75, "GEOGCS[\"WGS 84\"]");
+        Random random = new Random(0);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                if (random.nextInt(10) == 0){
+                    grid.setVoid(col, row);
+                } else {
+                    grid.setValue((random.nextFloat() - 0.3f) * 5000, col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static void assertIdentical(Grid expected, Grid grid){
+        assertEquals(expected.getCols(), grid.getCols());
+        assertEquals(expected.getRows(), grid.getRows());
+        assertEquals(expected.getWest(), grid.getWest(), 0);
+        assertEquals(expected.getSouth(), grid.getSouth(), 0);
+        assertEquals(expected.getCellSize(), grid.getCellSize(), 0);
+        for (int row = 0; row < expected.getRows(); row++){
+            for (int col = 0; col < expected.getCols(); col++){
+                float e = expected.getValue(col, row);
+                float v = grid.getValue(col, row);
+                if (Float.floatToIntBits(e) != Float.floatToIntBits(v)){
+                    fail("col " + col + " row " + row + ": expected " + e + " but was " + v);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBothByteOrders() throws IOException {
+        Grid grid = createGrid(301, 200);
+        grid.setValue(1234.5f, 0, 0);
+        File file = File.createTempFile("grid", ".flt");
+        File hdrFile = new File(file.getPath().replace(".flt", ".hdr"));
+        File prjFile = new File(file.getPath().replace(".flt", ".prj"));
+        try {
+            for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}){
+                EsriFloatGridExporter exporter = new EsriFloatGridExporter();
+                exporter.setByteOrder(byteOrder);
+                exporter.exportToFile(grid, file.getPath());
+                assertEquals(4L * 301 * 200, file.length());
+                assertTrue(hdrFile.exists());
+                assertTrue(prjFile.exists());
+
+                // the first value is stored with the byte order of the header
+                ByteBuffer first = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(byteOrder);
+                assertEquals(grid.getValue(0, 0), first.getFloat(0), 0);
+
+                assertTrue(EsriFloatGridImporter.canRead(file.getPath()));
+                Grid imported = EsriFloatGridImporter.read(hdrFile.getPath());
+                assertIdentical(grid, imported);
+                assertEquals(grid.getPrjFileContent().trim(), imported.getPrjFileContent().trim());
+            }
+        } finally {
+            file.delete();
+            hdrFile.delete();
+            prjFile.delete();
+        }
+    }
+
+    @Test
+    void testMappedGridAndStream() throws IOException {
+        // larger than one block, imported to a memory-mapped grid
+        Grid grid = createGrid(4000, 4300);
+        File file = File.createTempFile("grid", ".flt");
+        File hdrFile = new File(file.getPath().replace(".flt", ".hdr"));
+        File prjFile = new File(file.getPath().replace(".flt", ".prj"));
+        BufferArena.setMapped(0, null);
+        try {
+            EsriFloatGridExporter.export(grid, file.getPath(), null);
+            Grid imported = EsriFloatGridImporter.read(file.getPath());
+            BufferArena.setMapped(Integer.MAX_VALUE, null);
+            assertIdentical(grid, imported);
+            imported.release();
+
+            // the stream is identical to the file
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            new EsriFloatGridExporter().writeGridAndCloseStream(grid, stream);
+            assertTrue(Arrays.equals(stream.toByteArray(), Files.readAllBytes(file.toPath())));
+        } finally {
+            BufferArena.setMapped(Integer.MAX_VALUE, null);
+            file.delete();
+            hdrFile.delete();
+            prjFile.delete();
+        }
+    }
+
+    @Test
+    void testInvalidFile() throws IOException {
+        Grid grid = createGrid(20, 10);
+        File file = File.createTempFile("grid", ".flt");
+        File hdrFile = new File(file.getPath().replace(".flt", ".hdr"));
+        File prjFile = new File(file.getPath().replace(".flt", ".prj"));
+        try {
+            EsriFloatGridExporter.export(grid, file.getPath(), null);
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 4));
+            assertFalse(EsriFloatGridImporter.canRead(file.getPath()));
+            try {
+                EsriFloatGridImporter.read(file.getPath());
+                fail("missing value not detected");
+            } catch (IOException expected){
+            }
+        } finally {
+            file.delete();
+            hdrFile.delete();
+            prjFile.delete();
+        }
+    }
+}
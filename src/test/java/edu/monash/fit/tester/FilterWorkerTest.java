@@ -0,0 +1,108 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.Main;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.processlauncher.ChildProcess;
+import edu.monash.fit.eduard_object.processlauncher.FilterWorker;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class FilterWorkerTest {
+
+    private static List<String> command(Class<?> mainClass){
+        return Arrays.asList(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"), mainClass.getName());
+    }
+
+    private static Grid createGrid(int cols, int rows, long seed){
+        Grid grid = new Grid(cols, rows, 2.5, 100.25, -200.75, null);
+        Random random = new Random(seed);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                if (random.nextInt(10) == 0){
+                    grid.setVoid(col, row);
+                } else {
+                    grid.setValue((float) (Math.sin(col * 0.1) * Math.cos(row * 0.07) * 1000 + random.nextFloat()),
+                            col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static void assertIdentical(float[] expected, Grid grid){
+        for (int i = 0; i < expected.length; i++){
+            if (Float.floatToIntBits(expected[i]) != Float.floatToIntBits(grid.getValue(i))){
+                fail("cell " + i + ": expected " + expected[i] + " but was " + grid.getValue(i));
+            }
+        }
+    }
+
+    @Test
+    void testWorkerIsReused() throws IOException {
+        List<String> command = command(ChildProcess.class);
+        try {
+            FilterWorker worker = FilterWorker.get(command);
+            for (int job = 0; job < 5; job++){
+                Grid grid = createGrid(200 + job * 37, 150 + job, job);
+                assertSame(worker, FilterWorker.get(command));
+                Grid output = worker.filter(grid);
+                float[] expected = grid.getBufferArray().clone();
+                for (int i = 0; i < expected.length; i++){
+                    expected[i] += 100;
+                }
+                assertIdentical(expected, output);
+                assertEquals(grid.getWest(), output.getWest(), 0);
+                assertTrue(worker.getLastLatencyMillis() > 0);
+            }
+            assertEquals(5, worker.getJobCount());
+            assertTrue(worker.getMeanLatencyMillis() > 0);
+
+            // a new worker is started after the worker has ended
+            worker.close();
+            assertFalse(worker.isAlive());
+            try {
+                worker.filter(createGrid(10, 10, 0));
+                fail("filtering with a closed worker");
+            } catch (IOException expected){
+            }
+            FilterWorker newWorker = FilterWorker.get(command);
+            assertNotSame(worker, newWorker);
+            assertTrue(newWorker.isAlive());
+        } finally {
+            FilterWorker.closeAll();
+        }
+    }
+
+    @Test
+    void testMaskFilterWorker() throws IOException {
+        try {
+            FilterWorker worker = FilterWorker.start(command(Main.class));
+            for (int job = 0; job < 3; job++){
+                Grid grid = createGrid(120, 90 + job * 10, job);
+                edu.monash.fit.aparapi_filter.Grid source = new edu.monash.fit.aparapi_filter.Grid(
+                        grid.getBufferArray().clone(), grid.getCols(), grid.getRows(), grid.getCellSize(),
+                        grid.getNorth(), grid.getSouth(), grid.getEast(), grid.getWest());
+                float[] expected = new MaskFilter(source).executeResident().getBuffer();
+                assertIdentical(expected, worker.filter(grid));
+            }
+            assertEquals(3, worker.getJobCount());
+            worker.close();
+        } finally {
+            FilterWorker.closeAll();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ClampToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.FusedPointOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ScaleToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.WeightedScaleOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+class FusedPointOperatorTest {
+    Grid eduardSource, weightGrid, separateResult, fusedResult;
+
+    @Test
+    void testNullOperator() {
+        try{
+            new FusedPointOperator(null, new ClampToRangeOperator(0, 1), null);
+            fail();
+        } catch(NullPointerException ex){
+        }
+    }
+
+    @Test
+    void testChainOutputCorrectness() {
+        generateInput();
+
+        // separate passes with intermediate grids
+        Grid clamped = new ClampToRangeOperator(200, 800).operate(eduardSource);
+        Grid scaled = new ScaleToRangeOperator(0, 1).operate(clamped);
+        separateResult = new WeightedScaleOperator(weightGrid, 1.25f, null).operate(scaled);
+
+        // single sweep; the scale operator requires the minimum and maximum of the clamped values
+        fusedResult = new FusedPointOperator(null, new ClampToRangeOperator(200, 800))
+                .then(new ScaleToRangeOperator(0, 1))
+                .then(new WeightedScaleOperator(weightGrid, 1.25f, null))
+                .operate(eduardSource);
+
+        for (int i=0; i <separateResult.getBufferArray().length ; i++){
+            assertEquals(separateResult.getValue(i), fusedResult.getValue(i), 0);
+        }
+    }
+
+    @Test
+    void testLowPassPostOperator() {
+        generateInput();
+
+        separateResult = new LowPassOperator(6f, null).operate(eduardSource);
+        new ClampToRangeOperator(200, 800).operate(separateResult, separateResult);
+        fusedResult = new LowPassOperator(6f, null, new ClampToRangeOperator(200, 800)).operate(eduardSource);
+
+        for (int i=0; i <separateResult.getBufferArray().length ; i++){
+            assertEquals(separateResult.getValue(i), fusedResult.getValue(i), 0);
+        }
+    }
+
+    private void generateInput(){
+        Random random = new Random(0);
+        eduardSource = new Grid(300, 200, 0.5, 0.8, 0.8, "");
+        weightGrid = new Grid(300, 200, 0.5, 0.8, 0.8, "");
+        for (int row = 0, nRows = eduardSource.getRows(); row < nRows; row++) {
+            for (int col = 0, nCols = eduardSource.getCols(); col < nCols; col++){
+                // void area in the source grid
+                boolean isVoid = row > 50 && row < 80 && col < 100;
+                eduardSource.setValue(isVoid ? Float.NaN : random.nextFloat() * 1000, col, row);
+                weightGrid.setValue(random.nextFloat(), col, row);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.processlauncher.ChildProcess;
+import edu.monash.fit.eduard_object.processlauncher.GridExchangeFile;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class GridExchangeFileTest {
+
+    private static Grid createGrid(int cols, int rows){
+        Grid grid = new Grid(cols, rows, 2.5, 100.25, -200.75, null);
+        Random random = new Random(0);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                if (random.nextInt(10) == 0){
+                    grid.setVoid(col, row);
+                } else {
+                    grid.setValue((random.nextFloat() - 0.3f) * 5000, col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static void assertIdentical(Grid expected, Grid grid, float offset){
+        assertEquals(expected.getCols(), grid.getCols());
+        assertEquals(expected.getRows(), grid.getRows());
+        assertEquals(expected.getWest(), grid.getWest(), 0);
+        assertEquals(expected.getSouth(), grid.getSouth(), 0);
+        assertEquals(expected.getCellSize(), grid.getCellSize(), 0);
+        for (int row = 0; row < expected.getRows(); row++){
+            for (int col = 0; col < expected.getCols(); col++){
+                float e = expected.getValue(col, row) + offset;
+                float v = grid.getValue(col, row);
+                if (Float.floatToIntBits(e) != Float.floatToIntBits(v)){
+                    fail("col " + col + " row " + row + ": expected " + e + " but was " + v);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testChildProcess() throws IOException {
+        Grid grid = createGrid(1000, 900);
+        for (boolean inPlace : new boolean[]{false, true}){
+            File file;
+            try (GridExchangeFile exchangeFile = GridExchangeFile.create(grid, inPlace, null)){
+                file = exchangeFile.getFile().toFile();
+                assertFalse(exchangeFile.isDone());
+                long size = GridExchangeFile.VALUES_OFFSET + (inPlace ? 1 : 2) * 4L * 1000 * 900;
+                assertEquals(size, file.length());
+
+                CommandLine cmdLine = new CommandLine(System.getProperty("java.home")
+                        + File.separator + "bin" + File.separator + "java");
+                cmdLine.addArgument("-cp");
+                cmdLine.addArgument(System.getProperty("java.class.path"), false);
+                cmdLine.addArgument(ChildProcess.class.getName());
+                cmdLine.addArguments(exchangeFile.getArguments().toArray(new String[0]), false);
+                assertEquals(0, new DefaultExecutor().execute(cmdLine));
+
+                assertTrue(exchangeFile.isDone());
+                Grid output = exchangeFile.getOutputGrid("prj");
+                assertIdentical(grid, output, 100);
+                assertEquals("prj", output.getPrjFileContent());
+            }
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    void testOpenInChild() throws IOException {
+        Grid grid = createGrid(30, 20);
+        try (GridExchangeFile exchangeFile = GridExchangeFile.create(grid, false, null)){
+            String[] args = exchangeFile.getArguments().toArray(new String[0]);
+            assertTrue(GridExchangeFile.isExchangeArguments(args));
+            try (GridExchangeFile child = GridExchangeFile.open(args)){
+                assertEquals(30, child.getHeader().cols);
+                assertEquals(20, child.getHeader().rows);
+                float[] values = new float[30 * 20];
+                child.readInput(values);
+                assertArrayEquals(grid.getBufferArray(), values, 0);
+                try {
+                    exchangeFile.getOutputGrid(null);
+                    fail("incomplete output grid not detected");
+                } catch (IOException expected){
+                }
+                child.writeOutput(values);
+            }
+            assertTrue(exchangeFile.isDone());
+            assertIdentical(grid, exchangeFile.getOutputGrid(null), 0);
+
+            // the output region must be in the file
+            args[3] = Long.toString(Files.size(exchangeFile.getFile()));
+            try {
+                GridExchangeFile.open(args);
+                fail("invalid layout not detected");
+            } catch (IOException expected){
+            }
+        }
+    }
+}
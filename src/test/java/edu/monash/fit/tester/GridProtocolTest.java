@@ -0,0 +1,127 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.processlauncher.ChildProcess;
+import edu.monash.fit.eduard_object.processlauncher.GridProtocol;
+import edu.monash.fit.eduard_object.processlauncher.GridStreamHandler;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+class GridProtocolTest {
+
+    private static Grid createGrid(int cols, int rows){
+        Grid grid = new Grid(cols, rows, 2.5, 100.25, -200.75, null);
+        Random random = new Random(0);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                if (random.nextInt(10) == 0){
+                    grid.setVoid(col, row);
+                } else {
+                    grid.setValue((random.nextFloat() - 0.3f) * 5000, col, row);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static byte[] encode(Grid grid) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GridProtocol.write(Channels.newChannel(out), grid);
+        return out.toByteArray();
+    }
+
+    private static void assertIdentical(Grid expected, Grid grid, float offset){
+        assertEquals(expected.getCols(), grid.getCols());
+        assertEquals(expected.getRows(), grid.getRows());
+        for (int row = 0; row < expected.getRows(); row++){
+            for (int col = 0; col < expected.getCols(); col++){
+                float e = expected.getValue(col, row) + offset;
+                float v = grid.getValue(col, row);
+                if (Float.floatToIntBits(e) != Float.floatToIntBits(v)){
+                    fail("col " + col + " row " + row + ": expected " + e + " but was " + v);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        // more values than fit in the transfer buffer
+        Grid grid = createGrid(700, 500);
+        byte[] frame = encode(grid);
+        assertEquals(GridProtocol.HEADER_SIZE + 4 * 700 * 500, frame.length);
+
+        Grid decoded = GridProtocol.read(Channels.newChannel(new ByteArrayInputStream(frame)), "prj");
+        assertIdentical(grid, decoded, 0);
+        assertEquals(grid.getWest(), decoded.getWest(), 0);
+        assertEquals(grid.getSouth(), decoded.getSouth(), 0);
+        assertEquals(grid.getCellSize(), decoded.getCellSize(), 0);
+        assertEquals("prj", decoded.getPrjFileContent());
+
+        // decode into a grid without a float array
+        BufferArena.setMapped(0, null);
+        try {
+            Grid mapped = Grid.shallowCopy(grid);
+            GridProtocol.read(Channels.newChannel(new ByteArrayInputStream(frame)), mapped);
+            assertIdentical(grid, mapped, 0);
+            assertEquals(frame.length, encode(mapped).length);
+            assertEquals(true, Arrays.equals(frame, encode(mapped)));
+            mapped.release();
+        } finally {
+            BufferArena.setMapped(Integer.MAX_VALUE, null);
+        }
+    }
+
+    @Test
+    void testInvalidFrames() throws IOException {
+        Grid grid = createGrid(20, 10);
+        byte[] frame = encode(grid);
+        try {
+            GridProtocol.read(Channels.newChannel(new ByteArrayInputStream(
+                    Arrays.copyOf(frame, frame.length - 1))), (String) null);
+            fail("truncated frame not detected");
+        } catch (EOFException expected){
+        }
+        try {
+            GridProtocol.read(Channels.newChannel(new ByteArrayInputStream(frame)), createGrid(10, 20));
+            fail("wrong size not detected");
+        } catch (IOException expected){
+        }
+        frame[0]++;
+        try {
+            GridProtocol.read(Channels.newChannel(new ByteArrayInputStream(frame)), (String) null);
+            fail("invalid magic number not detected");
+        } catch (IOException expected){
+        }
+    }
+
+    @Test
+    void testChildProcess() throws IOException {
+        Grid grid = createGrid(1000, 900);
+        CommandLine cmdLine = new CommandLine(System.getProperty("java.home")
+                + File.separator + "bin" + File.separator + "java");
+        cmdLine.addArgument("-cp");
+        cmdLine.addArgument(System.getProperty("java.class.path"), false);
+        cmdLine.addArgument(ChildProcess.class.getName());
+
+        DefaultExecutor executor = new DefaultExecutor();
+        GridStreamHandler streamHandler = new GridStreamHandler(grid, Grid.shallowCopy(grid));
+        executor.setStreamHandler(streamHandler);
+        assertEquals(0, executor.execute(cmdLine));
+        assertIdentical(grid, streamHandler.getOutputGrid(), 100);
+    }
+}
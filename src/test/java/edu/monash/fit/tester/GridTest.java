@@ -1,12 +1,17 @@
 package edu.monash.fit.tester;
 
 import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.FloatBuffer;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
 
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 class GridTest {
@@ -28,6 +33,57 @@ class GridTest {
         assertEquals(grid2.getWest() , grid.getWest(), 3);
     }
 
+    @Test
+    void testEduardBridge() {
+        edu.monash.fit.eduard_object.eduard.grid.Grid eduardGrid =
+                new edu.monash.fit.eduard_object.eduard.grid.Grid(30, 20, 2.5, 100, -50, "prj");
+        eduardGrid.setValue(7, 3, 4);
+
+        // both grids share the values of the Eduard grid
+        grid = Grid.view(eduardGrid);
+        assertSame(eduardGrid.getBufferArray(), grid.getBuffer());
+        assertEquals(30, grid.getCols());
+        assertEquals(20, grid.getRows());
+        assertEquals(eduardGrid.getNorth(), grid.getNorth(), 0);
+        assertEquals(eduardGrid.getEast(), grid.getEast(), 0);
+        assertEquals(7, grid.get(3, 4), 0);
+        grid.set(8, 5, 6);
+        assertEquals(8, eduardGrid.getValue(5, 6), 0);
+
+        // both grids share the values of the APARAPI grid
+        grid2 = Grid.shallowCopy(grid);
+        grid2.set(9, 1, 2);
+        edu.monash.fit.eduard_object.eduard.grid.Grid eduardGrid2 = grid2.toEduardGrid("prj");
+        assertSame(grid2.getBuffer(), eduardGrid2.getBufferArray());
+        assertEquals(eduardGrid.getWest(), eduardGrid2.getWest(), 0);
+        assertEquals(eduardGrid.getSouth(), eduardGrid2.getSouth(), 0);
+        assertEquals(eduardGrid.getCellSize(), eduardGrid2.getCellSize(), 0);
+        assertEquals("prj", eduardGrid2.getPrjFileContent());
+        assertEquals(9, eduardGrid2.getValue(1, 2), 0);
+
+        // the wrapped array is released with the APARAPI grid, not with the Eduard grid
+        long released = BufferArena.getReleasedCount();
+        eduardGrid2.release();
+        assertEquals(released, BufferArena.getReleasedCount());
+        grid2.release();
+        assertEquals(released + 1, BufferArena.getReleasedCount());
+
+        // the viewed array is released with the Eduard grid, not with the view
+        assertTrue(grid2.isOwner());
+        assertFalse(grid.isOwner());
+        grid.release();
+        assertEquals(released + 1, BufferArena.getReleasedCount());
+        assertEquals(8, eduardGrid.getValue(5, 6), 0);
+        eduardGrid.release();
+        assertEquals(released + 2, BufferArena.getReleasedCount());
+
+        try{
+            new FloatBuffer(new float[10], 5, 3);
+            fail();
+        }catch(IllegalArgumentException ex){
+        }
+    }
+
     @Test
     void fillWithRandomFloat() {
         grid = new Grid(1500, 1500, 0.5, 0.6, 0.8, 0.8, 0.8);
@@ -4,7 +4,10 @@ import edu.monash.fit.aparapi_filter.Grid;
 import edu.monash.fit.aparapi_filter.operator.HorizontalTransposingLowPassFilter;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -58,12 +61,122 @@ class HorizontalTransposingLowPassFilterTest {
         }
     }
 
+    @Test
+    void testOutputCorrectnessNonSquare() {
+        generateInput(1500, 700);
+        generateOutputSigmaBlur();
+
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(aparapiResult.get(i), eduardResult.getValue(i), 2);
+        }
+    }
+
+    @Test
+    void testPeakMemoryBounded() {
+        generateInput(3000, 3000);
+        HorizontalTransposingLowPassFilter firstPass = new HorizontalTransposingLowPassFilter(true, sigmaBlur);
+        firstPass.operate(aparapiSource);
+
+        // source and transposed grids plus the scratch rows of the lanes, less than 3 times the grid size
+        long gridBytes = (long) aparapiSource.getLength() * Float.BYTES;
+        assertTrue(firstPass.getPeakMemory() >= 2 * gridBytes);
+        assertTrue(firstPass.getPeakMemory() < 3 * gridBytes);
+    }
+
+    @Test
+    void testVoidReplacement() {
+        Grid voids = createVoidPatterns(40, 1, 1000);
+
+        // the voids are replaced by the closer valid value of their row, thus filtering the grid with voids equals
+        // filtering the grid with the expected replacement values
+        Grid replaced = replaceVoids(voids);
+        aparapiResult = new HorizontalTransposingLowPassFilter(true, 2).operate(voids);
+        Grid expected = new HorizontalTransposingLowPassFilter(true, 2).operate(replaced);
+        for (int i=0; i <expected.getBuffer().length ; i++){
+            assertEquals("cell " + i, expected.get(i), aparapiResult.get(i), 0);
+        }
+    }
+
+    /**
+     * Create a grid with rows of void patterns: runs at the start and the end of a row, runs of odd length with a
+     * cell equally close to both valid neighbors, an all-void row and rows with a single valid cell
+     * @param cols columns, at least 20
+     * @param spacing rows between the rows of two patterns
+     * @param maxValue maximum of the random valid values
+     * @return the grid with 6 * spacing rows
+     */
+    static Grid createVoidPatterns(int cols, int spacing, float maxValue){
+        Grid grid = new Grid(cols, 6 * spacing, 0.5, 0.6, 0.8, 0.8, 0.8);
+        Random random = new Random(0);
+        for (int i = 0; i < grid.getLength(); i++){
+            grid.set(random.nextFloat() * maxValue, i);
+        }
+        for (int col = 0; col < 5; col++){
+            grid.set(Float.NaN, col, 0);                            // run at the start
+            grid.set(Float.NaN, cols - 1 - col, 0);                 // run at the end
+        }
+        grid.set(Float.NaN, 10, spacing);                           // single void, equally close neighbors
+        for (int col = 3; col < 6; col++){
+            grid.set(Float.NaN, col, spacing);                      // odd run, the middle cell is a tie
+        }
+        for (int col = 12; col < 16; col++){
+            grid.set(Float.NaN, col, spacing);                      // even run
+        }
+        for (int col = 0; col < cols; col++){
+            grid.set(Float.NaN, col, 2 * spacing);                  // all void
+            if (col != cols / 2){
+                grid.set(Float.NaN, col, 3 * spacing);              // single valid cell in the middle
+            }
+            if (col != 0){
+                grid.set(Float.NaN, col, 4 * spacing);              // single valid cell at the start
+            }
+            if (col != cols - 1){
+                grid.set(Float.NaN, col, 5 * spacing);              // single valid cell at the end
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Replace each void value with the closer valid value of its row, the previous one if both are equally close,
+     * or 0 if the row has no valid value
+     */
+    private static Grid replaceVoids(Grid grid){
+        int cols = grid.getCols();
+        Grid replaced = new Grid(cols, grid.getRows(), 0.5, 0.6, 0.8, 0.8, 0.8);
+        for (int row = 0; row < grid.getRows(); row++){
+            for (int col = 0; col < cols; col++){
+                float value = grid.get(col, row);
+                if (Float.isNaN(value)){
+                    int prev = col - 1;
+                    while (prev >= 0 && Float.isNaN(grid.get(prev, row)))
+                        prev--;
+                    int next = col + 1;
+                    while (next < cols && Float.isNaN(grid.get(next, row)))
+                        next++;
+                    if (prev >= 0 && (next == cols || col - prev <= next - col)){
+                        value = grid.get(prev, row);
+                    } else if (next < cols){
+                        value = grid.get(next, row);
+                    } else{
+                        value = 0;
+                    }
+                }
+                replaced.set(value, col, row);
+            }
+        }
+        return replaced;
+    }
 
     private void generateInput(){
-        aparapiSource = new Grid(1500, 1500, 0.5, 0.6, 0.8, 0.8, 0.8);
+        generateInput(1500, 1500);
+    }
+
+    private void generateInput(int cols, int rows){
+        aparapiSource = new Grid(cols, rows, 0.5, 0.6, 0.8, 0.8, 0.8);
         aparapiSource.fillWithRandomFloat();
 
-        eduardSource = new edu.monash.fit.eduard_object.eduard.grid.Grid(1500, 1500, 0.5, 0.8, 0.8, "");
+        eduardSource = new edu.monash.fit.eduard_object.eduard.grid.Grid(cols, rows, 0.5, 0.8, 0.8, "");
         for (int row = 0, nRows = eduardSource.getRows(); row < nRows; row++) {
             for (int col = 0, nCols = eduardSource.getCols(); col < nCols; col++)
                 eduardSource.setValue(aparapiSource.get(col, row), col, row);
@@ -0,0 +1,141 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.GradientOperator;
+import edu.monash.fit.aparapi_filter.operator.KernelPool;
+import edu.monash.fit.aparapi_filter.operator.LowPassOperator;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.aparapi_filter.operator.StagedOperator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class KernelPoolTest {
+    Grid aparapiSource, aparapiResult;
+
+    @Test
+    void testKernelReused() {
+        generateInput(300, 200);
+        new GradientOperator().operate(aparapiSource);
+        int created = KernelPool.getCreatedCount();
+        int reused = KernelPool.getReusedCount();
+
+        new GradientOperator().operate(aparapiSource);
+        new GradientOperator().operate(aparapiSource);
+
+        assertEquals(created, KernelPool.getCreatedCount());
+        assertEquals(reused + 2, KernelPool.getReusedCount());
+    }
+
+    @Test
+    void testKernelPerDimension() {
+        generateInput(300, 200);
+        new GradientOperator().operate(aparapiSource);
+        int created = KernelPool.getCreatedCount();
+
+        generateInput(200, 300);
+        new GradientOperator().operate(aparapiSource);
+
+        assertTrue(KernelPool.getCreatedCount() > created);
+    }
+
+    @Test
+    void testReusedKernelOutputCorrectness() {
+        generateInput(300, 200);
+        Grid first = new LowPassOperator(6f).operate(aparapiSource);
+
+        // run on another grid of the same size to rebind the pooled kernels
+        Grid other = new Grid(300, 200, 0.5, 0.6, 0.8, 0.8, 0.8);
+        other.fillWithRandomFloat();
+        new LowPassOperator(20f).operate(other);
+
+        aparapiResult = new LowPassOperator(6f).operate(aparapiSource);
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(first.get(i), aparapiResult.get(i), 0);
+        }
+    }
+
+    @Test
+    void testReusedResidentKernelOutputCorrectness() {
+        generateInput(300, 200);
+        Grid first = new MaskFilter(aparapiSource).executeResident();
+        aparapiResult = new MaskFilter(aparapiSource).executeResident();
+
+        // the result buffer must not be shared with the pooled kernel
+        assertTrue(first.getBuffer() != aparapiResult.getBuffer());
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(first.get(i), aparapiResult.get(i), 0);
+        }
+    }
+
+    @Test
+    void testReleaseNotAcquired() {
+        try{
+            KernelPool.release(new com.aparapi.Kernel() {
+                @Override
+                public void run() {
+                }
+            });
+            fail();
+        } catch(IllegalStateException ex){
+        }
+    }
+
+    @Test
+    void testIdleKernelsLimited() {
+        class IdleKernel extends com.aparapi.Kernel {
+            @Override
+            public void run() {
+            }
+        }
+        try {
+            KernelPool.setMaxIdle(2, Long.MAX_VALUE);
+            int disposed = KernelPool.getDisposedCount();
+            com.aparapi.Kernel[] kernels = new com.aparapi.Kernel[5];
+            for (int i = 0; i < kernels.length; i++){
+                kernels[i] = KernelPool.acquire(IdleKernel.class, 10, 10, IdleKernel::new);
+            }
+            for (com.aparapi.Kernel kernel : kernels){
+                KernelPool.release(kernel);
+            }
+            assertEquals(disposed + 3, KernelPool.getDisposedCount());
+
+            // the arrays owned by an idle low-pass kernel exceed a limit of 0 bytes
+            generateInput(300, 200);
+            disposed = KernelPool.getDisposedCount();
+            KernelPool.setMaxIdle(2, 0);
+            new LowPassOperator(6f).operate(aparapiSource);
+            assertTrue(KernelPool.getDisposedCount() > disposed);
+        } finally {
+            KernelPool.setMaxIdle(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                    Runtime.getRuntime().maxMemory() / 8);
+        }
+    }
+
+    @Test
+    void testCancelledExecutionReleasesKernel() {
+        generateInput(300, 200);
+        GradientOperator operator = new GradientOperator();
+        operator.operate(aparapiSource);
+        int created = KernelPool.getCreatedCount();
+
+        // a cancelled execution returns its kernel, which is reused by the next operation
+        StagedOperator.Execution execution = operator.upload(aparapiSource);
+        execution.cancel();
+        execution.cancel();
+        aparapiResult = operator.operate(aparapiSource);
+        assertEquals(created, KernelPool.getCreatedCount());
+        try {
+            execution.download();
+            fail();
+        } catch (IllegalStateException ex){
+        }
+    }
+
+    private void generateInput(int cols, int rows){
+        aparapiSource = new Grid(cols, rows, 0.5, 0.6, 0.8, 0.8, 0.8);
+        aparapiSource.fillWithRandomFloat();
+    }
+}
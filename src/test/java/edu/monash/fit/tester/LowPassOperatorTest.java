@@ -4,6 +4,9 @@ import edu.monash.fit.aparapi_filter.Grid;
 import edu.monash.fit.aparapi_filter.operator.LowPassOperator;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -76,12 +79,100 @@ class LowPassOperatorTest {
         }
     }
 
+    @Test
+    void testOutputCorrectnessNarrowGrid() {
+        // rows shorter than the filter, all samples are border samples with reflected access
+        generateInput(9, 300);
+        generateOutputSigmaSmooth();
+
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(aparapiResult.get(i), eduardResult.getValue(i), 2);
+        }
+    }
+
+    @Test
+    void testOutputIdenticalToReflectingFilter() {
+        // the interior samples of a row are blurred without reflection, the result must be bit-identical to
+        // reflecting the access of every sample, with interior samples (61 columns) and without (9 columns)
+        for (int cols : new int[]{61, 9}){
+            Grid src = new Grid(cols, 47, 0.5, 0.6, 0.8, 0.8, 0.8);
+            Random random = new Random(cols);
+            for (int i = 0; i < src.getLength(); i++){
+                src.set(random.nextFloat() * 1000, i);
+            }
+            for (float sigma : new float[]{sigmaBlur, sigmaSmooth}){
+                float[] expected = blurTransposed(blurTransposed(src.getBuffer(), cols, src.getRows(), sigma),
+                        src.getRows(), cols, sigma);
+                aparapiResult = new LowPassOperator(sigma).operate(src);
+                assertArrayEquals(expected, aparapiResult.getBuffer(), 0f);
+            }
+        }
+    }
+
+    /**
+     * Reference of a pass of the horizontal transposing low-pass filter without void values, reflecting the access
+     * of every sample of a row at the borders
+     * @param src source values
+     * @param cols columns of the source
+     * @param rows rows of the source
+     * @param sigma standard deviation
+     * @return transposed result with rows columns
+     */
+    private static float[] blurTransposed(float[] src, int cols, int rows, float sigma){
+        final int iterations = 4;
+        int r = (int) (0.5 * Math.sqrt((12.0 * sigma * sigma) / iterations + 1.0) - 0.5);
+        double alpha = (2 * r + 1) * (r * (r + 1) - 3.0 * sigma * sigma / iterations)
+                / (6.0 * (sigma * sigma / iterations - (r + 1) * (r + 1)));
+        float c1 = (float) (alpha / (2.0 * (alpha + r) + 1));
+        float c2 = (float) ((1.0 - alpha) / (2.0 * (alpha + r) + 1));
+
+        float[] dest = new float[src.length];
+        float[] row0 = new float[cols];
+        float[] row1 = new float[cols];
+        for (int row = 0; row < rows; row++){
+            System.arraycopy(src, row * cols, row0, 0, cols);
+            for (int i = 0; i < iterations; i += 2){
+                blurRow(row0, row1, r, c1, c2);
+                blurRow(row1, row0, r, c1, c2);
+            }
+            for (int col = 0; col < cols; col++){
+                dest[row + col * rows] = row0[col];
+            }
+        }
+        return dest;
+    }
+
+    private static void blurRow(float[] src, float[] dest, int r, float c1, float c2){
+        int N = src.length;
+        double sum = 0;
+        for (int n = -r; n <= r; ++n){
+            sum += src[reflect(N, n)];
+        }
+        sum = c1 * (src[reflect(N, r + 1)] + src[reflect(N, -r - 1)]) + (c1 + c2) * sum;
+        dest[0] = (float) sum;
+        for (int n = 1; n < N; ++n){
+            sum += c1 * (src[reflect(N, n + r + 1)] - src[reflect(N, n - r - 2)])
+                    + c2 * (src[reflect(N, n + r)] - src[reflect(N, n - r - 1)]);
+            dest[n] = (float) sum;
+        }
+    }
+
+    private static int reflect(int N, int n){
+        while (n < 0 || n >= N){
+            n = n < 0 ? -1 - n : 2 * N - 1 - n;
+        }
+        return n;
+    }
 
     private void generateInput(){
-        aparapiSource = new Grid(1500, 1500, 0.5, 0.6, 0.8, 0.8, 0.8);
+        generateInput(1500, 1500);
+    }
+
+    private void generateInput(int cols, int rows){
+        aparapiSource = new Grid(cols, rows, 0.5, 0.6, 0.8, 0.8, 0.8);
         aparapiSource.fillWithRandomFloat();
 
-        eduardSource = new edu.monash.fit.eduard_object.eduard.grid.Grid(1500, 1500, 0.5, 0.8, 0.8, "");
+        eduardSource = new edu.monash.fit.eduard_object.eduard.grid.Grid(cols, rows, 0.5, 0.8, 0.8, "");
         for (int row = 0, nRows = eduardSource.getRows(); row < nRows; row++) {
             for (int col = 0, nCols = eduardSource.getCols(); col < nCols; col++)
                 eduardSource.setValue(aparapiSource.get(col, row), col, row);
@@ -0,0 +1,115 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.MappedFloatBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+class MappedFloatBufferTest {
+
+    @Test
+    void testValuesAcrossSegments() {
+        MappedFloatBuffer.setSegmentCells(1024);
+        try {
+            MappedFloatBuffer buffer = new MappedFloatBuffer(100, 50, null);
+            assertEquals(5000, buffer.getCellCount());
+            for (int row = 0; row < 50; row++){
+                for (int col = 0; col < 100; col++){
+                    buffer.set(col + row * 1000, col, row);
+                }
+            }
+            for (long id = 0; id < 5000; id++){
+                assertEquals(id % 100 + id / 100 * 1000, buffer.get(id), 0);
+            }
+            buffer.setVoid(23, 10);
+            assertTrue(buffer.isVoid(1023L));
+            assertFalse(buffer.isVoid(1024L));
+
+            MappedFloatBuffer copy = buffer.copy();
+            assertEquals(buffer.get(49, 49), copy.get(49, 49), 0);
+            copy.set(-1, 49, 49);
+            assertEquals(49 + 49 * 1000, buffer.get(49, 49), 0);
+
+            Path file = buffer.getFile();
+            assertTrue(Files.exists(file));
+            buffer.release();
+            copy.release();
+            assertFalse(Files.exists(file));
+        } finally {
+            MappedFloatBuffer.setSegmentCells(1 << MappedFloatBuffer.DEFAULT_SEGMENT_SHIFT);
+        }
+    }
+
+    @Test
+    void testOpenBigEndianFile() throws IOException {
+        Path file = Files.createTempFile("grid", ".flt");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file.toFile()))){
+                for (int i = 0; i < 12; i++){
+                    out.writeFloat(i * 0.5f);
+                }
+            }
+            MappedFloatBuffer buffer = MappedFloatBuffer.open(file, 4, 3, ByteOrder.BIG_ENDIAN, true);
+            assertEquals(2.5f, buffer.get(1, 1), 0);
+            buffer.set(100, 3, 2);
+            buffer.release();
+
+            MappedFloatBuffer readOnly = MappedFloatBuffer.open(file, 4, 3, ByteOrder.BIG_ENDIAN, false);
+            assertEquals(100, readOnly.get(11), 0);
+            readOnly.release();
+            assertTrue(Files.exists(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testOperatorsOnMappedGrids() {
+        Grid heapGrid = new Grid(300, 200, 10, 0, 0, "");
+        Random random = new Random(0);
+        for (int row = 0; row < 200; row++){
+            for (int col = 0; col < 300; col++){
+                heapGrid.setValue(random.nextFloat() * 1000, col, row);
+            }
+        }
+
+        MappedFloatBuffer.setSegmentCells(1 << 12);
+        BufferArena.setMapped(0, null);
+        try {
+            Grid mappedGrid = new Grid(300, 200, 10, 0, 0, "");
+            for (int row = 0; row < 200; row++){
+                mappedGrid.copyRow(heapGrid, row);
+            }
+            Grid mappedGradient = new GradientOperator().operate(mappedGrid);
+            Grid mappedLowPass = new LowPassOperator(3, null).operate(mappedGrid);
+            BufferArena.setMapped(Integer.MAX_VALUE, null);
+
+            Grid heapGradient = new GradientOperator().operate(heapGrid);
+            Grid heapLowPass = new LowPassOperator(3, null).operate(heapGrid);
+            for (long id = 0; id < heapGrid.getCellCount(); id++){
+                assertEquals(heapGradient.getValue(id), mappedGradient.getValue(id), 0);
+                assertEquals(heapLowPass.getValue(id), mappedLowPass.getValue(id), 0);
+            }
+            mappedGrid.release();
+            mappedGradient.release();
+            mappedLowPass.release();
+        } finally {
+            BufferArena.setMapped(Integer.MAX_VALUE, null);
+            MappedFloatBuffer.setSegmentCells(1 << MappedFloatBuffer.DEFAULT_SEGMENT_SHIFT);
+        }
+    }
+}
@@ -48,6 +48,48 @@ class MaskFilterTest {
     }
 
 
+    @Test
+    void testResidentOutputCorrectness() {
+        generateInput();
+        aparapiResult = new MaskFilter(aparapiSource).execute();
+        Grid residentResult = new MaskFilter(aparapiSource).executeResident();
+
+        assertEquals(aparapiResult.getBuffer().length, residentResult.getBuffer().length);
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(aparapiResult.get(i), residentResult.get(i), 0);
+        }
+    }
+
+    @Test
+    void testResidentOutputWithVoids() {
+        generateInput();
+        for (int row = 0; row < aparapiSource.getRows(); row += 7){
+            for (int col = row % 300; col < aparapiSource.getCols(); col += 3)
+                aparapiSource.set(Float.NaN, col, row);
+        }
+        aparapiResult = new MaskFilter(aparapiSource).execute();
+        Grid residentResult = new MaskFilter(aparapiSource).executeResident();
+
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals(aparapiResult.get(i), residentResult.get(i), 0);
+        }
+    }
+
+    @Test
+    void testResidentOutputWithVoidPatterns() {
+        // void runs at the start and the end of rows, ties between the valid neighbors, all-void rows and rows with
+        // a single valid cell are replaced by the resident kernel as by the HorizontalTransposingLowPassFilter. The
+        // small values result in slopes close to the thresholds, such that the mask is not clamped everywhere.
+        aparapiSource = HorizontalTransposingLowPassFilterTest.createVoidPatterns(40, 8, 0.25f);
+        aparapiResult = new MaskFilter(aparapiSource).execute();
+        Grid residentResult = new MaskFilter(aparapiSource).executeResident();
+
+        for (int i=0; i <aparapiResult.getBuffer().length ; i++){
+            assertEquals("cell " + i, aparapiResult.get(i), residentResult.get(i), 0);
+        }
+    }
+
+
     private void generateInput(){
         aparapiSource = new Grid(1500, 1500, 0.5, 0.6, 0.8, 0.8, 0.8);
         aparapiSource.fillWithRandomFloat();
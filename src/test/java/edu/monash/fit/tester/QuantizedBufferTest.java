@@ -0,0 +1,127 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.ShortBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.SignedNormalizedBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+class QuantizedBufferTest {
+
+    @Test
+    void testShortBufferDecimetres() {
+        ShortBuffer buffer = new ShortBuffer(10, 10, 0.1f, 3000);
+        buffer.set(1234.5f, 1, 2);
+        assertEquals(1234.5f, buffer.get(1, 2), 1e-3);
+        buffer.set(-200.3f, 3, 4);
+        assertEquals(-200.3f, buffer.get(3, 4), 1e-3);
+
+        // clamped to the representable range
+        buffer.set(1e6f, 5, 5);
+        assertEquals(buffer.getMax(), buffer.get(5, 5), 0);
+        buffer.set(-1e6f, 5, 6);
+        assertEquals(buffer.getMin(), buffer.get(5, 6), 0);
+        assertFalse(buffer.isVoid(5, 6));
+
+        buffer.set(Float.NaN, 7, 7);
+        assertTrue(buffer.isVoid(7, 7));
+        assertTrue(Float.isNaN(buffer.get(7, 7)));
+        buffer.setVoid(8, 8);
+        assertTrue(buffer.isVoid(8 + 8 * 10));
+
+        ShortBuffer copy = buffer.copy();
+        assertEquals(buffer.get(1, 2), copy.get(1, 2), 0);
+        assertTrue(copy.isVoid(7, 7));
+        buffer.release();
+        copy.release();
+    }
+
+    @Test
+    void testShortBufferForRange() {
+        ShortBuffer buffer = ShortBuffer.forRange(4, 4, -430, 8850);
+        assertTrue(buffer.getMin() <= -430);
+        assertTrue(buffer.getMax() >= 8850);
+        buffer.set(8848.86f, 0, 0);
+        assertEquals(8848.86f, buffer.get(0, 0), buffer.getScale() / 2);
+        buffer.release();
+    }
+
+    @Test
+    void testSignedNormalizedBuffer() {
+        SignedNormalizedBuffer buffer = new SignedNormalizedBuffer(100, 10);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++){
+            float v = random.nextFloat() * 2 - 1;
+            buffer.set(v, i % 100, i / 100);
+            assertEquals(v, buffer.get(i), 0.51 / Short.MAX_VALUE);
+        }
+        buffer.set(2, 0, 0);
+        assertEquals(1, buffer.get(0, 0), 0);
+        buffer.set(-2, 1, 0);
+        assertEquals(-1, buffer.get(1, 0), 0);
+        assertFalse(buffer.isVoid(1, 0));
+        buffer.set(Float.POSITIVE_INFINITY, 2, 0);
+        assertTrue(buffer.isVoid(2, 0));
+        buffer.release();
+    }
+
+    @Test
+    void testShortArraysAreReused() {
+        BufferArena.clear();
+        SignedNormalizedBuffer buffer = new SignedNormalizedBuffer(123, 45);
+        buffer.set(0.5f, 3, 3);
+        buffer.release();
+        long reusedCount = BufferArena.getReusedCount();
+        ShortBuffer reused = new ShortBuffer(45, 123, 1, 0);
+        assertEquals(reusedCount + 1, BufferArena.getReusedCount());
+        assertEquals(0, reused.get(3, 3), 0);
+        reused.release();
+    }
+
+    @Test
+    void testOperatorsOnQuantizedGrids() {
+        // integer decimetres are stored without loss
+        Grid floatGrid = new Grid(200, 150, 10, 0, 0, "");
+        Grid shortGrid = new Grid(10, 0, 0, "", new ShortBuffer(200, 150, 0.1f, 1000));
+        Random random = new Random(0);
+        for (int row = 0; row < 150; row++){
+            for (int col = 0; col < 200; col++){
+                float v = Math.round(random.nextFloat() * 20000) / 10f;
+                floatGrid.setValue(v, col, row);
+                shortGrid.setValue(v, col, row);
+            }
+        }
+        floatGrid.setVoid(20, 30);
+        shortGrid.setVoid(20, 30);
+
+        Grid floatGradient = new GradientOperator().operate(floatGrid);
+        Grid shortGradient = new GradientOperator().operate(shortGrid);
+        Grid floatLowPass = new LowPassOperator(3, null).operate(floatGrid);
+        Grid shortLowPass = new LowPassOperator(3, null).operate(shortGrid);
+        for (int row = 0; row < 150; row++){
+            for (int col = 0; col < 200; col++){
+                assertEquals(floatGradient.getValue(col, row), shortGradient.getValue(col, row), 1e-4);
+                assertEquals(floatLowPass.getValue(col, row), shortLowPass.getValue(col, row), 1e-3);
+            }
+        }
+
+        // the normalized gradient is stored in a signed normalized grid
+        Grid mask = new Grid(10, 0, 0, "", new SignedNormalizedBuffer(200, 150));
+        float max = floatGradient.getMinMax()[1];
+        for (int row = 0; row < 150; row++){
+            for (int col = 0; col < 200; col++){
+                mask.setValue(floatGradient.getValue(col, row) / max, col, row);
+                assertEquals(floatGradient.getValue(col, row) / max, mask.getValue(col, row),
+                        0.51 / Short.MAX_VALUE);
+            }
+        }
+    }
+}
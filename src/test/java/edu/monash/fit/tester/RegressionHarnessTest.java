@@ -0,0 +1,77 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.RegressionHarness;
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+class RegressionHarnessTest {
+
+    @Test
+    void testCorpusIsDeterministic() {
+        Map<String, Grid> a = RegressionHarness.createCorpus(64);
+        Map<String, Grid> b = RegressionHarness.createCorpus(64);
+        assertEquals(a.keySet(), b.keySet());
+        for (String dem : a.keySet()){
+            float[] bufferA = a.get(dem).getBufferArray();
+            float[] bufferB = b.get(dem).getBufferArray();
+            for (int i = 0; i < bufferA.length; i++){
+                assertEquals(Float.floatToIntBits(bufferA[i]), Float.floatToIntBits(bufferB[i]));
+            }
+        }
+    }
+
+    @Test
+    void testEquivalenceAndBaseline() {
+        Map<String, Grid> corpus = RegressionHarness.createCorpus(64);
+        Properties baseline = new Properties();
+        List<RegressionHarness.Measurement> measurements = new RegressionHarness(0.001, 0.2, 1).run(corpus, baseline);
+        assertEquals(4 * corpus.size(), measurements.size());
+        assertTrue(RegressionHarness.isPassed(measurements));
+        for (RegressionHarness.Measurement measurement : measurements){
+            assertTrue(measurement.getMaxDifference() <= 0.001);
+            assertTrue(Double.isNaN(measurement.getBaselineCellsPerSecond()));
+        }
+
+        RegressionHarness.updateBaseline(measurements, baseline);
+        assertNotNull(baseline.getProperty(measurements.get(0).getDem() + "." + RegressionHarness.EDUARD));
+        assertNotNull(baseline.getProperty(measurements.get(1).getDem() + "." + RegressionHarness.APARAPI));
+        assertNotNull(baseline.getProperty(measurements.get(2).getDem() + "." + RegressionHarness.RESIDENT));
+        assertNotNull(baseline.getProperty(measurements.get(3).getDem() + "." + RegressionHarness.BATCH));
+    }
+
+    @Test
+    void testRegressionIsDetected() {
+        Map<String, Grid> corpus = RegressionHarness.createCorpus(64);
+        Properties baseline = new Properties();
+        for (String dem : corpus.keySet()){
+            baseline.setProperty(dem + "." + RegressionHarness.EDUARD, "1e15");
+            baseline.setProperty(dem + "." + RegressionHarness.APARAPI, "1e15");
+            baseline.setProperty(dem + "." + RegressionHarness.RESIDENT, "1e15");
+            baseline.setProperty(dem + "." + RegressionHarness.BATCH, "1e15");
+        }
+        List<RegressionHarness.Measurement> measurements = new RegressionHarness(0.001, 0.2, 1).run(corpus, baseline);
+        assertFalse(RegressionHarness.isPassed(measurements));
+        for (RegressionHarness.Measurement measurement : measurements){
+            assertFalse(measurement.isPassed());
+        }
+    }
+
+    @Test
+    void testDifferenceIsDetected() {
+        Map<String, Grid> corpus = RegressionHarness.createCorpus(64);
+        List<RegressionHarness.Measurement> measurements =
+                new RegressionHarness(0, 0.2, 1).run(corpus, new Properties());
+        for (RegressionHarness.Measurement measurement : measurements){
+            assertEquals(measurement.getMaxDifference() == 0, measurement.isPassed());
+        }
+    }
+}
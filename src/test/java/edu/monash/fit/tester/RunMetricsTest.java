@@ -0,0 +1,142 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.MaskFilter;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+class RunMetricsTest {
+    Grid aparapiSource;
+
+    @Test
+    void testMaskFilterStages() {
+        generateInput(300, 200);
+        MaskFilter maskFilter = new MaskFilter(aparapiSource);
+        maskFilter.execute();
+        assertNull(RunMetrics.current());
+
+        List<StageMetrics> stages = maskFilter.getMetrics().getStages();
+        StageMetrics maskFilterStage = stages.get(0);
+        assertEquals("Mask filter", maskFilterStage.getName());
+        assertEquals(0, maskFilterStage.getDepth());
+        assertEquals("Gradient [rise/run]", stages.get(1).getName());
+        assertEquals(1, stages.get(1).getDepth());
+        assertEquals("Low-pass", stages.get(2).getName());
+        assertEquals(2, stages.get(3).getDepth());
+        // the second pass operates on the transposed grid
+        assertEquals(300, stages.get(3).getCols());
+        assertEquals(200, stages.get(4).getCols());
+        assertEquals("Slope to normalized mask", stages.get(stages.size() - 1).getName());
+
+        // the time of a group is the sum of the times of the nested stages
+        double kernelMillis = 0;
+        for (StageMetrics stage : stages) {
+            assertEquals(300 * 200, stage.getCells());
+            if (stage.getDepth() == 1) {
+                kernelMillis += stage.getKernelMillis();
+            }
+        }
+        assertEquals(kernelMillis, maskFilterStage.getKernelMillis(), 1e-9);
+        assertEquals(kernelMillis, maskFilter.getMetrics().getKernelMillis(), 1e-9);
+    }
+
+    @Test
+    void testResidentMaskFilterStages() {
+        generateInput(300, 200);
+        MaskFilter maskFilter = new MaskFilter(aparapiSource);
+        maskFilter.executeResident();
+        List<StageMetrics> stages = maskFilter.getMetrics().getStages();
+        assertEquals("Resident mask filter", stages.get(0).getName());
+        assertEquals("Transfer", stages.get(1).getName());
+        assertEquals("Transfer", stages.get(stages.size() - 1).getName());
+        assertEquals(stages.get(1).getTransferMillis() + stages.get(stages.size() - 1).getTransferMillis(),
+                stages.get(0).getTransferMillis(), 1e-9);
+    }
+
+    @Test
+    void testEduardOperatorStages() {
+        edu.monash.fit.eduard_object.eduard.grid.Grid eduardSource =
+                new edu.monash.fit.eduard_object.eduard.grid.Grid(150, 100, 0.5, 0.8, 0.8, "");
+        RunMetrics run = new RunMetrics("Eduard");
+        RunMetrics previous = RunMetrics.bind(run);
+        try{
+            new LowPassOperator(6, null).operate(eduardSource);
+        } finally {
+            RunMetrics.bind(previous);
+        }
+        List<StageMetrics> stages = run.getStages();
+        assertEquals("Low-pass", stages.get(0).getName());
+        assertEquals(0, stages.get(0).getDepth());
+        assertEquals(150, stages.get(0).getCols());
+        assertEquals("Horizontal transposing 1D low-pass filter", stages.get(1).getName());
+        assertEquals(1, stages.get(1).getDepth());
+        assertTrue(stages.get(0).getKernelMillis() >= stages.get(1).getKernelMillis());
+
+        // the destination grid and the transposed grid are acquired from the arena
+        assertTrue(stages.get(0).getAllocatedBytes() + stages.get(0).getReusedBytes() >= 2L * 150 * 100 * Float.BYTES);
+    }
+
+    @Test
+    void testConcurrentRuns() throws InterruptedException {
+        MaskFilter[] maskFilters = new MaskFilter[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            Grid grid = new Grid(100 + i * 50, 80, 0.5, 0.6, 0.8, 0.8, 0.8);
+            grid.fillWithRandomFloat();
+            maskFilters[i] = new MaskFilter(grid);
+            threads[i] = new Thread(maskFilters[i]::execute);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNotSame(maskFilters[0].getMetrics(), maskFilters[1].getMetrics());
+        for (int i = 0; i < threads.length; i++) {
+            List<StageMetrics> stages = maskFilters[i].getMetrics().getStages();
+            assertEquals(maskFilters[1 - i].getMetrics().getStages().size(), stages.size());
+            for (StageMetrics stage : stages) {
+                assertEquals(100 * 80 + i * 50 * 80, stage.getCells());
+            }
+        }
+    }
+
+    @Test
+    void testExport() {
+        generateInput(120, 90);
+        MaskFilter maskFilter = new MaskFilter(aparapiSource);
+        maskFilter.execute();
+        RunMetrics run = maskFilter.getMetrics();
+
+        String json = run.toJSON();
+        assertTrue(json.startsWith("{\"run\":\"Mask filter\""));
+        assertTrue(json.contains("\"stage\":\"Gradient [rise/run]\""));
+        assertFalse(json.contains("NaN"));
+
+        String[] lines = run.toCSV().split("\n");
+        assertEquals(run.getStages().size() + 1, lines.length);
+        assertTrue(lines[0].startsWith("run,stage,depth,cols,rows,kernel_ms,transfer_ms"));
+        assertTrue(lines[1].startsWith("Mask filter,Mask filter,0,120,90,"));
+
+        // several runs in one table
+        lines = RunMetrics.toCSV(Arrays.asList(run, run)).split("\n");
+        assertEquals(2 * run.getStages().size() + 1, lines.length);
+
+        assertTrue(run.toText().contains("\tGradient [rise/run]:  "));
+    }
+
+    private void generateInput(int cols, int rows){
+        aparapiSource = new Grid(cols, rows, 0.5, 0.6, 0.8, 0.8, 0.8);
+        aparapiSource.fillWithRandomFloat();
+    }
+}
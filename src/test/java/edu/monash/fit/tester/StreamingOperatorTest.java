@@ -0,0 +1,159 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.RowSink;
+import edu.monash.fit.eduard_object.eduard.grid.RowSource;
+import edu.monash.fit.eduard_object.eduard.grid.RowWindowBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridExporter;
+import edu.monash.fit.eduard_object.eduard.grid.exporter.EsriASCIIGridRowWriter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridImporter;
+import edu.monash.fit.eduard_object.eduard.grid.importer.EsriASCIIGridRowReader;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ClampToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GridOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.PlanCurvatureZevenbergenThorneOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ScaleToRangeOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ShadingOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ThreadedGridOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+class StreamingOperatorTest {
+    Grid eduardSource, inMemoryResult, streamingResult;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void testStencilOperators() throws IOException {
+        generateInput(150, 97);
+        GridOperator[] operators = {
+            new GradientOperator(),
+            new PlanCurvatureZevenbergenThorneOperator(),
+            new ShadingOperator()
+        };
+        for (GridOperator operator : operators) {
+            inMemoryResult = operator.operate(eduardSource);
+            for (int blockRows : new int[]{1, 7, 64, 200}) {
+                streamingResult = Grid.shallowCopy(eduardSource);
+                ((ThreadedGridOperator) operator).operateStreaming(RowSource.of(eduardSource),
+                        RowSink.of(streamingResult), blockRows);
+                assertEqualGrids(inMemoryResult, streamingResult);
+            }
+        }
+    }
+
+    @Test
+    void testStencilOperatorWorkStealing() throws IOException {
+        generateInput(120, 201);
+        inMemoryResult = new GradientOperator().operate(eduardSource);
+        streamingResult = Grid.shallowCopy(eduardSource);
+        try{
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+            new GradientOperator().operateStreaming(RowSource.of(eduardSource), RowSink.of(streamingResult), 16);
+        } finally {
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+        }
+        assertEqualGrids(inMemoryResult, streamingResult);
+    }
+
+    @Test
+    void testLowPass() throws IOException {
+        // sigma 20 results in a filter that is larger than the grid
+        generateInput(300, 61);
+        for (double sigma : new double[]{0.5, 6, 20}) {
+            inMemoryResult = new LowPassOperator(sigma, null).operate(eduardSource);
+            streamingResult = Grid.shallowCopy(eduardSource);
+            new LowPassOperator(sigma, null).operateStreaming(RowSource.of(eduardSource), RowSink.of(streamingResult));
+            assertEqualGrids(inMemoryResult, streamingResult);
+        }
+    }
+
+    @Test
+    void testLowPassPostOperator() throws IOException {
+        generateInput(200, 250);
+        inMemoryResult = new LowPassOperator(6, null, new ClampToRangeOperator(300, 700)).operate(eduardSource);
+        streamingResult = Grid.shallowCopy(eduardSource);
+        new LowPassOperator(6, null, new ClampToRangeOperator(300, 700))
+                .operateStreaming(RowSource.of(eduardSource), RowSink.of(streamingResult));
+        assertEqualGrids(inMemoryResult, streamingResult);
+    }
+
+    @Test
+    void testNotStreamable() throws IOException {
+        generateInput(50, 50);
+        LowPassOperator lowPass = new LowPassOperator(6, null, new ScaleToRangeOperator(0, 1));
+        assertFalse(lowPass.isStreamable());
+        try{
+            lowPass.operateStreaming(RowSource.of(eduardSource), RowSink.of(Grid.shallowCopy(eduardSource)));
+            fail();
+        } catch(UnsupportedOperationException ex){
+        }
+    }
+
+    @Test
+    void testRowOutsideWindow() {
+        RowWindowBuffer buffer = new RowWindowBuffer(10, 100, 4);
+        buffer.setFirstRow(20);
+        buffer.set(1, 0, 23);
+        assertEquals(1, buffer.get(0, 23), 0);
+        try{
+            buffer.get(0, 24);
+            fail();
+        } catch(IndexOutOfBoundsException ex){
+        }
+        try{
+            buffer.setFirstRow(10);
+            fail();
+        } catch(IllegalArgumentException ex){
+        }
+    }
+
+    @Test
+    void testEsriASCIIFiles() throws IOException {
+        generateInput(80, 70);
+        String srcPath = new File(tempDir, "src.asc").getPath();
+        String inMemoryPath = new File(tempDir, "inMemory.asc").getPath();
+        String streamingPath = new File(tempDir, "streaming.asc").getPath();
+        EsriASCIIGridExporter.export(eduardSource, srcPath, null);
+
+        // the minimum gradient is 0, hence -9999 is used for void values
+        Grid importedSource = EsriASCIIGridImporter.read(srcPath);
+        EsriASCIIGridExporter.export(new GradientOperator().operate(importedSource), inMemoryPath, null);
+        try (EsriASCIIGridRowReader reader = new EsriASCIIGridRowReader(srcPath);
+                EsriASCIIGridRowWriter writer = new EsriASCIIGridRowWriter(streamingPath, reader, -9999f, 3)) {
+            new GradientOperator().operateStreaming(reader, writer, 8);
+        }
+        assertArrayEquals(Files.readAllBytes(new File(inMemoryPath).toPath()),
+                Files.readAllBytes(new File(streamingPath).toPath()));
+    }
+
+    private void assertEqualGrids(Grid expected, Grid actual){
+        for (int i=0; i <expected.getBufferArray().length ; i++){
+            assertEquals(expected.getValue(i), actual.getValue(i), 0);
+        }
+    }
+
+    private void generateInput(int cols, int rows){
+        Random random = new Random(0);
+        eduardSource = new Grid(cols, rows, 0.5, 0.8, 0.8, "");
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                // void area in the source grid
+                boolean isVoid = row > rows / 3 && row < rows / 2 && col < cols / 3;
+                eduardSource.setValue(isVoid ? Float.NaN : random.nextFloat() * 1000, col, row);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.eduard_object.eduard.grid.Grid;
+import edu.monash.fit.eduard_object.eduard.grid.MinMax;
+import edu.monash.fit.eduard_object.eduard.grid.operator.GradientOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.LowPassOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.MinMaxOperator;
+import edu.monash.fit.eduard_object.eduard.grid.operator.ThreadedGridOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+class ThreadedGridOperatorTest {
+    Grid eduardSource, fixedResult, workStealingResult;
+
+    @Test
+    void testInvalidParallelism() {
+        try{
+            ThreadedGridOperator.setParallelism(0);
+            fail();
+        } catch(IllegalArgumentException ex){
+        }
+    }
+
+    @Test
+    void testWorkStealingLowPass() {
+        generateInput(700, 500);
+        fixedResult = new LowPassOperator(6f, null).operate(eduardSource);
+        try{
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+            workStealingResult = new LowPassOperator(6f, null).operate(eduardSource);
+        } finally {
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+        }
+
+        for (int i=0; i <fixedResult.getBufferArray().length ; i++){
+            assertEquals(fixedResult.getValue(i), workStealingResult.getValue(i), 0);
+        }
+    }
+
+    @Test
+    void testWorkStealingParallelism() {
+        generateInput(300, 301);
+        fixedResult = new GradientOperator(null).operate(eduardSource);
+        int parallelism = ThreadedGridOperator.getParallelism();
+        try{
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+            ThreadedGridOperator.setParallelism(3);
+            assertEquals(3, ThreadedGridOperator.getParallelism());
+            workStealingResult = new GradientOperator(null).operate(eduardSource);
+        } finally {
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+            ThreadedGridOperator.setParallelism(parallelism);
+        }
+
+        for (int i=0; i <fixedResult.getBufferArray().length ; i++){
+            assertEquals(fixedResult.getValue(i), workStealingResult.getValue(i), 0);
+        }
+    }
+
+    @Test
+    void testWorkStealingNestedOperator() {
+        generateInput(200, 400);
+        MinMax minMax = new MinMaxOperator().findMinMax(eduardSource);
+        int parallelism = ThreadedGridOperator.getParallelism();
+        try{
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+            ThreadedGridOperator.setParallelism(2);
+            // each block starts a nested operator on the same pool
+            workStealingResult = new ThreadedGridOperator() {
+                @Override
+                protected void operateRow(Grid src, Grid dst, int row) {
+                    MinMax nestedMinMax = new MinMaxOperator().findMinMax(src);
+                    for (int col = 0; col < src.getCols(); col++) {
+                        dst.setValue(nestedMinMax.max - src.getValue(col, row), col, row);
+                    }
+                }
+
+                @Override
+                public String getName() {
+                    return "Nested";
+                }
+            }.operate(eduardSource);
+        } finally {
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+            ThreadedGridOperator.setParallelism(parallelism);
+        }
+
+        for (int i=0; i <eduardSource.getBufferArray().length ; i++){
+            assertEquals(minMax.max - eduardSource.getValue(i), workStealingResult.getValue(i), 0);
+        }
+    }
+
+    @Test
+    void testNestedOperatorAfterParallelismChange() {
+        generateInput(200, 400);
+        Set<ForkJoinPool> outerPools = ConcurrentHashMap.newKeySet();
+        Set<ForkJoinPool> nestedPools = ConcurrentHashMap.newKeySet();
+        AtomicBoolean changed = new AtomicBoolean();
+        int parallelism = ThreadedGridOperator.getParallelism();
+        try{
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.WORK_STEALING);
+            ThreadedGridOperator.setParallelism(2);
+            // the parallelism is changed while the operator is running, nested operators still join the running pool
+            new ThreadedGridOperator() {
+                @Override
+                protected void operateRow(Grid src, Grid dst, int row) {
+                    outerPools.add(ForkJoinTask.getPool());
+                    if (changed.compareAndSet(false, true)) {
+                        ThreadedGridOperator.setParallelism(3);
+                    }
+                    new ThreadedGridOperator() {
+                        @Override
+                        protected void operateRow(Grid src, Grid dst, int row) {
+                            nestedPools.add(ForkJoinTask.getPool());
+                        }
+
+                        @Override
+                        public String getName() {
+                            return "Nested";
+                        }
+                    }.operate(src);
+                }
+
+                @Override
+                public String getName() {
+                    return "Outer";
+                }
+            }.operate(eduardSource);
+        } finally {
+            ThreadedGridOperator.setScheduling(ThreadedGridOperator.Scheduling.FIXED_CHUNKS);
+            ThreadedGridOperator.setParallelism(parallelism);
+        }
+
+        assertEquals(1, outerPools.size());
+        assertEquals(outerPools, nestedPools);
+    }
+
+    private void generateInput(int cols, int rows){
+        Random random = new Random(0);
+        eduardSource = new Grid(cols, rows, 0.5, 0.8, 0.8, "");
+        for (int row = 0, nRows = eduardSource.getRows(); row < nRows; row++) {
+            for (int col = 0, nCols = eduardSource.getCols(); col < nCols; col++)
+                eduardSource.setValue(random.nextFloat() * 1000, col, row);
+        }
+    }
+}
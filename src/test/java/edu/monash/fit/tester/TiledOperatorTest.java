@@ -0,0 +1,318 @@
+package edu.monash.fit.tester;
+
+import edu.monash.fit.aparapi_filter.Grid;
+import edu.monash.fit.aparapi_filter.operator.AparapiOperator;
+import edu.monash.fit.aparapi_filter.operator.ClampToRangeOperator;
+import edu.monash.fit.aparapi_filter.operator.GradientOperator;
+import edu.monash.fit.aparapi_filter.operator.HorizontalTransposingLowPassFilter;
+import edu.monash.fit.aparapi_filter.operator.LowPassOperator;
+import edu.monash.fit.aparapi_filter.operator.TiledOperator;
+import edu.monash.fit.eduard_object.eduard.grid.BufferArena;
+import edu.monash.fit.eduard_object.eduard.grid.GridBuffer;
+import edu.monash.fit.eduard_object.eduard.grid.RunMetrics;
+import edu.monash.fit.eduard_object.eduard.grid.StageMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+class TiledOperatorTest {
+
+    @TempDir
+    File tempDir;
+
+    /**
+     * A grid buffer failing after a number of reads or writes, and without an array, such that the tiled operator
+     * reads and writes single values
+     */
+    private static final class FailingBuffer implements GridBuffer {
+        private final float[] values;
+        private final int cols, rows;
+        private int reads, writes;      // remaining reads and writes
+
+        FailingBuffer(float[] values, int cols, int rows, int reads, int writes){
+            this.values = values;
+            this.cols = cols;
+            this.rows = rows;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        public GridBuffer copy() {
+            return new FailingBuffer(values.clone(), cols, rows, reads, writes);
+        }
+
+        @Override
+        public int getCols() {
+            return cols;
+        }
+
+        @Override
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public synchronized float get(int col, int row) {
+            return get(col + row * cols);
+        }
+
+        @Override
+        public synchronized float get(int id) {
+            if (--reads < 0){
+                throw new IllegalStateException("read failed");
+            }
+            return values[id];
+        }
+
+        @Override
+        public synchronized void set(float value, int col, int row) {
+            if (--writes < 0){
+                throw new IllegalStateException("write failed");
+            }
+            values[col + row * cols] = value;
+        }
+
+        @Override
+        public boolean isVoid(int col, int row) {
+            return !Float.isFinite(get(col, row));
+        }
+
+        @Override
+        public boolean isVoid(int id) {
+            return !Float.isFinite(get(id));
+        }
+
+        @Override
+        public void setVoid(int col, int row) {
+            set(Float.NaN, col, row);
+        }
+
+        @Override
+        public float[] getBuffer() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Grid createGrid(int cols, int rows, double cellSize){
+        Grid grid = new Grid(cols, rows, cellSize, 46 + (rows - 1) * cellSize, 46, 8 + (cols - 1) * cellSize, 8);
+        Random random = new Random(0);
+        for (int row = 0; row < rows; row++){
+            for (int col = 0; col < cols; col++){
+                // void area in the source grid
+                boolean isVoid = row > rows / 3 && row < rows / 2 && col < cols / 3;
+                grid.set(isVoid ? Float.NaN : random.nextFloat() * 1000, col, row);
+            }
+        }
+        return grid;
+    }
+
+    private static void assertIdentical(Grid expected, Grid actual){
+        assertEquals(expected.getCols(), actual.getCols());
+        assertEquals(expected.getRows(), actual.getRows());
+        for (int i = 0; i < expected.getLength(); i++){
+            if (Float.floatToIntBits(expected.get(i)) != Float.floatToIntBits(actual.get(i))){
+                fail("cell " + i + ": expected " + expected.get(i) + " but was " + actual.get(i));
+            }
+        }
+    }
+
+    private static void assertTiled(Supplier<AparapiOperator> factory, Grid src){
+        Grid expected = factory.get().operate(src);
+        for (int tileRows : new int[]{1, 7, 64, 1000}){
+            for (int threads : new int[]{1, 3}){
+                Grid tiled = new TiledOperator(factory, tileRows, threads).operate(src);
+                assertIdentical(expected, tiled);
+                tiled.release();
+            }
+            for (int bufferSets : new int[]{2, 3}){
+                TiledOperator pipeline = new TiledOperator(factory, tileRows, 1);
+                pipeline.setBufferSets(bufferSets);
+                Grid tiled = pipeline.operate(src);
+                assertIdentical(expected, tiled);
+                tiled.release();
+            }
+        }
+        expected.release();
+    }
+
+    @Test
+    void testGradient() {
+        // projected and geographic cell sizes
+        for (double cellSize : new double[]{10, 3. / 3600}){
+            Grid src = createGrid(157, 203, cellSize);
+            assertTiled(GradientOperator::new, src);
+            src.release();
+        }
+    }
+
+    @Test
+    void testClampToRange() {
+        Grid src = createGrid(90, 70, 10);
+        assertTiled(() -> new ClampToRangeOperator(200, 700), src);
+        src.release();
+    }
+
+    @Test
+    void testLowPass() {
+        // sigma 20 results in a filter that is larger than the grid
+        Grid src = createGrid(131, 61, 10);
+        for (float sigma : new float[]{0.5f, 6, 20}){
+            assertTiled(() -> new LowPassOperator(sigma), src);
+        }
+        src.release();
+    }
+
+    @Test
+    void testMappedGrids() {
+        Grid src = createGrid(120, 95, 10);
+        for (Supplier<AparapiOperator> factory : java.util.Arrays.<Supplier<AparapiOperator>>asList(
+                GradientOperator::new, () -> new LowPassOperator(4))){
+            Grid expected = factory.get().operate(src);
+            BufferArena.setMapped(0, tempDir);
+            try {
+                edu.monash.fit.eduard_object.eduard.grid.Grid mappedSrc =
+                        edu.monash.fit.eduard_object.eduard.grid.Grid.shallowCopy(src.toEduardGrid(null));
+                for (int i = 0; i < src.getLength(); i++){
+                    mappedSrc.setValue(src.get(i), i % src.getCols(), i / src.getCols());
+                }
+                edu.monash.fit.eduard_object.eduard.grid.Grid mappedDest =
+                        edu.monash.fit.eduard_object.eduard.grid.Grid.shallowCopy(mappedSrc);
+                try {
+                    mappedDest.getBufferArray();
+                    fail("grid not mapped");
+                } catch (UnsupportedOperationException expectedException){
+                }
+                for (int bufferSets = 1; bufferSets <= 3; bufferSets++){
+                    TiledOperator tiledOperator = new TiledOperator(factory, 16, 2);
+                    tiledOperator.setBufferSets(bufferSets);
+                    tiledOperator.operate(mappedSrc, mappedDest);
+                    for (int i = 0; i < src.getLength(); i++){
+                        assertEquals(Float.floatToIntBits(expected.get(i)),
+                                Float.floatToIntBits(mappedDest.getValue(i)));
+                    }
+                }
+                mappedSrc.release();
+                mappedDest.release();
+            } finally {
+                BufferArena.setMapped(Integer.MAX_VALUE, null);
+            }
+            expected.release();
+        }
+        src.release();
+    }
+
+    @Test
+    void testPipelineMetrics() {
+        Grid src = createGrid(300, 400, 10);
+        RunMetrics run = new RunMetrics("pipeline");
+        RunMetrics previous = RunMetrics.bind(run);
+        try {
+            TiledOperator pipeline = new TiledOperator(GradientOperator::new, 20, 1);
+            pipeline.setBufferSets(3);
+            pipeline.operate(src).release();
+
+            double overlap = pipeline.getOverlapMillis();
+            assertTrue(overlap >= 0);
+            assertTrue(overlap <= pipeline.getTransferMillis());
+            assertTrue(pipeline.getTimer() > 0);
+            StageMetrics stage = run.getStages().get(0);
+            assertEquals("Tiled", stage.getName());
+            assertEquals(overlap, stage.getOverlapMillis(), 0);
+            assertEquals(pipeline.getTransferMillis(), stage.getTransferMillis(), 0);
+            assertTrue(run.toCSV().startsWith("run,stage,depth,cols,rows,kernel_ms,transfer_ms"));
+            assertTrue(run.toJSON().contains("\"overlap_ms\":"));
+
+            // tiles processed one after the other do not overlap
+            TiledOperator sequential = new TiledOperator(GradientOperator::new, 20, 1);
+            sequential.operate(src).release();
+            assertTrue(sequential.getTransferMillis() > 0);
+            assertEquals(0, sequential.getOverlapMillis(), 0);
+        } finally {
+            RunMetrics.bind(previous);
+        }
+        src.release();
+
+        try {
+            new TiledOperator(GradientOperator::new, 20, 1).setBufferSets(4);
+            fail();
+        } catch (IllegalArgumentException ex){
+        }
+    }
+
+    @Test
+    void testFailingTile() throws InterruptedException {
+        Grid src = createGrid(60, 80, 10);
+        edu.monash.fit.eduard_object.eduard.grid.Grid eduardSrc = src.toEduardGrid(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (Supplier<AparapiOperator> factory : Arrays.<Supplier<AparapiOperator>>asList(
+                    GradientOperator::new, () -> new LowPassOperator(4))){
+                for (int bufferSets = 1; bufferSets <= 3; bufferSets++){
+                    // the scatter of the third tile fails
+                    edu.monash.fit.eduard_object.eduard.grid.Grid failingDest =
+                            new edu.monash.fit.eduard_object.eduard.grid.Grid(10, 0, 0, null,
+                                    new FailingBuffer(new float[60 * 80], 60, 80, Integer.MAX_VALUE, 60 * 20));
+                    assertFails(executor, factory, bufferSets, eduardSrc, failingDest, "write failed");
+
+                    // the gather of the third tile fails
+                    edu.monash.fit.eduard_object.eduard.grid.Grid failingSrc =
+                            new edu.monash.fit.eduard_object.eduard.grid.Grid(10, 0, 0, null,
+                                    new FailingBuffer(src.getBuffer().clone(), 60, 80, 60 * 20, Integer.MAX_VALUE));
+                    edu.monash.fit.eduard_object.eduard.grid.Grid dest =
+                            edu.monash.fit.eduard_object.eduard.grid.Grid.shallowCopy(eduardSrc);
+                    assertFails(executor, factory, bufferSets, failingSrc, dest, "read failed");
+                    dest.release();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        src.release();
+    }
+
+    /**
+     * Assert that a tiled operation fails with the exception of a tile instead of waiting forever
+     */
+    private static void assertFails(ExecutorService executor, Supplier<AparapiOperator> factory, int bufferSets,
+                                    edu.monash.fit.eduard_object.eduard.grid.Grid src,
+                                    edu.monash.fit.eduard_object.eduard.grid.Grid dest, String message)
+            throws InterruptedException {
+        TiledOperator tiledOperator = new TiledOperator(factory, 8, 1);
+        tiledOperator.setBufferSets(bufferSets);
+        Future<?> future = executor.submit(() -> tiledOperator.operate(src, dest));
+        try {
+            future.get(60, TimeUnit.SECONDS);
+            fail("tiled operation did not fail");
+        } catch (ExecutionException ex){
+            assertEquals(message, ex.getCause().getMessage());
+        } catch (TimeoutException ex){
+            future.cancel(true);
+            fail("tiled operation with " + bufferSets + " buffer sets does not end");
+        }
+    }
+
+    @Test
+    void testNotTileable() {
+        Grid src = createGrid(20, 20, 10);
+        try {
+            new TiledOperator(() -> new HorizontalTransposingLowPassFilter(true, 2), 8, 1).operate(src);
+            fail();
+        } catch (UnsupportedOperationException ex){
+        }
+    }
+}